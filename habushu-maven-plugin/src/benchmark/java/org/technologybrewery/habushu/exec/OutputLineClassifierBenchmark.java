@@ -0,0 +1,88 @@
+package org.technologybrewery.habushu.exec;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link OutputLineClassifier} with the classification previously
+ * performed by {@code ProcessExecutor.LoggerOutputStream}, which upper-cased
+ * each line and searched the copy for each keyword. Lines are representative of
+ * verbose {@code poetry install -vvv} and behave output; run with
+ * {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputLineClassifierBenchmark {
+
+    private static final String[] LINES = {
+            "  - Installing certifi (2023.7.22): Downloading... 100%",
+            "   1: fact: habushu-mixology depends on krausening (>=20,<21)",
+            "   1: derived: not krausening (==19.0.0)",
+            "Source (PyPI): 3 packages found for pytest >=7.4.0,<8.0.0",
+            "  Scenario: Output beyond the memory threshold is spilled to disk -- @1.1 Examples",
+            "    Then the command fails with an error that omits the middle of its output ... passed in 0.012s",
+            "DeprecationWarning: pkg_resources is deprecated as an API",
+            "[DEBUG] Resolving dependencies for habushu-mixology-consumer",
+            "ERROR: Could not find a version that satisfies the requirement foo",
+            "1 feature passed, 0 failed, 0 skipped"
+    };
+
+    @Param({"short", "long"})
+    public String lineLength;
+
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lines = new String[LINES.length];
+        for (int i = 0; i < LINES.length; i++) {
+            // long lines are typical of stack traces and dependency resolution output:
+            lines[i] = "long".equals(lineLength) ? LINES[i] + " " + LINES[(i + 1) % LINES.length].repeat(8) : LINES[i];
+        }
+    }
+
+    @Benchmark
+    public OutputLineClassifier.Level upperCaseAndContains() {
+        return classifyByUpperCasing(nextLine());
+    }
+
+    @Benchmark
+    public OutputLineClassifier.Level singlePassClassifier() {
+        return OutputLineClassifier.classify(nextLine());
+    }
+
+    private String nextLine() {
+        String line = lines[next];
+        next = (next + 1) % lines.length;
+        return line;
+    }
+
+    private static OutputLineClassifier.Level classifyByUpperCasing(String line) {
+        final String upperLine = line.toUpperCase();
+        if (upperLine.contains("ERROR") || upperLine.contains("CRITICAL") || upperLine.contains("FAILURE")) {
+            return OutputLineClassifier.Level.ERROR;
+        } else if (upperLine.contains("WARNING")) {
+            return OutputLineClassifier.Level.WARN;
+        } else if (upperLine.contains("DEBUG")) {
+            return OutputLineClassifier.Level.DEBUG;
+        } else {
+            return OutputLineClassifier.Level.INFO;
+        }
+    }
+}
@@ -9,11 +9,14 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -23,7 +26,14 @@ import org.apache.maven.settings.Settings;
 import org.sonatype.plexus.components.cipher.PlexusCipherException;
 import org.sonatype.plexus.components.sec.dispatcher.SecDispatcherException;
 import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.ProcessGovernor;
+import org.technologybrewery.habushu.exec.ProcessMetrics;
 import org.technologybrewery.habushu.exec.PyenvCommandHelper;
+import org.technologybrewery.habushu.exec.PythonToolServer;
+import org.technologybrewery.habushu.exec.PythonToolServers;
+import org.technologybrewery.habushu.exec.VirtualEnvCommandHelper;
+import org.technologybrewery.habushu.trace.BuildTracer;
 import org.technologybrewery.habushu.util.MavenPasswordDecoder;
 
 /**
@@ -212,6 +222,110 @@ public abstract class AbstractHabushuMojo extends AbstractMojo {
     @Parameter(defaultValue = "false", property = "habushu.rewriteLocalPathDepsInArchives")
     protected boolean rewriteLocalPathDepsInArchives;
 
+    /**
+     * Executes Python tools (i.e. Pylint, black, behave, and the commands of
+     * {@link RunCommandInVirtualEnvMojo}) directly from the project's in-project
+     * virtual environment ({@code .venv}) with the environment that
+     * {@code poetry run} would establish, rather than via {@code poetry run},
+     * which avoids the startup cost of Poetry for each invocation. If the
+     * project does not have an in-project virtual environment, {@code poetry run}
+     * is used.
+     */
+    @Parameter(defaultValue = "true", property = "habushu.runToolsInVirtualEnvDirectly")
+    protected boolean runToolsInVirtualEnvDirectly = true;
+
+    /**
+     * Executes Pylint, black, and behave within a long-lived Python worker that is
+     * started in the project's in-project virtual environment on first use and
+     * shut down at the end of the build, so that the Python interpreter is only
+     * started, and each tool only imported, once per build. Requires the in-project
+     * virtual environment to be used directly (see
+     * {@link #runToolsInVirtualEnvDirectly}) and habushu-maven-plugin to be
+     * declared with {@code <extensions>true</extensions>}; otherwise, tools are
+     * executed as separate processes.
+     */
+    @Parameter(defaultValue = "false", property = "habushu.useToolServer")
+    protected boolean useToolServer;
+
+    /**
+     * Executes Poetry commands (other than {@code poetry self} and
+     * {@code poetry --version}) within long-lived daemons that run with Poetry's
+     * own interpreter and execute commands through Poetry's console application,
+     * so that Poetry and its dependencies are only imported once per build rather
+     * than once per command. Daemons are started on first use, keep the state of
+     * recently used projects warm, and are shut down at the end of the build.
+     * Requires Poetry to be launched by a Python script (as installed by Poetry's
+     * official installer or pipx) and habushu-maven-plugin to be declared with
+     * {@code <extensions>true</extensions>}; otherwise, or if a daemon fails, the
+     * Poetry CLI is used.
+     */
+    @Parameter(defaultValue = "false", property = "habushu.usePoetryDaemon")
+    protected boolean usePoetryDaemon;
+
+    /**
+     * Logs the output of commands (i.e. {@code poetry install}, behave) on a
+     * separate thread through a bounded queue, so that verbose output is drained
+     * from each command as quickly as it is written rather than waiting on Maven's
+     * logger. Output of each command is still fully logged before its result is
+     * reported.
+     */
+    @Parameter(defaultValue = "false", property = "habushu.asyncProcessLogging")
+    protected boolean asyncProcessLogging;
+
+    /**
+     * Records the command (with sensitive arguments masked), wall time, CPU time,
+     * output size, and exit code of each process launched by the mojo to
+     * {@code habushu-process-metrics.json} in the module's build directory. When
+     * habushu-maven-plugin is declared with {@code <extensions>true</extensions>},
+     * the slowest commands and the number of launches per mojo across the reactor
+     * are summarized at the end of the build.
+     */
+    @Parameter(defaultValue = "true", property = "habushu.processMetrics")
+    protected boolean processMetrics = true;
+
+    /**
+     * Limits the processes launched concurrently across the reactor (i.e. in a
+     * {@code mvn -T 1C} build) by weighted permits, so that heavy commands (i.e.
+     * {@code poetry install}, {@code poetry lock}, {@code poetry build}) queue
+     * rather than oversubscribing the machine. See {@link ProcessGovernor}.
+     */
+    @Parameter(defaultValue = "true", property = "habushu.governProcesses")
+    protected boolean governProcesses = true;
+
+    /**
+     * Number of process permits per available CPU when
+     * {@link #governProcesses} is enabled. Light commands (i.e. version probes)
+     * acquire one permit, heavy commands acquire {@link #heavyProcessWeight}.
+     */
+    @Parameter(defaultValue = "1.0", property = "habushu.processPermitsPerCpu")
+    protected double processPermitsPerCpu = 1.0;
+
+    /**
+     * Number of permits acquired by each heavy command when
+     * {@link #governProcesses} is enabled.
+     */
+    @Parameter(defaultValue = "4", property = "habushu.heavyProcessWeight")
+    protected int heavyProcessWeight = 4;
+
+    /**
+     * Megabytes of physical memory reserved for each heavy command when
+     * {@link #governProcesses} is enabled, which further limits the number of
+     * permits on machines with many CPUs but little memory. A value of 0 does not
+     * limit processes by memory.
+     */
+    @Parameter(defaultValue = "1024", property = "habushu.memoryPerHeavyProcessMb")
+    protected int memoryPerHeavyProcessMb = 1024;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    protected MojoExecution mojoExecution;
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    protected MavenSession session;
+
+    private VirtualEnvCommandHelper virtualEnvCommandHelper;
+    private boolean virtualEnvResolved;
+    private boolean warnedPoetryDaemonUnavailable;
+
     /**
      * Find the username for a given server in Maven's user settings.
      *
@@ -288,10 +402,20 @@ public abstract class AbstractHabushuMojo extends AbstractMojo {
      * @return the poetry cache directory path as a FILE object.  
      */
     public File getCachedWheelDirectory(String artifactId) {
+        return new File(getWheelCacheDirectory(), artifactId);
+    }
+
+    /**
+     * Find the root of the wheel cache directory, under which each cached artifact
+     * has its own directory.
+     *
+     * @return the wheel cache directory as a FILE object.
+     */
+    public File getWheelCacheDirectory() {
         try {
             PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
             String poetryCacheDirectoryPath = poetryHelper.getPoetryCacheDirectoryPath();
-            return new File(String.format("%s/cache/repositories/wheels/%s", poetryCacheDirectoryPath, artifactId));
+            return new File(String.format("%s/cache/repositories/wheels", poetryCacheDirectoryPath));
         } catch (Exception e) {
             throw new HabushuException("Could not get the Poetry Cache Wheel directory!", e);
         }
@@ -301,7 +425,14 @@ public abstract class AbstractHabushuMojo extends AbstractMojo {
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if ("habushu".equals(packaging)) {
-            doExecute();
+            ProcessExecutor.setAsynchronousLogging(asyncProcessLogging);
+            ProcessGovernor.configure(governProcesses, processPermitsPerCpu, heavyProcessWeight,
+                    memoryPerHeavyProcessMb * 1024L * 1024L);
+            try (ProcessMetrics.MojoScope metricsScope = processMetrics ? ProcessMetrics.enterMojo(session,
+                    project.getArtifactId(), getProcessMetricsFile(), getMojoName()) : null;
+                 BuildTracer.Span mojoSpan = BuildTracer.enterMojo(session, project.getArtifactId(), getMojoName())) {
+                doExecute();
+            }
         } else {
             getLog().info("Skipping execution - packaging type is not 'habushu'");
         }
@@ -309,6 +440,41 @@ public abstract class AbstractHabushuMojo extends AbstractMojo {
 
     protected abstract void doExecute() throws MojoExecutionException, MojoFailureException;
 
+    /**
+     * Wraps work that this mojo defers until later in the build (i.e. publishing
+     * at the end of the build), so that the processes it launches, its spans, and
+     * its metrics are still attributed to this mojo and its module.
+     *
+     * @param work deferred work
+     * @return work that attributes itself to this mojo when run
+     */
+    protected Runnable attributedToThisMojo(Runnable work) {
+        String module = project.getArtifactId();
+        File processMetricsFile = getProcessMetricsFile();
+        String mojo = getMojoName();
+        boolean recordProcessMetrics = processMetrics;
+        return () -> {
+            try (ProcessMetrics.MojoScope metricsScope = recordProcessMetrics ? ProcessMetrics.enterMojo(session,
+                    module, processMetricsFile, mojo) : null;
+                 BuildTracer.Span deferredSpan = BuildTracer.resumeMojo(session, module, mojo)) {
+                work.run();
+            }
+        };
+    }
+
+    private File getProcessMetricsFile() {
+        String buildDirectory = project.getBuild() != null ? project.getBuild().getDirectory() : null;
+        File directory = buildDirectory != null ? new File(buildDirectory) : new File(project.getBasedir(), "target");
+        return new File(directory, ProcessMetrics.FILE_NAME);
+    }
+
+    private String getMojoName() {
+        if (mojoExecution == null) {
+            return getClass().getSimpleName();
+        }
+        return mojoExecution.getGoal() + "@" + mojoExecution.getExecutionId();
+    }
+
     /**
      * Gets the canonical path for a file without having to deal w/ checked
      * exceptions.
@@ -342,7 +508,122 @@ public abstract class AbstractHabushuMojo extends AbstractMojo {
      * @return
      */
     protected PoetryCommandHelper createPoetryCommandHelper() {
-        return new PoetryCommandHelper(getPoetryProjectBaseDir());
+        PoetryCommandHelper poetryHelper = new PoetryCommandHelper(getPoetryProjectBaseDir());
+        if (usePoetryDaemon) {
+            PythonToolServers pythonServers = PythonToolServers.get(session);
+            if (pythonServers != null) {
+                poetryHelper.usePoetryDaemons(pythonServers);
+            } else if (!warnedPoetryDaemonUnavailable) {
+                warnedPoetryDaemonUnavailable = true;
+                getLog().warn("habushu.usePoetryDaemon requires habushu-maven-plugin to be declared with "
+                        + "<extensions>true</extensions> - executing Poetry commands via the Poetry CLI");
+            }
+        }
+        return poetryHelper;
+    }
+
+    /**
+     * Returns a {@link VirtualEnvCommandHelper} for this project's in-project
+     * virtual environment, which is resolved once per execution.
+     *
+     * @return helper for the virtual environment, or {@code null} if
+     * {@link #runToolsInVirtualEnvDirectly} is disabled or the project does not
+     * have an in-project virtual environment
+     */
+    protected VirtualEnvCommandHelper getVirtualEnvCommandHelper() {
+        if (!virtualEnvResolved) {
+            virtualEnvResolved = true;
+            virtualEnvCommandHelper = runToolsInVirtualEnvDirectly
+                    ? VirtualEnvCommandHelper.find(getPoetryProjectBaseDir()) : null;
+        }
+        return virtualEnvCommandHelper;
+    }
+
+    /**
+     * Executes the given command within this project's virtual environment,
+     * logging its output. The command is executed directly from the in-project
+     * virtual environment if possible (see {@link #runToolsInVirtualEnvDirectly}),
+     * otherwise via {@code poetry run}.
+     *
+     * @param poetryHelper         Poetry command helper used if the command cannot
+     *                             be executed directly
+     * @param command              command and its arguments (i.e.
+     *                             {@code pylint src})
+     * @param environmentVariables additional environment variables, may be
+     *                             {@code null}
+     * @throws MojoExecutionException
+     */
+    protected void executeInVirtualEnv(PoetryCommandHelper poetryHelper, List<String> command,
+                                       Map<String, String> environmentVariables) throws MojoExecutionException {
+        VirtualEnvCommandHelper virtualEnvHelper = getVirtualEnvCommandHelper();
+        if (virtualEnvHelper != null) {
+            virtualEnvHelper.executeAndLogOutput(command, environmentVariables);
+            return;
+        }
+
+        List<String> poetryRunArgs = new ArrayList<>(command);
+        poetryRunArgs.add(0, "run");
+        if (environmentVariables != null) {
+            poetryHelper.executeAndLogOutput(poetryRunArgs, environmentVariables);
+        } else {
+            poetryHelper.executeAndLogOutput(poetryRunArgs);
+        }
+    }
+
+    /**
+     * Executes Pylint, black, or behave within this project's virtual environment,
+     * logging its output. The tool is executed within the project's
+     * {@link PythonToolServer} if {@link #useToolServer} is enabled and possible,
+     * otherwise as described in
+     * {@link #executeInVirtualEnv(PoetryCommandHelper, List, Map)}.
+     *
+     * @param poetryHelper         Poetry command helper used if the tool cannot
+     *                             be executed directly
+     * @param command              tool and its arguments (i.e. {@code pylint src})
+     * @param environmentVariables additional environment variables, may be
+     *                             {@code null}
+     * @throws MojoExecutionException
+     */
+    protected void executeToolInVirtualEnv(PoetryCommandHelper poetryHelper, List<String> command,
+                                           Map<String, String> environmentVariables) throws MojoExecutionException {
+        if (!executeInToolServer(command, environmentVariables)) {
+            executeInVirtualEnv(poetryHelper, command, environmentVariables);
+        }
+    }
+
+    private boolean executeInToolServer(List<String> command, Map<String, String> environmentVariables) {
+        String tool = command.get(0);
+        VirtualEnvCommandHelper virtualEnvHelper = useToolServer ? getVirtualEnvCommandHelper() : null;
+        if (virtualEnvHelper == null || !PythonToolServer.SUPPORTED_TOOLS.contains(tool)
+                || virtualEnvHelper.findExecutable(tool) == null) {
+            return false;
+        }
+        PythonToolServers toolServers = PythonToolServers.get(session);
+        if (toolServers == null) {
+            getLog().warn("habushu.useToolServer requires habushu-maven-plugin to be declared with "
+                    + "<extensions>true</extensions> - executing " + tool + " as a separate process");
+            return false;
+        }
+
+        PythonToolServer server = null;
+        int exitCode;
+        try {
+            server = toolServers.getOrStart(virtualEnvHelper);
+            exitCode = server.execute(tool, command.subList(1, command.size()), getPoetryProjectBaseDir(),
+                    environmentVariables);
+        } catch (IOException e) {
+            getLog().warn("Python tool server failed - executing " + tool + " as a separate process: "
+                    + e.getMessage());
+            if (server != null) {
+                toolServers.discard(server);
+            }
+            return false;
+        }
+        if (exitCode != 0) {
+            throw new HabushuException(String.format("%s failed with exit code %s! See output above.", tool,
+                    exitCode));
+        }
+        return true;
     }
 
     /**
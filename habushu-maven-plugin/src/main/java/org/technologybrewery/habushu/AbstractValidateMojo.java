@@ -33,7 +33,7 @@ public abstract class AbstractValidateMojo extends AbstractHabushuMojo {
                              List<String> extraArgs) throws MojoExecutionException {
         PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
         if (lintDirectory.exists()) {
-            List<String> executeLintArgs = new ArrayList<>(Arrays.asList("run", LINT_PACKAGE));
+            List<String> executeLintArgs = new ArrayList<>(Arrays.asList(LINT_PACKAGE));
             executeLintArgs.add(getCanonicalPathForFile(lintDirectory));
             if (!poetryHelper.isDependencyInstalled(LINT_PACKAGE)) {
                 getLog().info(String.format("%s dependency not specified in pyproject.toml - installing now...",
@@ -59,7 +59,7 @@ public abstract class AbstractValidateMojo extends AbstractHabushuMojo {
 
 
             getLog().info("Validating code using Pylint...");
-            poetryHelper.executeAndLogOutput(executeLintArgs);
+            executeToolInVirtualEnv(poetryHelper, executeLintArgs, null);
         } else {
             getLog().warn(String.format("Configured linting directory (%s) does not exist - skipping...",
                     lintDirectory));
@@ -0,0 +1,91 @@
+package org.technologybrewery.habushu;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugins.annotations.Parameter;
+import org.technologybrewery.habushu.cache.WheelCacheEvictionPolicy;
+import org.technologybrewery.habushu.cache.WheelCacheEvictor;
+import org.technologybrewery.habushu.cache.WheelCacheLock;
+
+/**
+ * Contains logic common across the mojos that manage the Habushu wheel cache
+ * (i.e. {@code <poetry-cache-dir>/cache/repositories/wheels/<artifactId>}),
+ * including the limits used to evict wheels from the cache and the lock used to
+ * coordinate concurrent writes to the cache.
+ */
+public abstract class AbstractWheelCacheMojo extends AbstractHabushuMojo {
+
+    /**
+     * Maximum total size, in megabytes, of all wheels in the wheel cache. Once
+     * exceeded, the least recently cached or retrieved wheels are evicted. Zero
+     * or a negative value disables this limit.
+     */
+    @Parameter(property = "habushu.wheelCacheMaxSizeMb", defaultValue = "0")
+    protected long wheelCacheMaxSizeMb;
+
+    /**
+     * Maximum number of versions of each artifact to retain in the wheel cache.
+     * Wheels of older versions are evicted first. Zero or a negative value
+     * disables this limit.
+     */
+    @Parameter(property = "habushu.wheelCacheMaxVersionsPerArtifact", defaultValue = "0")
+    protected int wheelCacheMaxVersionsPerArtifact;
+
+    /**
+     * Maximum number of days since a wheel was last cached or retrieved before it
+     * is evicted from the wheel cache. Zero or a negative value disables this
+     * limit.
+     */
+    @Parameter(property = "habushu.wheelCacheMaxAgeDays", defaultValue = "0")
+    protected int wheelCacheMaxAgeDays;
+
+    /**
+     * Maximum number of seconds to wait for other builds (i.e. concurrent Maven
+     * invocations on a shared build agent, or other modules of a parallel build)
+     * to finish writing an artifact's cached wheels before failing.
+     */
+    @Parameter(property = "habushu.wheelCacheLockTimeoutSeconds", defaultValue = "300")
+    protected int wheelCacheLockTimeoutSeconds;
+
+    /**
+     * Evicts wheels from the wheel cache that exceed the configured limits.
+     *
+     * @param artifactIds    artifacts to which the age and version limits are
+     *                       applied, or {@code null} for all cached artifacts
+     * @param protectedFiles wheels that must not be evicted
+     * @return evicted wheels
+     */
+    protected List<File> evictWheelCache(Collection<String> artifactIds, Set<File> protectedFiles) {
+        WheelCacheEvictionPolicy policy = new WheelCacheEvictionPolicy(wheelCacheMaxSizeMb,
+                wheelCacheMaxVersionsPerArtifact, wheelCacheMaxAgeDays);
+        if (policy.isUnbounded()) {
+            getLog().debug("No wheel cache limits configured - skipping wheel cache eviction");
+            return List.of();
+        }
+
+        WheelCacheEvictor evictor = new WheelCacheEvictor(getWheelCacheDirectory(), policy, getWheelCacheLockTimeout());
+        List<File> evictedWheels = evictor.evict(artifactIds, protectedFiles);
+        getLog().info(String.format("Evicted %s wheel(s) from the wheel cache", evictedWheels.size()));
+        return evictedWheels;
+    }
+
+    /**
+     * Acquires the cross-process lock that must be held while writing the cached
+     * wheels or manifest of the given artifact.
+     *
+     * @param artifactId artifact whose cached wheels will be written
+     * @return the acquired lock, which must be closed to release it
+     */
+    protected WheelCacheLock lockWheelCache(String artifactId) {
+        return WheelCacheLock.acquire(getCachedWheelDirectory(artifactId).getParentFile(), artifactId,
+                getWheelCacheLockTimeout());
+    }
+
+    private Duration getWheelCacheLockTimeout() {
+        return Duration.ofSeconds(Math.max(0, wheelCacheLockTimeoutSeconds));
+    }
+}
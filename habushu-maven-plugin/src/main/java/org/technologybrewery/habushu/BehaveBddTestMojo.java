@@ -110,7 +110,7 @@ public class BehaveBddTestMojo extends AbstractHabushuMojo {
 
             List<String> executeBehaveTestArgs = new ArrayList<>();
             executeBehaveTestArgs
-                    .addAll(Arrays.asList("run", BEHAVE_PACKAGE, getCanonicalPathForFile(behaveDirectory)));
+                    .addAll(Arrays.asList(BEHAVE_PACKAGE, getCanonicalPathForFile(behaveDirectory)));
 
             if (outputCucumberStyleTestReports) {
                 poetryHelper.installDevelopmentDependency(BEHAVE_CUCUMBER_FORMATTER);
@@ -141,7 +141,7 @@ public class BehaveBddTestMojo extends AbstractHabushuMojo {
             getLog().info("-------------------------------------------------------");
             getLog().info("T E S T S");
             getLog().info("-------------------------------------------------------");
-            poetryHelper.executeAndLogOutput(executeBehaveTestArgs, behaveTestEnvironmentVariables);
+            executeToolInVirtualEnv(poetryHelper, executeBehaveTestArgs, behaveTestEnvironmentVariables);
         } else {
             getLog().warn(String.format("No tests found in %s", getCanonicalPathForFile(behaveDirectory)));
         }
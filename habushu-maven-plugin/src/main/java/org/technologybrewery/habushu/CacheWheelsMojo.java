@@ -1,7 +1,9 @@
 package org.technologybrewery.habushu;
 
 import java.io.File;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -10,11 +12,20 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.technologybrewery.habushu.cache.WheelCacheAccessLog;
+import org.technologybrewery.habushu.cache.WheelCacheLock;
+import org.technologybrewery.habushu.cache.WheelCacheManifest;
 import org.technologybrewery.habushu.util.HabushuUtil;
 
 /**
  * Helper mojo that handles caching of a wheel dependency,
  * into Poetry cache during the {@link LifecyclePhase#INSTALL} build phase. 
+ * Each cached wheel is indexed in the artifact's {@link WheelCacheManifest}.
+ * Wheels are written while holding the artifact's {@link WheelCacheLock} and are
+ * atomically renamed into place, so concurrent builds never retrieve a partially
+ * written wheel.
+ * After caching, wheels of this artifact that exceed the configured wheel cache
+ * limits are evicted (see {@link AbstractWheelCacheMojo}).
  *
  * @param cacheWheels       A boolean that when implemented will cache a project's 
  *                          wheel files in poetry.
@@ -22,7 +33,7 @@ import org.technologybrewery.habushu.util.HabushuUtil;
  * @throws HabushuException
  */
 @Mojo(name = "cache-wheels", defaultPhase = LifecyclePhase.INSTALL)
-public class CacheWheelsMojo extends AbstractHabushuMojo {
+public class CacheWheelsMojo extends AbstractWheelCacheMojo {
     /**
      * A boolean that when implemented will cache a project's wheel files in poetry.
      */
@@ -32,30 +43,42 @@ public class CacheWheelsMojo extends AbstractHabushuMojo {
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
         if (cacheWheels) {
-            cacheWheels();
+            Set<File> cachedWheels = cacheWheels();
+            evictWheelCache(List.of(project.getArtifactId()), cachedWheels);
         }
     }
 
-    private void cacheWheels() {
+    private Set<File> cacheWheels() {
         getLog().info("Processing Cache Wheels..");
+        Set<File> cachedWheels = new HashSet<>();
         try {
             File wheelSourceDirectory = getProjectBuildDirectory();
             File poetryWheelCacheDirectory = getCachedWheelDirectory(project.getArtifactId());
+            WheelCacheAccessLog accessLog = new WheelCacheAccessLog(poetryWheelCacheDirectory.getParentFile());
             // conditional will throw an error if cache directory isn't created
             if (poetryWheelCacheDirectory.exists() || poetryWheelCacheDirectory.mkdirs()) {
                 List<File> wheelFiles = Stream.of(wheelSourceDirectory.listFiles())
                         .filter(file -> file.getAbsolutePath().endsWith(".whl"))
                         .map(File::getAbsoluteFile)
                         .collect(Collectors.toList());
-                for (File file : wheelFiles) {
-                    HabushuUtil.copyFile(file.getPath(),
-                            String.format("%s/%s", poetryWheelCacheDirectory.toPath().toString(), file.getName()));
-                    getLog().info(String.format("Cached the %s file", file.getName()));
+                try (WheelCacheLock lock = lockWheelCache(project.getArtifactId())) {
+                    WheelCacheManifest manifest = WheelCacheManifest.load(poetryWheelCacheDirectory);
+                    for (File file : wheelFiles) {
+                        File cachedWheel = new File(poetryWheelCacheDirectory, file.getName());
+                        HabushuUtil.copyFileAtomically(file, cachedWheel);
+                        manifest.index(cachedWheel);
+                        accessLog.recordAccess(project.getArtifactId(), file.getName());
+                        cachedWheels.add(cachedWheel);
+                        getLog().info(String.format("Cached the %s file", file.getName()));
+                    }
+                    manifest.reconcile();
+                    manifest.save();
                 }
             }
         } catch (Exception e) {
             throw new HabushuException("Could not cache the " + project.getArtifactId() + " wheel file(s)!", e);
         }
+        return cachedWheels;
     }
 
     protected File getProjectBuildDirectory() {
@@ -2,6 +2,7 @@ package org.technologybrewery.habushu;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -108,6 +109,13 @@ public class CleanHabushuMojo extends CleanMojo {
     @Parameter(defaultValue = "true", property = "habushu.useInProjectVirtualEnvironment")
     protected boolean useInProjectVirtualEnvironment;
 
+    /**
+     * The Maven session, with which toolchain validations already performed
+     * during the build are shared.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true)
+    protected MavenSession session;
+
 
     @Override
     public void execute() throws MojoExecutionException {
@@ -203,6 +211,7 @@ public class CleanHabushuMojo extends CleanMojo {
         String virtualEnvFullPath = null;
         PyenvAndPoetrySetup configureTools = new PyenvAndPoetrySetup(pythonVersion, usePyenv,
                 patchInstallScript, workingDirectory, rewriteLocalPathDepsInArchives, getLog());
+        configureTools.validateOncePerBuild(ToolchainValidations.get(session));
         configureTools.execute();
 
         try {
@@ -0,0 +1,33 @@
+package org.technologybrewery.habushu;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+import java.util.Set;
+
+/**
+ * Evicts wheels from the Habushu wheel cache that exceed the configured wheel
+ * cache limits across all cached artifacts. While {@link CacheWheelsMojo}
+ * incrementally applies these limits to the artifact it caches, this goal may
+ * be executed ad hoc (i.e. {@code mvn habushu:evict-wheel-cache
+ * -Dhabushu.wheelCacheMaxSizeMb=2048}) or scheduled on shared build agents to
+ * trim the entire cache.
+ */
+@Mojo(name = "evict-wheel-cache")
+public class EvictWheelCacheMojo extends AbstractWheelCacheMojo {
+
+    /**
+     * Overriding to allow execution in non-habushu projects
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        doExecute();
+    }
+
+    @Override
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        getLog().info(String.format("Evicting wheels from %s...", getWheelCacheDirectory()));
+        evictWheelCache(null, Set.of());
+    }
+}
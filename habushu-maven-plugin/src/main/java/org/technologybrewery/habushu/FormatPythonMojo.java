@@ -12,7 +12,7 @@ import org.technologybrewery.habushu.exec.PoetryCommandHelper;
 
 /**
  * Leverages the black formatter package to format both source and test Python
- * directories using Poetry's run command.
+ * directories within the project's virtual environment.
  */
 @Mojo(name = "format-python", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE)
 public class FormatPythonMojo extends AbstractHabushuMojo {
@@ -44,10 +44,10 @@ public class FormatPythonMojo extends AbstractHabushuMojo {
 	}
 
 	List<String> executeBlackFormatterArgs = new ArrayList<>();
-	executeBlackFormatterArgs.addAll(Arrays.asList("run", BLACK_PACKAGE));
+	executeBlackFormatterArgs.add(BLACK_PACKAGE);
 	executeBlackFormatterArgs.addAll(directoriesToFormat);
 
 	getLog().info("Formatting configured source and test directories using black...");
-	poetryHelper.executeAndLogOutput(executeBlackFormatterArgs);
+	executeToolInVirtualEnv(poetryHelper, executeBlackFormatterArgs, null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package org.technologybrewery.habushu;
+
+import java.util.Map;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.exec.ProcessMetrics;
+import org.technologybrewery.habushu.exec.PythonToolServers;
+import org.technologybrewery.habushu.publish.DeferredPublisher;
+import org.technologybrewery.habushu.trace.BuildMetrics;
+import org.technologybrewery.habushu.trace.BuildTracer;
+
+/**
+ * Hooks into the start and end of Maven builds that use the {@code habushu}
+ * packaging (for which habushu-maven-plugin is declared with
+ * {@code <extensions>true</extensions>}) to perform work that spans the entire
+ * reactor, such as validating the toolchain once rather than per module (see
+ * {@link ToolchainValidations}), publishing all modules at the end of the build (see
+ * {@link PublishToPyPiRepoMojo#deployAtEnd}), shutting down Python tool
+ * servers (see {@link AbstractHabushuMojo#useToolServer}), summarizing the
+ * processes launched across the reactor (see
+ * {@link AbstractHabushuMojo#processMetrics}), and writing build traces (see
+ * {@link BuildTracer}) and metrics (see {@link BuildMetrics}).
+ */
+public class HabushuLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+    private static final Logger logger = LoggerFactory.getLogger(HabushuLifecycleParticipant.class);
+
+    private static final int SLOWEST_COMMANDS_SUMMARIZED = 10;
+
+    @Override
+    public void afterProjectsRead(MavenSession session) {
+        DeferredPublisher.activate(session);
+        ToolchainValidations.activate(session);
+        PythonToolServers.activate(session);
+        BuildTracer.activate(session);
+        BuildMetrics.activate(session);
+    }
+
+    @Override
+    public void afterSessionEnd(MavenSession session) throws MavenExecutionException {
+        // deferred publications are traced and measured, and may use Poetry daemons, so publish first:
+        try {
+            publishDeferredModules(session);
+        } finally {
+            ToolchainValidations.deactivate(session);
+            PythonToolServers.deactivate(session);
+            ProcessMetrics processMetrics = ProcessMetrics.deactivate(session);
+            summarizeProcessMetrics(processMetrics);
+            BuildTracer.deactivate(session);
+            BuildMetrics.deactivate(session, processMetrics);
+        }
+    }
+
+    private void summarizeProcessMetrics(ProcessMetrics metrics) {
+        String summary = metrics != null ? metrics.summarize(SLOWEST_COMMANDS_SUMMARIZED) : null;
+        if (summary != null) {
+            logger.info(summary);
+        }
+    }
+
+    private void publishDeferredModules(MavenSession session) throws MavenExecutionException {
+        DeferredPublisher publisher = DeferredPublisher.deactivate(session);
+        if (publisher == null || publisher.size() == 0) {
+            return;
+        }
+
+        if (session.getResult() != null && session.getResult().hasExceptions()) {
+            logger.warn("Not publishing {} module(s) configured to deploy at end, as the build failed",
+                    publisher.size());
+            return;
+        }
+
+        Map<String, Throwable> failures = publisher.publishAll();
+        if (!failures.isEmpty()) {
+            Throwable firstFailure = failures.values().iterator().next();
+            throw new MavenExecutionException(String.format("Could not publish %s module(s) at the end of the build: %s",
+                    failures.size(), failures.keySet()), firstFailure);
+        }
+    }
+}
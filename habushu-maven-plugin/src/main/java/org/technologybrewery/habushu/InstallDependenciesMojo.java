@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -36,7 +37,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Installs dependencies defined in the project's pyproject.toml configuration,
@@ -103,6 +103,31 @@ public class InstallDependenciesMojo extends AbstractHabushuMojo {
     @Parameter(defaultValue = "false", property = "habushu.forceSync")
     private boolean forceSync;
 
+    /**
+     * Seconds for which {@code poetry lock} and {@code poetry install} may run
+     * without writing any output or using any CPU time before they are considered
+     * stalled, at which point the stack of the Poetry process is logged and the
+     * process is stopped (or, if executed within a Poetry daemon, the daemon is
+     * stopped and discarded). A value of 0 waits for them indefinitely.
+     */
+    @Parameter(defaultValue = "600", property = "habushu.stallTimeoutSeconds")
+    protected int stallTimeoutSeconds;
+
+    /**
+     * Overrides {@link #stallTimeoutSeconds} for specific Poetry commands, keyed
+     * by command (i.e. {@code <lock>300</lock>}).
+     */
+    @Parameter
+    protected Map<String, Integer> stallTimeouts;
+
+    /**
+     * Configures whether a stalled {@code poetry lock} or {@code poetry install}
+     * is retried once, after clearing the cache entries of the package that
+     * Poetry was last installing, if any.
+     */
+    @Parameter(defaultValue = "false", property = "habushu.retryStalledCommands")
+    protected boolean retryStalledCommands;
+
     /**
      * The set of managed dependencies to monitor for conformance.  These can result in:
      * * direct changes to your pyproject.toml file (default behavior)
@@ -150,7 +175,8 @@ public class InstallDependenciesMojo extends AbstractHabushuMojo {
 
         if (!this.skipPoetryLockUpdate) {
             getLog().info("Locking dependencies specified in pyproject.toml...");
-            poetryHelper.executePoetryCommandAndLogAfterTimeout(Arrays.asList("lock"), 2, TimeUnit.MINUTES);
+            poetryHelper.executeWithStallDetection(Arrays.asList("lock"), getStallTimeout("lock"),
+                    retryStalledCommands);
         }
 
         List<String> installCommand = new ArrayList<>();
@@ -169,7 +195,15 @@ public class InstallDependenciesMojo extends AbstractHabushuMojo {
         }
 
         getLog().info("Installing dependencies...");
-        poetryHelper.executePoetryCommandAndLogAfterTimeout(installCommand, 2, TimeUnit.MINUTES);
+        poetryHelper.executeWithStallDetection(installCommand, getStallTimeout("install"), retryStalledCommands);
+    }
+
+    private Duration getStallTimeout(String command) {
+        Integer seconds = stallTimeouts != null ? stallTimeouts.get(command) : null;
+        if (seconds == null) {
+            seconds = stallTimeoutSeconds;
+        }
+        return seconds > 0 ? Duration.ofSeconds(seconds) : null;
     }
 
     private void setUpInProjectVirtualEnvironment(PoetryCommandHelper poetryHelper) throws MojoExecutionException {
@@ -217,9 +251,7 @@ public class InstallDependenciesMojo extends AbstractHabushuMojo {
             // source repositories via the "poetry source" command in future releases, but
             // for now we need to manually inspect and modify the package's pyproject.toml
             Config matchingPypiRepoSourceConfig;
-            try (FileConfig pyProjectConfig = FileConfig.of(getPoetryPyProjectTomlFile())) {
-                pyProjectConfig.load();
-
+            try (FileConfig pyProjectConfig = TomlUtils.loadTomlFile(getPoetryPyProjectTomlFile())) {
                 Optional<List<Config>> packageSources = pyProjectConfig.getOptional(PYPROJECT_PACKAGE_SOURCES_PATH);
                 matchingPypiRepoSourceConfig = packageSources.orElse(Collections.emptyList()).stream()
                         .filter(packageSource -> pypiRepoSimpleIndexUrl.equals(packageSource.get("url"))).findFirst()
@@ -301,9 +333,7 @@ public class InstallDependenciesMojo extends AbstractHabushuMojo {
         if (!managedDependencies.isEmpty()) {
             Map<String, TomlReplacementTuple> replacements = new HashMap<>();
 
-            try (FileConfig pyProjectConfig = FileConfig.of(getPoetryPyProjectTomlFile())) {
-                pyProjectConfig.load();
-
+            try (FileConfig pyProjectConfig = TomlUtils.loadTomlFile(getPoetryPyProjectTomlFile())) {
                 // Look for the standard Poetry dependency groups:
                 executeDetailedManagedDependencyMismatchActions(replacements, pyProjectConfig, "tool.poetry.dependencies");
                 executeDetailedManagedDependencyMismatchActions(replacements, pyProjectConfig, "tool.poetry.dev-dependencies");
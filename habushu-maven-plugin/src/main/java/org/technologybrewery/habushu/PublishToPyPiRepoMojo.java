@@ -1,21 +1,28 @@
 package org.technologybrewery.habushu;
 
+import java.io.File;
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import com.electronwill.nightconfig.core.file.FileConfig;
 import com.google.common.base.Predicates;
+import io.github.itning.retry.Attempt;
 import io.github.itning.retry.RetryException;
 import io.github.itning.retry.Retryer;
 import io.github.itning.retry.RetryerBuilder;
-import io.github.itning.retry.strategy.stop.StopStrategies;
+import io.github.itning.retry.listener.RetryListener;
 import io.github.itning.retry.strategy.stop.StopStrategy;
-import io.github.itning.retry.strategy.wait.WaitStrategies;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -25,6 +32,18 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.publish.ArchiveValidator;
+import org.technologybrewery.habushu.publish.ArchiveVersionRewriter;
+import org.technologybrewery.habushu.publish.DeferredPublisher;
+import org.technologybrewery.habushu.publish.DistributionArchive;
+import org.technologybrewery.habushu.publish.PublishFailureClassifier;
+import org.technologybrewery.habushu.publish.PublishFailureException;
+import org.technologybrewery.habushu.publish.PublishFailureType;
+import org.technologybrewery.habushu.publish.PublishRetryStrategies;
+import org.technologybrewery.habushu.publish.PyPiUploader;
+import org.technologybrewery.habushu.trace.BuildMetrics;
+import org.technologybrewery.habushu.trace.PublishAttemptEvent;
+import org.technologybrewery.habushu.util.TomlUtils;
 
 /**
  * Publishes the distribution archives generated by
@@ -57,6 +76,11 @@ import org.technologybrewery.habushu.exec.PoetryCommandHelper;
 public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
 
     private static final String VERSION = "version";
+    private static final int MAX_CLASSIFIED_OUTPUT_LINES = 200;
+    private static final String PUBLIC_PYPI_UPLOAD_URL = "https://upload.pypi.org/legacy/";
+    private static final String PUBLIC_PYPI_SIMPLE_INDEX_URL = "https://pypi.org/simple/";
+    private static final String LEGACY_UPLOAD_PATH = "legacy/";
+    private static final String SIMPLE_INDEX_PATH = "simple/";
 
     /**
      * {@link DateTimeFormatter} compliant pattern that configures the numeric
@@ -105,14 +129,17 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
     /**
      * Specifies the number of times a push to the configured PyPI repository will be attempted before stopping (inclusive
      * of the initial attempt). While this defaults to three and is fully configurable, it can be set to zero to never
-     * retry or set to any negative number for unlimited retries.  Unlimited retries will follow a fibonacci backoff
-     * interval.
+     * retry or set to any negative number for unlimited retries (still bounded by {@link #pypiPushRetryDeadlineSeconds}).
+     * Only failures that may succeed on retry (i.e. HTTP 5xx responses, timeouts, and connection resets) are retried -
+     * rejected credentials, conflicting files, and invalid archives fail immediately. Retries follow a jittered
+     * exponential backoff interval.
      */
     @Parameter(property = "habushu.pyPiPushRetries", defaultValue = "3")
     protected int pypiPushRetries = 3;
 
     /**
-     * A multiplier, in milliseconds, to apply to the retry wait time (e.g., round of fibonacci).
+     * Wait time, in milliseconds, before the first retry, which doubles after each subsequent failure (with each
+     * wait randomized between half of and the full computed time).
      */
     @Parameter(property = "habushu.pypiPushRetryMultiplier", defaultValue = "15000")
     protected long pypiPushRetryMultiplier;
@@ -123,6 +150,86 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
     @Parameter(property = "habushu.pypiPushRetryMaxTimeout", defaultValue = "3")
     protected long pypiPushRetryMaxTimeout;
 
+    /**
+     * Maximum total time, in seconds, to spend retrying a push to the configured PyPI repository, measured from the
+     * initial attempt. No further attempts are made once this deadline has passed, regardless of
+     * {@link #pypiPushRetries}. Set to zero for no deadline.
+     */
+    @Parameter(property = "habushu.pypiPushRetryDeadlineSeconds", defaultValue = "900")
+    protected long pypiPushRetryDeadlineSeconds = 900;
+
+    /**
+     * Publishes archives with Habushu's native uploader rather than
+     * {@code poetry publish}. The native uploader uploads the sdist and wheel
+     * archives concurrently, skips archives whose SHA-256 digest is already
+     * listed in the repository's simple index, and only resends archives that
+     * failed when retrying. Requires credentials to be provided via a
+     * settings.xml {@literal <server>} entry, and is not used when
+     * {@link #rewriteLocalPathDepsInArchives} is enabled.
+     */
+    @Parameter(property = "habushu.useNativeUploader", defaultValue = "false")
+    protected boolean useNativeUploader;
+
+    /**
+     * URL of the simple index (PEP-503) of the PyPI repository to which archives
+     * are published, which the native uploader uses to skip archives that were
+     * already published. By default, this is derived from the upload URL (i.e.
+     * {@code https://test.pypi.org/legacy/} becomes
+     * {@code https://test.pypi.org/simple/}, and {@code https://nexus/repository/pypi/}
+     * becomes {@code https://nexus/repository/pypi/simple/}).
+     */
+    @Parameter(property = "habushu.pypiSimpleIndexUrl")
+    protected String pypiSimpleIndexUrl;
+
+    /**
+     * When publishing a SNAPSHOT with the native uploader (see
+     * {@link #useNativeUploader}), copies the archives previously built by
+     * {@link BuildDeploymentArtifactsMojo} with their version metadata rewritten
+     * to the SNAPSHOT version instead of setting the version in
+     * {@code pyproject.toml} and rebuilding the package.
+     */
+    @Parameter(property = "habushu.rewriteSnapshotArchives", defaultValue = "true")
+    protected boolean rewriteSnapshotArchives;
+
+    /**
+     * Validates the archives to publish before uploading them, checking their
+     * core metadata, the hashes listed in each wheel's {@code RECORD}, their
+     * consistency with {@code pyproject.toml}, and that their long description
+     * will render on PyPI (similar to {@code twine check}), so that malformed
+     * archives fail the build before any upload is attempted. Archives that
+     * Poetry rebuilds while publishing a SNAPSHOT (i.e. when not using the native
+     * uploader) are not validated.
+     */
+    @Parameter(property = "habushu.validateArchives", defaultValue = "true")
+    protected boolean validateArchives;
+
+    /**
+     * Defers publishing until every module of the reactor build has been built,
+     * after which all modules are published concurrently. Nothing is published
+     * if any module of the build fails. Requires habushu-maven-plugin to be
+     * declared with {@literal <extensions>true</extensions>}, otherwise the
+     * package is published immediately. When using the native uploader (see
+     * {@link #useNativeUploader}), the archives to publish are determined (and
+     * rewritten, if needed) during the deploy phase of each module, and only
+     * their upload is deferred. Otherwise, the built archives are validated
+     * during the deploy phase of each module and only {@code poetry publish} is
+     * deferred - SNAPSHOT packages, which Poetry rebuilds after setting their
+     * version in {@code pyproject.toml}, are only deferred with the native
+     * uploader, and are otherwise published immediately.
+     */
+    @Parameter(property = "habushu.deployAtEnd", defaultValue = "false")
+    protected boolean deployAtEnd;
+
+    /**
+     * Maximum number of modules to publish concurrently at the end of the build
+     * when {@link #deployAtEnd} is enabled.
+     */
+    @Parameter(property = "habushu.deployAtEndThreads", defaultValue = "4")
+    protected int deployAtEndThreads = 4;
+
+    private boolean warnedDeployAtEndUnavailable;
+    private boolean builtArchivesValidated;
+
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
         if (this.skipDeploy) {
@@ -133,9 +240,42 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
         }
 
         PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
+        boolean isSnapshot = this.overridePackageVersion && isPomVersionSnapshot(project.getVersion());
+        DeferredPublisher deferredPublisher = getDeferredPublisher();
+        if (deferredPublisher == null || canUseNativeUploader(isSnapshot && useDevRepository)) {
+            publish(poetryHelper, isSnapshot);
+
+        } else if (isSnapshot) {
+            // Poetry rebuilds SNAPSHOTs after setting their version in pyproject.toml, which is not deferred so that
+            // source trees are not rewritten while other modules are published:
+            getLog().warn("deployAtEnd requires the native uploader to defer publishing SNAPSHOT packages - publishing "
+                    + "immediately");
+            publish(poetryHelper, true);
+
+        } else {
+            validateBuiltArchives();
+            getLog().info(String.format("Deferring publishing of %s until the end of the build", project.getId()));
+            deferredPublisher.register(project.getId(), "Poetry package", deployAtEndThreads,
+                    attributedToThisMojo(() -> {
+                        try {
+                            publishPackage(poetryHelper, false);
+                        } catch (MojoExecutionException e) {
+                            throw new HabushuException(e.getMessage(), e);
+                        }
+                    }));
+        }
+    }
 
+    private void publish(PoetryCommandHelper poetryHelper, boolean isSnapshot) throws MojoExecutionException {
         String pomVersion = project.getVersion();
-        if (this.overridePackageVersion && isPomVersionSnapshot(pomVersion)) {
+        if (isSnapshot && isRewritingSnapshotArchives(useDevRepository)) {
+            String snapshotVersionToPublish = getPythonPackageVersion(pomVersion, true,
+                    snapshotNumberDateFormatPattern);
+            getLog().info(String.format("Rewriting version of built archives to publish to %s",
+                    snapshotVersionToPublish));
+            publishPackage(poetryHelper, true, snapshotVersionToPublish);
+
+        } else if (isSnapshot) {
             String currentPythonPackageVersion = poetryHelper.execute(Arrays.asList(VERSION, "-s"));
 
             String snapshotVersionToPublish = getPythonPackageVersion(pomVersion, true,
@@ -177,6 +317,24 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
      */
     protected void publishPackage(PoetryCommandHelper poetryHelper, boolean rebuildPackage)
             throws MojoExecutionException {
+        publishPackage(poetryHelper, rebuildPackage, null);
+    }
+
+    /**
+     * Publishes the Poetry package to the configured PyPI repository.
+     *
+     * @param poetryHelper     Poetry command helper that delegates publishing
+     *                         commands to Poetry.
+     * @param rebuildPackage   whether a SNAPSHOT package is being published - see
+     *                         {@link #publishPackage(PoetryCommandHelper, boolean)}
+     * @param rewrittenVersion if not {@code null}, the built archives are copied
+     *                         with their version rewritten to this version and
+     *                         published with the native uploader rather than
+     *                         rebuilt
+     * @throws MojoExecutionException
+     */
+    protected void publishPackage(PoetryCommandHelper poetryHelper, boolean rebuildPackage, String rewrittenVersion)
+            throws MojoExecutionException {
 
         boolean publishToDev = rebuildPackage && useDevRepository;
         if (publishToDev) {
@@ -191,6 +349,23 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
             password = findPasswordForServer(repoId);
         }
 
+        if (useNativeUploader) {
+            if (rewriteLocalPathDepsInArchives) {
+                getLog().warn("The native uploader cannot rewrite local path dependencies - publishing with Poetry");
+            } else if (StringUtils.isEmpty(username) || StringUtils.isEmpty(password)) {
+                getLog().warn(String.format("The native uploader requires credentials in a <server> element with "
+                        + "<id> %s in settings.xml - publishing with Poetry", repoId));
+            } else {
+                publishPackageNatively(poetryHelper, rebuildPackage, rewrittenVersion,
+                        getNativeUploadUrl(publishToDev), username, password);
+                return;
+            }
+        }
+
+        if (!rebuildPackage) {
+            validateBuiltArchives();
+        }
+
         String repoUrl = getRepositoryUrl(publishToDev);
 
         if (StringUtils.isNotEmpty(repoUrl)) {
@@ -250,6 +425,268 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
         invokePublish(poetryHelper, publishToRepoWithCredsArgs);
     }
 
+    /**
+     * Publishes the archives of the current package version within {@code dist/}
+     * with the native {@link PyPiUploader}.
+     *
+     * @param poetryHelper     Poetry command helper used to determine the package
+     *                         version and rebuild the package, if needed
+     * @param rebuildPackage   whether to rebuild the package prior to publishing it
+     * @param rewrittenVersion if not {@code null}, the version to which the built
+     *                         archives are rewritten instead of rebuilding them
+     * @param uploadUrl        legacy upload API endpoint of the repository
+     * @param username         repository username
+     * @param password         repository password
+     * @throws MojoExecutionException
+     */
+    protected void publishPackageNatively(PoetryCommandHelper poetryHelper, boolean rebuildPackage,
+                                          String rewrittenVersion, String uploadUrl, String username,
+                                          String password) throws MojoExecutionException {
+        if (rebuildPackage && rewrittenVersion == null) {
+            getLog().info("Building source and wheel archives...");
+            poetryHelper.executeAndLogOutput(Arrays.asList("build"));
+        }
+
+        String packageVersion = poetryHelper.execute(Arrays.asList(VERSION, "-s")).trim();
+        List<DistributionArchive> archives = findDistributionArchives(packageVersion);
+        if (archives.isEmpty()) {
+            throw new MojoExecutionException(String.format("Could not find any archives for version %s in %s",
+                    packageVersion, getDistDirectory()));
+        }
+        if (rewrittenVersion != null) {
+            archives = rewriteArchiveVersions(archives, rewrittenVersion);
+        }
+        validateArchivesBeforePublishing(archives, rewrittenVersion != null ? rewrittenVersion : packageVersion);
+
+        String simpleIndexUrl = StringUtils.isNotBlank(pypiSimpleIndexUrl) ? addTrailingSlash(pypiSimpleIndexUrl)
+                : getSimpleIndexUrl(uploadUrl);
+        List<DistributionArchive> archivesToPublish = archives;
+        Runnable publication = () -> {
+            getLog().info(String.format("Publishing %s to %s with the native uploader", archivesToPublish, uploadUrl));
+            try (PyPiUploader uploader = new PyPiUploader(uploadUrl, simpleIndexUrl, username, password,
+                    archivesToPublish)) {
+                invokeNativePublish(uploader);
+            }
+        };
+
+        DeferredPublisher deferredPublisher = getDeferredPublisher();
+        if (deferredPublisher != null) {
+            getLog().info(String.format("Deferring publishing of %s until the end of the build", archives));
+            deferredPublisher.register(project.getId(), archives.toString(), deployAtEndThreads,
+                    attributedToThisMojo(publication));
+        } else {
+            publication.run();
+        }
+    }
+
+    /**
+     * Validates the archives within {@code dist/} of the version declared in
+     * {@code pyproject.toml}, which {@code poetry publish} will upload.
+     *
+     * @throws MojoExecutionException if any archive is invalid
+     */
+    protected void validateBuiltArchives() throws MojoExecutionException {
+        if (builtArchivesValidated) {
+            return;
+        }
+        String packageVersion = readPyprojectValue(VERSION);
+        if (validateArchives && packageVersion != null) {
+            validateArchivesBeforePublishing(findDistributionArchives(packageVersion), packageVersion);
+        }
+        builtArchivesValidated = true;
+    }
+
+    /**
+     * Validates the given archives with {@link ArchiveValidator}, if
+     * {@link #validateArchives} is enabled.
+     *
+     * @param archives        archives to publish
+     * @param expectedVersion version being published
+     * @throws MojoExecutionException if any archive is invalid
+     */
+    protected void validateArchivesBeforePublishing(List<DistributionArchive> archives, String expectedVersion)
+            throws MojoExecutionException {
+        if (!validateArchives || archives.isEmpty()) {
+            return;
+        }
+        List<String> problems = ArchiveValidator.validate(archives, readPyprojectValue("name"), expectedVersion);
+        if (!problems.isEmpty()) {
+            throw new MojoExecutionException(String.format("%s archive problem(s) found - not publishing:%n  %s",
+                    problems.size(), String.join(System.lineSeparator() + "  ", problems)));
+        }
+    }
+
+    /**
+     * Reads the project name or version declared in {@code pyproject.toml}.
+     *
+     * @param key {@code name} or {@code version}
+     * @return declared value, or {@code null} if it is not declared or
+     * {@code pyproject.toml} does not exist
+     */
+    private String readPyprojectValue(String key) {
+        File pyProjectTomlFile = getPoetryPyProjectTomlFile();
+        if (!pyProjectTomlFile.exists()) {
+            return null;
+        }
+        try (FileConfig pyProjectConfig = TomlUtils.loadTomlFile(pyProjectTomlFile)) {
+            return ArchiveValidator.getProjectValue(pyProjectConfig, key);
+        }
+    }
+
+    /**
+     * Returns the publisher with which to defer publishing until the end of the
+     * build, if {@link #deployAtEnd} is enabled.
+     *
+     * @return deferred publisher, or {@code null} to publish immediately
+     */
+    protected DeferredPublisher getDeferredPublisher() {
+        if (!deployAtEnd) {
+            return null;
+        }
+        DeferredPublisher deferredPublisher = DeferredPublisher.get(session);
+        if (deferredPublisher == null && !warnedDeployAtEndUnavailable) {
+            warnedDeployAtEndUnavailable = true;
+            getLog().warn("deployAtEnd requires habushu-maven-plugin to be declared with <extensions>true</extensions>"
+                    + " - publishing immediately");
+        }
+        return deferredPublisher;
+    }
+
+    /**
+     * Copies the given archives into {@code dist/} with their version rewritten,
+     * rewriting the sdist and wheel concurrently.
+     *
+     * @param archives archives built by {@link BuildDeploymentArtifactsMojo}
+     * @param version  version to which the archives are rewritten
+     * @return rewritten archives
+     */
+    protected List<DistributionArchive> rewriteArchiveVersions(List<DistributionArchive> archives, String version) {
+        File distDirectory = getDistDirectory();
+        return archives.parallelStream()
+                .map(archive -> ArchiveVersionRewriter.rewrite(archive, version, distDirectory))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns whether SNAPSHOT archives will be published by rewriting the
+     * version of the built archives, which requires the native uploader and
+     * repository credentials.
+     *
+     * @param publishToDev whether publishing to the dev repository
+     * @return whether the archives will be rewritten
+     */
+    protected boolean isRewritingSnapshotArchives(boolean publishToDev) {
+        return rewriteSnapshotArchives && canUseNativeUploader(publishToDev);
+    }
+
+    /**
+     * Returns whether the package will be published with the native uploader,
+     * which requires repository credentials and is not used when local path
+     * dependencies are rewritten.
+     *
+     * @param publishToDev whether publishing to the dev repository
+     * @return whether the native uploader will be used
+     */
+    protected boolean canUseNativeUploader(boolean publishToDev) {
+        String repoId = publishToDev ? devRepositoryId : pypiRepoId;
+        return useNativeUploader && !rewriteLocalPathDepsInArchives
+                && StringUtils.isNotEmpty(repoId) && StringUtils.isNotEmpty(findUsernameForServer(repoId))
+                && StringUtils.isNotEmpty(findPasswordForServer(repoId));
+    }
+
+    protected void invokeNativePublish(PyPiUploader uploader) {
+        AtomicInteger attempts = new AtomicInteger();
+        Callable<Boolean> callable = () -> {
+            PublishAttemptEvent event = beginPublishAttempt("native", attempts.incrementAndGet());
+            try {
+                uploader.uploadPendingArchives();
+                commitPublishAttempt(event, null);
+                return true;
+            } catch (RuntimeException e) {
+                commitPublishAttempt(event, PublishFailureClassifier.classify(e));
+                throw e;
+            }
+        };
+
+        try {
+            getRetryer().call(callable);
+        } catch (RetryException e) {
+            throw new HabushuException(getRetriesExceededMessage(e) + " with pending archives "
+                    + uploader.getPendingArchives(), e);
+        } catch (ExecutionException e) {
+            throw toPublishException(e);
+        }
+    }
+
+    private String getRetriesExceededMessage(RetryException e) {
+        return String.format("Exceeded retry setting of: %s (or retry deadline of %s seconds) after %s attempts",
+                pypiPushRetries, pypiPushRetryDeadlineSeconds, e.getNumberOfFailedAttempts());
+    }
+
+    private HabushuException toPublishException(ExecutionException e) {
+        PublishFailureType failureType = PublishFailureClassifier.classify(e.getCause());
+        if (!failureType.isRetriable()) {
+            return new HabushuException(String.format("Could not execute PyPI push due to a %s error that will not "
+                    + "succeed on retry: %s", failureType, e.getCause().getMessage()), e.getCause());
+        }
+        return new HabushuException("Could not execute PyPI push!", e);
+    }
+
+    /**
+     * Finds the wheel and sdist archives of the given package version within
+     * {@code dist/}, ignoring archives of other versions that may remain from
+     * previous builds.
+     *
+     * @param packageVersion package version to publish
+     * @return archives to publish
+     */
+    protected List<DistributionArchive> findDistributionArchives(String packageVersion) {
+        List<DistributionArchive> archives = new ArrayList<>();
+        File[] files = getDistDirectory().listFiles(File::isFile);
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                DistributionArchive archive = DistributionArchive.of(file);
+                if (archive != null && archive.hasVersion(packageVersion)) {
+                    archives.add(archive);
+                }
+            }
+        }
+        return archives;
+    }
+
+    protected File getDistDirectory() {
+        return new File(getPoetryProjectBaseDir(), "dist");
+    }
+
+    /**
+     * Returns the legacy upload API endpoint to which the native uploader
+     * publishes, which is the official PyPI upload endpoint if no repository URL
+     * is configured.
+     *
+     * @param publishToDev whether publishing to the dev repository
+     * @return upload URL
+     */
+    String getNativeUploadUrl(boolean publishToDev) {
+        String configuredUrl = publishToDev ? devRepositoryUrl : pypiRepoUrl;
+        return StringUtils.isBlank(configuredUrl) ? PUBLIC_PYPI_UPLOAD_URL : getRepositoryUrl(publishToDev);
+    }
+
+    /**
+     * Derives the simple index URL of a repository from its upload URL.
+     *
+     * @param uploadUrl upload URL with a trailing slash
+     * @return simple index URL
+     */
+    static String getSimpleIndexUrl(String uploadUrl) {
+        if (PUBLIC_PYPI_UPLOAD_URL.equals(uploadUrl)) {
+            return PUBLIC_PYPI_SIMPLE_INDEX_URL;
+        }
+        return StringUtils.endsWith(uploadUrl, LEGACY_UPLOAD_PATH)
+                ? StringUtils.removeEnd(uploadUrl, LEGACY_UPLOAD_PATH) + SIMPLE_INDEX_PATH
+                : uploadUrl + SIMPLE_INDEX_PATH;
+    }
+
     protected void invokePublish(PoetryCommandHelper poetryHelper, List<Pair<String, Boolean>> publishToRepoWithCredsArgs) {
         Callable<Boolean> callable = getPyPiPushCallable(poetryHelper, publishToRepoWithCredsArgs);
         Retryer<Boolean> retryer = getRetryer();
@@ -262,15 +699,16 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
             }
 
         } catch (RetryException e) {
-            throw new HabushuException("Exceeded retry setting of: " + pypiPushRetries, e);
+            throw new HabushuException(getRetriesExceededMessage(e), e);
         } catch (ExecutionException e) {
-            throw new HabushuException("Could not execute PyPI push!", e);
+            throw toPublishException(e);
         }
     }
 
     protected Callable<Boolean> getPyPiPushCallable(PoetryCommandHelper poetryHelper, List<Pair<String, Boolean>> publishToRepoWithCredsArgs) {
         Callable<Boolean> callable = new Callable<>() {
             private boolean firstAttempt = true;
+            private int attempts;
 
             public Boolean call() throws Exception {
                 if (!firstAttempt) {
@@ -280,9 +718,39 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
                     firstAttempt = false;
                 }
 
-                int result = poetryHelper.executeWithSensitiveArgsAndLogOutput(publishToRepoWithCredsArgs);
-                if (result != 0) {
+                Deque<String> recentOutput = new ArrayDeque<>();
+                PublishAttemptEvent event = beginPublishAttempt("poetry", ++attempts);
+                int result;
+                try {
+                    result = poetryHelper.executeWithSensitiveArgsAndLogOutput(publishToRepoWithCredsArgs, line -> {
+                        synchronized (recentOutput) {
+                            recentOutput.addLast(line);
+                            if (recentOutput.size() > MAX_CLASSIFIED_OUTPUT_LINES) {
+                                recentOutput.removeFirst();
+                            }
+                        }
+                    });
+                } catch (RuntimeException | MojoExecutionException e) {
+                    // failed commands only report their exit code, so the failure is classified from their output:
+                    PublishFailureType failureType = PublishFailureClassifier.classify(e);
+                    if (failureType == PublishFailureType.UNKNOWN) {
+                        failureType = PublishFailureClassifier.classifyOutput(joinOutput(recentOutput));
+                    }
+                    commitPublishAttempt(event, failureType);
+                    if (failureType != PublishFailureType.UNKNOWN && !(e instanceof PublishFailureException)) {
+                        throw new PublishFailureException(getPublishFailureMessage(failureType), failureType, e);
+                    }
+                    throw e;
+                }
+                if (result == 0) {
+                    commitPublishAttempt(event, null);
+                } else {
                     getLog().warn("PyPI Publish process result code: " + result);
+                    PublishFailureType failureType = PublishFailureClassifier.classifyOutput(joinOutput(recentOutput));
+                    commitPublishAttempt(event, failureType);
+                    if (!failureType.isRetriable()) {
+                        throw new PublishFailureException(getPublishFailureMessage(failureType), failureType);
+                    }
                 }
                 return result == 0;
             }
@@ -291,17 +759,68 @@ public class PublishToPyPiRepoMojo extends AbstractHabushuMojo {
         return callable;
     }
 
+    private static String joinOutput(Deque<String> recentOutput) {
+        synchronized (recentOutput) {
+            return String.join("\n", recentOutput);
+        }
+    }
+
+    private static String getPublishFailureMessage(PublishFailureType failureType) {
+        return failureType.isRetriable()
+                ? String.format("PyPI publish failed with a %s error - see output above", failureType)
+                : String.format("PyPI publish failed with a %s error that will not succeed on retry - see output above",
+                failureType);
+    }
+
+    private static PublishAttemptEvent beginPublishAttempt(String method, int attempt) {
+        PublishAttemptEvent event = new PublishAttemptEvent();
+        event.method = method;
+        event.attempt = attempt;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the given publish attempt event and records the attempt in the
+     * build's metrics.
+     *
+     * @param event   event of the attempt
+     * @param failure type of the failure of the attempt, or {@code null} if it was
+     *                successful
+     */
+    private static void commitPublishAttempt(PublishAttemptEvent event, PublishFailureType failure) {
+        BuildMetrics.recordPublishAttempt(event.method, failure == null);
+        event.end();
+        if (event.shouldCommit()) {
+            event.successful = failure == null;
+            event.failure = failure != null ? failure.name() : null;
+            event.commit();
+        }
+    }
+
     protected Retryer<Boolean> getRetryer() {
         RetryerBuilder<Boolean> retryBuilder = RetryerBuilder.<Boolean>newBuilder();
 
         if (pypiPushRetries != 0) {
-            StopStrategy stopStrategy = (pypiPushRetries < 0) ? StopStrategies.neverStop()
-                    : StopStrategies.stopAfterAttempt(pypiPushRetries);
+            Duration deadline = Duration.ofSeconds(Math.max(0, pypiPushRetryDeadlineSeconds));
+            StopStrategy stopStrategy = PublishRetryStrategies.stopAfterAttemptOrDeadline(pypiPushRetries, deadline);
 
             retryBuilder.retryIfResult(Predicates.<Boolean>equalTo(Boolean.FALSE))
-                    .retryIfRuntimeException()
+                    .retryIfException(PublishFailureClassifier::isRetriable)
                     .withStopStrategy(stopStrategy)
-                    .withWaitStrategy(WaitStrategies.fibonacciWait(pypiPushRetryMultiplier, pypiPushRetryMaxTimeout, TimeUnit.MINUTES));
+                    .withWaitStrategy(PublishRetryStrategies.jitteredExponentialWait(pypiPushRetryMultiplier,
+                            pypiPushRetryMaxTimeout, TimeUnit.MINUTES, deadline))
+                    .withRetryListener(new RetryListener() {
+                        @Override
+                        public <V> void onRetry(Attempt<V> attempt) {
+                            if (attempt.hasException()) {
+                                getLog().warn(String.format("PyPI push attempt %s failed with a %s error: %s",
+                                        attempt.getAttemptNumber(),
+                                        PublishFailureClassifier.classify(attempt.getExceptionCause()),
+                                        attempt.getExceptionCause().getMessage()));
+                            }
+                        }
+                    });
         }
 
         return retryBuilder.build();
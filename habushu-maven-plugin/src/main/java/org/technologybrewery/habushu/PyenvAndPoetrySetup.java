@@ -2,20 +2,24 @@ package org.technologybrewery.habushu;
 
 import com.vdurmont.semver4j.Semver;
 import com.vdurmont.semver4j.Semver.SemverType;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.PoetryCredentialRegistrar;
+import org.technologybrewery.habushu.exec.PoetryPluginInstaller;
 import org.technologybrewery.habushu.exec.PyenvCommandHelper;
 import org.technologybrewery.habushu.exec.PythonVersionHelper;
 import org.technologybrewery.habushu.util.PoetryUtil;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Common class that ensures pre-requisite tools that Habushu leverages are installed and available on the
@@ -23,7 +27,8 @@ import java.util.List;
  * <ul>
  * <li>pyenv</li>
  * <li>Poetry (installed version must satisfy {@link #POETRY_VERSION_REQUIREMENT})</li>
- * <li>Required Poetry plugins (currently only {@code poetry-monorepo-dependency-plugin})</li>
+ * <li>Required Poetry plugins (currently only {@code poetry-monorepo-dependency-plugin}, see
+ * {@link PoetryPluginInstaller})</li>
  * </ul>
  */
 class PyenvAndPoetrySetup {
@@ -34,6 +39,10 @@ class PyenvAndPoetrySetup {
      */
     static final String PYTHON_DEFAULT_VERSION_REQUIREMENT = "3.11.4";
 
+    static final String MONOREPO_DEPENDENCY_PLUGIN = "poetry-monorepo-dependency-plugin";
+
+    private static final Duration STATE_LOCK_TIMEOUT = Duration.ofMinutes(5);
+
     /**
      * The desired version of Python to use.
      */
@@ -79,6 +88,33 @@ class PyenvAndPoetrySetup {
      */
     private File patchInstallScript;
 
+    /**
+     * Validations already performed during the build, or {@code null} to validate
+     * the toolchain on every execution.
+     */
+    private ToolchainValidations validations;
+
+    /**
+     * Version of {@code poetry-monorepo-dependency-plugin} to install.
+     */
+    private String monorepoDependencyPluginVersion = PoetryPluginInstaller.LATEST;
+
+    /**
+     * Minimum time between checks for updates to Poetry plugins.
+     */
+    private Duration pluginUpdateCheckInterval = Duration.ZERO;
+
+    /**
+     * Whether Maven is in offline mode, in which Poetry plugins are not installed.
+     */
+    private boolean offline;
+
+    /**
+     * Directory in which Habushu records changes to Poetry's environment and
+     * configuration, once located.
+     */
+    private File stateDirectory;
+
     /**
      * New instance - these values are typically passed in from Maven-enabled parameters in the calling Mojo.
      *
@@ -99,9 +135,58 @@ class PyenvAndPoetrySetup {
         this.log = log;
     }
 
+    /**
+     * Performs the parts of validation that do not depend on the module (i.e.
+     * checking the installed pyenv, Python, and Poetry versions) once per build
+     * rather than on every execution. Modules validated after the first only
+     * select their local Python version.
+     *
+     * @param validations validations already performed during the build
+     */
+    void validateOncePerBuild(ToolchainValidations validations) {
+        this.validations = validations;
+    }
+
+    /**
+     * Configures how {@link #installPoetryMonorepoDependencyPlugin()} checks for
+     * updates to the plugin.
+     *
+     * @param monorepoDependencyPluginVersion version to install, or
+     *                                        {@value PoetryPluginInstaller#LATEST}
+     * @param pluginUpdateCheckInterval       minimum time between checks for
+     *                                        updates to the latest version
+     * @param offline                         whether Maven is in offline mode
+     */
+    void configurePluginUpdates(String monorepoDependencyPluginVersion, Duration pluginUpdateCheckInterval,
+                                boolean offline) {
+        this.monorepoDependencyPluginVersion = monorepoDependencyPluginVersion;
+        this.pluginUpdateCheckInterval = pluginUpdateCheckInterval;
+        this.offline = offline;
+    }
+
     public void execute() throws MojoExecutionException {
+        String toolchain = String.format("validation of Python %s%s and Poetry", pythonVersion,
+                usePyenv ? " (managed by pyenv)" : "");
+        if (!once(toolchain, this::validateToolchain)) {
+            log.debug("Toolchain already validated during this build - " + toolchain);
+            selectLocalPythonVersion();
+        }
+
+        if (usePyenv) {
+            log.info("Configuring Poetry to use the pyenv-activated Python binary...");
+            createPoetryCommandHelper().executeAndLogOutput(
+                    Arrays.asList("config", "--local", "virtualenvs.prefer-active-python", "true"));
+        }
+    }
+
+    private void validateToolchain() throws MojoExecutionException {
         List<String> missingRequiredToolMsgs = new ArrayList<>();
         String currentPythonVersion = "";
+        PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
+
+        // unless pyenv may change the Python that Poetry runs on, Poetry is probed while Python is validated:
+        CompletableFuture<Pair<Boolean, String>> poetryProbe = usePyenv ? null
+                : poetryHelper.getIsPoetryInstalledAndVersionAsync();
 
         if (usePyenv) {
             currentPythonVersion = validatateAndConfigurePyenv(missingRequiredToolMsgs, currentPythonVersion);
@@ -114,8 +199,8 @@ class PyenvAndPoetrySetup {
         validatePythonVersion(currentPythonVersion);
 
         log.debug("Checking if Poetry is installed...");
-        PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
-        Pair<Boolean, String> poetryInstallStatusAndVersion = poetryHelper.getIsPoetryInstalledAndVersion();
+        Pair<Boolean, String> poetryInstallStatusAndVersion = poetryProbe != null ? poetryProbe.join()
+                : poetryHelper.getIsPoetryInstalledAndVersion();
 
         if (!poetryInstallStatusAndVersion.getLeft()) {
             missingRequiredToolMsgs.add(
@@ -136,17 +221,52 @@ class PyenvAndPoetrySetup {
             throw new MojoExecutionException(StringUtils.join(System.lineSeparator(), missingRequiredToolMsgs, System.lineSeparator()));
 
         }
+    }
 
+    /**
+     * Points pyenv at the desired version of Python in the module's directory, once
+     * it is known to be installed.
+     */
+    private void selectLocalPythonVersion() throws MojoExecutionException {
         if (usePyenv) {
-            log.info("Configuring Poetry to use the pyenv-activated Python binary...");
-            poetryHelper.executeAndLogOutput(Arrays.asList("config", "--local", "virtualenvs.prefer-active-python", "true"));
+            PyenvCommandHelper pyenvHelper = createPyenvCommandHelper();
+            if (!pythonVersion.equals(pyenvHelper.getCurrentPythonVersion())) {
+                pyenvHelper.setLocalPythonVersion(pythonVersion);
+            }
         }
     }
 
     void installPoetryMonorepoDependencyPlugin() throws MojoExecutionException {
-        PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
-        log.info("Checking for updates to poetry-monorepo-dependency-plugin...");
-        poetryHelper.installPoetryPlugin("poetry-monorepo-dependency-plugin@latest");
+        if (offline) {
+            log.info("Skipping check for updates to " + MONOREPO_DEPENDENCY_PLUGIN + " as Maven is offline");
+            return;
+        }
+        once("installation of " + MONOREPO_DEPENDENCY_PLUGIN, () -> {
+            PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
+            log.info("Checking for updates to " + MONOREPO_DEPENDENCY_PLUGIN + "...");
+            PoetryPluginInstaller installer = new PoetryPluginInstaller(poetryHelper,
+                    new File(getStateDirectory(poetryHelper), "plugins"), pluginUpdateCheckInterval, STATE_LOCK_TIMEOUT);
+            installer.install(MONOREPO_DEPENDENCY_PLUGIN, monorepoDependencyPluginVersion);
+        });
+    }
+
+    /**
+     * Returns the directory in which Habushu records changes it made to Poetry's
+     * environment and configuration (i.e. installed plugins and registered
+     * credentials), which lives alongside the Poetry cache of the user.
+     *
+     * @param poetryHelper helper with which to locate the Poetry cache
+     * @return the state directory
+     */
+    protected File getHabushuStateDirectory(PoetryCommandHelper poetryHelper) throws MojoExecutionException {
+        return new File(poetryHelper.getPoetryCacheDirectoryPath(), "habushu");
+    }
+
+    private synchronized File getStateDirectory(PoetryCommandHelper poetryHelper) throws MojoExecutionException {
+        if (stateDirectory == null) {
+            stateDirectory = getHabushuStateDirectory(poetryHelper);
+        }
+        return stateDirectory;
     }
 
     void registerRepositoryToSupportAuthenticatedDependencyResolution(String repoId, String username, String password) throws MojoExecutionException {
@@ -155,17 +275,27 @@ class PyenvAndPoetrySetup {
         if (StringUtils.isEmpty(username) || StringUtils.isEmpty(password)) {
             log.info(String.format("Did not find username and password for the server with <id> %s. Will use existing configuration.", repoId));
         } else {
-            String configKey = String.format("http-basic.%s", repoId);
-            log.info(String.format("Adding username and password configuration for %s", repoId));
-
-            List<Pair<String, Boolean>> credentialConfigurationArgs = new ArrayList<>();
-            credentialConfigurationArgs.add(new ImmutablePair<>("config", false));
-            credentialConfigurationArgs.add(new ImmutablePair<>(configKey, false));
-            credentialConfigurationArgs.add(new ImmutablePair<>(username, false));
-            credentialConfigurationArgs.add(new ImmutablePair<>(password, true));
+            // the password is only remembered by its digest, so that changed credentials are registered again:
+            String credentials = String.format("registration of %s credentials for %s (%s)", repoId, username,
+                    DigestUtils.sha256Hex(password));
+            boolean registered = once(credentials, () -> {
+                log.info(String.format("Adding username and password configuration for %s", repoId));
+                PoetryCredentialRegistrar registrar = new PoetryCredentialRegistrar(poetryHelper,
+                        new File(getStateDirectory(poetryHelper), "credentials"), STATE_LOCK_TIMEOUT);
+                registrar.register(repoId, username, password);
+            });
+            if (!registered) {
+                log.debug(String.format("Credentials for %s already registered during this build", repoId));
+            }
+        }
+    }
 
-            poetryHelper.executeWithSensitiveArgsAndLogOutput(credentialConfigurationArgs);
+    private boolean once(String key, ToolchainValidations.Validation validation) throws MojoExecutionException {
+        if (validations == null) {
+            validation.validate();
+            return true;
         }
+        return validations.once(key, validation);
     }
 
     private void validatePythonVersion(String currentPythonVersion) throws MojoExecutionException {
@@ -1,21 +1,40 @@
 package org.technologybrewery.habushu;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.technologybrewery.habushu.cache.WheelCacheAccessLog;
+import org.technologybrewery.habushu.cache.WheelCacheLock;
+import org.technologybrewery.habushu.cache.WheelCacheManifest;
+import org.technologybrewery.habushu.trace.BuildMetrics;
+import org.technologybrewery.habushu.trace.BuildTracer;
+import org.technologybrewery.habushu.trace.CacheLookupEvent;
 import org.technologybrewery.habushu.util.HabushuUtil;
+import org.technologybrewery.habushu.util.Pep440Version;
+import org.technologybrewery.habushu.util.Pep440VersionSpecifier;
 
 /**
  * Helper mojo that handles the retrieving of wheel artifacts from poetry
  * cache by artifactId and into a given targetDirectory during the 
- * {@link LifecyclePhase#VALIDATE} build phase. 
+ * {@link LifecyclePhase#VALIDATE} build phase. By default, only the newest
+ * cached version of each wheel dependency that satisfies its (optional) version
+ * specifier is retrieved, and wheels that already exist in the target directory
+ * with identical contents are not copied again. Cached wheels are looked up in
+ * each artifact's {@link WheelCacheManifest} rather than by scanning and opening
+ * the cached wheels.
  *
  * @param wheelDependencies A List of Wheel Dependencies which will identify wheel 
  *                          files by {@WheelDependency.artifactId} in poetry cache and place them into 
@@ -25,7 +44,7 @@ import org.technologybrewery.habushu.util.HabushuUtil;
  * @throws HabushuException
  */
 @Mojo(name = "retrieve-wheels", defaultPhase = LifecyclePhase.VALIDATE)
-public class RetrieveWheelsMojo extends AbstractHabushuMojo {
+public class RetrieveWheelsMojo extends AbstractWheelCacheMojo {
     /**
     * A List of Wheel Dependencies to retrieve from poetry cache. 
     */    
@@ -50,36 +69,186 @@ public class RetrieveWheelsMojo extends AbstractHabushuMojo {
     protected void processWheelDependencies() {
         getLog().info(String.format("Processing %s Wheel Dependencies..", wheelDependencies.size()));
         try {
+            List<WheelRetrieval> wheelRetrievals = new ArrayList<>();
             for (WheelDependency wd : wheelDependencies) {
                 File poetryCacheWheelDirectory = getCachedWheelDirectory(wd.getArtifactId());
                 String targetDirectory = wd.getTargetDirectory();
 
                 if(poetryCacheWheelDirectory.exists()){
-                    List<File> wheelFiles = Stream.of(poetryCacheWheelDirectory.listFiles())
-                            .filter(file -> file.getAbsolutePath().endsWith(".whl"))
-                            .map(File::getAbsoluteFile)
-                            .collect(Collectors.toList());
+                    WheelCacheManifest manifest;
+                    List<WheelCacheManifest.Entry> wheelFiles;
+                    CacheLookupEvent event = new CacheLookupEvent();
+                    event.begin();
+                    try (BuildTracer.Span span = BuildTracer.span("cache", "wheel cache lookup " + wd.getArtifactId())) {
+                        manifest = loadManifest(poetryCacheWheelDirectory);
+                        wheelFiles = selectWheelFiles(wd, manifest);
+                        span.arg("wheels", wheelFiles.size());
+                    }
+                    commitCacheLookup(event, wd.getArtifactId(), wheelFiles.size());
 
                     if(wheelFiles.size()==0){
-                        getLog().warn(String.format("Did not find any %s wheels in poetry cache.", wd.getArtifactId()));
+                        getLog().warn(String.format("Did not find any %s wheels%s in poetry cache.", wd.getArtifactId(),
+                                StringUtils.isNotBlank(wd.getVersion()) ? " matching version " + wd.getVersion() : ""));
                         getLog().warn("Consider using the `cacheWheel` configuration to cache the wheel artifact before depending on it.");
                     } else {
-                        for (File file : wheelFiles) {
-                            HabushuUtil.copyFile(file.getPath(), String.format("%s/%s", targetDirectory, file.getName()));
-                            getLog().info(String.format("Retrieved the cached %s file", file.getName()));
+                        WheelCacheAccessLog accessLog = new WheelCacheAccessLog(poetryCacheWheelDirectory.getParentFile());
+                        for (WheelCacheManifest.Entry entry : wheelFiles) {
+                            wheelRetrievals.add(new WheelRetrieval(manifest.getWheelFile(entry), entry,
+                                    new File(targetDirectory, entry.getFileName())));
+                            accessLog.recordAccess(wd.getArtifactId(), entry.getFileName());
                         }
                     }         
                 } else{
+                    commitCacheLookup(new CacheLookupEvent(), wd.getArtifactId(), 0);
                     getLog().warn(String.format("Could not locate %s in poetry cache.", wd.getArtifactId()));
                     getLog().warn("Consider using the `cacheWheel` configuration to cache the wheel artifact before depending on it.");
                 }
             }
+            retrieveWheelFiles(wheelRetrievals);
         } catch (Exception e) {
             throw new HabushuException("Could not process Wheel Dependencies!", e);
         }
     }
 
+    private static void commitCacheLookup(CacheLookupEvent event, String artifactId, int wheels) {
+        BuildMetrics.recordCacheLookup("wheel", wheels > 0);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = "wheel";
+            event.key = artifactId;
+            event.hit = wheels > 0;
+            event.entries = wheels;
+            event.commit();
+        }
+    }
+
+    /**
+     * Loads the manifest of the given artifact cache directory, saving it if it
+     * was built from a scan of a directory that did not yet contain one so that
+     * subsequent retrievals are simple index lookups.
+     *
+     * @param poetryCacheWheelDirectory cache directory of a single artifact
+     * @return the artifact's manifest
+     */
+    protected WheelCacheManifest loadManifest(File poetryCacheWheelDirectory) {
+        WheelCacheManifest manifest = WheelCacheManifest.load(poetryCacheWheelDirectory);
+        if (!manifest.isPersisted()) {
+            try (WheelCacheLock lock = lockWheelCache(poetryCacheWheelDirectory.getName())) {
+                manifest = WheelCacheManifest.load(poetryCacheWheelDirectory);
+                if (!manifest.isPersisted()) {
+                    manifest.save();
+                }
+            } catch (HabushuException e) {
+                getLog().debug("Could not save the wheel cache manifest of " + poetryCacheWheelDirectory, e);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Selects the cached wheels of the given wheel dependency that should be
+     * retrieved. Wheels whose versions do not satisfy the dependency's version
+     * specifier are ignored and, unless all matching versions are requested, only
+     * the wheels of the newest matching version are selected. Wheels whose
+     * versions cannot be determined are only selected if no version specifier is
+     * configured.
+     *
+     * @param wheelDependency the wheel dependency being retrieved
+     * @param manifest        manifest of the dependency's cached wheels
+     * @return manifest entries of the wheels to retrieve
+     */
+    protected List<WheelCacheManifest.Entry> selectWheelFiles(WheelDependency wheelDependency,
+                                                              WheelCacheManifest manifest) {
+        Pep440VersionSpecifier versionSpecifier = Pep440VersionSpecifier.parse(wheelDependency.getVersion());
+
+        TreeMap<Pep440Version, List<WheelCacheManifest.Entry>> matchingWheelFilesByVersion = new TreeMap<>();
+        List<WheelCacheManifest.Entry> unversionedWheelFiles = new ArrayList<>();
+        for (WheelCacheManifest.Entry entry : manifest.getEntries()) {
+            Pep440Version version = entry.getParsedVersion();
+            if (version == null) {
+                if (versionSpecifier.isUnbounded()) {
+                    unversionedWheelFiles.add(entry);
+                } else {
+                    getLog().debug(String.format("Ignoring %s as its version cannot be determined", entry.getFileName()));
+                }
+            } else if (versionSpecifier.matches(version)) {
+                matchingWheelFilesByVersion.computeIfAbsent(version, key -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        List<WheelCacheManifest.Entry> selectedWheelFiles = new ArrayList<>(unversionedWheelFiles);
+        if (!matchingWheelFilesByVersion.isEmpty()) {
+            if (wheelDependency.isRetrieveAllMatchingVersions()) {
+                matchingWheelFilesByVersion.values().forEach(selectedWheelFiles::addAll);
+            } else {
+                Map.Entry<Pep440Version, List<WheelCacheManifest.Entry>> newestVersion = matchingWheelFilesByVersion.lastEntry();
+                getLog().debug(String.format("Selected version %s of %s from %s cached version(s)",
+                        newestVersion.getKey(), wheelDependency.getArtifactId(), matchingWheelFilesByVersion.size()));
+                selectedWheelFiles.addAll(newestVersion.getValue());
+            }
+        }
+        return selectedWheelFiles;
+    }
+
+    /**
+     * Copies the given cached wheel files into their target locations in
+     * parallel, skipping any target file that already has identical contents.
+     *
+     * @param wheelRetrievals cached wheel files and their target files
+     */
+    protected void retrieveWheelFiles(List<WheelRetrieval> wheelRetrievals)
+            throws InterruptedException, ExecutionException {
+        if (wheelRetrievals.isEmpty()) {
+            return;
+        }
+
+        int threads = Math.min(wheelRetrievals.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> retrievals = new ArrayList<>();
+            for (WheelRetrieval wheelRetrieval : wheelRetrievals) {
+                retrievals.add(executor.submit(() -> retrieveWheelFile(wheelRetrieval)));
+            }
+            for (Future<?> retrieval : retrievals) {
+                retrieval.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void retrieveWheelFile(WheelRetrieval wheelRetrieval) {
+        File cachedWheelFile = wheelRetrieval.cachedWheelFile;
+        File targetWheelFile = wheelRetrieval.targetWheelFile;
+        WheelCacheManifest.Entry entry = wheelRetrieval.entry;
+        // only trust the indexed digest if the cached wheel has not been changed since it was indexed:
+        boolean upToDate = cachedWheelFile.length() == entry.getSize()
+                ? HabushuUtil.hasDigest(targetWheelFile, entry.getSize(), entry.getSha256())
+                : HabushuUtil.isIdenticalFile(cachedWheelFile, targetWheelFile);
+        if (upToDate) {
+            getLog().info(String.format("The cached %s file is already up to date", cachedWheelFile.getName()));
+        } else {
+            HabushuUtil.copyFileAtomically(cachedWheelFile, targetWheelFile);
+            getLog().info(String.format("Retrieved the cached %s file", cachedWheelFile.getName()));
+        }
+    }
+
     protected File getProjectBuildDirectory() {
         return new File(project.getBuild().getDirectory());
     }
+
+    /**
+     * A cached wheel to copy into its target location.
+     */
+    protected static final class WheelRetrieval {
+        private final File cachedWheelFile;
+        private final WheelCacheManifest.Entry entry;
+        private final File targetWheelFile;
+
+        private WheelRetrieval(File cachedWheelFile, WheelCacheManifest.Entry entry, File targetWheelFile) {
+            this.cachedWheelFile = cachedWheelFile;
+            this.entry = entry;
+            this.targetWheelFile = targetWheelFile;
+        }
+    }
 }
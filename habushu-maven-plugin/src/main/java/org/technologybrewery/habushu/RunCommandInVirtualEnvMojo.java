@@ -1,5 +1,6 @@
 package org.technologybrewery.habushu;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -10,34 +11,111 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.PythonForkServer;
+import org.technologybrewery.habushu.exec.PythonToolServers;
+import org.technologybrewery.habushu.exec.VirtualEnvCommandHelper;
 
 /**
- * Leverages {@code poetry run} to execute a Python command or script within
- * this Poetry project's virtual environment. For example, this goal might be
- * bound to the {@code compile} phase to facilitate the generation of
- * gRPC/protobuf bindings as an automated part of the build following dependency
- * installation.
+ * Executes a Python command or script within this Poetry project's virtual
+ * environment, either directly from the in-project virtual environment or via
+ * {@code poetry run} (see {@link #runToolsInVirtualEnvDirectly}). For example,
+ * this goal might be bound to the {@code compile} phase to facilitate the
+ * generation of gRPC/protobuf bindings as an automated part of the build
+ * following dependency installation.
+ * <p>
+ * As each execution otherwise starts a new Python interpreter, Python commands
+ * may instead be executed within a pre-warmed {@link PythonForkServer} (see
+ * {@link #useForkServer}).
  */
 @Mojo(name = "run-command-in-virtual-env")
 public class RunCommandInVirtualEnvMojo extends AbstractHabushuMojo {
 
     /**
-     * Whitespace-delimited command arguments that will be provided to
-     * {@code poetry run} to execute. For example, if {@code python -V} is provided
-     * to this parameter, {@code poetry run python -V} will be executed within the
-     * Poetry package's virtual environment.
+     * Whitespace-delimited command arguments that will be executed within the
+     * Poetry package's virtual environment. For example, if {@code python -V} is
+     * provided to this parameter, the equivalent of {@code poetry run python -V}
+     * will be executed.
      */
     @Parameter(property = "habushu.runCommandArgs")
     protected String runCommandArgs;
 
+    /**
+     * Executes Python commands (i.e. {@code python -m grpc_tools.protoc ...},
+     * {@code python scripts/prepare_data.py}, or console scripts installed in the
+     * virtual environment) within a pre-warmed Python interpreter that forks a
+     * child for each command, rather than starting a new interpreter for each
+     * execution. The interpreter is started in the project's in-project virtual
+     * environment on first use, after importing {@link #forkServerPreloadModules},
+     * and shut down at the end of the build. Only supported on Linux, and requires
+     * the in-project virtual environment to be used directly (see
+     * {@link #runToolsInVirtualEnvDirectly}) and habushu-maven-plugin to be
+     * declared with {@code <extensions>true</extensions>}; other commands are
+     * executed as separate processes.
+     */
+    @Parameter(property = "habushu.useForkServer", defaultValue = "false")
+    protected boolean useForkServer;
+
+    /**
+     * Modules imported by the fork server (see {@link #useForkServer}) before it
+     * forks a child for each command, such as the heavy dependencies of the
+     * commands executed (i.e. {@code grpc_tools.protoc} or {@code pandas}).
+     * Executions with different preloaded modules use separate fork servers.
+     */
+    @Parameter(property = "habushu.forkServerPreloadModules")
+    protected List<String> forkServerPreloadModules;
+
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
 	PoetryCommandHelper poetryHelper = createPoetryCommandHelper();
-	List<String> poetryRunCommandArgs = new ArrayList<>(Arrays.asList(StringUtils.split(runCommandArgs)));
-	poetryRunCommandArgs.add(0, "run");
+	List<String> runCommand = new ArrayList<>(Arrays.asList(StringUtils.split(runCommandArgs)));
+
+	if (useForkServer && executeInForkServer(runCommand)) {
+	    return;
+	}
+
+	getLog().info(String.format("Executing command in virtual environment%s...",
+		getVirtualEnvCommandHelper() != null ? "" : " via 'poetry run'"));
+	executeInVirtualEnv(poetryHelper, runCommand, null);
+    }
+
+    private boolean executeInForkServer(List<String> runCommand) {
+	VirtualEnvCommandHelper virtualEnvHelper = getVirtualEnvCommandHelper();
+	if (virtualEnvHelper == null || !PythonForkServer.isSupported(virtualEnvHelper)) {
+	    getLog().debug("Fork server is not supported for this project - executing command as a separate process");
+	    return false;
+	}
+	List<String> pythonArguments = PythonForkServer.toPythonArguments(virtualEnvHelper, runCommand);
+	if (pythonArguments == null) {
+	    getLog().debug("Not a Python command - executing as a separate process: " + runCommand);
+	    return false;
+	}
+	PythonToolServers pythonServers = PythonToolServers.get(session);
+	if (pythonServers == null) {
+	    getLog().warn("habushu.useForkServer requires habushu-maven-plugin to be declared with "
+		    + "<extensions>true</extensions> - executing command as a separate process");
+	    return false;
+	}
 
-	getLog().info("Executing command in virtual environment via 'poetry run'...");
-	poetryHelper.executeAndLogOutput(poetryRunCommandArgs);
+	List<String> preloadModules = forkServerPreloadModules != null ? forkServerPreloadModules
+		: new ArrayList<>();
+	PythonForkServer forkServer = null;
+	int exitCode;
+	try {
+	    forkServer = pythonServers.getOrStartForkServer(virtualEnvHelper, preloadModules);
+	    getLog().info("Executing command in virtual environment via fork server...");
+	    exitCode = forkServer.execute(pythonArguments, getPoetryProjectBaseDir(), null);
+	} catch (IOException e) {
+	    getLog().warn("Python fork server failed - executing command as a separate process: " + e.getMessage());
+	    if (forkServer != null) {
+		pythonServers.discard(forkServer);
+	    }
+	    return false;
+	}
+	if (exitCode != 0) {
+	    throw new HabushuException(String.format("Command failed with exit code %s! See output above.",
+		    exitCode));
+	}
+	return true;
     }
 
 }
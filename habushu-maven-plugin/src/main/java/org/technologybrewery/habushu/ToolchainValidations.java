@@ -0,0 +1,124 @@
+package org.technologybrewery.habushu;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Remembers the parts of {@link ValidatePyenvAndPoetryMojo} that do not depend
+ * on the module being validated (i.e. checking the installed pyenv, Python, and
+ * Poetry versions, registering repository credentials, and installing Poetry
+ * plugins), so that they are performed once per build rather than by every
+ * module of the reactor. Modules validated concurrently wait for, and share the
+ * outcome of, the first module to perform each validation, including its
+ * failure.
+ * <p>
+ * Validations are activated for a build by {@link HabushuLifecycleParticipant},
+ * which is only loaded when habushu-maven-plugin is declared with
+ * {@code <extensions>true</extensions>}; otherwise, each module validates its
+ * toolchain as before. Like
+ * {@link org.technologybrewery.habushu.exec.PythonToolServers}, validations are
+ * keyed by the build's {@link MavenExecutionRequest}.
+ */
+final class ToolchainValidations {
+
+    private static final Map<MavenExecutionRequest, ToolchainValidations> builds =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, CompletableFuture<Void>> validations = new HashMap<>();
+
+    private ToolchainValidations() {
+    }
+
+    /**
+     * Activates validating toolchains once for the given build.
+     *
+     * @param session Maven session of the build
+     */
+    static void activate(MavenSession session) {
+        builds.putIfAbsent(session.getRequest(), new ToolchainValidations());
+    }
+
+    /**
+     * Returns the validations of the given build.
+     *
+     * @param session Maven session of the build (or of one of its modules)
+     * @return the validations, or {@code null} if they were not activated for the
+     * build
+     */
+    static ToolchainValidations get(MavenSession session) {
+        return session != null && session.getRequest() != null ? builds.get(session.getRequest()) : null;
+    }
+
+    /**
+     * Forgets the validations performed during the given build.
+     *
+     * @param session Maven session of the build
+     */
+    static void deactivate(MavenSession session) {
+        builds.remove(session.getRequest());
+    }
+
+    /**
+     * Performs the given validation unless it was already performed during the
+     * build, in which case its failure (if any) is rethrown. Callers that request
+     * a validation while it is being performed wait for it to complete.
+     *
+     * @param key        identifies the validation and the settings it depends on
+     * @param validation validation to perform
+     * @return whether the validation was performed by this call
+     * @throws MojoExecutionException if the validation failed
+     */
+    boolean once(String key, Validation validation) throws MojoExecutionException {
+        CompletableFuture<Void> outcome;
+        boolean first = false;
+        synchronized (validations) {
+            outcome = validations.get(key);
+            if (outcome == null) {
+                outcome = new CompletableFuture<>();
+                validations.put(key, outcome);
+                first = true;
+            }
+        }
+
+        if (first) {
+            try {
+                validation.validate();
+                outcome.complete(null);
+            } catch (MojoExecutionException | RuntimeException e) {
+                outcome.completeExceptionally(e);
+                throw e;
+            } finally {
+                if (!outcome.isDone()) {
+                    outcome.completeExceptionally(new HabushuException("Could not complete " + key));
+                }
+            }
+            return true;
+        }
+
+        try {
+            outcome.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new MojoExecutionException(cause.getMessage(), cause);
+        }
+        return false;
+    }
+
+    /**
+     * Validation performed once per build.
+     */
+    interface Validation {
+        void validate() throws MojoExecutionException;
+    }
+}
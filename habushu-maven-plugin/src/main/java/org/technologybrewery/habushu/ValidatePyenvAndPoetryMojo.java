@@ -1,6 +1,7 @@
 package org.technologybrewery.habushu;
 
 import java.io.File;
+import java.time.Duration;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -8,6 +9,7 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.StringUtils;
+import org.technologybrewery.habushu.exec.PoetryPluginInstaller;
 
 /**
  * Attaches to the {@link LifecyclePhase#VALIDATE} phase to ensure that the all
@@ -44,12 +46,33 @@ public class ValidatePyenvAndPoetryMojo extends AbstractHabushuMojo {
     @Parameter(defaultValue = "${project.build.directory}/pyenv-patch-install-python-version.sh", readonly = true)
     private File patchInstallScript;
 
+    /**
+     * Version of {@code poetry-monorepo-dependency-plugin} to install in Poetry's
+     * environment. When pinned to an explicit version, the plugin is only
+     * installed again if a different version is configured; when {@code latest},
+     * the plugin is checked for updates every
+     * {@link #pluginUpdateCheckIntervalHours} hours.
+     */
+    @Parameter(defaultValue = PoetryPluginInstaller.LATEST, property = "habushu.monorepoDependencyPluginVersion")
+    protected String monorepoDependencyPluginVersion;
+
+    /**
+     * Minimum number of hours between checks for updates to the latest version of
+     * {@code poetry-monorepo-dependency-plugin}, which are shared by all builds
+     * run by the user. If {@code 0}, the plugin is checked once per build.
+     */
+    @Parameter(defaultValue = "24", property = "habushu.pluginUpdateCheckIntervalHours")
+    protected int pluginUpdateCheckIntervalHours;
+
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
 
         PyenvAndPoetrySetup configureTools = new PyenvAndPoetrySetup(pythonVersion, usePyenv,
                 patchInstallScript, getPoetryProjectBaseDir(), rewriteLocalPathDepsInArchives,
                 getLog());
+        configureTools.validateOncePerBuild(ToolchainValidations.get(session));
+        configureTools.configurePluginUpdates(monorepoDependencyPluginVersion,
+                Duration.ofHours(Math.max(0, pluginUpdateCheckIntervalHours)), session != null && session.isOffline());
 
         configureTools.execute();
 
@@ -8,7 +8,7 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 
 /**
  * Leverages the lint package to validate both source and test Python
- * directories using Poetry's run command.
+ * directories within the project's virtual environment.
  */
 @Mojo(name = "validate-python-source", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE)
 public class ValidatePythonSourceMojo extends AbstractValidateMojo {
@@ -3,6 +3,8 @@ package org.technologybrewery.habushu;
 public class WheelDependency {
     private String artifactId;
     private String targetDirectory;
+    private String version;
+    private boolean retrieveAllMatchingVersions;
 
     public WheelDependency() {
     }
@@ -22,4 +24,29 @@ public class WheelDependency {
     public void setTargetDirectory(String targetDirectory) {
         this.targetDirectory = targetDirectory;
     }
-}
\ No newline at end of file
+
+    /**
+     * Version or PEP-440 version specifier (i.e. {@code 1.2.3}, {@code >=1.2,<2.0},
+     * or {@code 1.2.3-SNAPSHOT}) that cached wheels must satisfy in order to be
+     * retrieved. If not specified, all cached versions are candidates.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Whether every cached version that satisfies {@link #getVersion()} should be
+     * retrieved instead of only the newest one.
+     */
+    public boolean isRetrieveAllMatchingVersions() {
+        return retrieveAllMatchingVersions;
+    }
+
+    public void setRetrieveAllMatchingVersions(boolean retrieveAllMatchingVersions) {
+        this.retrieveAllMatchingVersions = retrieveAllMatchingVersions;
+    }
+}
@@ -0,0 +1,150 @@
+package org.technologybrewery.habushu.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.util.FileSystemLock;
+import org.technologybrewery.habushu.util.HabushuUtil;
+
+/**
+ * Lightweight, append-only log of when each cached wheel was last cached or
+ * retrieved, which allows the wheel cache to be evicted in least recently used
+ * order. Each line contains the access time (milliseconds since the epoch) and
+ * the {@code <artifactId>/<wheel file name>} of the accessed wheel, separated by
+ * a tab.
+ * <p>
+ * The access log is strictly best-effort - failures to read or write it are
+ * logged and otherwise ignored, in which case the last modified time of the
+ * wheel is used instead.
+ * <p>
+ * Accesses are appended, and the log compacted, while holding a
+ * {@link FileSystemLock} on the log, so that concurrent evictions (i.e. of the
+ * modules of a parallel build, or of separate builds) do not compact over each
+ * other or drop accesses recorded while the log is compacted.
+ */
+public class WheelCacheAccessLog {
+
+    static final String ACCESS_LOG_FILE_NAME = ".habushu-access.log";
+    private static final String ACCESS_LOG_LOCK_NAME = "habushu-access-log";
+    private static final Logger logger = LoggerFactory.getLogger(WheelCacheAccessLog.class);
+
+    private final File wheelCacheDirectory;
+    private final Path accessLogFile;
+    private final Duration lockTimeout;
+
+    public WheelCacheAccessLog(File wheelCacheDirectory) {
+        this(wheelCacheDirectory, WheelCacheLock.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param wheelCacheDirectory root of the wheel cache
+     * @param lockTimeout         maximum time to wait for concurrent builds that
+     *                            are writing the access log
+     */
+    public WheelCacheAccessLog(File wheelCacheDirectory, Duration lockTimeout) {
+        this.wheelCacheDirectory = wheelCacheDirectory;
+        this.accessLogFile = new File(wheelCacheDirectory, ACCESS_LOG_FILE_NAME).toPath();
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Records that the given cached wheel was accessed now.
+     *
+     * @param artifactId artifact to which the wheel belongs
+     * @param fileName   name of the accessed wheel file
+     */
+    public void recordAccess(String artifactId, String fileName) {
+        String entry = System.currentTimeMillis() + "\t" + toKey(artifactId, fileName) + "\n";
+        try {
+            Files.createDirectories(accessLogFile.getParent());
+            try (FileSystemLock lock = lock()) {
+                Files.write(accessLogFile, entry.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            }
+        } catch (IOException | HabushuException e) {
+            logger.warn("Could not record access of cached wheel {} in {}", fileName, accessLogFile, e);
+        }
+    }
+
+    /**
+     * Reads the access log and returns the most recent access time of each
+     * recorded wheel, keyed by {@code <artifactId>/<wheel file name>}.
+     *
+     * @return last access times
+     */
+    public Map<String, Long> readLastAccessTimes() {
+        Map<String, Long> lastAccessTimes = new HashMap<>();
+        if (!Files.isRegularFile(accessLogFile)) {
+            return lastAccessTimes;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(accessLogFile, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] columns = StringUtils.split(line, '\t');
+                if (columns.length == 2 && StringUtils.isNumeric(columns[0])) {
+                    lastAccessTimes.merge(columns[1], Long.parseLong(columns[0]), Math::max);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read wheel cache access log {}", accessLogFile, e);
+        }
+        return lastAccessTimes;
+    }
+
+    /**
+     * Replaces the contents of the access log with a single entry per wheel so
+     * that the log does not grow without bound. The log is read again while
+     * compacting it, so that accesses recorded since it was last read are kept.
+     *
+     * @param removedKeys wheels whose entries are dropped (i.e. evicted wheels),
+     *                    keyed by {@code <artifactId>/<wheel file name>}
+     */
+    public void compact(Collection<String> removedKeys) {
+        Path compactedAccessLogFile = null;
+        try (FileSystemLock lock = lock()) {
+            Map<String, Long> lastAccessTimes = readLastAccessTimes();
+            lastAccessTimes.keySet().removeAll(removedKeys);
+            compactedAccessLogFile = Files.createTempFile(accessLogFile.getParent(), ACCESS_LOG_FILE_NAME, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(compactedAccessLogFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> lastAccessTime : lastAccessTimes.entrySet()) {
+                    writer.write(lastAccessTime.getValue() + "\t" + lastAccessTime.getKey() + "\n");
+                }
+            }
+            HabushuUtil.moveAtomically(compactedAccessLogFile, accessLogFile);
+        } catch (IOException | HabushuException e) {
+            logger.warn("Could not compact wheel cache access log {}", accessLogFile, e);
+        } finally {
+            if (compactedAccessLogFile != null) {
+                try {
+                    Files.deleteIfExists(compactedAccessLogFile);
+                } catch (IOException e) {
+                    logger.debug("Could not delete {}", compactedAccessLogFile, e);
+                }
+            }
+        }
+    }
+
+    private FileSystemLock lock() {
+        return FileSystemLock.acquire(wheelCacheDirectory, ACCESS_LOG_LOCK_NAME, "wheel cache access log lock",
+                lockTimeout);
+    }
+
+    static String toKey(String artifactId, String fileName) {
+        return artifactId + "/" + fileName;
+    }
+}
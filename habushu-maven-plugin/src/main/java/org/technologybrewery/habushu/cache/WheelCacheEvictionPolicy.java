@@ -0,0 +1,65 @@
+package org.technologybrewery.habushu.cache;
+
+import java.time.Duration;
+
+/**
+ * Limits that bound the size of the Habushu wheel cache. Any limit that is zero
+ * or negative is treated as unlimited.
+ */
+public class WheelCacheEvictionPolicy {
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private final long maxTotalSizeInBytes;
+    private final int maxVersionsPerArtifact;
+    private final Duration maxAge;
+
+    /**
+     * New instance - these values are typically passed in from Maven-enabled
+     * parameters in the calling Mojo.
+     *
+     * @param maxTotalSizeInMegabytes maximum total size of all cached wheels
+     * @param maxVersionsPerArtifact  maximum number of cached versions per artifact
+     * @param maxAgeInDays            maximum number of days since a cached wheel was
+     *                                last cached or retrieved
+     */
+    public WheelCacheEvictionPolicy(long maxTotalSizeInMegabytes, int maxVersionsPerArtifact, int maxAgeInDays) {
+        this.maxTotalSizeInBytes = maxTotalSizeInMegabytes > 0 ? maxTotalSizeInMegabytes * BYTES_PER_MEGABYTE : 0;
+        this.maxVersionsPerArtifact = Math.max(maxVersionsPerArtifact, 0);
+        this.maxAge = maxAgeInDays > 0 ? Duration.ofDays(maxAgeInDays) : null;
+    }
+
+    public boolean hasMaxTotalSize() {
+        return maxTotalSizeInBytes > 0;
+    }
+
+    public long getMaxTotalSizeInBytes() {
+        return maxTotalSizeInBytes;
+    }
+
+    public boolean hasMaxVersionsPerArtifact() {
+        return maxVersionsPerArtifact > 0;
+    }
+
+    public int getMaxVersionsPerArtifact() {
+        return maxVersionsPerArtifact;
+    }
+
+    public boolean hasMaxAge() {
+        return maxAge != null;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Returns whether none of the limits are configured, in which case nothing
+     * will ever be evicted.
+     *
+     * @return true if the cache is unbounded
+     */
+    public boolean isUnbounded() {
+        return !hasMaxTotalSize() && !hasMaxVersionsPerArtifact() && !hasMaxAge();
+    }
+}
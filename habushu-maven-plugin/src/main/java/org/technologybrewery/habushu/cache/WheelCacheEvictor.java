@@ -0,0 +1,263 @@
+package org.technologybrewery.habushu.cache;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.util.Pep440Version;
+
+/**
+ * Evicts wheels from the Habushu wheel cache (i.e.
+ * {@code <poetry-cache-dir>/cache/repositories/wheels/<artifactId>}) according
+ * to a {@link WheelCacheEvictionPolicy}. Limits are applied in the following
+ * order:
+ * <ol>
+ * <li>wheels that have not been cached or retrieved within the maximum age are
+ * evicted</li>
+ * <li>wheels of all but the newest versions of each artifact are evicted until
+ * the maximum number of versions per artifact is satisfied (wheels whose file
+ * names do not contain a valid version are not counted)</li>
+ * <li>the least recently used wheels across all artifacts are evicted until the
+ * total size of the cache is within the maximum size</li>
+ * </ol>
+ * Cached wheels are looked up in, and evicted wheels removed from, each
+ * artifact's {@link WheelCacheManifest}.
+ */
+public class WheelCacheEvictor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WheelCacheEvictor.class);
+
+    private final File wheelCacheDirectory;
+    private final WheelCacheEvictionPolicy policy;
+    private final WheelCacheAccessLog accessLog;
+    private final Duration lockTimeout;
+
+    public WheelCacheEvictor(File wheelCacheDirectory, WheelCacheEvictionPolicy policy) {
+        this(wheelCacheDirectory, policy, WheelCacheLock.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param wheelCacheDirectory root of the wheel cache
+     * @param policy              limits to apply
+     * @param lockTimeout         maximum time to wait for concurrent builds that
+     *                            are writing an artifact's cached wheels
+     */
+    public WheelCacheEvictor(File wheelCacheDirectory, WheelCacheEvictionPolicy policy, Duration lockTimeout) {
+        this.wheelCacheDirectory = wheelCacheDirectory;
+        this.policy = policy;
+        this.accessLog = new WheelCacheAccessLog(wheelCacheDirectory, lockTimeout);
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Evicts wheels that exceed the configured limits.
+     *
+     * @param artifactIds    artifacts to which the age and version limits are
+     *                       applied, or {@code null} to apply them to every cached
+     *                       artifact. The total size limit is always applied
+     *                       across the entire cache.
+     * @param protectedFiles wheels that must not be evicted, such as those that
+     *                       were just cached
+     * @return evicted wheels
+     */
+    public List<File> evict(Collection<String> artifactIds, Set<File> protectedFiles) {
+        List<File> evictedWheels = new ArrayList<>();
+        if (policy.isUnbounded() || !wheelCacheDirectory.isDirectory()) {
+            return evictedWheels;
+        }
+
+        Map<String, Long> lastAccessTimes = accessLog.readLastAccessTimes();
+        Map<String, WheelCacheManifest> manifests = loadManifests();
+        Map<String, List<CachedWheel>> cachedWheelsByArtifact = findCachedWheels(manifests, lastAccessTimes);
+        Collection<String> targetArtifactIds = artifactIds != null ? artifactIds : cachedWheelsByArtifact.keySet();
+
+        Set<CachedWheel> wheelsToEvict = new LinkedHashSet<>();
+        for (String artifactId : targetArtifactIds) {
+            List<CachedWheel> cachedWheels = cachedWheelsByArtifact.getOrDefault(artifactId, Collections.emptyList());
+            wheelsToEvict.addAll(findExpiredWheels(cachedWheels, protectedFiles));
+            wheelsToEvict.addAll(findExcessVersions(cachedWheels, protectedFiles));
+        }
+        wheelsToEvict.addAll(findLeastRecentlyUsedWheelsOverMaxSize(cachedWheelsByArtifact, wheelsToEvict,
+                protectedFiles));
+
+        Map<String, List<CachedWheel>> wheelsToEvictByArtifact = wheelsToEvict.stream()
+                .collect(Collectors.groupingBy(wheel -> wheel.artifactId, TreeMap::new, Collectors.toList()));
+        Set<String> removedKeys = new HashSet<>();
+        for (Map.Entry<String, List<CachedWheel>> artifactWheelsToEvict : wheelsToEvictByArtifact.entrySet()) {
+            for (CachedWheel wheel : evictArtifactWheels(artifactWheelsToEvict.getKey(), artifactWheelsToEvict.getValue())) {
+                evictedWheels.add(wheel.file);
+                removedKeys.add(wheel.key);
+            }
+        }
+
+        // entries of wheels that were no longer cached are dropped as well:
+        Set<String> cachedKeys = cachedWheelsByArtifact.values().stream().flatMap(List::stream)
+                .map(wheel -> wheel.key).collect(Collectors.toSet());
+        lastAccessTimes.keySet().stream().filter(key -> !cachedKeys.contains(key)).forEach(removedKeys::add);
+        accessLog.compact(removedKeys);
+
+        return evictedWheels;
+    }
+
+    private List<CachedWheel> evictArtifactWheels(String artifactId, List<CachedWheel> wheelsToEvict) {
+        List<CachedWheel> evictedWheels = new ArrayList<>();
+        File artifactDirectory = new File(wheelCacheDirectory, artifactId);
+        try (WheelCacheLock lock = WheelCacheLock.acquire(wheelCacheDirectory, artifactId, lockTimeout)) {
+            // reload the manifest, as it may have been updated while eviction candidates were selected:
+            WheelCacheManifest manifest = WheelCacheManifest.load(artifactDirectory);
+            Map<String, WheelCacheManifest.Entry> currentEntries = manifest.getEntries().stream()
+                    .collect(Collectors.toMap(WheelCacheManifest.Entry::getFileName, entry -> entry));
+            for (CachedWheel wheel : wheelsToEvict) {
+                WheelCacheManifest.Entry currentEntry = currentEntries.get(wheel.file.getName());
+                if (currentEntry != null && currentEntry.getCachedAt() > wheel.cachedAt) {
+                    logger.debug("Not evicting {} as it was cached again by a concurrent build", wheel.key);
+                } else if (wheel.file.delete()) {
+                    logger.info("Evicted {} from the wheel cache", wheel.key);
+                    evictedWheels.add(wheel);
+                } else if (wheel.file.exists()) {
+                    logger.warn("Could not evict {} from the wheel cache", wheel.file);
+                }
+            }
+            manifest.remove(evictedWheels.stream().map(wheel -> wheel.file.getName()).collect(Collectors.toList()));
+            manifest.save();
+        }
+
+        String[] remainingFiles = artifactDirectory.list();
+        if (remainingFiles != null && remainingFiles.length == 0) {
+            artifactDirectory.delete();
+        }
+        return evictedWheels;
+    }
+
+    private Map<String, WheelCacheManifest> loadManifests() {
+        Map<String, WheelCacheManifest> manifests = new TreeMap<>();
+        File[] artifactDirectories = wheelCacheDirectory.listFiles(File::isDirectory);
+        if (artifactDirectories != null) {
+            for (File artifactDirectory : artifactDirectories) {
+                WheelCacheManifest manifest = WheelCacheManifest.load(artifactDirectory);
+                if (!manifest.isPersisted()) {
+                    try (WheelCacheLock lock = WheelCacheLock.acquire(wheelCacheDirectory, artifactDirectory.getName(),
+                            lockTimeout)) {
+                        manifest = WheelCacheManifest.load(artifactDirectory);
+                        if (!manifest.isPersisted()) {
+                            manifest.save();
+                        }
+                    }
+                }
+                manifests.put(artifactDirectory.getName(), manifest);
+            }
+        }
+        return manifests;
+    }
+
+    private Map<String, List<CachedWheel>> findCachedWheels(Map<String, WheelCacheManifest> manifests,
+                                                            Map<String, Long> lastAccessTimes) {
+        Map<String, List<CachedWheel>> cachedWheelsByArtifact = new TreeMap<>();
+        for (Map.Entry<String, WheelCacheManifest> manifest : manifests.entrySet()) {
+            String artifactId = manifest.getKey();
+            List<CachedWheel> cachedWheels = new ArrayList<>();
+            for (WheelCacheManifest.Entry entry : manifest.getValue().getEntries()) {
+                String key = WheelCacheAccessLog.toKey(artifactId, entry.getFileName());
+                long lastAccessTime = Math.max(lastAccessTimes.getOrDefault(key, 0L), entry.getCachedAt());
+                cachedWheels.add(new CachedWheel(artifactId, key, manifest.getValue().getWheelFile(entry), entry,
+                        lastAccessTime));
+            }
+            cachedWheelsByArtifact.put(artifactId, cachedWheels);
+        }
+        return cachedWheelsByArtifact;
+    }
+
+    private List<CachedWheel> findExpiredWheels(List<CachedWheel> cachedWheels, Set<File> protectedFiles) {
+        if (!policy.hasMaxAge()) {
+            return Collections.emptyList();
+        }
+        long oldestAllowedAccessTime = System.currentTimeMillis() - policy.getMaxAge().toMillis();
+        return cachedWheels.stream()
+                .filter(wheel -> wheel.lastAccessTime < oldestAllowedAccessTime)
+                .filter(wheel -> !protectedFiles.contains(wheel.file))
+                .collect(Collectors.toList());
+    }
+
+    private List<CachedWheel> findExcessVersions(List<CachedWheel> cachedWheels, Set<File> protectedFiles) {
+        if (!policy.hasMaxVersionsPerArtifact()) {
+            return Collections.emptyList();
+        }
+
+        TreeMap<Pep440Version, List<CachedWheel>> wheelsByVersion = new TreeMap<>(Comparator.reverseOrder());
+        for (CachedWheel wheel : cachedWheels) {
+            if (wheel.version != null) {
+                wheelsByVersion.computeIfAbsent(wheel.version, key -> new ArrayList<>()).add(wheel);
+            }
+        }
+
+        List<CachedWheel> excessVersions = new ArrayList<>();
+        int retainedVersions = 0;
+        for (List<CachedWheel> versionWheels : wheelsByVersion.values()) {
+            if (retainedVersions < policy.getMaxVersionsPerArtifact()) {
+                retainedVersions++;
+            } else {
+                versionWheels.stream().filter(wheel -> !protectedFiles.contains(wheel.file)).forEach(excessVersions::add);
+            }
+        }
+        return excessVersions;
+    }
+
+    private List<CachedWheel> findLeastRecentlyUsedWheelsOverMaxSize(Map<String, List<CachedWheel>> cachedWheelsByArtifact,
+                                                                     Set<CachedWheel> wheelsToEvict,
+                                                                     Set<File> protectedFiles) {
+        if (!policy.hasMaxTotalSize()) {
+            return Collections.emptyList();
+        }
+
+        List<CachedWheel> remainingWheels = cachedWheelsByArtifact.values().stream().flatMap(List::stream)
+                .filter(wheel -> !wheelsToEvict.contains(wheel))
+                .sorted(Comparator.comparingLong(wheel -> wheel.lastAccessTime))
+                .collect(Collectors.toList());
+        long totalSize = remainingWheels.stream().mapToLong(wheel -> wheel.size).sum();
+
+        List<CachedWheel> leastRecentlyUsedWheels = new ArrayList<>();
+        for (CachedWheel wheel : remainingWheels) {
+            if (totalSize <= policy.getMaxTotalSizeInBytes()) {
+                break;
+            }
+            if (!protectedFiles.contains(wheel.file)) {
+                leastRecentlyUsedWheels.add(wheel);
+                totalSize -= wheel.size;
+            }
+        }
+        return leastRecentlyUsedWheels;
+    }
+
+    private static final class CachedWheel {
+        private final String artifactId;
+        private final String key;
+        private final File file;
+        private final long size;
+        private final long lastAccessTime;
+        private final long cachedAt;
+        private final Pep440Version version;
+
+        private CachedWheel(String artifactId, String key, File file, WheelCacheManifest.Entry entry,
+                            long lastAccessTime) {
+            this.artifactId = artifactId;
+            this.key = key;
+            this.file = file;
+            this.size = entry.getSize();
+            this.lastAccessTime = lastAccessTime;
+            this.cachedAt = entry.getCachedAt();
+            this.version = entry.getParsedVersion();
+        }
+    }
+}
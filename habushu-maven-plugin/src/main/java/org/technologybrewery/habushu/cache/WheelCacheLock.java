@@ -0,0 +1,54 @@
+package org.technologybrewery.habushu.cache;
+
+import java.io.File;
+import java.nio.channels.FileLock;
+import java.time.Duration;
+
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.util.FileSystemLock;
+
+/**
+ * Exclusive lock on the cached wheels of a single artifact that coordinates
+ * writes to the shared wheel cache across Maven JVMs (via a {@link FileLock} on
+ * {@code <wheel-cache-dir>/.<artifactId>.lock}) and across the threads of a
+ * parallel ({@code mvn -T}) build within the same JVM, for which file locks
+ * cannot be used as they are held on behalf of the entire JVM (see
+ * {@link FileSystemLock}).
+ * <p>
+ * Only writers (i.e. caching, evicting, and indexing wheels) acquire this lock.
+ * Cached wheels and manifests are always written to a temporary file and then
+ * atomically renamed, so readers never observe partially written files and do
+ * not need to wait on writers.
+ */
+public final class WheelCacheLock implements AutoCloseable {
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(5);
+
+    private final FileSystemLock lock;
+
+    private WheelCacheLock(FileSystemLock lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Acquires the lock on the cached wheels of the given artifact, waiting up to
+     * the given timeout for other threads or processes to release it.
+     *
+     * @param wheelCacheDirectory root of the wheel cache
+     * @param artifactId          artifact whose cached wheels will be written
+     * @param timeout             maximum time to wait for the lock
+     * @return the acquired lock, which must be closed to release it
+     * @throws HabushuException if the lock cannot be acquired within the timeout
+     */
+    public static WheelCacheLock acquire(File wheelCacheDirectory, String artifactId, Duration timeout) {
+        return new WheelCacheLock(FileSystemLock.acquire(wheelCacheDirectory, artifactId, "wheel cache lock", timeout));
+    }
+
+    /**
+     * Releases this lock.
+     */
+    @Override
+    public void close() {
+        lock.close();
+    }
+}
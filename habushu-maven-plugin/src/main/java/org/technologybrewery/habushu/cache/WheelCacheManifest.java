@@ -0,0 +1,308 @@
+package org.technologybrewery.habushu.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.util.HabushuUtil;
+import org.technologybrewery.habushu.util.Pep440Version;
+import org.technologybrewery.habushu.util.WheelFileName;
+
+import com.electronwill.nightconfig.core.Config;
+import com.electronwill.nightconfig.toml.TomlFormat;
+
+/**
+ * Index of the wheels cached for a single artifact (i.e.
+ * {@code <poetry-cache-dir>/cache/repositories/wheels/<artifactId>/.habushu-manifest.toml}),
+ * which records the file name, version, Python tag, size, SHA-256 digest, and
+ * cached-at time of each wheel. This allows cached wheels to be selected and
+ * evicted without scanning the artifact's cache directory or opening each wheel.
+ * <p>
+ * The manifest is maintained when wheels are cached or evicted and is always
+ * replaced atomically, so readers never observe a partially written manifest.
+ * If an artifact's cache directory does not yet contain a manifest (i.e. its
+ * wheels were cached by an older version of Habushu), its wheels are indexed
+ * from a directory scan the first time the manifest is loaded.
+ */
+public class WheelCacheManifest {
+
+    public static final String MANIFEST_FILE_NAME = ".habushu-manifest.toml";
+    private static final Logger logger = LoggerFactory.getLogger(WheelCacheManifest.class);
+
+    private static final String WHEELS = "wheel";
+    private static final String FILE_NAME = "file-name";
+    private static final String VERSION = "version";
+    private static final String PYTHON_TAG = "python-tag";
+    private static final String SIZE = "size";
+    private static final String SHA256 = "sha256";
+    private static final String CACHED_AT = "cached-at";
+
+    private final File artifactCacheDirectory;
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private final boolean persisted;
+
+    private WheelCacheManifest(File artifactCacheDirectory, boolean persisted) {
+        this.artifactCacheDirectory = artifactCacheDirectory;
+        this.persisted = persisted;
+    }
+
+    /**
+     * Loads the manifest of the given artifact cache directory. If the directory
+     * does not contain a manifest, an (unsaved) manifest is built from the wheels
+     * currently in the directory.
+     *
+     * @param artifactCacheDirectory cache directory of a single artifact
+     * @return the artifact's manifest
+     */
+    public static WheelCacheManifest load(File artifactCacheDirectory) {
+        File manifestFile = new File(artifactCacheDirectory, MANIFEST_FILE_NAME);
+        if (!manifestFile.isFile()) {
+            WheelCacheManifest manifest = new WheelCacheManifest(artifactCacheDirectory, false);
+            manifest.indexUntrackedWheels();
+            return manifest;
+        }
+
+        WheelCacheManifest manifest = new WheelCacheManifest(artifactCacheDirectory, true);
+        try (Reader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            Config config = TomlFormat.instance().createParser().parse(reader);
+            List<Config> wheels = config.getOrElse(WHEELS, Collections.emptyList());
+            for (Config wheel : wheels) {
+                Entry entry = new Entry(wheel.get(FILE_NAME), wheel.get(VERSION), wheel.get(PYTHON_TAG),
+                        ((Number) wheel.get(SIZE)).longValue(), wheel.get(SHA256),
+                        ((Number) wheel.get(CACHED_AT)).longValue());
+                manifest.entries.put(entry.getFileName(), entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read wheel cache manifest {} - rebuilding it from {}", manifestFile,
+                    artifactCacheDirectory, e);
+            manifest.entries.clear();
+            manifest.indexUntrackedWheels();
+        }
+        return manifest;
+    }
+
+    /**
+     * Returns whether this manifest was loaded from a previously saved manifest
+     * file, rather than built from a scan of the artifact's cache directory.
+     *
+     * @return whether the manifest was persisted
+     */
+    public boolean isPersisted() {
+        return persisted;
+    }
+
+    /**
+     * Returns the manifest entries of the wheels that still exist in the
+     * artifact's cache directory.
+     *
+     * @return manifest entries, ordered by file name
+     */
+    public List<Entry> getEntries() {
+        List<Entry> currentEntries = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (getWheelFile(entry).isFile()) {
+                currentEntries.add(entry);
+            }
+        }
+        return currentEntries;
+    }
+
+    /**
+     * Returns the cached wheel file described by the given entry.
+     *
+     * @param entry manifest entry
+     * @return cached wheel file
+     */
+    public File getWheelFile(Entry entry) {
+        return new File(artifactCacheDirectory, entry.getFileName());
+    }
+
+    /**
+     * Indexes the given wheel, which must reside in the artifact's cache
+     * directory, replacing any existing entry for it.
+     *
+     * @param wheelFile cached wheel file
+     * @return the new manifest entry
+     */
+    public Entry index(File wheelFile) {
+        Entry entry = createEntry(wheelFile, System.currentTimeMillis());
+        entries.put(entry.getFileName(), entry);
+        return entry;
+    }
+
+    private static Entry createEntry(File wheelFile, long cachedAt) {
+        String version = null;
+        String pythonTag = null;
+        try {
+            WheelMetadataReader.WheelMetadata metadata = WheelMetadataReader.read(wheelFile);
+            if (metadata != null) {
+                version = metadata.getVersion();
+                pythonTag = metadata.getPythonTag();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read the metadata of {} - falling back on its file name", wheelFile, e);
+        }
+
+        WheelFileName wheelFileName = WheelFileName.parse(wheelFile.getName());
+        if (version == null && wheelFileName != null) {
+            version = wheelFileName.getVersion();
+        }
+        if (pythonTag == null && wheelFileName != null) {
+            pythonTag = wheelFileName.getPythonTag();
+        }
+
+        return new Entry(wheelFile.getName(), version, pythonTag, wheelFile.length(),
+                HabushuUtil.sha256Hex(wheelFile), cachedAt);
+    }
+
+    /**
+     * Removes the entries of the given wheels from this manifest.
+     *
+     * @param fileNames names of the wheel files to remove
+     */
+    public void remove(Collection<String> fileNames) {
+        entries.keySet().removeAll(fileNames);
+    }
+
+    /**
+     * Reconciles this manifest with the artifact's cache directory by removing
+     * the entries of wheels that no longer exist and indexing any wheels that
+     * were added without updating the manifest.
+     */
+    public void reconcile() {
+        entries.values().removeIf(entry -> !getWheelFile(entry).isFile());
+        indexUntrackedWheels();
+    }
+
+    /**
+     * Atomically replaces the artifact's manifest file with the contents of this
+     * manifest. If no wheels remain, the manifest file is deleted instead.
+     */
+    public void save() {
+        Path manifestFile = new File(artifactCacheDirectory, MANIFEST_FILE_NAME).toPath();
+        try {
+            if (entries.isEmpty()) {
+                Files.deleteIfExists(manifestFile);
+                return;
+            }
+
+            Config config = TomlFormat.newConfig();
+            List<Config> wheels = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                Config wheel = TomlFormat.newConfig();
+                wheel.set(FILE_NAME, entry.getFileName());
+                if (entry.getVersion() != null) {
+                    wheel.set(VERSION, entry.getVersion());
+                }
+                if (entry.getPythonTag() != null) {
+                    wheel.set(PYTHON_TAG, entry.getPythonTag());
+                }
+                wheel.set(SIZE, entry.getSize());
+                wheel.set(SHA256, entry.getSha256());
+                wheel.set(CACHED_AT, entry.getCachedAt());
+                wheels.add(wheel);
+            }
+            config.set(WHEELS, wheels);
+
+            Files.createDirectories(artifactCacheDirectory.toPath());
+            Path temporaryFile = Files.createTempFile(artifactCacheDirectory.toPath(), MANIFEST_FILE_NAME, ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                    TomlFormat.instance().createWriter().write(config, writer);
+                }
+                HabushuUtil.moveAtomically(temporaryFile, manifestFile);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            throw new HabushuException("Could not save wheel cache manifest " + manifestFile, e);
+        }
+    }
+
+    private void indexUntrackedWheels() {
+        File[] wheelFiles = artifactCacheDirectory.listFiles(
+                file -> file.isFile() && file.getName().endsWith(WheelFileName.WHEEL_EXTENSION));
+        if (wheelFiles == null) {
+            return;
+        }
+        for (File wheelFile : wheelFiles) {
+            if (!entries.containsKey(wheelFile.getName())) {
+                // the wheel was cached before it was indexed, so its last modified time is the best estimate:
+                entries.put(wheelFile.getName(), createEntry(wheelFile, wheelFile.lastModified()));
+            }
+        }
+    }
+
+    /**
+     * Describes a single cached wheel.
+     */
+    public static final class Entry {
+        private final String fileName;
+        private final String version;
+        private final String pythonTag;
+        private final long size;
+        private final String sha256;
+        private final long cachedAt;
+
+        Entry(String fileName, String version, String pythonTag, long size, String sha256, long cachedAt) {
+            this.fileName = fileName;
+            this.version = version;
+            this.pythonTag = pythonTag;
+            this.size = size;
+            this.sha256 = sha256;
+            this.cachedAt = cachedAt;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the parsed PEP-440 version of this wheel, or {@code null} if it
+         * is unknown or invalid.
+         *
+         * @return parsed version
+         */
+        public Pep440Version getParsedVersion() {
+            return version != null ? Pep440Version.parseQuietly(version) : null;
+        }
+
+        public String getPythonTag() {
+            return pythonTag;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        /**
+         * Returns when this wheel was cached, in milliseconds since the epoch.
+         *
+         * @return cached-at time
+         */
+        public long getCachedAt() {
+            return cachedAt;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.technologybrewery.habushu.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Extracts the distribution name, version, and Python tag(s) of a wheel by
+ * memory-mapping and reading its zip central directory, rather than opening the
+ * wheel as a zip stream. Only the (small) {@code *.dist-info/WHEEL} entry is
+ * decompressed - the distribution name and version are taken from the name of
+ * the {@code .dist-info} directory.
+ * <p>
+ * ZIP64 archives are not supported, in which case {@code null} is returned and
+ * callers are expected to fall back on the wheel's file name.
+ */
+public final class WheelMetadataReader {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int CENTRAL_DIRECTORY_HEADER_LENGTH = 46;
+    private static final int LOCAL_FILE_HEADER_LENGTH = 30;
+    private static final int MAX_ZIP_COMMENT_LENGTH = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final String DIST_INFO_SUFFIX = ".dist-info/";
+    private static final String WHEEL_ENTRY = "WHEEL";
+    private static final String TAG_PREFIX = "Tag:";
+
+    private WheelMetadataReader() {
+        // prevent instantiation of all static class
+    }
+
+    /**
+     * Reads the metadata of the given wheel.
+     *
+     * @param wheelFile wheel to read
+     * @return the wheel's metadata, or {@code null} if the wheel does not contain
+     * a {@code .dist-info} directory or cannot be read from its central
+     * directory
+     * @throws IOException if the wheel cannot be read
+     */
+    public static WheelMetadata read(File wheelFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(wheelFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < END_OF_CENTRAL_DIRECTORY_LENGTH) {
+                return null;
+            }
+
+            long tailOffset = Math.max(0, fileSize - END_OF_CENTRAL_DIRECTORY_LENGTH - MAX_ZIP_COMMENT_LENGTH);
+            ByteBuffer tail = map(channel, tailOffset, fileSize - tailOffset);
+            int endOfCentralDirectory = findEndOfCentralDirectory(tail);
+            if (endOfCentralDirectory < 0) {
+                return null;
+            }
+
+            int entryCount = Short.toUnsignedInt(tail.getShort(endOfCentralDirectory + 10));
+            long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(endOfCentralDirectory + 12));
+            long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(endOfCentralDirectory + 16));
+            if (centralDirectoryOffset + centralDirectorySize > fileSize) {
+                return null;
+            }
+
+            ByteBuffer centralDirectory = map(channel, centralDirectoryOffset, centralDirectorySize);
+            return readCentralDirectory(channel, centralDirectory, entryCount);
+        }
+    }
+
+    private static WheelMetadata readCentralDirectory(FileChannel channel, ByteBuffer centralDirectory,
+                                                      int entryCount) throws IOException {
+        String distInfoDirectory = null;
+        int wheelEntryPosition = -1;
+        int position = 0;
+        for (int i = 0; i < entryCount && position + CENTRAL_DIRECTORY_HEADER_LENGTH <= centralDirectory.limit(); i++) {
+            if (centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                return null;
+            }
+            int nameLength = Short.toUnsignedInt(centralDirectory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(centralDirectory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(centralDirectory.getShort(position + 32));
+            String name = readString(centralDirectory, position + CENTRAL_DIRECTORY_HEADER_LENGTH, nameLength);
+
+            int distInfoIndex = name.indexOf(DIST_INFO_SUFFIX);
+            if (distInfoIndex > 0 && name.indexOf('/') == distInfoIndex + DIST_INFO_SUFFIX.length() - 1) {
+                distInfoDirectory = name.substring(0, distInfoIndex);
+                if (name.equals(distInfoDirectory + DIST_INFO_SUFFIX + WHEEL_ENTRY)) {
+                    wheelEntryPosition = position;
+                }
+            }
+            position += CENTRAL_DIRECTORY_HEADER_LENGTH + nameLength + extraLength + commentLength;
+        }
+
+        if (distInfoDirectory == null || distInfoDirectory.lastIndexOf('-') <= 0) {
+            return null;
+        }
+        int separator = distInfoDirectory.lastIndexOf('-');
+        String distribution = distInfoDirectory.substring(0, separator);
+        String version = distInfoDirectory.substring(separator + 1);
+        Set<String> pythonTags = wheelEntryPosition >= 0
+                ? readPythonTags(channel, centralDirectory, wheelEntryPosition)
+                : new LinkedHashSet<>();
+        return new WheelMetadata(distribution, version, pythonTags.isEmpty() ? null : String.join(".", pythonTags));
+    }
+
+    private static Set<String> readPythonTags(FileChannel channel, ByteBuffer centralDirectory, int entryPosition)
+            throws IOException {
+        int method = Short.toUnsignedInt(centralDirectory.getShort(entryPosition + 10));
+        long compressedSize = Integer.toUnsignedLong(centralDirectory.getInt(entryPosition + 20));
+        int uncompressedSize = centralDirectory.getInt(entryPosition + 24);
+        long localHeaderOffset = Integer.toUnsignedLong(centralDirectory.getInt(entryPosition + 42));
+
+        ByteBuffer localHeader = map(channel, localHeaderOffset, LOCAL_FILE_HEADER_LENGTH);
+        if (localHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+            return new LinkedHashSet<>();
+        }
+        long dataOffset = localHeaderOffset + LOCAL_FILE_HEADER_LENGTH
+                + Short.toUnsignedInt(localHeader.getShort(26)) + Short.toUnsignedInt(localHeader.getShort(28));
+        ByteBuffer compressed = map(channel, dataOffset, compressedSize);
+
+        byte[] content;
+        if (method == STORED) {
+            content = new byte[compressed.remaining()];
+            compressed.get(content);
+        } else if (method == DEFLATED && uncompressedSize >= 0) {
+            content = inflate(compressed, uncompressedSize);
+        } else {
+            return new LinkedHashSet<>();
+        }
+
+        Set<String> pythonTags = new LinkedHashSet<>();
+        for (String line : StringUtils.split(new String(content, StandardCharsets.UTF_8), "\r\n")) {
+            if (line.startsWith(TAG_PREFIX)) {
+                String tag = line.substring(TAG_PREFIX.length()).trim();
+                int abiSeparator = tag.indexOf('-');
+                pythonTags.add(abiSeparator > 0 ? tag.substring(0, abiSeparator) : tag);
+            }
+        }
+        return pythonTags;
+    }
+
+    private static byte[] inflate(ByteBuffer compressed, int uncompressedSize) throws IOException {
+        byte[] input = new byte[compressed.remaining()];
+        compressed.get(input);
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            byte[] content = new byte[uncompressedSize];
+            int length = 0;
+            while (length < uncompressedSize && !inflater.finished()) {
+                int inflated = inflater.inflate(content, length, uncompressedSize - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            return length == uncompressedSize ? content : Arrays.copyOf(content, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Could not inflate wheel metadata", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (offset + length > channel.size() || length > Integer.MAX_VALUE) {
+            throw new IOException("Wheel entry exceeds the bounds of the archive");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static String readString(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Metadata of a wheel, as recorded in its {@code .dist-info} directory.
+     */
+    public static final class WheelMetadata {
+        private final String distribution;
+        private final String version;
+        private final String pythonTag;
+
+        WheelMetadata(String distribution, String version, String pythonTag) {
+            this.distribution = distribution;
+            this.version = version;
+            this.pythonTag = pythonTag;
+        }
+
+        public String getDistribution() {
+            return distribution;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the wheel's Python tag(s), joined with a period when the wheel
+         * supports several (i.e. {@code py2.py3}), or {@code null} if the
+         * {@code WHEEL} entry does not contain any tags.
+         *
+         * @return python tag
+         */
+        public String getPythonTag() {
+            return pythonTag;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.trace.BuildTracer;
+
+/**
+ * Base class for long-lived Python workers that run within a virtual
+ * environment and accept jobs as JSON lines over their stdin, streaming the
+ * output of each job back as JSON lines over their stdout:
+ * <ul>
+ * <li>{@code {"ready": true}} once the worker has started</li>
+ * <li>{@code {"id": 1, "line": "..."}} for each line of output of a job,
+ * optionally with the {@code "stream"} ({@code stdout} or {@code stderr}) to
+ * which it was written</li>
+ * <li>{@code {"id": 1, "exit": 0}} once a job has completed</li>
+ * </ul>
+ * Output is logged in the same manner as the output of commands executed by
+ * {@link ProcessExecutor}. Jobs are executed one at a time; workers are
+ * typically shared via {@link PythonToolServers}.
+ */
+public abstract class AbstractPythonServer implements Closeable {
+
+    private static final long SHUTDOWN_TIMEOUT_IN_SECONDS = 5;
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final File virtualEnvironment;
+    private final Path script;
+    private final Process process;
+    private final BufferedWriter requests;
+    private final BufferedReader responses;
+    private final JsonNode readyMessage;
+    private long lastJobId;
+
+    /**
+     * Starts the given Python script with the interpreter of the given virtual
+     * environment, waiting until it is ready to accept jobs.
+     *
+     * @param virtualEnvHelper virtual environment in which to start the worker
+     * @param scriptResource   classpath resource of the worker's script, relative
+     *                         to this package
+     * @param scriptArguments  arguments of the script
+     * @throws IOException if the worker could not be started
+     */
+    protected AbstractPythonServer(VirtualEnvCommandHelper virtualEnvHelper, String scriptResource,
+                                   List<String> scriptArguments) throws IOException {
+        this(virtualEnvHelper.getVirtualEnvironment(), command -> virtualEnvHelper.createExecutor(command, null),
+                scriptResource, scriptArguments);
+    }
+
+    /**
+     * Starts the given Python script, waiting until it is ready to accept jobs.
+     *
+     * @param virtualEnvironment virtual environment of the interpreter that
+     *                           executes the worker
+     * @param executorFactory    creates the executor of the given command, in
+     *                           which {@code python} refers to the interpreter
+     * @param scriptResource     classpath resource of the worker's script,
+     *                           relative to this package
+     * @param scriptArguments    arguments of the script
+     * @throws IOException if the worker could not be started
+     */
+    protected AbstractPythonServer(File virtualEnvironment, Function<List<String>, ProcessExecutor> executorFactory,
+                                   String scriptResource, List<String> scriptArguments) throws IOException {
+        try (BuildTracer.Span span = BuildTracer.span("server", "start " + getClass().getSimpleName())) {
+            this.virtualEnvironment = virtualEnvironment;
+            this.script = Files.createTempFile("habushu-" + scriptResource.replace(".py", ""), ".py");
+            try (InputStream resource = AbstractPythonServer.class.getResourceAsStream(scriptResource)) {
+                if (resource == null) {
+                    throw new IOException("Could not find " + scriptResource);
+                }
+                Files.copy(resource, script, StandardCopyOption.REPLACE_EXISTING);
+
+                List<String> command = new ArrayList<>();
+                command.add("python");
+                command.add("-u");
+                command.add(script.toAbsolutePath().toString());
+                command.addAll(scriptArguments);
+                this.process = executorFactory.apply(command).start(logger);
+            } catch (IOException e) {
+                Files.deleteIfExists(script);
+                throw e;
+            }
+            this.requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(),
+                    StandardCharsets.UTF_8));
+            this.responses = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                    StandardCharsets.UTF_8));
+
+            try {
+                this.readyMessage = readMessage();
+                if (readyMessage == null || !readyMessage.path("ready").asBoolean()) {
+                    throw new IOException(getClass().getSimpleName() + " did not start: " + readyMessage);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+        logger.info("Started {} in virtual environment {}", getClass().getSimpleName(), virtualEnvironment);
+    }
+
+    public File getVirtualEnvironment() {
+        return virtualEnvironment;
+    }
+
+    /**
+     * Returns whether the worker is able to accept jobs.
+     *
+     * @return {@code true} if the worker's process is running
+     */
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Returns the handle of the worker's process, i.e. to watch it for stalls.
+     *
+     * @return process handle
+     */
+    ProcessHandle getProcessHandle() {
+        return process.toHandle();
+    }
+
+    /**
+     * Returns the message with which the worker signalled that it was ready,
+     * which may describe how it was initialized.
+     *
+     * @return ready message
+     */
+    protected JsonNode getReadyMessage() {
+        return readyMessage;
+    }
+
+    /**
+     * Submits a job to the worker, logging its output, and returns its exit code.
+     *
+     * @param job description of the job, to which its id is added
+     * @return exit code of the job
+     * @throws IOException if the worker fails while executing the job, in which
+     *                     case it should be discarded
+     */
+    protected int executeJob(Map<String, Object> job) throws IOException {
+        try (OutputStream output = new ProcessExecutor.LoggerOutputStream(logger, 0, null)) {
+            return executeJob(job, (stream, line) -> output.write((line + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Submits a job to the worker and returns its exit code, passing each line of
+     * its output to the given handler.
+     *
+     * @param job           description of the job, to which its id is added
+     * @param outputHandler receives each line of output of the job
+     * @return exit code of the job
+     * @throws IOException if the worker fails while executing the job, in which
+     *                     case it should be discarded; a
+     *                     {@link PythonServerJobException} if the job had already
+     *                     been submitted
+     */
+    protected synchronized int executeJob(Map<String, Object> job, OutputHandler outputHandler) throws IOException {
+        long jobId = ++lastJobId;
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("id", jobId);
+        request.putAll(job);
+        sendMessage(request);
+
+        try (BuildTracer.Span span = BuildTracer.span("server", getClass().getSimpleName() + " job")) {
+            while (true) {
+                JsonNode message = readMessage();
+                if (message == null) {
+                    throw new PythonServerJobException(
+                            getClass().getSimpleName() + " exited while executing job " + jobId);
+                }
+                if (message.path("id").asLong() != jobId) {
+                    logger.debug("Ignoring unexpected message: {}", message);
+                } else if (message.has("exit")) {
+                    int exitCode = message.get("exit").asInt();
+                    logger.debug("Exit value {}", exitCode);
+                    span.arg("exitCode", exitCode);
+                    return exitCode;
+                } else if (message.has("line")) {
+                    outputHandler.accept(message.path("stream").asText("stdout"), message.get("line").asText());
+                }
+            }
+        } catch (PythonServerJobException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new PythonServerJobException(getClass().getSimpleName() + " failed while executing job " + jobId, e);
+        }
+    }
+
+    /**
+     * Asks the worker to shut down, forcibly terminating it if it does not do so
+     * promptly.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            if (process.isAlive()) {
+                sendMessage(Collections.singletonMap("shutdown", true));
+            }
+        } catch (IOException e) {
+            logger.debug("Could not ask {} to shut down", getClass().getSimpleName(), e);
+        }
+        IOUtils.closeQuietly(requests);
+        try {
+            if (!process.waitFor(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        IOUtils.closeQuietly(responses);
+        try {
+            Files.deleteIfExists(script);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}", script, e);
+        }
+        logger.debug("Stopped {} in virtual environment {}", getClass().getSimpleName(), virtualEnvironment);
+    }
+
+    private void sendMessage(Object message) throws IOException {
+        requests.write(objectMapper.writeValueAsString(message));
+        requests.write('\n');
+        requests.flush();
+    }
+
+    private JsonNode readMessage() throws IOException {
+        String line;
+        while ((line = responses.readLine()) != null) {
+            try {
+                return objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                // should not occur, as workers redirect stray output to stderr:
+                logger.info(line);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Receives the output of a job.
+     */
+    @FunctionalInterface
+    protected interface OutputHandler {
+        /**
+         * Accepts a line of output.
+         *
+         * @param stream stream to which the line was written ({@code stdout} or
+         *               {@code stderr})
+         * @param line   line of output, without its line terminator
+         * @throws IOException if the line could not be handled
+         */
+        void accept(String stream, String line) throws IOException;
+    }
+}
@@ -0,0 +1,89 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+
+/**
+ * Logs lines of process output on a dedicated thread, so that the threads
+ * pumping a process's stdout/stderr only enqueue each line and drain the
+ * process's pipes as quickly as it writes to them, rather than waiting on the
+ * logger. The queue is bounded: if the logger falls too far behind, pump
+ * threads wait for it, which applies backpressure to the process rather than
+ * buffering its output without limit.
+ * <p>
+ * A sink is used for a single execution; {@link #close()} waits until all
+ * enqueued lines have been logged, so that a command's output is logged before
+ * its completion (or failure) is reported.
+ */
+final class AsyncLogSink implements Closeable {
+
+    /**
+     * Number of lines that may be waiting to be logged before pump threads wait.
+     */
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private static final Entry END = new Entry(null, null);
+
+    private final Logger logger;
+    private final BlockingQueue<Entry> queue;
+    private final Thread thread;
+
+    AsyncLogSink(Logger logger, int capacity) {
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::drain, "habushu-log-sink");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Enqueues a line to be logged, waiting if the queue is full.
+     *
+     * @param level level at which to log the line
+     * @param line  line of output
+     */
+    void submit(OutputLineClassifier.Level level, String line) {
+        try {
+            queue.put(new Entry(level, line));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            OutputLineClassifier.log(logger, level, line);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (Entry entry = queue.take(); entry != END; entry = queue.take()) {
+                OutputLineClassifier.log(logger, entry.level, entry.line);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until all enqueued lines have been logged.
+     */
+    @Override
+    public void close() {
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Entry {
+        private final OutputLineClassifier.Level level;
+        private final String line;
+
+        private Entry(OutputLineClassifier.Level level, String line) {
+            this.level = level;
+            this.line = line;
+        }
+    }
+}
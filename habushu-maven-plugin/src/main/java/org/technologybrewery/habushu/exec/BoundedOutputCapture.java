@@ -0,0 +1,248 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Captures the output of a process with bounded memory use. Output is held in
+ * memory until it exceeds a threshold, after which it is spilled to a temporary
+ * file, so that commands that produce large amounts of output (i.e.
+ * {@code poetry show} or a misbehaving {@code poetry run}) do not hold it on the
+ * heap. The first and last bytes of the output are always kept in memory (the
+ * latter in a ring buffer), so that it may be summarized in error messages
+ * without reading the spilled output back; the full text is only read when
+ * {@link #getText()} is called. Output is decoded as UTF-8, with malformed
+ * input replaced, as written by Python processes such as Poetry.
+ * <p>
+ * Captures must be closed once they are no longer needed to delete any spilled
+ * output.
+ */
+public class BoundedOutputCapture extends OutputStream {
+
+    /**
+     * Amount of output held in memory before it is spilled to disk.
+     */
+    public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Amount of output from the start and end of the output included in
+     * {@link #getSummary()}.
+     */
+    public static final int DEFAULT_SUMMARY_SIZE = 4 * 1024;
+
+    private final int memoryThreshold;
+    private final Charset charset = StandardCharsets.UTF_8;
+    private final byte[] head;
+    private final byte[] tail;
+    private int headLength;
+    private int tailPosition;
+    private long size;
+    private boolean hasText;
+
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private Path spillFile;
+    private OutputStream spillStream;
+
+    public BoundedOutputCapture() {
+        this(DEFAULT_MEMORY_THRESHOLD, DEFAULT_SUMMARY_SIZE);
+    }
+
+    /**
+     * @param memoryThreshold amount of output, in bytes, held in memory before it
+     *                        is spilled to disk
+     * @param summarySize     amount of output, in bytes, from each of the start
+     *                        and end of the output to include in summaries
+     */
+    public BoundedOutputCapture(int memoryThreshold, int summarySize) {
+        this.memoryThreshold = memoryThreshold;
+        this.head = new byte[summarySize];
+        this.tail = new byte[summarySize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        size += length;
+        if (!hasText) {
+            for (int i = offset; i < offset + length && !hasText; i++) {
+                hasText = !Character.isWhitespace(bytes[i] & 0xFF);
+            }
+        }
+
+        if (headLength < head.length) {
+            int headBytes = Math.min(head.length - headLength, length);
+            System.arraycopy(bytes, offset, head, headLength, headBytes);
+            headLength += headBytes;
+        }
+        writeToTail(bytes, offset, length);
+
+        if (spillStream == null && memory.size() + length > memoryThreshold) {
+            spillFile = Files.createTempFile("habushu-output", ".log");
+            spillStream = new BufferedOutputStream(Files.newOutputStream(spillFile));
+            memory.writeTo(spillStream);
+            memory = null;
+        }
+        if (spillStream != null) {
+            spillStream.write(bytes, offset, length);
+        } else {
+            memory.write(bytes, offset, length);
+        }
+    }
+
+    private void writeToTail(byte[] bytes, int offset, int length) {
+        if (tail.length == 0) {
+            return;
+        }
+        if (length >= tail.length) {
+            System.arraycopy(bytes, offset + length - tail.length, tail, 0, tail.length);
+            tailPosition = 0;
+            return;
+        }
+        int firstPart = Math.min(tail.length - tailPosition, length);
+        System.arraycopy(bytes, offset, tail, tailPosition, firstPart);
+        System.arraycopy(bytes, offset + firstPart, tail, 0, length - firstPart);
+        tailPosition = (tailPosition + length) % tail.length;
+    }
+
+    /**
+     * Appends the given text, encoded with the charset in which the captured
+     * output is decoded.
+     *
+     * @param text text to append
+     * @throws IOException if spilled output could not be written
+     */
+    public void append(String text) throws IOException {
+        write(text.getBytes(charset));
+    }
+
+    /**
+     * Returns the number of bytes captured.
+     *
+     * @return size of the output
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns whether any non-whitespace output has been captured.
+     *
+     * @return {@code true} if the output is not blank
+     */
+    public synchronized boolean hasText() {
+        return hasText;
+    }
+
+    /**
+     * Returns whether the output has been spilled to disk.
+     *
+     * @return {@code true} if the output exceeded the memory threshold
+     */
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Returns the full text of the captured output, reading it back from disk if
+     * it was spilled.
+     *
+     * @return captured output
+     */
+    public synchronized String getText() {
+        if (spillStream == null) {
+            return new String(memory.toByteArray(), charset);
+        }
+        try {
+            spillStream.flush();
+            return new String(Files.readAllBytes(spillFile), charset);
+        } catch (IOException e) {
+            return getSummary();
+        }
+    }
+
+    /**
+     * Returns the captured output if it is small; otherwise, its start and end
+     * with a marker of how much output was omitted between them.
+     *
+     * @return summary of the captured output
+     */
+    public synchronized String getSummary() {
+        if (size <= (long) head.length + tail.length) {
+            return getText();
+        }
+        byte[] orderedTail = new byte[tail.length];
+        System.arraycopy(tail, tailPosition, orderedTail, 0, tail.length - tailPosition);
+        System.arraycopy(tail, 0, orderedTail, tail.length - tailPosition, tailPosition);
+        // the start and end are cut at byte offsets, so characters split by the cuts are omitted too:
+        int headEnd = getCharacterBoundaryBefore(head, headLength);
+        int tailStart = getCharacterBoundaryAfter(orderedTail, 0);
+        long omitted = size - headEnd - (tail.length - tailStart);
+        return new String(head, 0, headEnd, charset) + String.format("%n... [%s bytes omitted] ...%n", omitted)
+                + new String(orderedTail, tailStart, orderedTail.length - tailStart, charset);
+    }
+
+    /**
+     * Returns the offset, at or before the given end, at which the last complete
+     * UTF-8 character before the end ends.
+     */
+    private static int getCharacterBoundaryBefore(byte[] bytes, int end) {
+        for (int i = end - 1; i >= Math.max(0, end - 4); i--) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                return end;
+            }
+            if (b >= 0xC0) {
+                int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+                return i + length <= end ? end : i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the offset, at or after the given start, at which the first UTF-8
+     * character starting after the start begins.
+     */
+    private static int getCharacterBoundaryAfter(byte[] bytes, int start) {
+        int i = start;
+        while (i < bytes.length && i < start + 3 && (bytes[i] & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    /**
+     * Deletes any spilled output.
+     */
+    @Override
+    public synchronized void close() {
+        IOUtils.closeQuietly(spillStream);
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                spillFile.toFile().deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.technologybrewery.habushu.exec;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads on which commands are executed asynchronously (see the
+ * {@code *Async} methods of the command helpers) and on which the output of
+ * launched processes is pumped. As these threads spend nearly all of their time
+ * blocked on a process, they are virtual threads when running on a JDK that
+ * supports them (21+), and otherwise daemon platform threads. Virtual threads
+ * are created reflectively, as Habushu targets Java 11.
+ * <p>
+ * Each task runs on a new thread rather than on a pooled one, so that it
+ * inherits the mojo context of the thread that submitted it (i.e. the module to
+ * which {@link ProcessMetrics} attributes launched processes).
+ */
+final class CommandThreads {
+
+    private static final Method ofVirtual;
+    private static final Method name;
+    private static final Method unstarted;
+
+    static {
+        Method ofVirtualMethod = null;
+        Method nameMethod = null;
+        Method unstartedMethod = null;
+        try {
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            nameMethod = builder.getMethod("name", String.class);
+            unstartedMethod = builder.getMethod("unstarted", Runnable.class);
+            // virtual threads are a preview feature of JDK 19 and 20, which fails unless enabled:
+            ofVirtualMethod.invoke(null);
+        } catch (Exception e) {
+            ofVirtualMethod = null;
+        }
+        ofVirtual = ofVirtualMethod;
+        name = nameMethod;
+        unstarted = unstartedMethod;
+    }
+
+    private static final AtomicInteger commandCount = new AtomicInteger();
+
+    private static final Executor executor = task -> newThread(task,
+            "habushu-command-" + commandCount.incrementAndGet()).start();
+
+    private CommandThreads() {
+    }
+
+    /**
+     * @return whether commands run on virtual threads
+     */
+    static boolean isVirtual() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates an unstarted thread, which is virtual if supported.
+     *
+     * @param task task to run
+     * @param threadName name of the thread
+     * @return the thread
+     */
+    static Thread newThread(Runnable task, String threadName) {
+        if (ofVirtual != null) {
+            try {
+                Object builder = name.invoke(ofVirtual.invoke(null), threadName);
+                return (Thread) unstarted.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                // falls back to a platform thread
+            }
+        }
+        Thread thread = new Thread(task, threadName);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Executes the given command on a new thread.
+     *
+     * @param command command to execute
+     * @param <T>     type of the command's result
+     * @return future result of the command, which completes exceptionally with
+     * the exception thrown by the command (wrapped in a
+     * {@link CompletionException} if checked)
+     */
+    static <T> CompletableFuture<T> supplyAsync(Callable<T> command) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return command.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+}
@@ -0,0 +1,64 @@
+package org.technologybrewery.habushu.exec;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the CPU time of a running process via {@link ProcessHandle}. As the
+ * CPU time of a process is no longer available once it has exited and been
+ * reaped by the JVM, it is sampled periodically while the process runs, so the
+ * reported time may exclude up to one sampling interval at the end of the
+ * process. CPU time is not available on all platforms.
+ */
+final class CpuTimeSampler {
+
+    private static final long SAMPLING_INTERVAL_MILLIS = 100;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "habushu-cpu-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ProcessHandle process;
+    private final ScheduledFuture<?> sampling;
+    private Duration cpuTime;
+
+    private CpuTimeSampler(ProcessHandle process) {
+        this.process = process;
+        this.sampling = scheduler.scheduleAtFixedRate(this::sample, 0, SAMPLING_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts sampling the CPU time of the given process.
+     *
+     * @param process process to sample
+     * @return the sampler
+     */
+    static CpuTimeSampler start(ProcessHandle process) {
+        return new CpuTimeSampler(process);
+    }
+
+    private synchronized void sample() {
+        process.info().totalCpuDuration().ifPresent(sample -> {
+            if (cpuTime == null || sample.compareTo(cpuTime) > 0) {
+                cpuTime = sample;
+            }
+        });
+    }
+
+    /**
+     * Stops sampling and returns the last CPU time sampled.
+     *
+     * @return CPU time of the process, or {@code null} if it was not available
+     */
+    synchronized Duration stop() {
+        sampling.cancel(false);
+        sample();
+        return cpuTime;
+    }
+}
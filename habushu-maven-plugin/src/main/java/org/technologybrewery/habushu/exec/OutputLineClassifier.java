@@ -0,0 +1,109 @@
+package org.technologybrewery.habushu.exec;
+
+import org.slf4j.Logger;
+
+/**
+ * Classifies lines of process output by the log level at which they are
+ * logged, based on whether they contain (case-insensitively) the keywords
+ * {@code ERROR}, {@code CRITICAL}, or {@code FAILURE} (error),
+ * {@code WARNING} (warn), or {@code DEBUG} (debug); all other lines are logged
+ * at the info level.
+ * <p>
+ * Lines are scanned once, without allocating (i.e. without upper-casing a
+ * copy of each line and searching it for each keyword), as process output may
+ * be very verbose (i.e. {@code poetry install -vvv}).
+ */
+final class OutputLineClassifier {
+
+    /**
+     * Level at which a line of output is logged.
+     */
+    enum Level {
+        ERROR, WARN, DEBUG, INFO
+    }
+
+    private static final char[] ERROR = "ERROR".toCharArray();
+    private static final char[] CRITICAL = "CRITICAL".toCharArray();
+    private static final char[] FAILURE = "FAILURE".toCharArray();
+    private static final char[] WARNING = "WARNING".toCharArray();
+    private static final char[] DEBUG = "DEBUG".toCharArray();
+
+    private OutputLineClassifier() {
+    }
+
+    /**
+     * Classifies the given line of output.
+     *
+     * @param line line of output
+     * @return level at which the line should be logged
+     */
+    static Level classify(CharSequence line) {
+        boolean warning = false;
+        boolean debug = false;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            switch (Character.toUpperCase(line.charAt(i))) {
+                case 'E':
+                    if (matches(line, i, ERROR)) {
+                        return Level.ERROR;
+                    }
+                    break;
+                case 'C':
+                    if (matches(line, i, CRITICAL)) {
+                        return Level.ERROR;
+                    }
+                    break;
+                case 'F':
+                    if (matches(line, i, FAILURE)) {
+                        return Level.ERROR;
+                    }
+                    break;
+                case 'W':
+                    warning = warning || matches(line, i, WARNING);
+                    break;
+                case 'D':
+                    debug = debug || matches(line, i, DEBUG);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return warning ? Level.WARN : debug ? Level.DEBUG : Level.INFO;
+    }
+
+    private static boolean matches(CharSequence line, int start, char[] keyword) {
+        if (start + keyword.length > line.length()) {
+            return false;
+        }
+        for (int i = 1; i < keyword.length; i++) {
+            if (Character.toUpperCase(line.charAt(start + i)) != keyword[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Logs the given line of output at the given level.
+     *
+     * @param logger logger to which to log the line
+     * @param level  level at which to log the line
+     * @param line   line of output
+     */
+    static void log(Logger logger, Level level, String line) {
+        switch (level) {
+            case ERROR:
+                logger.error(line);
+                break;
+            case WARN:
+                logger.warn(line);
+                break;
+            case DEBUG:
+                logger.debug(line);
+                break;
+            default:
+                logger.info(line);
+                break;
+        }
+    }
+}
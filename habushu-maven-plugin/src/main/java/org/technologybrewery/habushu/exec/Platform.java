@@ -104,4 +104,8 @@ public class Platform {
 	return os == OS.Mac;
     }
 
+    public boolean isLinux() {
+	return os == OS.Linux;
+    }
+
 }
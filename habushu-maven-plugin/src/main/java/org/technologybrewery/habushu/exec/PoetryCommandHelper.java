@@ -1,27 +1,41 @@
 package org.technologybrewery.habushu.exec;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
 
 /**
- * Facilitates the execution of Poetry commands.
+ * Facilitates the execution of Poetry commands, either via the Poetry CLI or,
+ * if enabled (see {@link #usePoetryDaemons(PythonToolServers)}), within a
+ * pooled {@link PoetryDaemon}.
  */
 public class PoetryCommandHelper {
 
@@ -30,12 +44,48 @@ public class PoetryCommandHelper {
 
     private static final String extractVersionRegex = "[^0-9\\.]";
 
+    /**
+     * Matches the package operations that Poetry reports while installing, i.e.
+     * {@code - Installing numpy (1.26.0)} or
+     * {@code - Updating numpy (1.25.0 -> 1.26.0)}, capturing the package and the
+     * version being installed.
+     */
+    private static final Pattern PACKAGE_OPERATION = Pattern.compile(
+            "-\\s+(?:Installing|Updating|Downgrading)\\s+(\\S+)\\s+\\((?:\\S+\\s+->\\s+)?([^)\\s]+)\\)");
+
+    private static final String SELF_COMMAND = "self";
+
+    /**
+     * Commands that Poetry executes by replacing its own process (i.e. via
+     * {@code os.execvpe}), which would replace a {@link PoetryDaemon} and lose the
+     * exit code of the command, so are always executed via the Poetry CLI.
+     */
+    private static final Set<String> PROCESS_REPLACING_COMMANDS = new HashSet<>(Arrays.asList("run", "shell", "env"));
+    private static final String STDERR = "stderr";
+
     private File workingDirectory;
+    private PythonToolServers pythonServers;
+    private File poetryInterpreter;
+    private boolean poetryInterpreterResolved;
 
     public PoetryCommandHelper(File workingDirectory) {
         this.workingDirectory = workingDirectory;
     }
 
+    /**
+     * Executes subsequent Poetry commands within the {@link PoetryDaemon}s of the
+     * given build rather than via the Poetry CLI, except for
+     * {@code poetry --version} and {@code poetry self} commands (after which
+     * daemons are restarted, as the Poetry installation may have changed). If a
+     * daemon cannot be used, the Poetry CLI is used, unless the daemon failed
+     * after accepting the command, which may have been partially executed.
+     *
+     * @param pythonServers Python servers of the build
+     */
+    public void usePoetryDaemons(PythonToolServers pythonServers) {
+        this.pythonServers = pythonServers;
+    }
+
     /**
      * Returns a {@link Boolean} and {@link String} {@link Pair} indicating whether
      * Poetry is installed and if so, the version of Poetry that is installed. If
@@ -58,6 +108,16 @@ public class PoetryCommandHelper {
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #getIsPoetryInstalledAndVersion()}, which
+     * executes on a virtual thread where supported (see {@link CommandThreads}).
+     *
+     * @return future installation status and version of Poetry
+     */
+    public CompletableFuture<Pair<Boolean, String>> getIsPoetryInstalledAndVersionAsync() {
+        return CommandThreads.supplyAsync(this::getIsPoetryInstalledAndVersion);
+    }
+
     /**
      * Returns a {@link String} indicating the relative path to the poetry 
      * cache directory. This is equivalent to {@code poetry config cache-dir}.
@@ -68,6 +128,32 @@ public class PoetryCommandHelper {
         return execute(Arrays.asList("config", "cache-dir"));
     }
 
+    /**
+     * Returns Poetry's configuration directory (which contains
+     * {@code config.toml} and {@code auth.toml}), located as Poetry locates it:
+     * {@code POETRY_CONFIG_DIR} if set, otherwise the {@code pypoetry} directory
+     * within the user configuration directory of the platform.
+     *
+     * @return Poetry's configuration directory
+     */
+    public File getPoetryConfigDirectory() {
+        String configDirectory = System.getenv("POETRY_CONFIG_DIR");
+        if (StringUtils.isNotBlank(configDirectory)) {
+            return new File(configDirectory);
+        }
+
+        String home = System.getProperty("user.home");
+        Platform platform = Platform.guess();
+        if (platform.isWindows()) {
+            String appData = System.getenv("APPDATA");
+            return new File(StringUtils.isNotBlank(appData) ? appData : home + "/AppData/Roaming", "pypoetry");
+        } else if (platform.isMac()) {
+            return new File(home, "Library/Application Support/pypoetry");
+        }
+        String xdgConfigHome = System.getenv("XDG_CONFIG_HOME");
+        return new File(StringUtils.isNotBlank(xdgConfigHome) ? xdgConfigHome : home + "/.config", "pypoetry");
+    }
+
     /**
      * Returns whether the specified dependency package is installed within this
      * Poetry project's virtual environment (and pyproject.toml).
@@ -110,8 +196,33 @@ public class PoetryCommandHelper {
         if (logger.isInfoEnabled()) {
             logger.info("Executing Poetry command: {} {}", POETRY_COMMAND, StringUtils.join(arguments, " "));
         }
+        try (BoundedOutputCapture stdout = new BoundedOutputCapture();
+             BoundedOutputCapture stderr = new BoundedOutputCapture()) {
+            Integer exitCode = executeInPoetryDaemon(arguments, null,
+                    (stream, line) -> (STDERR.equals(stream) ? stderr : stdout).append(line + "\n"), null);
+            if (exitCode != null) {
+                if (exitCode != 0) {
+                    throw new HabushuException(stdout.getSummary() + " " + stderr.getSummary());
+                }
+                return stdout.hasText() ? stdout.getText().trim() : stderr.getText().trim();
+            }
+        }
+
         ProcessExecutor executor = createPoetryExecutor(arguments);
-        return executor.executeAndGetResult(logger);
+        String result = executor.executeAndGetResult(logger);
+        restartPoetryDaemonsAfterSelfCommand(arguments);
+        return result;
+    }
+
+    /**
+     * Asynchronous variant of {@link #execute(List)}, which executes on a virtual
+     * thread where supported (see {@link CommandThreads}).
+     *
+     * @param arguments
+     * @return future output of the command
+     */
+    public CompletableFuture<String> executeAsync(List<String> arguments) {
+        return CommandThreads.supplyAsync(() -> execute(arguments));
     }
 
     /**
@@ -129,8 +240,26 @@ public class PoetryCommandHelper {
         if (logger.isInfoEnabled()) {
             logger.info("Executing Poetry command: {} {}", POETRY_COMMAND, StringUtils.join(arguments, " "));
         }
+        Integer exitCode = executeInPoetryDaemonAndLogOutput(arguments, null, null, null);
+        if (exitCode != null) {
+            return exitCode;
+        }
+
         ProcessExecutor executor = createPoetryExecutor(arguments);
-        return executor.executeAndRedirectOutput(logger);
+        exitCode = executor.executeAndRedirectOutput(logger);
+        restartPoetryDaemonsAfterSelfCommand(arguments);
+        return exitCode;
+    }
+
+    /**
+     * Asynchronous variant of {@link #executeAndLogOutput(List)}, which executes on
+     * a virtual thread where supported (see {@link CommandThreads}).
+     *
+     * @param arguments
+     * @return future exit code of the command
+     */
+    public CompletableFuture<Integer> executeAndLogOutputAsync(List<String> arguments) {
+        return CommandThreads.supplyAsync(() -> executeAndLogOutput(arguments));
     }
 
     /**
@@ -147,8 +276,13 @@ public class PoetryCommandHelper {
         if (logger.isInfoEnabled()) {
             logger.info("Executing Poetry command: {} {}", POETRY_COMMAND, StringUtils.join(arguments, " "));
         }
+        if (executeInPoetryDaemonAndLogOutput(arguments, environmentVariables, null, null) != null) {
+            return;
+        }
+
         ProcessExecutor executor = createPoetryExecutor(arguments, environmentVariables);
         executor.executeAndRedirectOutput(logger);
+        restartPoetryDaemonsAfterSelfCommand(arguments);
     }
 
     /**
@@ -164,15 +298,37 @@ public class PoetryCommandHelper {
      */
     public int executeWithSensitiveArgsAndLogOutput(List<Pair<String, Boolean>> argAndIsSensitivePairs)
             throws MojoExecutionException {
+        return executeWithSensitiveArgsAndLogOutput(argAndIsSensitivePairs, null);
+    }
+
+    /**
+     * Similar to {@link #executeWithSensitiveArgsAndLogOutput(List)}, except each
+     * line of output is also passed to the given listener, which allows callers
+     * to inspect the output of failed commands.
+     *
+     * @param argAndIsSensitivePairs
+     * @param outputListener
+     * @return
+     * @throws MojoExecutionException
+     */
+    public int executeWithSensitiveArgsAndLogOutput(List<Pair<String, Boolean>> argAndIsSensitivePairs,
+                                                    Consumer<String> outputListener) throws MojoExecutionException {
         if (logger.isInfoEnabled()) {
             List<String> argsWithSensitiveArgsMasked = argAndIsSensitivePairs.stream()
                     .map(pair -> pair.getRight() ? "XXXX" : pair.getLeft()).collect(Collectors.toList());
             logger.info("Executing Poetry command: {} {}", POETRY_COMMAND,
                     StringUtils.join(argsWithSensitiveArgsMasked, " "));
         }
-        ProcessExecutor executor = createPoetryExecutor(
-                argAndIsSensitivePairs.stream().map(Pair::getLeft).collect(Collectors.toList()));
-        return executor.executeAndRedirectOutput(logger);
+        List<String> arguments = argAndIsSensitivePairs.stream().map(Pair::getLeft).collect(Collectors.toList());
+        Integer exitCode = executeInPoetryDaemonAndLogOutput(arguments, null, outputListener, null);
+        if (exitCode != null) {
+            return exitCode;
+        }
+
+        ProcessExecutor executor = createPoetryExecutor(arguments);
+        executor.setSensitiveArguments(argAndIsSensitivePairs.stream().filter(Pair::getRight).map(Pair::getLeft)
+                .filter(StringUtils::isNotEmpty).collect(Collectors.toList()));
+        return executor.executeAndRedirectOutput(logger, outputListener);
     }
 
     /**
@@ -191,8 +347,7 @@ public class PoetryCommandHelper {
      * @return
      */
     public Integer executePoetryCommandAndLogAfterTimeout(List<String> arguments, int timeout, TimeUnit timeUnit) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<Integer> future = executor.submit(() -> this.executeAndLogOutput(arguments));
+        Future<Integer> future = executeAndLogOutputAsync(arguments);
         try {
             return future.get(timeout, timeUnit);
         } catch (TimeoutException e) {
@@ -206,8 +361,96 @@ public class PoetryCommandHelper {
         } catch (Exception e) {
             throw new RuntimeException(String.format("Error occurred while performing Poetry command: poetry %s",
                     StringUtils.join(arguments, " ")), e);
-        } finally {
-            executor.shutdown();
+        }
+    }
+
+    /**
+     * Executes a Poetry command with the given arguments via the Poetry CLI,
+     * logging its output, and stops it if it stalls (see
+     * {@link ProcessExecutor#setStallTimeout(Duration)}). The command may be
+     * retried once after a stall, in which case the cache entries of the package
+     * that Poetry was last installing (if any) are cleared first, as a stall is
+     * often caused by a corrupt or partially downloaded entry. If the command is
+     * executed within a {@link PoetryDaemon}, the daemon is watched for stalls
+     * instead, and is stopped and discarded if the command stalls, so that the
+     * command is retried within a new daemon.
+     *
+     * @param arguments       arguments of the command
+     * @param stallTimeout    time without output or CPU progress after which the
+     *                        command is stopped, or {@code null} to wait for it
+     *                        indefinitely
+     * @param retryAfterStall whether to retry the command once if it stalls
+     * @return process exit code
+     * @throws MojoExecutionException
+     */
+    public int executeWithStallDetection(List<String> arguments, Duration stallTimeout, boolean retryAfterStall)
+            throws MojoExecutionException {
+        if (stallTimeout == null) {
+            return executeAndLogOutput(arguments);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Executing Poetry command: {} {}", POETRY_COMMAND, StringUtils.join(arguments, " "));
+        }
+        AtomicReference<Pair<String, String>> lastPackage = new AtomicReference<>();
+        Consumer<String> packageTracker = line -> {
+            Matcher matcher = PACKAGE_OPERATION.matcher(line);
+            if (matcher.find()) {
+                lastPackage.set(new ImmutablePair<>(matcher.group(1), matcher.group(2)));
+            }
+        };
+        try {
+            return executeAndLogOutput(arguments, stallTimeout, packageTracker);
+        } catch (ProcessStalledException e) {
+            if (!retryAfterStall) {
+                throw e;
+            }
+            logger.warn("{} - retrying once", e.getMessage());
+        }
+
+        Pair<String, String> stalledPackage = lastPackage.get();
+        if (stalledPackage != null) {
+            clearCachedPackage(stalledPackage.getLeft(), stalledPackage.getRight());
+        }
+        return executeAndLogOutput(arguments, stallTimeout, null);
+    }
+
+    private int executeAndLogOutput(List<String> arguments, Duration stallTimeout, Consumer<String> outputListener) {
+        Integer exitCode = executeInPoetryDaemonAndLogOutput(arguments, null, outputListener, stallTimeout);
+        if (exitCode != null) {
+            return exitCode;
+        }
+        ProcessExecutor executor = createPoetryExecutor(arguments);
+        executor.setStallTimeout(stallTimeout);
+        return executor.executeAndRedirectOutput(logger, outputListener);
+    }
+
+    /**
+     * Clears the entries of the given package version from each of Poetry's
+     * repository caches, leaving the rest of the caches intact.
+     *
+     * @param name    name of the package
+     * @param version version of the package
+     */
+    public void clearCachedPackage(String name, String version) {
+        String caches;
+        try {
+            caches = execute(Arrays.asList("cache", "list"));
+        } catch (Exception e) {
+            logger.warn("Could not list Poetry caches to clear {} {}: {}", name, version, e.getMessage());
+            return;
+        }
+        for (String cache : caches.split("\\R")) {
+            cache = cache.trim();
+            // skips messages such as "No caches found":
+            if (cache.isEmpty() || cache.contains(" ")) {
+                continue;
+            }
+            try {
+                logger.info("Clearing {} {} from Poetry cache {}", name, version, cache);
+                execute(Arrays.asList("cache", "clear", cache + ":" + name + ":" + version));
+            } catch (Exception e) {
+                logger.debug("Could not clear {} {} from Poetry cache {}", name, version, cache, e);
+            }
         }
     }
 
@@ -226,6 +469,166 @@ public class PoetryCommandHelper {
         return this.executeAndLogOutput(args);
     }
 
+    /**
+     * Executes a Poetry command within a {@link PoetryDaemon}, logging its output
+     * as {@link ProcessExecutor#executeAndRedirectOutput(Logger, Consumer)} would.
+     *
+     * @return the exit code of the command, or {@code null} if it must be
+     * executed via the Poetry CLI instead
+     */
+    private Integer executeInPoetryDaemonAndLogOutput(List<String> arguments, Map<String, String> environmentVariables,
+                                                      Consumer<String> outputListener, Duration stallTimeout) {
+        Integer exitCode;
+        OutputStream output = new ProcessExecutor.LoggerOutputStream(logger, 0, outputListener);
+        try {
+            exitCode = executeInPoetryDaemon(arguments, environmentVariables,
+                    (stream, line) -> output.write((line + "\n").getBytes(StandardCharsets.UTF_8)), stallTimeout);
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+        if (exitCode != null && exitCode != 0) {
+            throw new HabushuException(String.format("Could not invoke command! Poetry exited with code %s. "
+                    + "See output above.", exitCode));
+        }
+        return exitCode;
+    }
+
+    /**
+     * Executes a Poetry command within a {@link PoetryDaemon} if enabled. If a
+     * stall timeout is given, the daemon is watched for stalls while it executes
+     * the command, as {@link ProcessExecutor#setStallTimeout(Duration)} would
+     * watch the Poetry CLI, and is stopped and discarded if the command stalls.
+     *
+     * @return the exit code of the command, or {@code null} if it must be
+     * executed via the Poetry CLI instead
+     * @throws ProcessStalledException if the command stalled
+     */
+    private Integer executeInPoetryDaemon(List<String> arguments, Map<String, String> environmentVariables,
+                                          AbstractPythonServer.OutputHandler outputHandler, Duration stallTimeout) {
+        if (pythonServers == null || arguments.isEmpty() || arguments.get(0).startsWith("-")
+                || SELF_COMMAND.equals(arguments.get(0)) || PROCESS_REPLACING_COMMANDS.contains(arguments.get(0))) {
+            return null;
+        }
+        File interpreter = getPoetryInterpreter();
+        if (interpreter == null) {
+            logger.debug("Could not find the Python interpreter of Poetry - executing Poetry command via the CLI");
+            return null;
+        }
+
+        PoetryDaemon daemon;
+        try {
+            daemon = pythonServers.acquirePoetryDaemon(interpreter, workingDirectory);
+        } catch (IOException e) {
+            logger.warn("Poetry daemon failed to start - executing Poetry command via the CLI: {}", e.getMessage());
+            return null;
+        }
+
+        StallWatchdog watchdog = stallTimeout != null ? new StallWatchdog(stallTimeout, getStallWatchdogEnvironment(),
+                logger) : null;
+        boolean released = false;
+        try {
+            int exitCode = executeGoverned(daemon, arguments, environmentVariables, outputHandler, watchdog);
+            pythonServers.releasePoetryDaemon(daemon);
+            released = true;
+            return exitCode;
+        } catch (PythonServerJobException e) {
+            if (watchdog != null && watchdog.stop()) {
+                throw new ProcessStalledException(String.format("%s %s was stopped after it wrote no output and used "
+                        + "no CPU time for %s s", POETRY_COMMAND, arguments.get(0), stallTimeout.getSeconds()));
+            }
+            // the command may have been partially executed (i.e. already published), so it is not executed again:
+            throw new HabushuException("Poetry daemon failed while executing the Poetry command - see output above",
+                    e);
+        } catch (IOException e) {
+            logger.warn("Poetry daemon failed - executing Poetry command via the CLI: {}", e.getMessage());
+            return null;
+        } finally {
+            if (!released) {
+                pythonServers.discard(daemon);
+            }
+        }
+    }
+
+    /**
+     * Executes a command within the given daemon while holding the
+     * {@link ProcessGovernor} permits that the Poetry CLI would acquire for it,
+     * so that heavy commands are throttled alike however they are executed.
+     */
+    private int executeGoverned(PoetryDaemon daemon, List<String> arguments, Map<String, String> environmentVariables,
+                                AbstractPythonServer.OutputHandler outputHandler, StallWatchdog watchdog)
+            throws IOException {
+        ProcessGovernor governor = ProcessGovernor.get();
+        if (governor == null) {
+            return executeWatched(daemon, arguments, environmentVariables, outputHandler, watchdog);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(POETRY_COMMAND);
+        command.addAll(arguments);
+        try (ProcessGovernor.Permits permits = governor.acquire(command.toArray(new String[0]))) {
+            return executeWatched(daemon, arguments, environmentVariables, outputHandler, watchdog);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HabushuException("Interrupted while waiting to execute Poetry command", e);
+        }
+    }
+
+    /**
+     * Executes a command within the given daemon, watching the daemon for stalls
+     * with the given watchdog, if any, for as long as the command runs.
+     */
+    private int executeWatched(PoetryDaemon daemon, List<String> arguments, Map<String, String> environmentVariables,
+                               AbstractPythonServer.OutputHandler outputHandler, StallWatchdog watchdog)
+            throws IOException {
+        if (watchdog == null) {
+            return daemon.execute(arguments, workingDirectory, environmentVariables, outputHandler);
+        }
+        watchdog.start(daemon.getProcessHandle());
+        try {
+            return daemon.execute(arguments, workingDirectory, environmentVariables, (stream, line) -> {
+                watchdog.recordProgress();
+                outputHandler.accept(stream, line);
+            });
+        } finally {
+            watchdog.stop();
+        }
+    }
+
+    private static Map<String, String> getStallWatchdogEnvironment() {
+        Map<String, String> environment = new HashMap<>(System.getenv());
+        environment.put(StallWatchdog.ENABLE_FAULT_HANDLER, "1");
+        return environment;
+    }
+
+    private void restartPoetryDaemonsAfterSelfCommand(List<String> arguments) {
+        if (pythonServers != null && !arguments.isEmpty() && SELF_COMMAND.equals(arguments.get(0))) {
+            pythonServers.restartPoetryDaemons();
+        }
+    }
+
+    /**
+     * Returns the Python interpreter of the Poetry installation (i.e.
+     * {@code <poetry-venv>/bin/python}), which is found once per helper.
+     *
+     * @return the interpreter, or {@code null} if it could not be determined
+     */
+    public synchronized File getPoetryInterpreter() {
+        if (!poetryInterpreterResolved) {
+            poetryInterpreterResolved = true;
+            poetryInterpreter = findPoetryInterpreter();
+        }
+        return poetryInterpreter;
+    }
+
+    /**
+     * Finds the Python interpreter of the Poetry installation used by
+     * {@link PoetryDaemon}s.
+     *
+     * @return the interpreter, or {@code null} if it could not be determined
+     */
+    protected File findPoetryInterpreter() {
+        return PoetryDaemon.findPoetryInterpreter(System.getenv("PATH"));
+    }
+
     protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
         List<String> fullCommandArgs = new ArrayList<>();
         fullCommandArgs.add(POETRY_COMMAND);
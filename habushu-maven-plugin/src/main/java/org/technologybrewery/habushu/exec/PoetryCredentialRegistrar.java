@@ -0,0 +1,222 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.util.FileSystemLock;
+import org.technologybrewery.habushu.util.HabushuUtil;
+import org.technologybrewery.habushu.util.TomlUtils;
+
+import com.electronwill.nightconfig.core.file.FileConfig;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Registers repository credentials with Poetry (i.e. via
+ * {@code poetry config http-basic.<repoId> <username> <password>}) only when
+ * they differ from those last registered. Each registration is recorded in
+ * {@code <state-dir>/http-basic.<repoId>.json} as a salted PBKDF2 fingerprint
+ * of the repository id, username, and password, so that the password itself is
+ * never stored and cannot feasibly be recovered from the state. As the state
+ * lives outside of Poetry's configuration, recorded credentials are only
+ * trusted while {@code auth.toml} in Poetry's configuration directory still
+ * configures {@code http-basic.<repoId>} with the same username, so that they
+ * are registered again once Poetry's configuration is removed (or the state is
+ * restored onto a machine on which they were never registered).
+ * <p>
+ * As Poetry's configuration (and keyring) is shared by every build run by the
+ * user, credentials are registered while holding a {@link FileSystemLock} that
+ * serializes all registrations, and the state is checked again once the lock is
+ * acquired so that credentials registered by a concurrent build are not
+ * registered twice. Passwords changed outside of Habushu (i.e. by running
+ * {@code poetry config} directly) are not detected; deleting the state file
+ * forces them to be registered again.
+ */
+public final class PoetryCredentialRegistrar {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoetryCredentialRegistrar.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private static final String FINGERPRINT_ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    private static final int FINGERPRINT_ITERATIONS = 10_000;
+
+    private static final int FINGERPRINT_BITS = 256;
+
+    private static final String SALT = "salt";
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private static final String AUTH_CONFIG_FILE = "auth.toml";
+
+    private final PoetryCommandHelper poetryHelper;
+    private final File stateDirectory;
+    private final Duration lockTimeout;
+
+    /**
+     * New instance.
+     *
+     * @param poetryHelper   helper with which to execute {@code poetry config}
+     * @param stateDirectory directory in which to record registered credentials
+     * @param lockTimeout    maximum time to wait for another build registering
+     *                       credentials
+     */
+    public PoetryCredentialRegistrar(PoetryCommandHelper poetryHelper, File stateDirectory, Duration lockTimeout) {
+        this.poetryHelper = poetryHelper;
+        this.stateDirectory = stateDirectory;
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Registers the given credentials of a repository with Poetry, unless they
+     * are those last registered.
+     *
+     * @param repoId   id of the repository
+     * @param username username with which to authenticate
+     * @param password password with which to authenticate
+     * @return whether the credentials were registered
+     * @throws MojoExecutionException if the credentials could not be registered
+     */
+    public boolean register(String repoId, String username, String password) throws MojoExecutionException {
+        if (isRegistered(repoId, username, password)) {
+            return false;
+        }
+
+        try (FileSystemLock lock = FileSystemLock.acquire(stateDirectory, "poetry-config", "Poetry configuration lock",
+                lockTimeout)) {
+            if (isRegistered(repoId, username, password)) {
+                return false;
+            }
+
+            List<Pair<String, Boolean>> credentialConfigurationArgs = new ArrayList<>();
+            credentialConfigurationArgs.add(new ImmutablePair<>("config", false));
+            credentialConfigurationArgs.add(new ImmutablePair<>("http-basic." + repoId, false));
+            credentialConfigurationArgs.add(new ImmutablePair<>(username, false));
+            credentialConfigurationArgs.add(new ImmutablePair<>(password, true));
+            poetryHelper.executeWithSensitiveArgsAndLogOutput(credentialConfigurationArgs);
+
+            writeState(repoId, username, password);
+            return true;
+        }
+    }
+
+    private boolean isRegistered(String repoId, String username, String password) {
+        Map<String, String> state = readState(repoId);
+        if (state == null || state.get(SALT) == null || state.get(FINGERPRINT) == null) {
+            return false;
+        }
+        try {
+            byte[] salt = Base64.getDecoder().decode(state.get(SALT));
+            byte[] fingerprint = Base64.getDecoder().decode(state.get(FINGERPRINT));
+            if (!MessageDigest.isEqual(fingerprint, fingerprint(repoId, username, password, salt))) {
+                return false;
+            }
+        } catch (IllegalArgumentException e) {
+            logger.debug("Could not decode registered credentials of {}", repoId, e);
+            return false;
+        }
+
+        if (!isConfiguredInPoetry(repoId, username)) {
+            logger.info("Credentials for {} were registered, but are no longer configured in Poetry", repoId);
+            return false;
+        }
+        logger.info("Credentials for {} are already registered with Poetry", repoId);
+        return true;
+    }
+
+    /**
+     * Returns whether {@code auth.toml} in Poetry's configuration directory
+     * configures {@code http-basic.<repoId>} with the given username (the
+     * password itself may be held by the keyring instead).
+     */
+    private boolean isConfiguredInPoetry(String repoId, String username) {
+        File authConfig = new File(poetryHelper.getPoetryConfigDirectory(), AUTH_CONFIG_FILE);
+        if (!authConfig.isFile()) {
+            return false;
+        }
+        try (FileConfig config = TomlUtils.loadTomlFile(authConfig)) {
+            Object configuredUsername = config.get(Arrays.asList("http-basic", repoId, "username"));
+            return username.equals(configuredUsername);
+        } catch (RuntimeException e) {
+            logger.debug("Could not read the credentials of {} configured in {}", repoId, authConfig, e);
+            return false;
+        }
+    }
+
+    private static byte[] fingerprint(String repoId, String username, String password, byte[] salt) {
+        char[] credentials = (repoId + '\n' + username + '\n' + password).toCharArray();
+        PBEKeySpec keySpec = new PBEKeySpec(credentials, salt, FINGERPRINT_ITERATIONS, FINGERPRINT_BITS);
+        try {
+            return SecretKeyFactory.getInstance(FINGERPRINT_ALGORITHM).generateSecret(keySpec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new HabushuException("Could not fingerprint credentials of " + repoId, e);
+        } finally {
+            keySpec.clearPassword();
+        }
+    }
+
+    private File getStateFile(String repoId) {
+        return new File(stateDirectory, "http-basic." + repoId + ".json");
+    }
+
+    private Map<String, String> readState(String repoId) {
+        File stateFile = getStateFile(repoId);
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(stateFile, new TypeReference<Map<String, String>>() {
+            });
+        } catch (IOException e) {
+            logger.debug("Could not read registered credentials of {} from {}", repoId, stateFile, e);
+            return null;
+        }
+    }
+
+    private void writeState(String repoId, String username, String password) {
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        Map<String, String> state = new LinkedHashMap<>();
+        state.put(SALT, Base64.getEncoder().encodeToString(salt));
+        state.put(FINGERPRINT, Base64.getEncoder().encodeToString(fingerprint(repoId, username, password, salt)));
+
+        Path target = getStateFile(repoId).toPath();
+        try {
+            Files.createDirectories(stateDirectory.toPath());
+            Path temporaryFile = Files.createTempFile(stateDirectory.toPath(), ".http-basic", ".tmp");
+            try {
+                objectMapper.writeValue(temporaryFile.toFile(), state);
+                HabushuUtil.moveAtomically(temporaryFile, target);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not record registered credentials of {} in {}", repoId, target, e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Long-lived Python worker, running with Poetry's own interpreter, that
+ * executes Poetry commands in-process through Poetry's console application
+ * (see {@code poetry_daemon.py}), so that the cost of starting Poetry and
+ * importing its dependencies is only paid once per build rather than once per
+ * command. The Poetry instance of each project is kept warm between commands
+ * for as long as its {@code pyproject.toml} and {@code poetry.lock} are
+ * unchanged.
+ * <p>
+ * Daemons are pooled via {@link PythonToolServers} and used by
+ * {@link PoetryCommandHelper} when enabled (i.e. {@code habushu.usePoetryDaemon}).
+ */
+public class PoetryDaemon extends AbstractPythonServer {
+
+    private static final String SCRIPT_RESOURCE = "poetry_daemon.py";
+    private static final Pattern SHEBANG_EXEC_LINE = Pattern.compile("^'''exec' '?\"?([^\"' ]+)");
+
+    private final File interpreter;
+    private final int generation;
+    private File lastProjectDirectory;
+
+    private PoetryDaemon(File interpreter, File workingDirectory, int generation) throws IOException {
+        super(interpreter.getAbsoluteFile().getParentFile().getParentFile(), command -> {
+            List<String> fullCommand = new ArrayList<>(command);
+            fullCommand.set(0, interpreter.getAbsolutePath());
+            // enables stacks to be captured if a command stalls (see PoetryCommandHelper):
+            return new ProcessExecutor(workingDirectory, fullCommand, Platform.guess(),
+                    Collections.singletonMap(StallWatchdog.ENABLE_FAULT_HANDLER, "1"));
+        }, SCRIPT_RESOURCE, Collections.emptyList());
+        this.interpreter = interpreter;
+        this.generation = generation;
+        logger.debug("Poetry daemon is running Poetry {}", getReadyMessage().path("version").asText());
+    }
+
+    /**
+     * Starts a daemon with the given Poetry interpreter, waiting until it has
+     * imported Poetry.
+     *
+     * @param interpreter      Python interpreter of the Poetry installation (see
+     *                         {@link #findPoetryInterpreter(String)})
+     * @param workingDirectory directory in which to start the daemon
+     * @param generation       generation of the Poetry installation (see
+     *                         {@link PythonToolServers#restartPoetryDaemons()})
+     * @return the started daemon
+     * @throws IOException if the daemon could not be started (i.e. the installed
+     *                     version of Poetry is not supported)
+     */
+    static PoetryDaemon start(File interpreter, File workingDirectory, int generation) throws IOException {
+        return new PoetryDaemon(interpreter, workingDirectory, generation);
+    }
+
+    /**
+     * Finds the Python interpreter of the Poetry installation that would be
+     * executed by the {@code poetry} command, which is read from the shebang of
+     * the {@code poetry} launcher script found on the given {@code PATH}.
+     *
+     * @param path value of the {@code PATH} environment variable
+     * @return the interpreter, or {@code null} if it could not be determined
+     * (i.e. Poetry is not installed, or is launched by a native executable)
+     */
+    public static File findPoetryInterpreter(String path) {
+        if (StringUtils.isBlank(path)) {
+            return null;
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            File launcher = new File(directory, "poetry");
+            if (StringUtils.isNotBlank(directory) && launcher.isFile()) {
+                File interpreter = readShebangInterpreter(launcher);
+                return interpreter != null && interpreter.isFile() && interpreter.canExecute() ? interpreter : null;
+            }
+        }
+        return null;
+    }
+
+    private static File readShebangInterpreter(File launcher) {
+        try (BufferedReader reader = Files.newBufferedReader(launcher.toPath(), StandardCharsets.ISO_8859_1)) {
+            String shebang = reader.readLine();
+            if (shebang == null || !shebang.startsWith("#!")) {
+                return null;
+            }
+            String interpreter = shebang.substring(2).trim();
+            if (interpreter.equals("/bin/sh")) {
+                // launchers whose interpreter path is too long for a shebang re-execute themselves:
+                String execLine = reader.readLine();
+                Matcher matcher = execLine != null ? SHEBANG_EXEC_LINE.matcher(execLine) : null;
+                return matcher != null && matcher.find() ? new File(matcher.group(1)) : null;
+            }
+            // /usr/bin/env python3 and the like do not identify Poetry's interpreter:
+            return interpreter.contains(" ") || !interpreter.contains("python") ? null : new File(interpreter);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public File getInterpreter() {
+        return interpreter;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the project directory of the last command executed by the daemon,
+     * whose Poetry instance is likely to still be warm.
+     *
+     * @return project directory, or {@code null} if no command has been executed
+     */
+    public File getLastProjectDirectory() {
+        return lastProjectDirectory;
+    }
+
+    /**
+     * Executes a Poetry command within the daemon and returns its exit code.
+     *
+     * @param arguments            arguments of the command (i.e. {@code install})
+     * @param workingDirectory     directory in which to execute the command
+     * @param environmentVariables additional environment variables, may be
+     *                             {@code null}; variables given a {@code null}
+     *                             value are unset
+     * @param outputHandler        receives each line of output of the command
+     * @return exit code of the command
+     * @throws IOException if the daemon fails while executing the command, in
+     *                     which case it should be discarded
+     */
+    public int execute(List<String> arguments, File workingDirectory, Map<String, String> environmentVariables,
+                       OutputHandler outputHandler) throws IOException {
+        // arguments are not logged, as they may be sensitive (see PoetryCommandHelper):
+        logger.debug("Executing Poetry command in daemon with interpreter {}", interpreter);
+
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("args", arguments);
+        job.put("cwd", workingDirectory.getAbsolutePath());
+        job.put("env", environmentVariables != null ? environmentVariables : Collections.emptyMap());
+        lastProjectDirectory = workingDirectory.getAbsoluteFile();
+        return executeJob(job, outputHandler);
+    }
+}
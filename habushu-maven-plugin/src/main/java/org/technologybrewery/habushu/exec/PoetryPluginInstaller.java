@@ -0,0 +1,224 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.util.FileSystemLock;
+import org.technologybrewery.habushu.util.HabushuUtil;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Installs plugins into Poetry's own environment (i.e. via
+ * {@code poetry self add}) without resolving them on every build. The version
+ * installed by each plugin is recorded in {@code <state-dir>/<plugin>.json},
+ * and plugins are only installed again when a different version is requested
+ * or, for the {@value #LATEST} version, once the check interval has elapsed
+ * since the last check. As the state lives outside of Poetry's environment, a
+ * recorded plugin is only trusted while its {@code .dist-info} directory is
+ * present in the {@code site-packages} of Poetry's environment, so that plugins
+ * are installed again once Poetry is reinstalled (or the state is restored onto
+ * a machine whose Poetry does not have them).
+ * <p>
+ * As Poetry's environment is shared by every build run by the user, plugins are
+ * installed while holding a {@link FileSystemLock} on the plugin's state, and
+ * the state is checked again once the lock is acquired so that a plugin
+ * installed by a concurrent build is not installed twice.
+ */
+public final class PoetryPluginInstaller {
+
+    /**
+     * Version that requests the latest release of a plugin.
+     */
+    public static final String LATEST = "latest";
+
+    private static final Logger logger = LoggerFactory.getLogger(PoetryPluginInstaller.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String VERSION = "version";
+
+    private static final String CHECKED_AT = "checkedAt";
+
+    private static final String DIST_INFO_SUFFIX = ".dist-info";
+
+    private final PoetryCommandHelper poetryHelper;
+    private final File stateDirectory;
+    private final Duration checkInterval;
+    private final Duration lockTimeout;
+
+    /**
+     * New instance.
+     *
+     * @param poetryHelper   helper with which to execute {@code poetry self add}
+     * @param stateDirectory directory in which to record installed plugins
+     * @param checkInterval  minimum time between checks for updates to plugins
+     *                       installed at their {@value #LATEST} version
+     * @param lockTimeout    maximum time to wait for another build installing
+     *                       the same plugin
+     */
+    public PoetryPluginInstaller(PoetryCommandHelper poetryHelper, File stateDirectory, Duration checkInterval,
+                                 Duration lockTimeout) {
+        this.poetryHelper = poetryHelper;
+        this.stateDirectory = stateDirectory;
+        this.checkInterval = checkInterval;
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Installs the given version of a plugin, unless it was already installed (or,
+     * for the {@value #LATEST} version, checked for updates within the check
+     * interval).
+     *
+     * @param plugin  name of the plugin
+     * @param version version to install, or {@value #LATEST} (or blank) for the
+     *                latest release
+     * @return whether the plugin was installed
+     * @throws MojoExecutionException if the plugin could not be installed
+     */
+    public boolean install(String plugin, String version) throws MojoExecutionException {
+        String requestedVersion = StringUtils.defaultIfBlank(version, LATEST);
+        if (isInstalled(plugin, requestedVersion)) {
+            return false;
+        }
+
+        try (FileSystemLock lock = FileSystemLock.acquire(stateDirectory, plugin, "Poetry plugin lock", lockTimeout)) {
+            if (isInstalled(plugin, requestedVersion)) {
+                return false;
+            }
+            poetryHelper.installPoetryPlugin(plugin + "@" + requestedVersion);
+            writeState(plugin, requestedVersion);
+            return true;
+        }
+    }
+
+    private boolean isInstalled(String plugin, String requestedVersion) {
+        Map<String, String> state = readState(plugin);
+        if (state == null || !requestedVersion.equals(state.get(VERSION))) {
+            return false;
+        }
+        if (!isPresentInPoetryEnvironment(plugin)) {
+            logger.info("{} is recorded as installed, but is not present in Poetry's environment", plugin);
+            return false;
+        }
+        if (!LATEST.equals(requestedVersion)) {
+            logger.debug("{} {} already installed", plugin, requestedVersion);
+            return true;
+        }
+
+        Instant checkedAt;
+        try {
+            checkedAt = Instant.parse(StringUtils.defaultString(state.get(CHECKED_AT)));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        Instant nextCheck = checkedAt.plus(checkInterval);
+        if (Instant.now().isBefore(nextCheck)) {
+            logger.info("Skipping check for updates to {} until {} (last checked at {})", plugin, nextCheck, checkedAt);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the {@code .dist-info} directory of the given plugin is
+     * present in the {@code site-packages} of Poetry's environment. If Poetry's
+     * environment cannot be found, the plugin is not assumed to be present.
+     */
+    private boolean isPresentInPoetryEnvironment(String plugin) {
+        File interpreter = poetryHelper.getPoetryInterpreter();
+        if (interpreter == null || interpreter.getParentFile() == null
+                || interpreter.getParentFile().getParentFile() == null) {
+            logger.debug("Could not find Poetry's environment to check for {}", plugin);
+            return false;
+        }
+
+        String normalizedPlugin = normalizeName(plugin);
+        for (File sitePackages : getSitePackagesDirectories(interpreter.getParentFile().getParentFile())) {
+            File[] distInfos = sitePackages.listFiles(file -> file.isDirectory()
+                    && file.getName().endsWith(DIST_INFO_SUFFIX));
+            if (distInfos == null) {
+                continue;
+            }
+            for (File distInfo : distInfos) {
+                // i.e. poetry_monorepo_dependency_plugin-1.2.0.dist-info:
+                String name = StringUtils.substringBeforeLast(
+                        StringUtils.removeEnd(distInfo.getName(), DIST_INFO_SUFFIX), "-");
+                if (normalizedPlugin.equals(normalizeName(name))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<File> getSitePackagesDirectories(File environment) {
+        List<File> sitePackagesDirectories = new ArrayList<>();
+        // Windows virtual environments:
+        sitePackagesDirectories.add(new File(environment, "Lib/site-packages"));
+        File[] pythonLibraries = new File(environment, "lib").listFiles(file -> file.getName().startsWith("python"));
+        if (pythonLibraries != null) {
+            for (File pythonLibrary : pythonLibraries) {
+                sitePackagesDirectories.add(new File(pythonLibrary, "site-packages"));
+            }
+        }
+        return sitePackagesDirectories;
+    }
+
+    private static String normalizeName(String name) {
+        return name.replaceAll("[-_.]+", "-").toLowerCase(Locale.ROOT);
+    }
+
+    private File getStateFile(String plugin) {
+        return new File(stateDirectory, plugin + ".json");
+    }
+
+    private Map<String, String> readState(String plugin) {
+        File stateFile = getStateFile(plugin);
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(stateFile, new TypeReference<Map<String, String>>() {
+            });
+        } catch (IOException e) {
+            logger.debug("Could not read installed state of {} from {}", plugin, stateFile, e);
+            return null;
+        }
+    }
+
+    private void writeState(String plugin, String version) {
+        Map<String, String> state = new LinkedHashMap<>();
+        state.put(VERSION, version);
+        state.put(CHECKED_AT, Instant.now().toString());
+
+        Path target = getStateFile(plugin).toPath();
+        try {
+            Files.createDirectories(stateDirectory.toPath());
+            Path temporaryFile = Files.createTempFile(stateDirectory.toPath(), "." + plugin, ".tmp");
+            try {
+                objectMapper.writeValue(temporaryFile.toFile(), state);
+                HabushuUtil.moveAtomically(temporaryFile, target);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not record installed state of {} in {}", plugin, target, e);
+        }
+    }
+}
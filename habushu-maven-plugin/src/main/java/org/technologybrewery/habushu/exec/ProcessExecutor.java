@@ -1,13 +1,21 @@
 package org.technologybrewery.habushu.exec;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
@@ -18,9 +26,13 @@ import org.apache.commons.exec.Executor;
 import org.apache.commons.exec.LogOutputStream;
 import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.commons.exec.ShutdownHookProcessDestroyer;
+import org.apache.commons.exec.StreamPumper;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.trace.BuildTracer;
+import org.technologybrewery.habushu.trace.ProcessExecutionEvent;
 import org.slf4j.Logger;
 
 /**
@@ -32,9 +44,15 @@ import org.slf4j.Logger;
 public class ProcessExecutor {
     private static final String PATH_ENV_VAR = "PATH";
 
+    private static volatile boolean asynchronousLogging;
+
     private Map<String, String> environment;
     private CommandLine commandLine;
     private Executor executor;
+    private Set<String> sensitiveArguments = Collections.emptySet();
+    private volatile CpuTimeSampler cpuTimeSampler;
+    private Duration stallTimeout;
+    private volatile StallWatchdog stallWatchdog;
 
     public ProcessExecutor(File workingDirectory, List<String> command, Platform platform,
                            Map<String, String> additionalEnvironment) {
@@ -53,64 +71,242 @@ public class ProcessExecutor {
         this.executor = createExecutor(workingDirectory, timeoutInSeconds);
     }
 
-    public String executeAndGetResult(final Logger logger) {
-        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    /**
+     * Sets whether the output of commands executed with
+     * {@link #executeAndRedirectOutput(Logger, Consumer)} is logged on a separate
+     * thread (see {@link AsyncLogSink}), so that verbose output is drained from
+     * the process without waiting on the logger.
+     *
+     * @param enabled whether to log output asynchronously
+     */
+    public static void setAsynchronousLogging(boolean enabled) {
+        asynchronousLogging = enabled;
+    }
 
-        int exitValue = -1;
-        try {
-            exitValue = execute(logger, stdout, stderr);
-        } catch (Throwable e) {
-            displayProcessOutputForException(stdout, logger);
-            displayProcessOutputForException(stderr, logger);
-            throw new HabushuException("Could not invoke command! See output above.", e);
-        }
-        if (exitValue == 0) {
-            String result = stdout.toString().trim();
-            if (StringUtils.isBlank(result)) {
-                result = stderr.toString().trim();
+    /**
+     * Stops the command if it stalls: if it neither writes output nor uses CPU
+     * time for longer than the given timeout, the stack of the (Python) process
+     * is logged and the process is killed, upon which
+     * {@link ProcessStalledException} is thrown (see {@link StallWatchdog}).
+     *
+     * @param stallTimeout time without output or CPU progress after which the
+     *                     command is stopped
+     */
+    public void setStallTimeout(Duration stallTimeout) {
+        this.stallTimeout = stallTimeout;
+        environment.putIfAbsent(StallWatchdog.ENABLE_FAULT_HANDLER, "1");
+    }
+
+    /**
+     * Executes the command and returns its stdout (or its stderr, if nothing was
+     * written to stdout). Output is captured with bounded memory use (see
+     * {@link BoundedOutputCapture}), and only the start and end of the output is
+     * included in errors.
+     *
+     * @param logger logger to which output is written if the command fails
+     * @return trimmed output of the command
+     */
+    public String executeAndGetResult(final Logger logger) {
+        try (BoundedOutputCapture stdout = new BoundedOutputCapture();
+             BoundedOutputCapture stderr = new BoundedOutputCapture()) {
+            int exitValue = -1;
+            try {
+                exitValue = execute(logger, stdout, stderr);
+            } catch (ProcessStalledException e) {
+                throw e;
+            } catch (Throwable e) {
+                displayProcessOutputForException(stdout, logger);
+                displayProcessOutputForException(stderr, logger);
+                throw new HabushuException("Could not invoke command! See output above.", e);
+            }
+            if (exitValue == 0) {
+                return stdout.hasText() ? stdout.getText().trim() : stderr.getText().trim();
+            } else {
+                throw new HabushuException(stdout.getSummary() + " " + stderr.getSummary());
             }
-            return result;
-        } else {
-            throw new HabushuException(stdout + " " + stderr);
         }
     }
 
     public int executeAndRedirectOutput(final Logger logger) {
-        OutputStream stdout = new LoggerOutputStream(logger, 0);
-        OutputStream stderr = new LoggerOutputStream(logger, 0);
+        return executeAndRedirectOutput(logger, null);
+    }
+
+    /**
+     * Executes the command, logging its stdout/stderr and passing each line of
+     * output to the given listener (i.e. to inspect the output of a failed
+     * command).
+     *
+     * @param logger         logger to which output is redirected
+     * @param outputListener receives each line of output, may be {@code null}
+     * @return process exit code
+     */
+    public int executeAndRedirectOutput(final Logger logger, final Consumer<String> outputListener) {
+        AsyncLogSink logSink = asynchronousLogging ? new AsyncLogSink(logger, AsyncLogSink.DEFAULT_CAPACITY) : null;
+        OutputStream stdout = new LoggerOutputStream(logger, 0, outputListener, logSink);
+        OutputStream stderr = new LoggerOutputStream(logger, 0, outputListener, logSink);
 
         try {
             return execute(logger, stdout, stderr);
 
+        } catch (ProcessStalledException e) {
+            throw e;
+
         } catch (Throwable e) {
             throw new HabushuException("Could not invoke command! See output above.", e);
 
         } finally {
             IOUtils.closeQuietly(stdout);
             IOUtils.closeQuietly(stderr);
+            // any remaining output is logged before the result of the command is reported:
+            IOUtils.closeQuietly(logSink);
         }
     }
 
+    /**
+     * Starts the command without waiting for it to complete, for long-lived
+     * processes that are interacted with via their stdin/stdout (i.e.
+     * {@link PythonToolServer}). The stderr of the process is redirected to the
+     * given logger.
+     *
+     * @param logger logger to which stderr is redirected
+     * @return the started process
+     * @throws IOException if the process could not be started
+     */
+    public Process start(final Logger logger) throws IOException {
+        logger.debug("Starting command line {}", commandLine);
+        ProcessBuilder builder = new ProcessBuilder(commandLine.toStrings())
+                .directory(executor.getWorkingDirectory());
+        builder.environment().clear();
+        builder.environment().putAll(environment);
+        Process process = builder.start();
+
+        Thread stderrPump = new Thread(() -> {
+            try (OutputStream stderr = new LoggerOutputStream(logger, 0, null)) {
+                IOUtils.copy(process.getErrorStream(), stderr);
+            } catch (IOException e) {
+                logger.debug("Stopped reading stderr of {}", commandLine, e);
+            }
+        }, "habushu-stderr-" + process.pid());
+        stderrPump.setDaemon(true);
+        stderrPump.start();
+        return process;
+    }
+
     private int execute(final Logger logger, final OutputStream stdout, final OutputStream stderr) {
+        ProcessGovernor governor = ProcessGovernor.get();
+        if (governor == null) {
+            return launchAndWait(logger, stdout, stderr);
+        }
+        try (ProcessGovernor.Permits permits = governor.acquire(commandLine.toStrings())) {
+            return launchAndWait(logger, stdout, stderr);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HabushuException("Interrupted while waiting to launch " + getCommandName(), e);
+        }
+    }
+
+    private int launchAndWait(final Logger logger, final OutputStream stdout, final OutputStream stderr) {
         logger.debug("Executing command line {}", commandLine);
         logger.debug("Active PATH: {}", environment.get(PATH_ENV_VAR));
+        StallWatchdog watchdog = stallTimeout != null ? new StallWatchdog(stallTimeout, environment, logger) : null;
+        stallWatchdog = watchdog;
+        CountingOutputStream countingStdout = new CountingOutputStream(watchdog != null ? watchdog.monitor(stdout)
+                : stdout);
+        CountingOutputStream countingStderr = new CountingOutputStream(watchdog != null ? watchdog.monitor(stderr)
+                : stderr);
+        Instant startTime = Instant.now();
+        long start = System.nanoTime();
+        Integer exitValue = null;
+        cpuTimeSampler = null;
+        BuildTracer.Span span = BuildTracer.span("process", getCommandName());
+        ProcessExecutionEvent event = new ProcessExecutionEvent();
+        event.begin();
         try {
-            ExecuteStreamHandler streamHandler = new PumpStreamHandler(stdout, stderr);
+            ExecuteStreamHandler streamHandler = new PumpStreamHandler(countingStdout, countingStderr) {
+                @Override
+                protected Thread createPump(InputStream input, OutputStream output, boolean closeWhenExhausted) {
+                    return CommandThreads.newThread(new StreamPumper(input, output, closeWhenExhausted),
+                            "habushu-output-pump");
+                }
+            };
             executor.setStreamHandler(streamHandler);
 
-            int exitValue = executor.execute(commandLine, environment);
+            exitValue = executor.execute(commandLine, environment);
             logger.debug("Exit value {}", exitValue);
 
             return exitValue;
         } catch (ExecuteException e) {
+            exitValue = e.getExitValue();
+            if (watchdog != null && watchdog.stop()) {
+                throw new ProcessStalledException(String.format("%s was stopped after it wrote no output and used no"
+                        + " CPU time for %s s", getMaskedCommand(), stallTimeout.getSeconds()));
+            }
             if (executor.getWatchdog() != null && executor.getWatchdog().killedProcess()) {
                 throw new HabushuException("Process killed after timeout");
             }
             throw new HabushuException(e);
         } catch (IOException e) {
             throw new HabushuException(e);
+        } finally {
+            if (watchdog != null) {
+                watchdog.stop();
+            }
+            recordMetrics(startTime, System.nanoTime() - start, countingStdout.getByteCount()
+                    + countingStderr.getByteCount(), exitValue);
+            if (span.isRecording()) {
+                span.arg("command", getMaskedCommand()).arg("exitCode", exitValue).close();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = getMaskedCommand();
+                event.exitCode = exitValue != null ? exitValue : -1;
+                event.outputBytes = countingStdout.getByteCount() + countingStderr.getByteCount();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Masks the given arguments (i.e. credentials) wherever the command line is
+     * recorded (see {@link ProcessMetrics}).
+     *
+     * @param sensitiveArguments arguments to mask
+     */
+    public void setSensitiveArguments(Collection<String> sensitiveArguments) {
+        this.sensitiveArguments = new HashSet<>(sensitiveArguments);
+    }
+
+    private void recordMetrics(Instant startTime, long wallTimeNanos, long outputBytes, Integer exitValue) {
+        CpuTimeSampler sampler = cpuTimeSampler;
+        Duration cpuTime = sampler != null ? sampler.stop() : null;
+        if (sampler == null) {
+            // the process could not be launched:
+            exitValue = null;
+        }
+        ProcessMetrics.record(getMaskedCommand(), getCommandName(), startTime, wallTimeNanos,
+                cpuTime != null ? cpuTime.toMillis() : null, outputBytes, exitValue);
+    }
+
+    private String getMaskedCommand() {
+        List<String> maskedCommand = new ArrayList<>();
+        for (String argument : commandLine.toStrings()) {
+            maskedCommand.add(sensitiveArguments.contains(argument) ? "XXXX" : argument);
+        }
+        return StringUtils.join(maskedCommand, " ");
+    }
+
+    /**
+     * Returns the name of the executable and its first argument (i.e.
+     * {@code poetry install}), which identify the command in build traces and
+     * metrics.
+     */
+    private String getCommandName() {
+        String[] command = commandLine.toStrings();
+        String name = new File(command[0]).getName();
+        if (command.length > 1 && !sensitiveArguments.contains(command[1])) {
+            name += " " + command[1];
         }
+        return name;
     }
 
     private CommandLine createCommandLine(List<String> command) {
@@ -130,6 +326,8 @@ public class ProcessExecutor {
 
         if (additionalEnvironment != null) {
             environment.putAll(additionalEnvironment);
+            // variables given a null value are unset:
+            environment.values().removeIf(Objects::isNull);
         }
 
         if (platform.isWindows()) {
@@ -160,7 +358,18 @@ public class ProcessExecutor {
     }
 
     private Executor createExecutor(File workingDirectory, long timeoutInSeconds) {
-        DefaultExecutor executor = new DefaultExecutor();
+        DefaultExecutor executor = new DefaultExecutor() {
+            @Override
+            protected Process launch(CommandLine command, Map<String, String> env, File dir) throws IOException {
+                Process process = super.launch(command, env, dir);
+                cpuTimeSampler = CpuTimeSampler.start(process.toHandle());
+                StallWatchdog watchdog = stallWatchdog;
+                if (watchdog != null) {
+                    watchdog.start(process.toHandle());
+                }
+                return process;
+            }
+        };
         executor.setWorkingDirectory(workingDirectory);
         executor.setProcessDestroyer(new ShutdownHookProcessDestroyer()); // Fixes #41
 
@@ -171,17 +380,20 @@ public class ProcessExecutor {
         return executor;
     }
 
-    private static class LoggerOutputStream extends LogOutputStream {
+    static class LoggerOutputStream extends LogOutputStream {
         private final Logger logger;
-        private static final String DEBUG_LOG = "DEBUG";
-        private static final String WARNING_LOG = "WARNING";
-        private static final String ERROR_LOG = "ERROR";
-        private static final String CRITICAL_LOG = "CRITICAL";
-        private static final String FAILURE_LOG = "FAILURE";
+        private final Consumer<String> outputListener;
+        private final AsyncLogSink logSink;
+
+        LoggerOutputStream(Logger logger, int logLevel, Consumer<String> outputListener) {
+            this(logger, logLevel, outputListener, null);
+        }
 
-        LoggerOutputStream(Logger logger, int logLevel) {
+        LoggerOutputStream(Logger logger, int logLevel, Consumer<String> outputListener, AsyncLogSink logSink) {
             super(logLevel);
             this.logger = logger;
+            this.outputListener = outputListener;
+            this.logSink = logSink;
         }
 
         @Override
@@ -191,30 +403,28 @@ public class ProcessExecutor {
 
         @Override
         protected void processLine(final String line, final int logLevel) {
-            final String upperLine = line.toUpperCase();
-            if (upperLine.contains(ERROR_LOG) || upperLine.contains(CRITICAL_LOG) || upperLine.contains(FAILURE_LOG)) {
-                logger.error(line);
-            } else if (upperLine.contains(WARNING_LOG)) {
-                logger.warn(line);
-            } else if (upperLine.contains(DEBUG_LOG)) {
-                logger.debug(line);
+            if (outputListener != null) {
+                outputListener.accept(line);
+            }
+            OutputLineClassifier.Level level = OutputLineClassifier.classify(line);
+            if (logSink != null) {
+                logSink.submit(level, line);
             } else {
-                logger.info(line);
+                OutputLineClassifier.log(logger, level, line);
             }
         }
     }
 
     /**
-     * Helper method that logs the given process output at the error level if its
-     * content is not blank.
+     * Helper method that logs the start and end of the given process output at
+     * the error level if its content is not blank.
      *
      * @param output
      * @param logger
      */
-    protected void displayProcessOutputForException(ByteArrayOutputStream output, Logger logger) {
-        String outputAsStr = output.toString();
-        if (StringUtils.isNotBlank(outputAsStr)) {
-            logger.error(outputAsStr);
+    protected void displayProcessOutputForException(BoundedOutputCapture output, Logger logger) {
+        if (output.hasText()) {
+            logger.error(output.getSummary());
         }
     }
 }
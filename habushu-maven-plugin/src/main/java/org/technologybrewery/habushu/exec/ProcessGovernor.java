@@ -0,0 +1,184 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.trace.BuildTracer;
+
+/**
+ * Limits the processes launched by {@link ProcessExecutor} across the entire
+ * reactor (i.e. by all threads of a {@code mvn -T 1C} build), so that heavy
+ * commands queue rather than oversubscribing the CPUs and memory of the
+ * machine. Each process acquires permits weighted by how heavy its command is:
+ * commands that install, lock, or build (i.e. {@code poetry install},
+ * {@code pyenv install}) acquire {@link #getHeavyWeight()} permits, while all
+ * others (i.e. version probes) acquire one. Permits are granted in the order
+ * in which they are requested, so heavy commands are not starved by a stream of
+ * light ones.
+ * <p>
+ * The number of permits is derived from the number of CPUs and the amount of
+ * physical memory (see {@link #computeCapacity(int, long, double, int, long)}),
+ * and always admits at least one heavy process. Long-lived processes (i.e.
+ * {@link PythonToolServer}s) are not governed, but the Poetry commands that
+ * {@link PoetryDaemon}s execute acquire the same permits as they would via the
+ * Poetry CLI (see {@link PoetryCommandHelper}).
+ */
+public final class ProcessGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessGovernor.class);
+
+    private static final Set<String> HEAVY_COMMANDS = new HashSet<>(Arrays.asList("install", "lock", "build",
+            "add", "update", "sync"));
+
+    private static volatile ProcessGovernor current;
+
+    private final int capacity;
+    private final int heavyWeight;
+    private final Semaphore permits;
+
+    private ProcessGovernor(int capacity, int heavyWeight) {
+        this.capacity = capacity;
+        this.heavyWeight = heavyWeight;
+        this.permits = new Semaphore(capacity, true);
+    }
+
+    /**
+     * Configures the governor of subsequently launched processes. As all mojos
+     * of a build are configured alike, the governor is only replaced if its
+     * configuration changes; processes already holding permits release them to
+     * the governor from which they acquired them.
+     *
+     * @param enabled               whether to govern processes
+     * @param permitsPerCpu         permits per available CPU
+     * @param heavyWeight           permits acquired by heavy commands
+     * @param memoryPerHeavyProcess bytes of physical memory to reserve for each
+     *                              heavy process, or 0 to not limit processes by
+     *                              memory
+     */
+    public static synchronized void configure(boolean enabled, double permitsPerCpu, int heavyWeight,
+                                              long memoryPerHeavyProcess) {
+        if (!enabled) {
+            current = null;
+            return;
+        }
+        int capacity = computeCapacity(Runtime.getRuntime().availableProcessors(), getPhysicalMemory(),
+                permitsPerCpu, heavyWeight, memoryPerHeavyProcess);
+        ProcessGovernor governor = current;
+        if (governor == null || governor.capacity != capacity || governor.heavyWeight != heavyWeight) {
+            logger.debug("Limiting launched processes to {} permits ({} per heavy process)", capacity, heavyWeight);
+            current = new ProcessGovernor(capacity, heavyWeight);
+        }
+    }
+
+    /**
+     * Returns the number of permits to grant: the CPU-derived limit, further
+     * limited (if known) by the number of heavy processes that fit in memory,
+     * but never fewer than one heavy process's worth.
+     *
+     * @param cpus                  number of available CPUs
+     * @param physicalMemory        bytes of physical memory, or 0 if unknown
+     * @param permitsPerCpu         permits per available CPU
+     * @param heavyWeight           permits acquired by heavy commands
+     * @param memoryPerHeavyProcess bytes of physical memory to reserve for each
+     *                              heavy process, or 0 to not limit by memory
+     * @return number of permits
+     */
+    public static int computeCapacity(int cpus, long physicalMemory, double permitsPerCpu, int heavyWeight,
+                                      long memoryPerHeavyProcess) {
+        long capacity = Math.round(cpus * permitsPerCpu);
+        if (physicalMemory > 0 && memoryPerHeavyProcess > 0) {
+            capacity = Math.min(capacity, physicalMemory / memoryPerHeavyProcess * heavyWeight);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(heavyWeight, capacity));
+    }
+
+    private static long getPhysicalMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+        }
+        return 0;
+    }
+
+    /**
+     * @return the governor of launched processes, or {@code null} if processes
+     * are not governed
+     */
+    static ProcessGovernor get() {
+        return current;
+    }
+
+    /**
+     * Returns the number of permits acquired to launch the given command.
+     *
+     * @param command executable and arguments of the command
+     * @return number of permits
+     */
+    int getWeight(String[] command) {
+        boolean heavy = false;
+        if (command.length > 1) {
+            heavy = HEAVY_COMMANDS.contains(command[1]);
+            // i.e. python -m build:
+            heavy |= command.length > 2 && "-m".equals(command[1]) && HEAVY_COMMANDS.contains(command[2]);
+        }
+        return heavy ? Math.min(heavyWeight, capacity) : 1;
+    }
+
+    int getHeavyWeight() {
+        return heavyWeight;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Waits until the permits to launch the given command are available.
+     *
+     * @param command executable and arguments of the command
+     * @return the acquired permits, which must be closed once the process exits
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Permits acquire(String[] command) throws InterruptedException {
+        int weight = getWeight(command);
+        // unlike an untimed tryAcquire, a timed one honours fairness rather than barging past queued commands:
+        if (!permits.tryAcquire(weight, 0, TimeUnit.SECONDS)) {
+            String name = new File(command[0]).getName() + (command.length > 1 ? " " + command[1] : "");
+            logger.debug("Waiting for {} of {} process permits to launch {}", weight, capacity, name);
+            try (BuildTracer.Span span = BuildTracer.span("wait", "process permits " + name)) {
+                permits.acquire(weight);
+                if (span.isRecording()) {
+                    span.arg("permits", weight);
+                }
+            }
+        }
+        return new Permits(permits, weight);
+    }
+
+    /**
+     * Permits acquired to launch a process.
+     */
+    static final class Permits implements Closeable {
+        private final Semaphore semaphore;
+        private final int count;
+
+        private Permits(Semaphore semaphore, int count) {
+            this.semaphore = semaphore;
+            this.count = count;
+        }
+
+        @Override
+        public void close() {
+            semaphore.release(count);
+        }
+    }
+}
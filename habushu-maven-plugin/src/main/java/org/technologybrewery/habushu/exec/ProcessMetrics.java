@@ -0,0 +1,313 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Records the timing and resource use of each process launched by
+ * {@link ProcessExecutor} while a Habushu mojo executes, so that it is possible
+ * to tell where a build spends its time. The processes launched by each module
+ * are written to {@value #FILE_NAME} in its build directory after each of its
+ * mojos executes, and, when habushu-maven-plugin is declared with
+ * {@code <extensions>true</extensions>}, a summary of the entire reactor is
+ * logged at the end of the build by
+ * {@link org.technologybrewery.habushu.HabushuLifecycleParticipant}.
+ * <p>
+ * Like {@link PythonToolServers}, the metrics of a build are keyed by its
+ * {@link MavenExecutionRequest}. The module and mojo to which processes are
+ * attributed are tracked per thread (and inherited by threads the mojo starts).
+ */
+public final class ProcessMetrics {
+
+    /**
+     * Name of the file, within each module's build directory, to which the
+     * processes launched by the module are written.
+     */
+    public static final String FILE_NAME = "habushu-process-metrics.json";
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessMetrics.class);
+
+    private static final Map<MavenExecutionRequest, ProcessMetrics> builds =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final InheritableThreadLocal<MojoScope> currentMojo = new InheritableThreadLocal<>();
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<File, Module> modules = new LinkedHashMap<>();
+
+    private ProcessMetrics() {
+    }
+
+    /**
+     * Attributes processes launched by the current thread to the given mojo until
+     * the returned scope is closed, at which point the processes launched by the
+     * module so far in the build are written to the given file.
+     *
+     * @param session    Maven session of the build, may be {@code null}
+     * @param module     name of the module (i.e. its artifactId)
+     * @param outputFile file to which the module's processes are written
+     * @param mojo       name of the mojo (i.e. its goal and execution id)
+     * @return scope of the mojo's execution
+     */
+    public static MojoScope enterMojo(MavenSession session, String module, File outputFile, String mojo) {
+        ProcessMetrics metrics = null;
+        if (session != null && session.getRequest() != null) {
+            metrics = builds.computeIfAbsent(session.getRequest(), request -> new ProcessMetrics());
+        }
+        Module moduleMetrics = metrics != null ? metrics.getModule(module, outputFile) : new Module(module, outputFile);
+        MojoScope scope = new MojoScope(moduleMetrics, mojo, currentMojo.get());
+        currentMojo.set(scope);
+        return scope;
+    }
+
+    /**
+     * Removes the metrics of the given build.
+     *
+     * @param session Maven session of the build
+     * @return the metrics, or {@code null} if no mojo recorded metrics during the
+     * build
+     */
+    public static ProcessMetrics deactivate(MavenSession session) {
+        return builds.remove(session.getRequest());
+    }
+
+    /**
+     * Records a process launched by the current thread, if it is executing a mojo.
+     *
+     * @param command       command line, with sensitive arguments masked
+     * @param commandName   executable and first argument of the command (i.e.
+     *                      {@code poetry install})
+     * @param startTime     time at which the process was launched
+     * @param wallTimeNanos elapsed time until the process exited
+     * @param cpuTimeMillis CPU time of the process, or {@code null} if unavailable
+     * @param outputBytes   number of bytes written to stdout and stderr
+     * @param exitCode      exit code of the process, or {@code null} if it could
+     *                      not be launched
+     */
+    static void record(String command, String commandName, Instant startTime, long wallTimeNanos, Long cpuTimeMillis,
+                       long outputBytes, Integer exitCode) {
+        MojoScope scope = currentMojo.get();
+        if (scope != null) {
+            scope.module.add(new Record(command, commandName, scope.module.name, scope.mojo, startTime,
+                    wallTimeNanos / 1_000_000, cpuTimeMillis, outputBytes, exitCode));
+        }
+    }
+
+    private synchronized Module getModule(String name, File outputFile) {
+        return modules.computeIfAbsent(outputFile.getAbsoluteFile(), file -> new Module(name, file));
+    }
+
+    /**
+     * Returns all processes recorded during the build, in the order in which
+     * their modules first launched a process.
+     *
+     * @return recorded processes
+     */
+    public synchronized List<Record> getRecords() {
+        List<Record> records = new ArrayList<>();
+        for (Module module : modules.values()) {
+            records.addAll(module.getRecords());
+        }
+        return records;
+    }
+
+    /**
+     * Summarizes the processes launched across the build: the number of launches
+     * (and their total wall time) per mojo, followed by the slowest commands.
+     *
+     * @param slowestCommands number of slowest commands to list
+     * @return summary, or {@code null} if no processes were launched
+     */
+    public String summarize(int slowestCommands) {
+        List<Record> records = getRecords();
+        if (records.isEmpty()) {
+            return null;
+        }
+
+        Map<String, long[]> launchesByMojo = new LinkedHashMap<>();
+        long totalWallTime = 0;
+        for (Record record : records) {
+            long[] launches = launchesByMojo.computeIfAbsent(record.getMojo(), mojo -> new long[2]);
+            launches[0]++;
+            launches[1] += record.getWallTimeMillis();
+            totalWallTime += record.getWallTimeMillis();
+        }
+
+        StringBuilder summary = new StringBuilder(String.format("Habushu launched %s process(es) taking %s in total:%n",
+                records.size(), formatMillis(totalWallTime)));
+        for (Map.Entry<String, long[]> launches : launchesByMojo.entrySet()) {
+            summary.append(String.format("  %-40s %5s launch(es) %10s%n", launches.getKey(), launches.getValue()[0],
+                    formatMillis(launches.getValue()[1])));
+        }
+
+        summary.append(String.format("Slowest commands:%n"));
+        records.sort(Comparator.comparingLong(Record::getWallTimeMillis).reversed());
+        for (Record record : records.subList(0, Math.min(slowestCommands, records.size()))) {
+            summary.append(String.format("  %10s  %s [%s] %s%n", formatMillis(record.getWallTimeMillis()),
+                    record.getModule(), record.getMojo(), record.getCommand()));
+        }
+        return summary.toString().trim();
+    }
+
+    private static String formatMillis(long millis) {
+        return String.format("%.1f s", millis / 1000.0);
+    }
+
+    /**
+     * Execution of a mojo to which launched processes are attributed.
+     */
+    public static final class MojoScope implements Closeable {
+        private final Module module;
+        private final String mojo;
+        private final MojoScope previous;
+
+        private MojoScope(Module module, String mojo, MojoScope previous) {
+            this.module = module;
+            this.mojo = mojo;
+            this.previous = previous;
+        }
+
+        /**
+         * Stops attributing processes to the mojo and writes the processes launched
+         * by its module.
+         */
+        @Override
+        public void close() {
+            if (previous != null) {
+                currentMojo.set(previous);
+            } else {
+                currentMojo.remove();
+            }
+            module.write();
+        }
+    }
+
+    private static final class Module {
+        private final String name;
+        private final File outputFile;
+        private final List<Record> records = new ArrayList<>();
+
+        private Module(String name, File outputFile) {
+            this.name = name;
+            this.outputFile = outputFile;
+        }
+
+        private synchronized void add(Record record) {
+            records.add(record);
+        }
+
+        private synchronized List<Record> getRecords() {
+            return new ArrayList<>(records);
+        }
+
+        private synchronized void write() {
+            if (records.isEmpty()) {
+                return;
+            }
+            Map<String, Object> contents = new LinkedHashMap<>();
+            contents.put("module", name);
+            contents.put("processes", records);
+            try {
+                outputFile.getParentFile().mkdirs();
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(outputFile, contents);
+            } catch (IOException e) {
+                logger.warn("Could not write process metrics to {}", outputFile, e);
+            }
+        }
+    }
+
+    /**
+     * Timing and resource use of a launched process.
+     */
+    public static final class Record {
+        private final String command;
+        private final String commandName;
+        private final String module;
+        private final String mojo;
+        private final String startTime;
+        private final long wallTimeMillis;
+        private final Long cpuTimeMillis;
+        private final long outputBytes;
+        private final Integer exitCode;
+
+        private Record(String command, String commandName, String module, String mojo, Instant startTime,
+                       long wallTimeMillis, Long cpuTimeMillis, long outputBytes, Integer exitCode) {
+            this.command = command;
+            this.commandName = commandName;
+            this.module = module;
+            this.mojo = mojo;
+            this.startTime = startTime.toString();
+            this.wallTimeMillis = wallTimeMillis;
+            this.cpuTimeMillis = cpuTimeMillis;
+            this.outputBytes = outputBytes;
+            this.exitCode = exitCode;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        /**
+         * @return executable and first argument of the command (i.e.
+         * {@code poetry install}), which identify it across builds
+         */
+        public String getCommandName() {
+            return commandName;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getMojo() {
+            return mojo;
+        }
+
+        public String getStartTime() {
+            return startTime;
+        }
+
+        public long getWallTimeMillis() {
+            return wallTimeMillis;
+        }
+
+        /**
+         * @return CPU time of the process (sampled while it runs, see
+         * {@link CpuTimeSampler}), or {@code null} if unavailable
+         */
+        public Long getCpuTimeMillis() {
+            return cpuTimeMillis;
+        }
+
+        /**
+         * @return number of bytes the process wrote to stdout and stderr
+         */
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+
+        /**
+         * @return exit code, or {@code null} if the process could not be launched
+         */
+        public Integer getExitCode() {
+            return exitCode;
+        }
+    }
+}
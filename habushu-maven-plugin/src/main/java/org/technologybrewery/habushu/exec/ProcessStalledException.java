@@ -0,0 +1,19 @@
+package org.technologybrewery.habushu.exec;
+
+import java.time.Duration;
+
+import org.technologybrewery.habushu.HabushuException;
+
+/**
+ * Signals that a process was stopped because it neither wrote output nor made
+ * CPU progress for longer than its stall timeout (see
+ * {@link ProcessExecutor#setStallTimeout(Duration)}).
+ */
+public class ProcessStalledException extends HabushuException {
+
+    private static final long serialVersionUID = 2716553839175290436L;
+
+    public ProcessStalledException(String message) {
+        super(message);
+    }
+}
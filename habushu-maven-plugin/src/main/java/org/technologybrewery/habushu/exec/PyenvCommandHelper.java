@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -44,6 +45,16 @@ public class PyenvCommandHelper {
         return true;
     }
 
+    /**
+     * Asynchronous variant of {@link #isPyenvInstalled()}, which executes on a
+     * virtual thread where supported (see {@link CommandThreads}).
+     *
+     * @return future indicating whether pyenv is installed
+     */
+    public CompletableFuture<Boolean> isPyenvInstalledAsync() {
+        return CommandThreads.supplyAsync(this::isPyenvInstalled);
+    }
+
     /**
      * Retrieves the version of Python that is set for the configured working
      * directory.
@@ -54,6 +65,16 @@ public class PyenvCommandHelper {
         return executeWithDebugLogging(Arrays.asList("version-name"));
     }
 
+    /**
+     * Asynchronous variant of {@link #getCurrentPythonVersion()}, which executes on
+     * a virtual thread where supported (see {@link CommandThreads}).
+     *
+     * @return future version of Python
+     */
+    public CompletableFuture<String> getCurrentPythonVersionAsync() {
+        return CommandThreads.supplyAsync(this::getCurrentPythonVersion);
+    }
+
     /**
      * Updates Python processes launched at the configured working directory to use
      * the specified version of Python by executing the following steps:
@@ -81,6 +102,16 @@ public class PyenvCommandHelper {
             installPythonVersion(targetVersion, patchInstallScript);
         }
 
+        setLocalPythonVersion(targetVersion);
+    }
+
+    /**
+     * Sets the version of Python that pyenv activates in the working directory to
+     * the given, already installed, version.
+     *
+     * @param targetVersion desired Python version
+     */
+    public void setLocalPythonVersion(String targetVersion) throws MojoExecutionException {
         execute(Arrays.asList("local", targetVersion));
     }
 
@@ -0,0 +1,139 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Pre-warmed Python interpreter, running within a virtual environment, that
+ * forks a child process for each command it is given (see
+ * {@code python_fork_server.py}). Modules that commands depend upon may be
+ * imported once, when the server starts, so that each command only pays the
+ * cost of the fork rather than that of starting the interpreter and importing
+ * its dependencies. Each child is given its own arguments, working directory,
+ * and environment.
+ * <p>
+ * As it relies upon {@code fork()}, which is unsafe once some system libraries
+ * have been loaded on macOS and unavailable on Windows, the fork server is only
+ * supported on Linux. Only Python commands may be executed (see
+ * {@link #toPythonArguments(VirtualEnvCommandHelper, List)}).
+ */
+public class PythonForkServer extends AbstractPythonServer {
+
+    private static final String SCRIPT_RESOURCE = "python_fork_server.py";
+
+    private PythonForkServer(VirtualEnvCommandHelper virtualEnvHelper, List<String> preloadModules)
+            throws IOException {
+        super(virtualEnvHelper, SCRIPT_RESOURCE, preloadModules);
+        logger.debug("Preloaded modules: {}", getReadyMessage().path("preloaded"));
+    }
+
+    /**
+     * Starts a fork server with the Python interpreter of the given virtual
+     * environment, waiting until it has imported the given modules.
+     *
+     * @param virtualEnvHelper virtual environment in which to start the server
+     * @param preloadModules   modules to import before forking (i.e.
+     *                         {@code grpc_tools.protoc}); modules that cannot be
+     *                         imported are logged and skipped
+     * @return the started server
+     * @throws IOException if the server could not be started
+     */
+    public static PythonForkServer start(VirtualEnvCommandHelper virtualEnvHelper, List<String> preloadModules)
+            throws IOException {
+        return new PythonForkServer(virtualEnvHelper, preloadModules);
+    }
+
+    /**
+     * Returns whether fork servers are supported on the platform of the given
+     * virtual environment.
+     *
+     * @param virtualEnvHelper virtual environment
+     * @return {@code true} on Linux
+     */
+    public static boolean isSupported(VirtualEnvCommandHelper virtualEnvHelper) {
+        return virtualEnvHelper.getPlatform().isLinux();
+    }
+
+    /**
+     * Converts a command to the arguments that would follow {@code python} on the
+     * command line if it is a Python command that the fork server is able to
+     * execute: {@code python} followed by a script, {@code -m module}, or
+     * {@code -c code}, or an executable of the virtual environment that is a
+     * Python script (i.e. a console script).
+     *
+     * @param virtualEnvHelper virtual environment in which the command is executed
+     * @param command          command and its arguments
+     * @return arguments to pass to the interpreter, or {@code null} if the command
+     * must be executed as a separate process
+     */
+    public static List<String> toPythonArguments(VirtualEnvCommandHelper virtualEnvHelper, List<String> command) {
+        String executable = command.get(0);
+        List<String> arguments = new ArrayList<>(command.subList(1, command.size()));
+        if (executable.equals("python") || executable.equals("python3")) {
+            if (arguments.isEmpty()) {
+                return null;
+            }
+            String first = arguments.get(0);
+            if ((first.equals("-m") || first.equals("-c")) && arguments.size() > 1) {
+                return arguments;
+            }
+            // other interpreter options (i.e. -u) would not be honored by the fork:
+            return first.startsWith("-") ? null : arguments;
+        }
+
+        File script = virtualEnvHelper.findExecutable(executable);
+        if (script == null || !isPythonScript(script)) {
+            return null;
+        }
+        arguments.add(0, script.getAbsolutePath());
+        return arguments;
+    }
+
+    private static boolean isPythonScript(File executable) {
+        try (BufferedReader reader = Files.newBufferedReader(executable.toPath(), StandardCharsets.ISO_8859_1)) {
+            String shebang = reader.readLine();
+            return shebang != null && shebang.startsWith("#!") && shebang.contains("python");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Executes a Python command in a child forked from the server, logging its
+     * output, and returns its exit code.
+     *
+     * @param pythonArguments      arguments that would follow {@code python} on the
+     *                             command line (see
+     *                             {@link #toPythonArguments(VirtualEnvCommandHelper, List)})
+     * @param workingDirectory     directory in which to execute the command
+     * @param environmentVariables additional environment variables, may be
+     *                             {@code null}; variables given a {@code null}
+     *                             value are unset
+     * @return exit code of the command
+     * @throws IOException if the server fails while executing the command, in
+     *                     which case it should be discarded
+     */
+    public int execute(List<String> pythonArguments, File workingDirectory,
+                       Map<String, String> environmentVariables) throws IOException {
+        if (logger.isInfoEnabled()) {
+            logger.info("Executing command in Python fork server {}: python {}", getVirtualEnvironment(),
+                    StringUtils.join(pythonArguments, " "));
+        }
+
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("argv", pythonArguments);
+        job.put("cwd", workingDirectory.getAbsolutePath());
+        job.put("env", environmentVariables != null ? environmentVariables : Collections.emptyMap());
+        return executeJob(job);
+    }
+}
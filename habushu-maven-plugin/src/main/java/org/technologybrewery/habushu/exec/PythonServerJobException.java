@@ -0,0 +1,21 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.IOException;
+
+/**
+ * Signals that an {@link AbstractPythonServer} failed after a job was submitted
+ * to it, so that the job may have been partially executed and cannot safely be
+ * executed again elsewhere (i.e. via the Poetry CLI).
+ */
+public class PythonServerJobException extends IOException {
+
+    private static final long serialVersionUID = -3179120517824870931L;
+
+    public PythonServerJobException(String message) {
+        super(message);
+    }
+
+    public PythonServerJobException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,78 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Long-lived Python worker, running within a virtual environment, that executes
+ * Pylint, black, and behave in-process so that the cost of starting the
+ * interpreter and importing each tool is only paid once per build rather than
+ * once per invocation (see {@code python_tool_server.py}).
+ */
+public class PythonToolServer extends AbstractPythonServer {
+
+    private static final String SCRIPT_RESOURCE = "python_tool_server.py";
+
+    /**
+     * Tools that can be executed by the server.
+     */
+    public static final Set<String> SUPPORTED_TOOLS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("pylint", "black", "behave")));
+
+    private PythonToolServer(VirtualEnvCommandHelper virtualEnvHelper) throws IOException {
+        super(virtualEnvHelper, SCRIPT_RESOURCE, Collections.emptyList());
+    }
+
+    /**
+     * Starts a server with the Python interpreter of the given virtual
+     * environment, waiting until it is ready to accept jobs.
+     *
+     * @param virtualEnvHelper virtual environment in which to start the server
+     * @return the started server
+     * @throws IOException if the server could not be started
+     */
+    public static PythonToolServer start(VirtualEnvCommandHelper virtualEnvHelper) throws IOException {
+        return new PythonToolServer(virtualEnvHelper);
+    }
+
+    /**
+     * Executes a tool within the server, logging its output, and returns its exit
+     * code.
+     *
+     * @param tool                 tool to execute (see {@link #SUPPORTED_TOOLS})
+     * @param arguments            arguments of the tool (i.e. {@code src})
+     * @param workingDirectory     directory in which to execute the tool
+     * @param environmentVariables additional environment variables, may be
+     *                             {@code null}; variables given a {@code null}
+     *                             value are unset
+     * @return exit code of the tool
+     * @throws IOException if the server fails while executing the tool, in which
+     *                     case it should be discarded
+     */
+    public int execute(String tool, List<String> arguments, File workingDirectory,
+                       Map<String, String> environmentVariables) throws IOException {
+        if (!SUPPORTED_TOOLS.contains(tool)) {
+            throw new IllegalArgumentException("Unsupported tool: " + tool);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Executing command in Python tool server {}: {} {}", getVirtualEnvironment(), tool,
+                    StringUtils.join(arguments, " "));
+        }
+
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("tool", tool);
+        job.put("args", arguments);
+        job.put("cwd", workingDirectory.getAbsolutePath());
+        job.put("env", environmentVariables != null ? environmentVariables : Collections.emptyMap());
+        return executeJob(job);
+    }
+}
@@ -0,0 +1,265 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Tracks the long-lived Python workers of a Maven build (i.e. the
+ * {@link PythonToolServer} and {@link PythonForkServer} of each virtual
+ * environment, and a pool of {@link PoetryDaemon}s), which are started on first
+ * use and shut down at the end of the build.
+ * <p>
+ * Servers are activated for a build by
+ * {@link org.technologybrewery.habushu.HabushuLifecycleParticipant}, which is
+ * only loaded when habushu-maven-plugin is declared with
+ * {@code <extensions>true</extensions>}, as otherwise nothing would shut them
+ * down. Like {@link org.technologybrewery.habushu.publish.DeferredPublisher},
+ * servers are keyed by the build's {@link MavenExecutionRequest}.
+ */
+public final class PythonToolServers {
+
+    private static final Map<MavenExecutionRequest, PythonToolServers> builds =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, AbstractPythonServer> servers = new HashMap<>();
+    private final List<PoetryDaemon> poetryDaemons = new ArrayList<>();
+    private final Deque<PoetryDaemon> idlePoetryDaemons = new ArrayDeque<>();
+    private int poetryDaemonGeneration;
+    private boolean poetryDaemonsUnavailable;
+    private boolean closed;
+
+    private PythonToolServers() {
+    }
+
+    /**
+     * Activates Python tool servers for the given build.
+     *
+     * @param session Maven session of the build
+     */
+    public static void activate(MavenSession session) {
+        builds.putIfAbsent(session.getRequest(), new PythonToolServers());
+    }
+
+    /**
+     * Returns the Python tool servers of the given build.
+     *
+     * @param session Maven session of the build (or of one of its modules)
+     * @return the servers, or {@code null} if they were not activated for the
+     * build
+     */
+    public static PythonToolServers get(MavenSession session) {
+        return session != null && session.getRequest() != null ? builds.get(session.getRequest()) : null;
+    }
+
+    /**
+     * Deactivates Python tool servers for the given build, shutting down any that
+     * were started.
+     *
+     * @param session Maven session of the build
+     */
+    public static void deactivate(MavenSession session) {
+        PythonToolServers toolServers = builds.remove(session.getRequest());
+        if (toolServers != null) {
+            toolServers.close();
+        }
+    }
+
+    /**
+     * Returns the {@link PythonToolServer} of the given virtual environment,
+     * starting it if it is not already running.
+     *
+     * @param virtualEnvHelper virtual environment of the server
+     * @return the server
+     * @throws IOException if the server could not be started
+     */
+    public PythonToolServer getOrStart(VirtualEnvCommandHelper virtualEnvHelper) throws IOException {
+        String key = "tool:" + virtualEnvHelper.getVirtualEnvironment().getAbsolutePath();
+        return getOrStart(key, PythonToolServer.class, () -> PythonToolServer.start(virtualEnvHelper));
+    }
+
+    /**
+     * Returns the {@link PythonForkServer} of the given virtual environment that
+     * preloads the given modules, starting it if it is not already running.
+     *
+     * @param virtualEnvHelper virtual environment of the server
+     * @param preloadModules   modules imported by the server before forking
+     * @return the server
+     * @throws IOException if the server could not be started
+     */
+    public PythonForkServer getOrStartForkServer(VirtualEnvCommandHelper virtualEnvHelper,
+                                                 List<String> preloadModules) throws IOException {
+        String key = "fork:" + virtualEnvHelper.getVirtualEnvironment().getAbsolutePath() + ":" + preloadModules;
+        return getOrStart(key, PythonForkServer.class, () -> PythonForkServer.start(virtualEnvHelper, preloadModules));
+    }
+
+    private synchronized <T extends AbstractPythonServer> T getOrStart(String key, Class<T> type,
+                                                                         ServerStarter<T> starter) throws IOException {
+        if (closed) {
+            throw new IOException("Python servers have been shut down");
+        }
+        AbstractPythonServer server = servers.get(key);
+        if (server == null || !server.isAlive()) {
+            if (server != null) {
+                server.close();
+            }
+            server = starter.start();
+            servers.put(key, server);
+        }
+        return type.cast(server);
+    }
+
+    /**
+     * Takes an idle {@link PoetryDaemon} with the given interpreter from the pool,
+     * preferring one that last executed a command for the given project (and so
+     * holds its warm state), or starts a new daemon if none are idle. Daemons
+     * must be returned via {@link #releasePoetryDaemon(PoetryDaemon)} once the
+     * command has completed, so that each daemon executes one command at a time
+     * and concurrent modules of parallel builds use separate daemons.
+     *
+     * @param interpreter      Python interpreter of the Poetry installation
+     * @param projectDirectory directory of the project whose command is executed
+     * @return the daemon
+     * @throws IOException if a daemon could not be started, after which no
+     *                     further daemons are started for the build
+     */
+    public PoetryDaemon acquirePoetryDaemon(File interpreter, File projectDirectory) throws IOException {
+        int generation;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Python servers have been shut down");
+            }
+            if (poetryDaemonsUnavailable) {
+                throw new IOException("A Poetry daemon could not be started earlier in the build");
+            }
+            PoetryDaemon daemon = takeIdlePoetryDaemon(interpreter, projectDirectory.getAbsoluteFile());
+            if (daemon == null) {
+                daemon = takeIdlePoetryDaemon(interpreter, null);
+            }
+            if (daemon != null) {
+                return daemon;
+            }
+            generation = poetryDaemonGeneration;
+        }
+
+        // started outside of the lock, so that concurrent modules do not wait on each other:
+        PoetryDaemon daemon;
+        try {
+            daemon = PoetryDaemon.start(interpreter, projectDirectory, generation);
+        } catch (IOException e) {
+            synchronized (this) {
+                poetryDaemonsUnavailable = true;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (!closed) {
+                poetryDaemons.add(daemon);
+                return daemon;
+            }
+        }
+        daemon.close();
+        throw new IOException("Python servers have been shut down");
+    }
+
+    private PoetryDaemon takeIdlePoetryDaemon(File interpreter, File projectDirectory) {
+        Iterator<PoetryDaemon> iterator = idlePoetryDaemons.iterator();
+        while (iterator.hasNext()) {
+            PoetryDaemon daemon = iterator.next();
+            if (!daemon.isAlive()) {
+                iterator.remove();
+                poetryDaemons.remove(daemon);
+                daemon.close();
+            } else if (daemon.getInterpreter().equals(interpreter)
+                    && (projectDirectory == null || projectDirectory.equals(daemon.getLastProjectDirectory()))) {
+                iterator.remove();
+                return daemon;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a daemon taken via {@link #acquirePoetryDaemon(File, File)} to the
+     * pool.
+     *
+     * @param daemon daemon to return
+     */
+    public void releasePoetryDaemon(PoetryDaemon daemon) {
+        synchronized (this) {
+            if (!closed && daemon.isAlive() && daemon.getGeneration() == poetryDaemonGeneration) {
+                idlePoetryDaemons.push(daemon);
+                return;
+            }
+            poetryDaemons.remove(daemon);
+        }
+        daemon.close();
+    }
+
+    /**
+     * Shuts down idle {@link PoetryDaemon}s, and any that are busy once they are
+     * released, so that subsequent commands are executed by new daemons (i.e.
+     * after {@code poetry self} commands change the Poetry installation).
+     */
+    public void restartPoetryDaemons() {
+        List<PoetryDaemon> toClose;
+        synchronized (this) {
+            poetryDaemonGeneration++;
+            toClose = new ArrayList<>(idlePoetryDaemons);
+            idlePoetryDaemons.clear();
+            poetryDaemons.removeAll(toClose);
+        }
+        toClose.forEach(PoetryDaemon::close);
+    }
+
+    /**
+     * Shuts down and forgets the given server (i.e. after it failed), so that a
+     * new server is started the next time one is needed.
+     *
+     * @param server server to discard
+     */
+    public synchronized void discard(AbstractPythonServer server) {
+        servers.values().remove(server);
+        poetryDaemons.remove(server);
+        idlePoetryDaemons.remove(server);
+        server.close();
+    }
+
+    /**
+     * Returns the number of running servers, including Poetry daemons.
+     *
+     * @return number of servers
+     */
+    public synchronized int size() {
+        return servers.size() + poetryDaemons.size();
+    }
+
+    private void close() {
+        List<AbstractPythonServer> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(servers.values());
+            toClose.addAll(poetryDaemons);
+            servers.clear();
+            poetryDaemons.clear();
+            idlePoetryDaemons.clear();
+        }
+        toClose.parallelStream().forEach(AbstractPythonServer::close);
+    }
+
+    @FunctionalInterface
+    private interface ServerStarter<T extends AbstractPythonServer> {
+        T start() throws IOException;
+    }
+}
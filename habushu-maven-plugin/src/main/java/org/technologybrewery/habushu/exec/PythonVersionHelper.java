@@ -4,6 +4,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -46,6 +47,16 @@ public class PythonVersionHelper {
         return version.replaceAll(EXTRACT_VERSION_REGEX, "");
     }
 
+    /**
+     * Asynchronous variant of {@link #getCurrentPythonVersion()}, which executes on
+     * a virtual thread where supported (see {@link CommandThreads}).
+     *
+     * @return future version of Python
+     */
+    public CompletableFuture<String> getCurrentPythonVersionAsync() {
+        return CommandThreads.supplyAsync(this::getCurrentPythonVersion);
+    }
+
     /**
      * Executes a python command with the given arguments, logs the executed command
      * at DEBUG level, and returns the resultant process output as a string.
@@ -0,0 +1,238 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+
+/**
+ * Watches a running process for stalls: periods longer than the stall timeout
+ * during which the process neither wrote any output nor used CPU time (summed
+ * across the process and its descendants, via {@link ProcessHandle}), as is the
+ * case for a Poetry command waiting on a connection that will never complete.
+ * Processes that are busy but quiet (i.e. resolving dependencies) are not
+ * considered stalled.
+ * <p>
+ * When a process stalls, the Python stacks of its threads are logged so that
+ * it is possible to tell where it hung, and the process is killed. Stacks are
+ * captured with <a href="https://github.com/benfred/py-spy">py-spy</a> if it is
+ * on the {@code PATH}; otherwise the process is sent {@code SIGABRT}, upon which
+ * Python's faulthandler (enabled by {@link #ENABLE_FAULT_HANDLER}) writes the
+ * stacks to stderr before the process exits.
+ */
+final class StallWatchdog {
+
+    /**
+     * Environment variable that enables Python's faulthandler in watched
+     * processes.
+     */
+    static final String ENABLE_FAULT_HANDLER = "PYTHONFAULTHANDLER";
+
+    /**
+     * CPU time that a process must use between checks to be considered to be
+     * making progress, which excludes the negligible CPU time used while waiting
+     * on I/O.
+     */
+    private static final long MINIMUM_CPU_PROGRESS_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static final long MAXIMUM_CHECK_INTERVAL_MILLIS = 1000;
+    private static final long STACK_DUMP_TIMEOUT_SECONDS = 30;
+    private static final long FAULT_HANDLER_TIMEOUT_SECONDS = 5;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "habushu-stall-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration stallTimeout;
+    private final Map<String, String> environment;
+    private final Logger logger;
+    private volatile long lastProgress = System.nanoTime();
+    private long lastCpuTime = -1;
+    private ProcessHandle process;
+    private ScheduledFuture<?> checking;
+    private volatile boolean stalled;
+
+    /**
+     * @param stallTimeout time without output or CPU progress after which a
+     *                     process is stalled
+     * @param environment  environment of the process, in which py-spy is looked
+     *                     up
+     * @param logger       logger to which stalls are reported
+     */
+    StallWatchdog(Duration stallTimeout, Map<String, String> environment, Logger logger) {
+        this.stallTimeout = stallTimeout;
+        this.environment = environment;
+        this.logger = logger;
+    }
+
+    /**
+     * Wraps the given stream, to which the process's output is written, so that
+     * output counts as progress.
+     *
+     * @param output stream to which the process's output is written
+     * @return wrapped stream
+     */
+    OutputStream monitor(OutputStream output) {
+        return new ProxyOutputStream(output) {
+            @Override
+            protected void afterWrite(int n) {
+                recordProgress();
+            }
+        };
+    }
+
+    /**
+     * Records progress of the process, i.e. when its output is received other
+     * than via a stream (as for jobs of a {@link PythonToolServer}).
+     */
+    void recordProgress() {
+        lastProgress = System.nanoTime();
+    }
+
+    /**
+     * Starts watching the given (just launched) process.
+     *
+     * @param process process to watch
+     */
+    synchronized void start(ProcessHandle process) {
+        this.process = process;
+        lastProgress = System.nanoTime();
+        long interval = Math.max(10, Math.min(MAXIMUM_CHECK_INTERVAL_MILLIS, stallTimeout.toMillis() / 10));
+        checking = scheduler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops watching the process.
+     *
+     * @return whether the process was killed because it stalled
+     */
+    synchronized boolean stop() {
+        if (checking != null) {
+            checking.cancel(false);
+        }
+        return stalled;
+    }
+
+    private synchronized void check() {
+        if (stalled || !process.isAlive()) {
+            return;
+        }
+        long cpuTime = getTotalCpuTime();
+        if (cpuTime >= 0 && lastCpuTime >= 0 && cpuTime - lastCpuTime >= MINIMUM_CPU_PROGRESS_NANOS) {
+            lastProgress = System.nanoTime();
+        }
+        if (cpuTime >= 0) {
+            lastCpuTime = cpuTime;
+        }
+        if (System.nanoTime() - lastProgress < stallTimeout.toNanos()) {
+            return;
+        }
+
+        stalled = true;
+        checking.cancel(false);
+        logger.warn("Process {} wrote no output and used no CPU time for {} s - capturing its stack and stopping it",
+                process.pid(), stallTimeout.getSeconds());
+        // descendants are collected first, as they are no longer descendants once their parent exits:
+        List<ProcessHandle> processes = new ArrayList<>();
+        processes.add(process);
+        process.descendants().forEach(processes::add);
+        try {
+            dumpStacks(getPythonProcess(processes));
+        } finally {
+            processes.forEach(ProcessHandle::destroyForcibly);
+        }
+    }
+
+    /**
+     * Returns the Python process among the given process and its descendants
+     * (i.e. when Python is launched via a shell script), preferring the
+     * outermost.
+     */
+    private static ProcessHandle getPythonProcess(List<ProcessHandle> processes) {
+        for (ProcessHandle candidate : processes) {
+            String command = candidate.info().command().orElse("");
+            if (new File(command).getName().toLowerCase().startsWith("python")) {
+                return candidate;
+            }
+        }
+        return processes.get(0);
+    }
+
+    private long getTotalCpuTime() {
+        Duration total = process.info().totalCpuDuration().orElse(null);
+        if (total == null) {
+            return -1;
+        }
+        long nanos = total.toNanos();
+        for (ProcessHandle descendant : (Iterable<ProcessHandle>) process.descendants()::iterator) {
+            nanos += descendant.info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+        }
+        return nanos;
+    }
+
+    private void dumpStacks(ProcessHandle python) {
+        File pySpy = findOnPath("py-spy");
+        try {
+            if (pySpy != null) {
+                Process dump = new ProcessBuilder(pySpy.getAbsolutePath(), "dump", "--pid",
+                        String.valueOf(python.pid())).redirectErrorStream(true).start();
+                try (InputStream output = dump.getInputStream()) {
+                    if (dump.waitFor(STACK_DUMP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        logger.warn("Stack of stalled process {}:\n{}", python.pid(),
+                                IOUtils.toString(output, StandardCharsets.UTF_8));
+                        return;
+                    }
+                    dump.destroyForcibly();
+                }
+            } else if (!Platform.guess().isWindows() && "1".equals(environment.get(ENABLE_FAULT_HANDLER))) {
+                // faulthandler writes the stack of each thread to stderr, which is logged as the process's output:
+                new ProcessBuilder("kill", "-ABRT", String.valueOf(python.pid())).start()
+                        .waitFor(FAULT_HANDLER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                python.onExit().get(FAULT_HANDLER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return;
+            }
+            logger.warn("Could not capture the stack of stalled process {} - install py-spy to do so", python.pid());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Could not capture the stack of stalled process {}", python.pid(), e);
+        }
+    }
+
+    private File findOnPath(String executable) {
+        String path = null;
+        for (Map.Entry<String, String> variable : environment.entrySet()) {
+            if ("PATH".equalsIgnoreCase(variable.getKey())) {
+                path = variable.getValue();
+            }
+        }
+        if (StringUtils.isBlank(path)) {
+            return null;
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            for (String name : new String[]{executable, executable + ".exe"}) {
+                File file = new File(directory, name);
+                if (StringUtils.isNotBlank(directory) && file.isFile() && file.canExecute()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+}
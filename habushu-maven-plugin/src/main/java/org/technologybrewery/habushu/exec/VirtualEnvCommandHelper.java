@@ -0,0 +1,142 @@
+package org.technologybrewery.habushu.exec;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.util.HabushuUtil;
+
+/**
+ * Facilitates the execution of commands within a Poetry project's in-project
+ * virtual environment ({@code .venv}) without delegating to
+ * {@code poetry run}, which avoids paying the startup cost of Poetry for each
+ * tool invocation. Commands are executed with the same environment that
+ * {@code poetry run} establishes: {@code VIRTUAL_ENV} is set to the virtual
+ * environment, its executable directory is prepended to {@code PATH}, and
+ * {@code PYTHONHOME} is unset.
+ */
+public class VirtualEnvCommandHelper {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualEnvCommandHelper.class);
+    private static final String VIRTUAL_ENV = "VIRTUAL_ENV";
+    private static final String PYTHONHOME = "PYTHONHOME";
+    private static final String[] WINDOWS_EXECUTABLE_EXTENSIONS = {".exe", ".cmd", ".bat"};
+
+    private final File workingDirectory;
+    private final File virtualEnvironment;
+    private final Platform platform;
+
+    public VirtualEnvCommandHelper(File workingDirectory, File virtualEnvironment, Platform platform) {
+        this.workingDirectory = workingDirectory;
+        this.virtualEnvironment = virtualEnvironment;
+        this.platform = platform;
+    }
+
+    /**
+     * Finds the in-project virtual environment of the Poetry project within the
+     * given directory.
+     *
+     * @param workingDirectory base directory of the Poetry project
+     * @return helper for the virtual environment, or {@code null} if the project
+     * does not have an in-project virtual environment containing a Python
+     * interpreter
+     */
+    public static VirtualEnvCommandHelper find(File workingDirectory) {
+        File virtualEnvironment = new File(HabushuUtil.getInProjectVirtualEnvironmentPath(workingDirectory));
+        VirtualEnvCommandHelper helper = new VirtualEnvCommandHelper(workingDirectory, virtualEnvironment,
+                Platform.guess());
+        if (helper.findExecutable("python") == null) {
+            logger.debug("No in-project virtual environment with a Python interpreter found at {}",
+                    virtualEnvironment);
+            return null;
+        }
+        return helper;
+    }
+
+    public File getVirtualEnvironment() {
+        return virtualEnvironment;
+    }
+
+    public Platform getPlatform() {
+        return platform;
+    }
+
+    /**
+     * Returns the directory of the virtual environment that contains its
+     * executables ({@code bin}, or {@code Scripts} on Windows).
+     *
+     * @return executable directory
+     */
+    public File getExecutableDirectory() {
+        return new File(virtualEnvironment, platform.isWindows() ? "Scripts" : "bin");
+    }
+
+    /**
+     * Finds the given executable within the virtual environment.
+     *
+     * @param name name of the executable (i.e. {@code pylint})
+     * @return the executable, or {@code null} if the virtual environment does not
+     * contain it
+     */
+    public File findExecutable(String name) {
+        File executableDirectory = getExecutableDirectory();
+        if (platform.isWindows()) {
+            for (String extension : WINDOWS_EXECUTABLE_EXTENSIONS) {
+                File executable = new File(executableDirectory, name + extension);
+                if (executable.isFile()) {
+                    return executable;
+                }
+            }
+        }
+        File executable = new File(executableDirectory, name);
+        return executable.isFile() && executable.canExecute() ? executable : null;
+    }
+
+    /**
+     * Executes a command within the virtual environment, logs the executed
+     * command, logs the stdout/stderr generated by the process, and returns the
+     * process exit code. If the virtual environment contains an executable
+     * matching the first element of the command, it is executed directly;
+     * otherwise, the command is resolved from the {@code PATH} as
+     * {@code poetry run} would.
+     *
+     * @param command              command and its arguments (i.e.
+     *                             {@code pylint src})
+     * @param environmentVariables additional environment variables, may be
+     *                             {@code null}
+     * @return process exit code
+     */
+    public int executeAndLogOutput(List<String> command, Map<String, String> environmentVariables) {
+        if (logger.isInfoEnabled()) {
+            logger.info("Executing command in virtual environment {}: {}", virtualEnvironment,
+                    StringUtils.join(command, " "));
+        }
+        ProcessExecutor executor = createExecutor(command, environmentVariables);
+        return executor.executeAndRedirectOutput(logger);
+    }
+
+    protected ProcessExecutor createExecutor(List<String> command, Map<String, String> environmentVariables) {
+        List<String> fullCommand = new ArrayList<>(command);
+        File executable = findExecutable(command.get(0));
+        if (executable != null) {
+            fullCommand.set(0, executable.getAbsolutePath());
+        }
+
+        Map<String, String> environment = new HashMap<>();
+        if (environmentVariables != null) {
+            environment.putAll(environmentVariables);
+        }
+        environment.put(VIRTUAL_ENV, virtualEnvironment.getAbsolutePath());
+        environment.put(PYTHONHOME, null);
+
+        return new ProcessExecutor(workingDirectory,
+                Collections.singletonList(getExecutableDirectory().getAbsolutePath()), fullCommand, platform,
+                environment);
+    }
+}
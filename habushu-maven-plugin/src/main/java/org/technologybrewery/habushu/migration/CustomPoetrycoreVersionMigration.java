@@ -42,8 +42,7 @@ public class CustomPoetrycoreVersionMigration extends AbstractMigration {
 
     @Override
     protected boolean shouldExecuteOnFile(File file) {
-        try (FileConfig tomlFileConfig = FileConfig.of(file)) {
-            tomlFileConfig.load();
+        try (FileConfig tomlFileConfig = TomlUtils.loadTomlFile(file)) {
             Optional<Config> toolBuildSystem = tomlFileConfig.getOptional(TomlUtils.BUILD_SYSTEM);
             if (toolBuildSystem.isPresent()) {
                 Config buildSystem = toolBuildSystem.get();
@@ -39,9 +39,7 @@ public class RemoveMonorepoGroupMigration extends AbstractMigration {
     protected boolean shouldExecuteOnFile(File file) {
         replacements.clear();
         boolean shouldExecute = false;
-        try (FileConfig tomlFileConfig = FileConfig.of(file)) {
-            tomlFileConfig.load();
-
+        try (FileConfig tomlFileConfig = TomlUtils.loadTomlFile(file)) {
             Optional<Config> toolPoetryMonorepoDependencies = tomlFileConfig.getOptional(TomlUtils.TOOL_POETRY_GROUP_MONOREPO_DEPENDENCIES);
             if (toolPoetryMonorepoDependencies.isPresent()) {
                 Config foundDependencies = toolPoetryMonorepoDependencies.get();
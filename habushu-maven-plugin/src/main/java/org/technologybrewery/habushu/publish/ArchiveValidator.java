@@ -0,0 +1,405 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.electronwill.nightconfig.core.Config;
+import com.electronwill.nightconfig.toml.TomlFormat;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.util.Pep440Version;
+
+/**
+ * Validates wheel and sdist archives before they are published, performing the
+ * checks of {@code twine check} (and those that PyPI performs upon upload) in
+ * process so that malformed archives fail the build immediately rather than
+ * after upload attempts have been retried:
+ * <ul>
+ * <li>the core metadata ({@code METADATA} or {@code PKG-INFO}) declares a
+ * supported {@code Metadata-Version}, and a valid {@code Name} and
+ * {@code Version} that match the archive's file name and the project's
+ * {@code pyproject.toml}</li>
+ * <li>the long description will render on PyPI (see
+ * {@link LongDescriptionValidator})</li>
+ * <li>wheels contain a single {@code .dist-info} directory whose name matches
+ * the file name, along with {@code WHEEL} and {@code RECORD} files</li>
+ * <li>the hash and size of every file listed in a wheel's {@code RECORD} match
+ * its contents, and every file in the wheel is listed</li>
+ * <li>the {@code pyproject.toml} within an sdist declares the same name and
+ * version as its {@code PKG-INFO}</li>
+ * </ul>
+ * Archives are validated concurrently, and the entries of each wheel are
+ * streamed and hashed concurrently without being buffered in memory.
+ */
+public final class ArchiveValidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveValidator.class);
+    private static final String DIST_INFO_SUFFIX = ".dist-info";
+    private static final String RECORD = "RECORD";
+    private static final Set<String> RECORD_SIGNATURES = new HashSet<>(Arrays.asList("RECORD.jws", "RECORD.p7s"));
+    private static final Set<String> METADATA_VERSIONS = new HashSet<>(Arrays.asList(
+            "1.0", "1.1", "1.2", "2.1", "2.2", "2.3", "2.4"));
+    private static final Pattern PROJECT_NAME = Pattern.compile("^([A-Z0-9]|[A-Z0-9][A-Z0-9._-]*[A-Z0-9])$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Map<String, String> RECORD_HASH_ALGORITHMS = new HashMap<>();
+
+    static {
+        RECORD_HASH_ALGORITHMS.put("sha256", "SHA-256");
+        RECORD_HASH_ALGORITHMS.put("sha384", "SHA-384");
+        RECORD_HASH_ALGORITHMS.put("sha512", "SHA-512");
+    }
+
+    private ArchiveValidator() {
+    }
+
+    /**
+     * Validates the given archives.
+     *
+     * @param archives        archives to validate
+     * @param expectedName    project name declared in {@code pyproject.toml}, or
+     *                        {@code null} to not check the name of the archives
+     * @param expectedVersion version being published, or {@code null} to not check
+     *                        the version of the archives
+     * @return problems found, each prefixed with the name of its archive
+     */
+    public static List<String> validate(Collection<DistributionArchive> archives, String expectedName,
+                                        String expectedVersion) {
+        long start = System.currentTimeMillis();
+        List<String> problems = archives.parallelStream()
+                .flatMap(archive -> validate(archive, expectedName, expectedVersion).stream())
+                .collect(Collectors.toList());
+        logger.info("Validated {} in {} ms", archives, System.currentTimeMillis() - start);
+        return problems;
+    }
+
+    /**
+     * Reads a project name or version from a parsed {@code pyproject.toml},
+     * supporting both the {@code [tool.poetry]} and {@code [project]} tables.
+     *
+     * @param pyproject parsed {@code pyproject.toml}
+     * @param key       {@code name} or {@code version}
+     * @return declared value, or {@code null} if not declared (i.e. a dynamic
+     * version)
+     */
+    public static String getProjectValue(Config pyproject, String key) {
+        Object value = pyproject.get("tool.poetry." + key);
+        if (value == null) {
+            value = pyproject.get("project." + key);
+        }
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static List<String> validate(DistributionArchive archive, String expectedName, String expectedVersion) {
+        List<String> problems = new ArrayList<>();
+        try {
+            CoreMetadata metadata = DistributionArchive.WHEEL_FILE_TYPE.equals(archive.getFileType())
+                    ? validateWheel(archive, problems) : validateSdist(archive, problems);
+            if (metadata != null) {
+                validateMetadata(archive, metadata, expectedName, expectedVersion, problems);
+            }
+        } catch (IOException | HabushuException e) {
+            problems.add("could not be read: " + e.getMessage());
+        }
+        return problems.stream().map(problem -> archive + ": " + problem).collect(Collectors.toList());
+    }
+
+    private static void validateMetadata(DistributionArchive archive, CoreMetadata metadata, String expectedName,
+                                         String expectedVersion, List<String> problems) {
+        String metadataVersion = metadata.getHeader("Metadata-Version");
+        if (metadataVersion == null) {
+            problems.add(metadata.getSource() + " is missing the required Metadata-Version field");
+        } else if (!METADATA_VERSIONS.contains(metadataVersion)) {
+            problems.add(String.format("%s has unsupported Metadata-Version %s", metadata.getSource(), metadataVersion));
+        }
+
+        String name = metadata.getHeader("Name");
+        if (name == null) {
+            problems.add(metadata.getSource() + " is missing the required Name field");
+        } else if (!PROJECT_NAME.matcher(name).matches()) {
+            problems.add(String.format("%s has invalid Name '%s'", metadata.getSource(), name));
+        } else {
+            if (!DistributionArchive.normalizeName(name).equals(archive.getNormalizedName())) {
+                problems.add(String.format("%s Name '%s' does not match the file name", metadata.getSource(), name));
+            }
+            if (expectedName != null
+                    && !DistributionArchive.normalizeName(name).equals(DistributionArchive.normalizeName(expectedName))) {
+                problems.add(String.format("%s Name '%s' does not match the pyproject.toml name '%s'",
+                        metadata.getSource(), name, expectedName));
+            }
+        }
+
+        String version = metadata.getHeader("Version");
+        if (version == null) {
+            problems.add(metadata.getSource() + " is missing the required Version field");
+        } else if (Pep440Version.parseQuietly(version) == null) {
+            problems.add(String.format("%s has invalid PEP-440 Version '%s'", metadata.getSource(), version));
+        } else {
+            if (!archive.hasVersion(version)) {
+                problems.add(String.format("%s Version %s does not match the file name", metadata.getSource(), version));
+            }
+            if (expectedVersion != null && !DistributionArchive.isSameVersion(version, expectedVersion)) {
+                problems.add(String.format("%s Version %s does not match the version being published (%s)",
+                        metadata.getSource(), version, expectedVersion));
+            }
+        }
+
+        for (String problem : LongDescriptionValidator.validate(metadata.getHeader("Description-Content-Type"),
+                metadata.getDescription())) {
+            problems.add("long description will not render on PyPI: " + problem);
+        }
+    }
+
+    private static CoreMetadata validateWheel(DistributionArchive archive, List<String> problems) throws IOException {
+        try (ZipFile zipFile = new ZipFile(archive.getFile())) {
+            Set<String> distInfoDirectories = new LinkedHashSet<>();
+            Set<String> files = new LinkedHashSet<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                int separator = entry.getName().indexOf('/');
+                if (separator > 0 && entry.getName().substring(0, separator).endsWith(DIST_INFO_SUFFIX)) {
+                    distInfoDirectories.add(entry.getName().substring(0, separator));
+                }
+                if (!entry.isDirectory()) {
+                    files.add(entry.getName());
+                }
+            }
+            if (distInfoDirectories.size() != 1) {
+                problems.add(String.format("expected a single .dist-info directory, but found %s",
+                        distInfoDirectories));
+                return null;
+            }
+
+            String distInfoDirectory = distInfoDirectories.iterator().next();
+            String baseName = StringUtils.removeEnd(distInfoDirectory, DIST_INFO_SUFFIX);
+            int versionSeparator = baseName.lastIndexOf('-');
+            if (versionSeparator <= 0
+                    || !DistributionArchive.normalizeName(baseName.substring(0, versionSeparator))
+                    .equals(archive.getNormalizedName())
+                    || !archive.hasVersion(baseName.substring(versionSeparator + 1))) {
+                problems.add(String.format("%s does not match the file name", distInfoDirectory));
+            }
+
+            CoreMetadata wheelMetadata = readMetadata(zipFile, distInfoDirectory + "/WHEEL", problems);
+            if (wheelMetadata != null && wheelMetadata.getHeader("Wheel-Version") == null) {
+                problems.add(wheelMetadata.getSource() + " is missing the required Wheel-Version field");
+            }
+            validateRecord(zipFile, distInfoDirectory, files, problems);
+            return readMetadata(zipFile, distInfoDirectory + "/METADATA", problems);
+        }
+    }
+
+    private static CoreMetadata readMetadata(ZipFile zipFile, String path, List<String> problems)
+            throws IOException {
+        ZipEntry entry = zipFile.getEntry(path);
+        if (entry == null) {
+            problems.add("does not contain " + path);
+            return null;
+        }
+        try (InputStream inputStream = zipFile.getInputStream(entry)) {
+            return CoreMetadata.parse(path, ArchiveVersionRewriter.readFully(inputStream));
+        }
+    }
+
+    private static void validateRecord(ZipFile zipFile, String distInfoDirectory, Set<String> files,
+                                       List<String> problems) throws IOException {
+        String recordPath = distInfoDirectory + "/" + RECORD;
+        ZipEntry recordEntry = zipFile.getEntry(recordPath);
+        if (recordEntry == null) {
+            problems.add("does not contain " + recordPath);
+            return;
+        }
+
+        Map<String, String[]> records = new LinkedHashMap<>();
+        String record;
+        try (InputStream inputStream = zipFile.getInputStream(recordEntry)) {
+            record = ArchiveVersionRewriter.readFully(inputStream);
+        }
+        for (String line : record.split("\r?\n")) {
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+            String[] row = parseRecordLine(line);
+            if (row.length != 3) {
+                problems.add(String.format("%s has a malformed line: %s", recordPath, line));
+            } else if (records.put(row[0], row) != null) {
+                problems.add(String.format("%s lists %s more than once", recordPath, row[0]));
+            }
+        }
+
+        for (String file : files) {
+            if (!records.containsKey(file) && !isRecordSignature(file, distInfoDirectory)) {
+                problems.add(String.format("%s is not listed in %s", file, recordPath));
+            }
+        }
+
+        // hash the listed files concurrently, as ZipFile supports concurrent reads of different entries:
+        problems.addAll(records.values().parallelStream()
+                .map(row -> validateRecordRow(zipFile, row, recordPath, distInfoDirectory))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    private static boolean isRecordSignature(String path, String distInfoDirectory) {
+        return path.startsWith(distInfoDirectory + "/")
+                && RECORD_SIGNATURES.contains(path.substring(distInfoDirectory.length() + 1));
+    }
+
+    private static String validateRecordRow(ZipFile zipFile, String[] row, String recordPath,
+                                            String distInfoDirectory) {
+        String path = row[0];
+        String hash = row[1];
+        String size = row[2];
+        if (path.equals(recordPath) || isRecordSignature(path, distInfoDirectory)) {
+            return null;
+        }
+        ZipEntry entry = zipFile.getEntry(path);
+        if (entry == null) {
+            return String.format("%s is listed in %s but is missing", path, recordPath);
+        }
+        if (StringUtils.isEmpty(hash)) {
+            return String.format("%s has no hash in %s", path, recordPath);
+        }
+
+        String[] hashParts = hash.split("=", 2);
+        String algorithm = RECORD_HASH_ALGORITHMS.get(hashParts[0]);
+        if (algorithm == null || hashParts.length != 2) {
+            return String.format("%s has an unsupported hash '%s' in %s", path, hash, recordPath);
+        }
+
+        long actualSize = 0;
+        MessageDigest digest;
+        try (InputStream inputStream = zipFile.getInputStream(entry)) {
+            digest = MessageDigest.getInstance(algorithm);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                actualSize += read;
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return String.format("%s could not be read: %s", path, e.getMessage());
+        }
+
+        String actualHash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        if (!actualHash.equals(StringUtils.stripEnd(hashParts[1], "="))) {
+            return String.format("%s does not match its %s hash in %s", path, hashParts[0], recordPath);
+        }
+        if (StringUtils.isNotEmpty(size) && !size.equals(Long.toString(actualSize))) {
+            return String.format("%s is %s bytes, but %s lists %s bytes", path, actualSize, recordPath, size);
+        }
+        return null;
+    }
+
+    /**
+     * Parses a line of a {@code RECORD} file, which is CSV in which paths
+     * containing commas or quotes are quoted.
+     */
+    static String[] parseRecordLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private static CoreMetadata validateSdist(DistributionArchive archive, List<String> problems)
+            throws IOException {
+        String baseName = archive.getName() + "-" + archive.getVersion();
+        String pkgInfoPath = baseName + "/PKG-INFO";
+        String pyprojectPath = baseName + "/pyproject.toml";
+        Set<String> paths = new HashSet<>(Arrays.asList(pkgInfoPath, pyprojectPath));
+
+        Map<String, byte[]> entries = new HashMap<>();
+        if (archive.getFile().getName().endsWith(".zip")) {
+            try (ZipFile zipFile = new ZipFile(archive.getFile())) {
+                for (String path : paths) {
+                    ZipEntry entry = zipFile.getEntry(path);
+                    if (entry != null) {
+                        try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                            entries.put(path, inputStream.readAllBytes());
+                        }
+                    }
+                }
+            }
+        } else {
+            entries = SdistVersionRewriter.readEntries(archive.getFile(), paths);
+        }
+
+        if (!entries.containsKey(pkgInfoPath)) {
+            problems.add("does not contain " + pkgInfoPath);
+            return null;
+        }
+        CoreMetadata metadata = CoreMetadata.parse(pkgInfoPath,
+                new String(entries.get(pkgInfoPath), StandardCharsets.UTF_8));
+
+        if (entries.containsKey(pyprojectPath)) {
+            Config pyproject;
+            try {
+                pyproject = TomlFormat.instance().createParser().parse(new StringReader(
+                        new String(entries.get(pyprojectPath), StandardCharsets.UTF_8)));
+            } catch (RuntimeException e) {
+                problems.add(String.format("%s could not be parsed: %s", pyprojectPath, e.getMessage()));
+                return metadata;
+            }
+            String pyprojectName = getProjectValue(pyproject, "name");
+            String pyprojectVersion = getProjectValue(pyproject, "version");
+            String name = metadata.getHeader("Name");
+            String version = metadata.getHeader("Version");
+            if (pyprojectName != null && name != null
+                    && !DistributionArchive.normalizeName(pyprojectName).equals(DistributionArchive.normalizeName(name))) {
+                problems.add(String.format("%s name '%s' does not match the PKG-INFO Name '%s'", pyprojectPath,
+                        pyprojectName, name));
+            }
+            if (pyprojectVersion != null && version != null
+                    && !DistributionArchive.isSameVersion(pyprojectVersion, version)) {
+                problems.add(String.format("%s version %s does not match the PKG-INFO Version %s", pyprojectPath,
+                        pyprojectVersion, version));
+            }
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,281 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.util.HabushuUtil;
+import org.technologybrewery.habushu.util.WheelFileName;
+
+/**
+ * Creates a copy of a wheel or sdist archive with a different version by
+ * streaming its entries into a new archive and rewriting only the metadata that
+ * references the version, which allows SNAPSHOT packages to be published
+ * without rebuilding them or modifying {@code pyproject.toml}:
+ * <ul>
+ * <li>wheels: the {@code Version} of {@code METADATA} is rewritten, the
+ * {@code .dist-info} (and {@code .data}) directory is renamed, and
+ * {@code RECORD} is recomputed from the rewritten entries</li>
+ * <li>sdists: the top-level directory is renamed, and the {@code Version} of
+ * {@code PKG-INFO} and the project version within {@code pyproject.toml} are
+ * rewritten</li>
+ * </ul>
+ * Entry metadata (i.e. permissions and modification times) is carried over to
+ * the rewritten archive. Rewritten archives are written to a temporary file that is atomically moved
+ * into place once complete.
+ */
+public final class ArchiveVersionRewriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveVersionRewriter.class);
+    private static final String DIST_INFO_SUFFIX = ".dist-info/";
+    private static final String DATA_SUFFIX = ".data/";
+    private static final String RECORD = "RECORD";
+    private static final String METADATA = "METADATA";
+    private static final Pattern PYPROJECT_TABLE = Pattern.compile("^\\s*\\[([^\\[\\]]+)]\\s*(#.*)?$");
+    private static final Pattern PYPROJECT_VERSION = Pattern.compile("^(\\s*version\\s*=\\s*)([\"'])[^\"']*\\2(.*)$");
+
+    private ArchiveVersionRewriter() {
+    }
+
+    /**
+     * Writes a copy of the given archive with the given version to the output
+     * directory.
+     *
+     * @param archive         wheel or sdist archive to rewrite
+     * @param version         version of the rewritten archive
+     * @param outputDirectory directory in which to write the rewritten archive
+     * @return the rewritten archive
+     */
+    public static DistributionArchive rewrite(DistributionArchive archive, String version, File outputDirectory) {
+        long start = System.currentTimeMillis();
+        File rewrittenFile = new File(outputDirectory, getRewrittenFileName(archive, version));
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(outputDirectory.toPath());
+            temporaryFile = Files.createTempFile(outputDirectory.toPath(), "." + rewrittenFile.getName(), ".tmp");
+            if (DistributionArchive.WHEEL_FILE_TYPE.equals(archive.getFileType())) {
+                rewriteWheel(archive.getFile(), version, temporaryFile);
+            } else {
+                SdistVersionRewriter.rewrite(archive.getFile(), getSdistBaseName(archive, archive.getVersion()),
+                        getSdistBaseName(archive, version), version, temporaryFile);
+            }
+            HabushuUtil.moveAtomically(temporaryFile, rewrittenFile.toPath());
+        } catch (IOException e) {
+            throw new HabushuException("Could not rewrite the version of " + archive.getFile(), e);
+        } finally {
+            deleteQuietly(temporaryFile);
+        }
+
+        logger.info("Rewrote {} as {} in {} ms", archive, rewrittenFile.getName(), System.currentTimeMillis() - start);
+        return DistributionArchive.of(rewrittenFile);
+    }
+
+    private static String getRewrittenFileName(DistributionArchive archive, String version) {
+        if (DistributionArchive.WHEEL_FILE_TYPE.equals(archive.getFileType())) {
+            WheelFileName wheelFileName = WheelFileName.parse(archive.getFile().getName());
+            String fileName = archive.getFile().getName();
+            String tags = fileName.substring(wheelFileName.getDistribution().length()
+                    + wheelFileName.getVersion().length() + 1);
+            return wheelFileName.getDistribution() + "-" + escapeVersion(version) + tags;
+        }
+        if (!archive.getFile().getName().endsWith(".tar.gz")) {
+            throw new HabushuException("Only .tar.gz sdist archives can be rewritten: " + archive.getFile());
+        }
+        return getSdistBaseName(archive, version) + ".tar.gz";
+    }
+
+    private static String getSdistBaseName(DistributionArchive archive, String version) {
+        return archive.getName() + "-" + version;
+    }
+
+    /**
+     * Escapes a version for use within wheel file and directory names.
+     */
+    private static String escapeVersion(String version) {
+        return version.replace('-', '_');
+    }
+
+    private static void rewriteWheel(File wheel, String version, Path rewrittenWheel) throws IOException {
+        try (ZipFile zipFile = new ZipFile(wheel);
+             ZipArchiveOutputStream zip = new ZipArchiveOutputStream(rewrittenWheel.toFile())) {
+            String distInfoDirectory = findTopLevelDirectory(zipFile, DIST_INFO_SUFFIX);
+            if (distInfoDirectory == null) {
+                throw new HabushuException("Could not find the .dist-info directory of " + wheel);
+            }
+            String baseName = distInfoDirectory.substring(0, distInfoDirectory.length() - DIST_INFO_SUFFIX.length());
+            String distribution = baseName.substring(0, baseName.lastIndexOf('-'));
+            String rewrittenBaseName = distribution + "-" + escapeVersion(version);
+            String recordPath = rewrittenBaseName + DIST_INFO_SUFFIX + RECORD;
+
+            List<String> records = new ArrayList<>();
+            byte[] buffer = new byte[64 * 1024];
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                String path = renameTopLevelDirectory(entry.getName(), baseName, rewrittenBaseName);
+                if (path.equals(recordPath)) {
+                    continue;
+                }
+
+                ZipArchiveEntry rewrittenEntry = new ZipArchiveEntry(path);
+                rewrittenEntry.setTime(entry.getTime());
+                // carries over permissions (i.e. of executable scripts), which are only meaningful for Unix entries:
+                if (entry.getPlatform() == ZipArchiveEntry.PLATFORM_UNIX) {
+                    rewrittenEntry.setUnixMode(entry.getUnixMode());
+                }
+                rewrittenEntry.setInternalAttributes(entry.getInternalAttributes());
+                rewrittenEntry.setExternalAttributes(entry.getExternalAttributes());
+                zip.putArchiveEntry(rewrittenEntry);
+                if (!entry.isDirectory()) {
+                    MessageDigest sha256 = DigestUtils.getSha256Digest();
+                    long size = 0;
+                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                        if (path.equals(rewrittenBaseName + DIST_INFO_SUFFIX + METADATA)) {
+                            byte[] metadata = rewriteMetadataVersion(readFully(inputStream), version)
+                                    .getBytes(StandardCharsets.UTF_8);
+                            sha256.update(metadata);
+                            zip.write(metadata);
+                            size = metadata.length;
+                        } else {
+                            int read;
+                            while ((read = inputStream.read(buffer)) != -1) {
+                                sha256.update(buffer, 0, read);
+                                zip.write(buffer, 0, read);
+                                size += read;
+                            }
+                        }
+                    }
+                    records.add(toRecordLine(path, "sha256=" + Base64.getUrlEncoder().withoutPadding()
+                            .encodeToString(sha256.digest()), Long.toString(size)));
+                }
+                zip.closeArchiveEntry();
+            }
+
+            records.add(toRecordLine(recordPath, "", ""));
+            ZipArchiveEntry recordEntry = new ZipArchiveEntry(recordPath);
+            recordEntry.setUnixMode(0644);
+            zip.putArchiveEntry(recordEntry);
+            zip.write((String.join("\n", records) + "\n").getBytes(StandardCharsets.UTF_8));
+            zip.closeArchiveEntry();
+        }
+    }
+
+    private static String findTopLevelDirectory(ZipFile zipFile, String suffix) {
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            int index = name.indexOf(suffix);
+            if (index > 0 && name.lastIndexOf('/', index - 1) == -1) {
+                return name.substring(0, index + suffix.length());
+            }
+        }
+        return null;
+    }
+
+    private static String renameTopLevelDirectory(String path, String baseName, String rewrittenBaseName) {
+        for (String suffix : new String[]{DIST_INFO_SUFFIX, DATA_SUFFIX}) {
+            if (path.startsWith(baseName + suffix)) {
+                return rewrittenBaseName + path.substring(baseName.length());
+            }
+        }
+        return path;
+    }
+
+    private static String toRecordLine(String path, String hash, String size) {
+        String escapedPath = path.contains(",") || path.contains("\"")
+                ? "\"" + path.replace("\"", "\"\"") + "\"" : path;
+        return escapedPath + "," + hash + "," + size;
+    }
+
+    static String readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        inputStream.transferTo(contents);
+        return contents.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the {@code Version} header of core metadata (i.e. a wheel's
+     * {@code METADATA} or an sdist's {@code PKG-INFO}), leaving the long
+     * description that follows the headers untouched.
+     *
+     * @param metadata core metadata
+     * @param version  version to set
+     * @return rewritten metadata
+     */
+    static String rewriteMetadataVersion(String metadata, String version) {
+        StringBuilder rewrittenMetadata = new StringBuilder(metadata.length() + version.length());
+        int lineStart = 0;
+        boolean inHeaders = true;
+        while (lineStart < metadata.length()) {
+            int lineEnd = metadata.indexOf('\n', lineStart);
+            lineEnd = lineEnd == -1 ? metadata.length() : lineEnd + 1;
+            String line = metadata.substring(lineStart, lineEnd);
+            String content = line.stripTrailing();
+            if (inHeaders && content.isEmpty()) {
+                inHeaders = false;
+            }
+            if (inHeaders && content.startsWith("Version:")) {
+                rewrittenMetadata.append("Version: ").append(version).append(line.substring(content.length()));
+            } else {
+                rewrittenMetadata.append(line);
+            }
+            lineStart = lineEnd;
+        }
+        return rewrittenMetadata.toString();
+    }
+
+    /**
+     * Rewrites the project version within the {@code [tool.poetry]} or
+     * {@code [project]} table of a {@code pyproject.toml}.
+     *
+     * @param pyproject contents of {@code pyproject.toml}
+     * @param version   version to set
+     * @return rewritten contents
+     */
+    static String rewritePyprojectVersion(String pyproject, String version) {
+        StringBuilder rewrittenPyproject = new StringBuilder(pyproject.length() + version.length());
+        String table = "";
+        for (String line : pyproject.split("(?<=\n)")) {
+            Matcher tableMatcher = PYPROJECT_TABLE.matcher(line.stripTrailing());
+            Matcher versionMatcher = PYPROJECT_VERSION.matcher(line.stripTrailing());
+            if (tableMatcher.matches()) {
+                table = tableMatcher.group(1).trim();
+                rewrittenPyproject.append(line);
+            } else if (("tool.poetry".equals(table) || "project".equals(table)) && versionMatcher.matches()) {
+                rewrittenPyproject.append(versionMatcher.group(1)).append('"').append(version).append('"')
+                        .append(versionMatcher.group(3)).append(line.substring(line.stripTrailing().length()));
+            } else {
+                rewrittenPyproject.append(line);
+            }
+        }
+        return rewrittenPyproject.toString();
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.debug("Could not delete {}", file, e);
+            }
+        }
+    }
+}
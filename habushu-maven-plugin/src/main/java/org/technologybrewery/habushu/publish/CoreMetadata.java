@@ -0,0 +1,174 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Core metadata (i.e. {@code METADATA} or {@code PKG-INFO}) parsed from its
+ * RFC-822 style headers, which may be followed by the long description. Every
+ * value of multiple-use fields (i.e. {@code Classifier} or
+ * {@code Requires-Dist}) is kept, in the order in which they are declared.
+ */
+final class CoreMetadata {
+
+    private static final Pattern WHEEL_METADATA = Pattern.compile("[^/]+\\.dist-info/METADATA");
+    private static final Pattern DESCRIPTION_CONTINUATION = Pattern.compile("\n( {7}\\|| {8}|\t)");
+
+    private final String source;
+    private final Map<String, List<String>> headers;
+    private final String body;
+
+    private CoreMetadata(String source, Map<String, List<String>> headers, String body) {
+        this.source = source;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Reads the core metadata of the given archive, from the {@code METADATA} of
+     * a wheel's {@code .dist-info} directory or the {@code PKG-INFO} of an sdist.
+     *
+     * @param archive archive to read
+     * @return parsed core metadata
+     * @throws IOException if the archive cannot be read or does not contain core
+     *                     metadata
+     */
+    static CoreMetadata read(DistributionArchive archive) throws IOException {
+        File file = archive.getFile();
+        if (DistributionArchive.WHEEL_FILE_TYPE.equals(archive.getFileType())) {
+            try (ZipFile zipFile = new ZipFile(file)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (WHEEL_METADATA.matcher(entry.getName()).matches()) {
+                        try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                            return parse(entry.getName(), ArchiveVersionRewriter.readFully(inputStream));
+                        }
+                    }
+                }
+            }
+            throw new IOException(file.getName() + " does not contain a .dist-info/METADATA file");
+        }
+
+        String path = archive.getName() + "-" + archive.getVersion() + "/PKG-INFO";
+        byte[] pkgInfo = null;
+        if (file.getName().endsWith(".zip")) {
+            try (ZipFile zipFile = new ZipFile(file)) {
+                ZipEntry entry = zipFile.getEntry(path);
+                if (entry != null) {
+                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                        pkgInfo = inputStream.readAllBytes();
+                    }
+                }
+            }
+        } else {
+            pkgInfo = SdistVersionRewriter.readEntries(file, Collections.singleton(path)).get(path);
+        }
+        if (pkgInfo == null) {
+            throw new IOException(file.getName() + " does not contain " + path);
+        }
+        return parse(path, new String(pkgInfo, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses core metadata.
+     *
+     * @param source   path of the metadata within its archive
+     * @param metadata contents of the metadata
+     * @return parsed core metadata
+     */
+    static CoreMetadata parse(String source, String metadata) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String[] lines = metadata.split("\r?\n", -1);
+        List<String> lastValues = null;
+        int i = 0;
+        for (; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.isEmpty()) {
+                i++;
+                break;
+            }
+            if (lastValues != null && (line.startsWith(" ") || line.startsWith("\t"))) {
+                int last = lastValues.size() - 1;
+                lastValues.set(last, lastValues.get(last) + "\n" + line);
+                continue;
+            }
+            int separator = line.indexOf(':');
+            if (separator > 0) {
+                lastValues = headers.computeIfAbsent(line.substring(0, separator).trim(), key -> new ArrayList<>());
+                lastValues.add(line.substring(separator + 1).trim());
+            }
+        }
+        String body = String.join("\n", Arrays.asList(lines).subList(Math.min(i, lines.length), lines.length));
+        return new CoreMetadata(source, headers, body);
+    }
+
+    /**
+     * Returns the path of the metadata within its archive.
+     *
+     * @return path of the metadata
+     */
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the names of the declared fields.
+     *
+     * @return field names
+     */
+    Set<String> getFieldNames() {
+        return headers.keySet();
+    }
+
+    /**
+     * Returns the (first) value of a field.
+     *
+     * @param name field name, matched regardless of case
+     * @return value of the field, or {@code null} if not declared or blank
+     */
+    String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? StringUtils.trimToNull(values.get(0)) : null;
+    }
+
+    /**
+     * Returns every value of a field.
+     *
+     * @param name field name, matched regardless of case
+     * @return values of the field, which are empty if not declared
+     */
+    List<String> getHeaders(String name) {
+        return headers.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * Returns the long description, which is either the body of the metadata or
+     * the value of its {@code Description} field.
+     *
+     * @return long description, or {@code null} if not declared
+     */
+    String getDescription() {
+        if (StringUtils.isNotBlank(body)) {
+            return body;
+        }
+        List<String> description = headers.get("Description");
+        return description != null
+                ? DESCRIPTION_CONTINUATION.matcher(description.get(0)).replaceAll("\n") : null;
+    }
+}
@@ -0,0 +1,164 @@
+package org.technologybrewery.habushu.publish;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+
+/**
+ * Collects the publications of each module of a Maven reactor build that is
+ * configured to deploy at the end of the build (i.e. {@code habushu.deployAtEnd}),
+ * so that they can be published together, concurrently, once every module has
+ * been built successfully.
+ * <p>
+ * A publisher is activated for a build by
+ * {@link org.technologybrewery.habushu.HabushuLifecycleParticipant}, which is
+ * only loaded when habushu-maven-plugin is declared with
+ * {@code <extensions>true</extensions>}. Publishers are keyed by the build's
+ * {@link MavenExecutionRequest}, which (unlike the {@link MavenSession}) is
+ * shared by all modules of a parallel build.
+ */
+public final class DeferredPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeferredPublisher.class);
+    private static final Map<MavenExecutionRequest, DeferredPublisher> publishers =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final List<DeferredPublication> publications = new ArrayList<>();
+
+    private DeferredPublisher() {
+    }
+
+    /**
+     * Activates deferred publishing for the given build.
+     *
+     * @param session Maven session of the build
+     */
+    public static void activate(MavenSession session) {
+        publishers.putIfAbsent(session.getRequest(), new DeferredPublisher());
+    }
+
+    /**
+     * Returns the publisher of the given build.
+     *
+     * @param session Maven session of the build (or of one of its modules)
+     * @return the publisher, or {@code null} if deferred publishing was not
+     * activated for the build
+     */
+    public static DeferredPublisher get(MavenSession session) {
+        return session != null && session.getRequest() != null ? publishers.get(session.getRequest()) : null;
+    }
+
+    /**
+     * Deactivates deferred publishing for the given build, after which
+     * publications are no longer accepted.
+     *
+     * @param session Maven session of the build
+     * @return the publisher of the build, or {@code null} if deferred publishing
+     * was not activated for the build
+     */
+    public static DeferredPublisher deactivate(MavenSession session) {
+        return publishers.remove(session.getRequest());
+    }
+
+    /**
+     * Registers a publication to perform at the end of the build.
+     *
+     * @param projectId      id of the module being published
+     * @param description    description of what is published (i.e. archives)
+     * @param maxConcurrency maximum number of publications to perform
+     *                       concurrently, as configured by the module
+     * @param publication    performs the publication, throwing an exception if
+     *                       it fails
+     */
+    public synchronized void register(String projectId, String description, int maxConcurrency,
+                                      Runnable publication) {
+        publications.add(new DeferredPublication(projectId, description, maxConcurrency, publication));
+    }
+
+    public synchronized int size() {
+        return publications.size();
+    }
+
+    /**
+     * Performs all registered publications concurrently, bounded by the smallest
+     * maximum concurrency configured by any module. A failed publication does
+     * not prevent the others from being performed.
+     *
+     * @return failures of publications that could not be performed, keyed by
+     * module id
+     */
+    public Map<String, Throwable> publishAll() {
+        List<DeferredPublication> pendingPublications;
+        synchronized (this) {
+            pendingPublications = new ArrayList<>(publications);
+            publications.clear();
+        }
+        Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        if (pendingPublications.isEmpty()) {
+            return failures;
+        }
+
+        int threads = pendingPublications.stream().mapToInt(publication -> publication.maxConcurrency)
+                .min().orElse(1);
+        threads = Math.max(1, Math.min(threads, pendingPublications.size()));
+        logger.info("Publishing {} deferred module(s) with up to {} concurrent publication(s)",
+                pendingPublications.size(), threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (DeferredPublication publication : pendingPublications) {
+                futures.add(executor.submit(() -> {
+                    long start = System.currentTimeMillis();
+                    logger.info("Publishing {} of {}", publication.description, publication.projectId);
+                    publication.publication.run();
+                    logger.info("Published {} of {} in {} ms", publication.description, publication.projectId,
+                            System.currentTimeMillis() - start);
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    DeferredPublication publication = pendingPublications.get(i);
+                    logger.error("Could not publish {} of {}", publication.description, publication.projectId,
+                            e.getCause());
+                    failures.put(publication.projectId, e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HabushuException("Interrupted while publishing deferred modules", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return failures;
+    }
+
+    private static final class DeferredPublication {
+        private final String projectId;
+        private final String description;
+        private final int maxConcurrency;
+        private final Runnable publication;
+
+        private DeferredPublication(String projectId, String description, int maxConcurrency, Runnable publication) {
+            this.projectId = projectId;
+            this.description = description;
+            this.maxConcurrency = maxConcurrency;
+            this.publication = publication;
+        }
+    }
+}
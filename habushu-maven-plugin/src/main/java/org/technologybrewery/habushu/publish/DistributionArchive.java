@@ -0,0 +1,183 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.util.Pep440Version;
+import org.technologybrewery.habushu.util.WheelFileName;
+
+/**
+ * A wheel or sdist archive built by Poetry (i.e. within {@code dist/}) that may
+ * be published to a PyPI repository. The name and version of the distribution
+ * are derived from the archive's file name, which Poetry generates according to
+ * the wheel (PEP-427) and sdist (PEP-625) naming conventions.
+ */
+public final class DistributionArchive {
+
+    public static final String WHEEL_FILE_TYPE = "bdist_wheel";
+    public static final String SDIST_FILE_TYPE = "sdist";
+    private static final String[] SDIST_EXTENSIONS = {".tar.gz", ".zip"};
+
+    private final File file;
+    private final String name;
+    private final String version;
+    private final String fileType;
+    private final String pythonVersion;
+    private String md5Digest;
+    private String sha256Digest;
+
+    private DistributionArchive(File file, String name, String version, String fileType, String pythonVersion) {
+        this.file = file;
+        this.name = name;
+        this.version = version;
+        this.fileType = fileType;
+        this.pythonVersion = pythonVersion;
+    }
+
+    /**
+     * Describes the given archive.
+     *
+     * @param file wheel or sdist archive
+     * @return the described archive, or {@code null} if the file is not a wheel or
+     * sdist archive
+     */
+    public static DistributionArchive of(File file) {
+        String fileName = file.getName();
+        WheelFileName wheelFileName = WheelFileName.parse(fileName);
+        if (wheelFileName != null) {
+            return new DistributionArchive(file, wheelFileName.getDistribution(), wheelFileName.getVersion(),
+                    WHEEL_FILE_TYPE, wheelFileName.getPythonTag());
+        }
+
+        for (String extension : SDIST_EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                String baseName = fileName.substring(0, fileName.length() - extension.length());
+                int separator = baseName.lastIndexOf('-');
+                if (separator > 0) {
+                    return new DistributionArchive(file, baseName.substring(0, separator),
+                            baseName.substring(separator + 1), SDIST_FILE_TYPE, "source");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Normalizes the given distribution name as per PEP-503 (i.e.
+     * {@code My_Package.Name} becomes {@code my-package-name}).
+     *
+     * @param name distribution name
+     * @return normalized name
+     */
+    public static String normalizeName(String name) {
+        return name.replaceAll("[-_.]+", "-").toLowerCase(Locale.ROOT);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getNormalizedName() {
+        return normalizeName(name);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns whether this archive contains the given version of its
+     * distribution, comparing normalized PEP-440 versions where possible.
+     *
+     * @param otherVersion version to compare
+     * @return whether the versions match
+     */
+    public boolean hasVersion(String otherVersion) {
+        return isSameVersion(version, otherVersion);
+    }
+
+    /**
+     * Returns whether the given versions are equal, comparing normalized PEP-440
+     * versions where possible (i.e. {@code 1.0.0-dev1} and {@code 1.0.0.dev1}
+     * are the same version).
+     *
+     * @param version      version to compare
+     * @param otherVersion other version to compare
+     * @return whether the versions match
+     */
+    public static boolean isSameVersion(String version, String otherVersion) {
+        Pep440Version parsedVersion = Pep440Version.parseQuietly(version);
+        Pep440Version parsedOtherVersion = Pep440Version.parseQuietly(otherVersion);
+        return parsedVersion != null && parsedOtherVersion != null ? parsedVersion.equals(parsedOtherVersion)
+                : version.equals(otherVersion);
+    }
+
+    /**
+     * Returns the PyPI upload file type of this archive ({@code bdist_wheel} or
+     * {@code sdist}).
+     *
+     * @return file type
+     */
+    public String getFileType() {
+        return fileType;
+    }
+
+    /**
+     * Returns the PyPI upload Python version of this archive (the wheel's Python
+     * tag, or {@code source} for sdists).
+     *
+     * @return python version
+     */
+    public String getPythonVersion() {
+        return pythonVersion;
+    }
+
+    public synchronized String getMd5Digest() {
+        calculateDigests();
+        return md5Digest;
+    }
+
+    public synchronized String getSha256Digest() {
+        calculateDigests();
+        return sha256Digest;
+    }
+
+    /**
+     * Calculates the MD5 and SHA-256 digests of this archive in a single pass.
+     */
+    private void calculateDigests() {
+        if (sha256Digest != null) {
+            return;
+        }
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        MessageDigest sha256 = DigestUtils.getSha256Digest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                md5.update(buffer, 0, read);
+                sha256.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new HabushuException("Could not calculate the digests of " + file, e);
+        }
+        md5Digest = Hex.encodeHexString(md5.digest());
+        sha256Digest = Hex.encodeHexString(sha256.digest());
+    }
+
+    @Override
+    public String toString() {
+        return file.getName();
+    }
+}
@@ -0,0 +1,173 @@
+package org.technologybrewery.habushu.publish;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Checks that the long description of a distribution will render on PyPI, as
+ * {@code twine check} does. PyPI renders Markdown and plain text descriptions
+ * leniently, whereas reStructuredText descriptions (the default when no
+ * {@code Description-Content-Type} is given) are rejected when docutils reports
+ * a warning. Rather than embedding a full reStructuredText parser, the
+ * constructs that most commonly break rendering are detected:
+ * <ul>
+ * <li>section title underlines that are shorter than the title, or that do not
+ * match the title's overline</li>
+ * <li>inline literals ({@code ``code``}) that are not closed within their
+ * paragraph</li>
+ * <li>unknown directives, as well as the {@code raw} and {@code include}
+ * directives that PyPI disables</li>
+ * </ul>
+ */
+final class LongDescriptionValidator {
+
+    private static final String MARKDOWN = "text/markdown";
+    private static final String RESTRUCTURED_TEXT = "text/x-rst";
+    private static final String PLAIN_TEXT = "text/plain";
+    private static final Set<String> MARKDOWN_VARIANTS = new HashSet<>(Arrays.asList("gfm", "commonmark"));
+    private static final Pattern ADORNMENT = Pattern.compile("^([!-/:-@\\[-`{-~])\\1{3,}\\s*$");
+    private static final Pattern DIRECTIVE = Pattern.compile("^\\s*\\.\\.\\s+([A-Za-z0-9][\\w:+.-]*)\\s*::");
+    private static final Set<String> DISABLED_DIRECTIVES = new HashSet<>(Arrays.asList("raw", "include"));
+    private static final Set<String> KNOWN_DIRECTIVES = new HashSet<>(Arrays.asList(
+            "attention", "caution", "danger", "error", "hint", "important", "note", "tip", "warning",
+            "admonition", "image", "figure", "topic", "sidebar", "line-block", "parsed-literal", "code",
+            "code-block", "sourcecode", "math", "rubric", "epigraph", "highlights", "pull-quote", "compound",
+            "container", "table", "csv-table", "list-table", "contents", "sectnum", "section-numbering",
+            "header", "footer", "target-notes", "meta", "replace", "unicode", "date", "class", "role",
+            "default-role", "title", "restructuredtext-test-directive"));
+
+    private LongDescriptionValidator() {
+    }
+
+    /**
+     * Checks the given long description.
+     *
+     * @param contentType value of the {@code Description-Content-Type} metadata
+     *                    field, or {@code null} if not given
+     * @param description long description
+     * @return problems that would prevent the description from rendering
+     */
+    static List<String> validate(String contentType, String description) {
+        List<String> problems = new ArrayList<>();
+        String mimeType = RESTRUCTURED_TEXT;
+        if (StringUtils.isNotBlank(contentType)) {
+            String[] parameters = contentType.split(";");
+            mimeType = parameters[0].trim().toLowerCase(Locale.ROOT);
+            for (int i = 1; i < parameters.length; i++) {
+                String[] parameter = parameters[i].split("=", 2);
+                if (MARKDOWN.equals(mimeType) && "variant".equalsIgnoreCase(parameter[0].trim())
+                        && parameter.length == 2
+                        && !MARKDOWN_VARIANTS.contains(parameter[1].trim().toLowerCase(Locale.ROOT))) {
+                    problems.add(String.format("unsupported Markdown variant '%s'", parameter[1].trim()));
+                }
+            }
+        }
+
+        if (RESTRUCTURED_TEXT.equals(mimeType)) {
+            if (description != null) {
+                validateRestructuredText(description, problems);
+            }
+        } else if (!MARKDOWN.equals(mimeType) && !PLAIN_TEXT.equals(mimeType)) {
+            problems.add(String.format("unsupported Description-Content-Type '%s' (expected %s, %s, or %s)",
+                    contentType, RESTRUCTURED_TEXT, MARKDOWN, PLAIN_TEXT));
+        }
+        return problems;
+    }
+
+    private static void validateRestructuredText(String description, List<String> problems) {
+        String[] lines = description.split("\r?\n", -1);
+        StringBuilder paragraph = new StringBuilder();
+        int paragraphStart = 0;
+        int blockIndent = -1;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int indent = line.length() - line.stripLeading().length();
+
+            // skip the indented contents of literal blocks and directives, which are not inline markup:
+            if (blockIndent >= 0) {
+                if (line.isBlank() || indent > blockIndent) {
+                    continue;
+                }
+                blockIndent = -1;
+            }
+
+            if (line.isBlank()) {
+                checkInlineLiterals(paragraph, paragraphStart, problems);
+                paragraph.setLength(0);
+                continue;
+            }
+
+            Matcher directive = DIRECTIVE.matcher(line);
+            if (directive.find()) {
+                String name = directive.group(1).toLowerCase(Locale.ROOT);
+                if (DISABLED_DIRECTIVES.contains(name)) {
+                    problems.add(String.format("line %s: the '%s' directive is disabled on PyPI", i + 1, name));
+                } else if (!KNOWN_DIRECTIVES.contains(name)) {
+                    problems.add(String.format("line %s: unknown directive type '%s'", i + 1, name));
+                }
+                blockIndent = indent;
+                continue;
+            } else if (line.stripLeading().startsWith("..")) {
+                // comments, hyperlink targets, footnotes, and substitution definitions
+                blockIndent = indent;
+                continue;
+            }
+
+            checkTitleAdornment(lines, i, problems);
+            if (paragraph.length() == 0) {
+                paragraphStart = i;
+            }
+            if (!ADORNMENT.matcher(line).matches()) {
+                paragraph.append(line).append('\n');
+            }
+            if (line.stripTrailing().endsWith("::")) {
+                checkInlineLiterals(paragraph, paragraphStart, problems);
+                paragraph.setLength(0);
+                blockIndent = indent;
+            }
+        }
+        checkInlineLiterals(paragraph, paragraphStart, problems);
+    }
+
+    /**
+     * Checks a title line that is followed by an underline (and optionally
+     * preceded by an overline), which must be at least as long as the title.
+     */
+    private static void checkTitleAdornment(String[] lines, int index, List<String> problems) {
+        String title = lines[index];
+        if (index + 1 >= lines.length || ADORNMENT.matcher(title).matches()
+                || Character.isWhitespace(title.charAt(0))) {
+            return;
+        }
+        String underline = lines[index + 1].stripTrailing();
+        if (!ADORNMENT.matcher(underline).matches()) {
+            return;
+        }
+        int titleLength = title.stripTrailing().codePointCount(0, title.stripTrailing().length());
+        if (underline.length() < titleLength) {
+            problems.add(String.format("line %s: title underline too short", index + 2));
+        }
+        if (index > 0) {
+            String overline = lines[index - 1].stripTrailing();
+            if (ADORNMENT.matcher(overline).matches() && !overline.equals(underline)) {
+                problems.add(String.format("line %s: title overline and underline do not match", index));
+            }
+        }
+    }
+
+    private static void checkInlineLiterals(StringBuilder paragraph, int paragraphStart, List<String> problems) {
+        int count = StringUtils.countMatches(paragraph, "``");
+        if (count % 2 != 0) {
+            problems.add(String.format("line %s: inline literal start-string without end-string",
+                    paragraphStart + 1));
+        }
+    }
+}
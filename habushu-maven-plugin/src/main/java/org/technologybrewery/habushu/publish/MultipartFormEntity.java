@@ -0,0 +1,144 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * Minimal, repeatable {@code multipart/form-data} request entity that streams
+ * file parts directly from disk rather than buffering them in memory, whether
+ * the entity is written or its content is read. As the size of every part is
+ * known up front, the entity reports an exact content length so that
+ * repositories that do not accept chunked uploads are supported.
+ */
+final class MultipartFormEntity extends AbstractHttpEntity {
+
+    private static final String CRLF = "\r\n";
+
+    private final String boundary = "habushu-" + UUID.randomUUID().toString().replace("-", "");
+    private final List<Part> parts = new ArrayList<>();
+
+    MultipartFormEntity() {
+        setContentType("multipart/form-data; boundary=" + boundary);
+    }
+
+    /**
+     * Adds a text field.
+     *
+     * @param name  field name
+     * @param value field value
+     * @return this entity
+     */
+    MultipartFormEntity addField(String name, String value) {
+        String header = partHeader(String.format("Content-Disposition: form-data; name=\"%s\"", name));
+        parts.add(new Part(bytes(header), value.getBytes(StandardCharsets.UTF_8), null));
+        return this;
+    }
+
+    /**
+     * Adds a file field, whose contents are streamed from disk when the entity is
+     * written.
+     *
+     * @param name field name
+     * @param file file to upload
+     * @return this entity
+     */
+    MultipartFormEntity addFile(String name, File file) {
+        String header = partHeader(String.format("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"",
+                name, file.getName()) + CRLF + "Content-Type: application/octet-stream");
+        parts.add(new Part(bytes(header), null, file));
+        return this;
+    }
+
+    private String partHeader(String headers) {
+        return "--" + boundary + CRLF + headers + CRLF + CRLF;
+    }
+
+    private String closingBoundary() {
+        return "--" + boundary + "--" + CRLF;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        long length = bytes(closingBoundary()).length;
+        for (Part part : parts) {
+            length += part.header.length + part.getLength() + CRLF.length();
+        }
+        return length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        List<InputStream> sections = new ArrayList<>();
+        try {
+            for (Part part : parts) {
+                sections.add(new ByteArrayInputStream(part.header));
+                sections.add(part.file != null
+                        ? Files.newInputStream(part.file.toPath()) : new ByteArrayInputStream(part.value));
+                sections.add(new ByteArrayInputStream(bytes(CRLF)));
+            }
+        } catch (IOException e) {
+            sections.forEach(IOUtils::closeQuietly);
+            throw e;
+        }
+        sections.add(new ByteArrayInputStream(bytes(closingBoundary())));
+        return new SequenceInputStream(Collections.enumeration(sections));
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        for (Part part : parts) {
+            outputStream.write(part.header);
+            if (part.file != null) {
+                Files.copy(part.file.toPath(), outputStream);
+            } else {
+                outputStream.write(part.value);
+            }
+            outputStream.write(bytes(CRLF));
+        }
+        outputStream.write(bytes(closingBoundary()));
+        outputStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Part {
+        private final byte[] header;
+        private final byte[] value;
+        private final File file;
+
+        private Part(byte[] header, byte[] value, File file) {
+            this.header = header;
+            this.value = value;
+            this.file = file;
+        }
+
+        private long getLength() {
+            return file != null ? file.length() : value.length;
+        }
+    }
+}
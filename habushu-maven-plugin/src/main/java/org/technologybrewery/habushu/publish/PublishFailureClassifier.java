@@ -0,0 +1,154 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * Classifies failures encountered when publishing to a PyPI repository from
+ * HTTP status codes, exceptions, or the output of {@code poetry publish}, so
+ * that only failures that may succeed on retry are retried.
+ */
+public final class PublishFailureClassifier {
+
+    // i.e. "HTTP Error 403: Forbidden" (poetry) or "503 Server Error: Service Unavailable" (requests):
+    private static final Pattern HTTP_STATUS = Pattern.compile(
+            "HTTP Error (\\d{3})|\\b(\\d{3}) (?:Client|Server) Error");
+    private static final String[] AUTHENTICATION_MESSAGES = {"invalid or non-existent authentication",
+            "invalid credentials", "forbidden", "unauthorized", "authentication failed"};
+    private static final String[] CONFLICT_MESSAGES = {"file already exists", "already exists", "conflict"};
+    private static final String[] VALIDATION_MESSAGES = {"invalid distribution", "invaliddistribution",
+            "not a valid", "invalid value for", "bad request", "metadata is missing"};
+    private static final String[] NETWORK_MESSAGES = {"timed out", "timeout", "connection reset",
+            "connection aborted", "connection refused", "remotedisconnected", "connectionerror",
+            "temporary failure in name resolution", "broken pipe", "max retries exceeded"};
+    private static final String[] SERVER_ERROR_MESSAGES = {"internal server error", "bad gateway",
+            "service unavailable", "gateway timeout", "too many requests"};
+
+    private PublishFailureClassifier() {
+    }
+
+    /**
+     * Classifies the HTTP status code of a failed upload.
+     *
+     * @param statusCode HTTP status code
+     * @return failure type
+     */
+    public static PublishFailureType classifyStatusCode(int statusCode) {
+        if (statusCode == 401 || statusCode == 403) {
+            return PublishFailureType.AUTHENTICATION;
+        } else if (statusCode == 409) {
+            return PublishFailureType.CONFLICT;
+        } else if (statusCode == 408) {
+            return PublishFailureType.NETWORK;
+        } else if (statusCode == 429 || statusCode >= 500) {
+            return PublishFailureType.SERVER_ERROR;
+        } else if (statusCode >= 400) {
+            return PublishFailureType.VALIDATION;
+        }
+        return PublishFailureType.UNKNOWN;
+    }
+
+    /**
+     * Classifies a failed upload from its HTTP status code and response, as PyPI
+     * reports already published files with HTTP 400.
+     *
+     * @param statusCode HTTP status code
+     * @param response   response body or reason phrase, if any
+     * @return failure type
+     */
+    public static PublishFailureType classifyResponse(int statusCode, String response) {
+        PublishFailureType failureType = classifyStatusCode(statusCode);
+        if (failureType == PublishFailureType.VALIDATION && response != null
+                && containsAny(response.toLowerCase(Locale.ROOT), CONFLICT_MESSAGES)) {
+            return PublishFailureType.CONFLICT;
+        }
+        return failureType;
+    }
+
+    /**
+     * Classifies a failed {@code poetry publish} from its output. The last HTTP
+     * status reported in the output takes precedence over error messages.
+     *
+     * @param output output of the failed command
+     * @return failure type
+     */
+    public static PublishFailureType classifyOutput(String output) {
+        if (output == null) {
+            return PublishFailureType.UNKNOWN;
+        }
+
+        Integer lastStatusCode = null;
+        Matcher matcher = HTTP_STATUS.matcher(output);
+        while (matcher.find()) {
+            lastStatusCode = Integer.valueOf(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+        }
+        if (lastStatusCode != null && lastStatusCode >= 400) {
+            return classifyResponse(lastStatusCode, output);
+        }
+
+        String lowerCaseOutput = output.toLowerCase(Locale.ROOT);
+        if (containsAny(lowerCaseOutput, AUTHENTICATION_MESSAGES)) {
+            return PublishFailureType.AUTHENTICATION;
+        } else if (containsAny(lowerCaseOutput, CONFLICT_MESSAGES)) {
+            return PublishFailureType.CONFLICT;
+        } else if (containsAny(lowerCaseOutput, VALIDATION_MESSAGES)) {
+            return PublishFailureType.VALIDATION;
+        } else if (containsAny(lowerCaseOutput, NETWORK_MESSAGES)) {
+            return PublishFailureType.NETWORK;
+        } else if (containsAny(lowerCaseOutput, SERVER_ERROR_MESSAGES)) {
+            return PublishFailureType.SERVER_ERROR;
+        }
+        return PublishFailureType.UNKNOWN;
+    }
+
+    /**
+     * Classifies an exception thrown while publishing, inspecting its causes.
+     *
+     * @param throwable exception
+     * @return failure type
+     */
+    public static PublishFailureType classify(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PublishFailureException) {
+                return ((PublishFailureException) cause).getFailureType();
+            } else if (cause instanceof PyPiUploadException) {
+                PyPiUploadException uploadException = (PyPiUploadException) cause;
+                if (uploadException.getStatusCode() != PyPiUploadException.NO_RESPONSE) {
+                    return classifyResponse(uploadException.getStatusCode(), uploadException.getResponse());
+                }
+            } else if (cause instanceof InterruptedIOException || cause instanceof SocketException
+                    || cause instanceof UnknownHostException || cause instanceof NoHttpResponseException
+                    || cause instanceof ConnectTimeoutException) {
+                return PublishFailureType.NETWORK;
+            }
+        }
+        return PublishFailureType.UNKNOWN;
+    }
+
+    /**
+     * Returns whether publishing may succeed if retried after the given
+     * exception.
+     *
+     * @param throwable exception
+     * @return whether to retry
+     */
+    public static boolean isRetriable(Throwable throwable) {
+        return classify(throwable).isRetriable();
+    }
+
+    private static boolean containsAny(String value, String[] messages) {
+        for (String message : messages) {
+            if (value.contains(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
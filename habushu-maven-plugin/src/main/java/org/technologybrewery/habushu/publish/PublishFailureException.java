@@ -0,0 +1,29 @@
+package org.technologybrewery.habushu.publish;
+
+import org.technologybrewery.habushu.HabushuException;
+
+/**
+ * Signals that publishing to a PyPI repository failed, classified by a
+ * {@link PublishFailureType} so that failures that cannot succeed on retry
+ * (i.e. rejected credentials) are not retried.
+ */
+public class PublishFailureException extends HabushuException {
+
+    private static final long serialVersionUID = -4406325934915286120L;
+
+    private final PublishFailureType failureType;
+
+    public PublishFailureException(String message, PublishFailureType failureType) {
+        super(message);
+        this.failureType = failureType;
+    }
+
+    public PublishFailureException(String message, PublishFailureType failureType, Throwable cause) {
+        super(message, cause);
+        this.failureType = failureType;
+    }
+
+    public PublishFailureType getFailureType() {
+        return failureType;
+    }
+}
@@ -0,0 +1,52 @@
+package org.technologybrewery.habushu.publish;
+
+/**
+ * Categories of failures encountered when publishing to a PyPI repository,
+ * which determine whether retrying the publish may succeed.
+ */
+public enum PublishFailureType {
+
+    /**
+     * Credentials were rejected (i.e. HTTP 401/403).
+     */
+    AUTHENTICATION(false),
+
+    /**
+     * A file with the same name but different contents was already published
+     * (i.e. HTTP 409, or PyPI's "File already exists" HTTP 400).
+     */
+    CONFLICT(false),
+
+    /**
+     * The repository rejected the archive or its metadata (i.e. other HTTP 4xx
+     * responses).
+     */
+    VALIDATION(false),
+
+    /**
+     * The repository failed to process the request (i.e. HTTP 5xx, or HTTP 429
+     * rate limiting).
+     */
+    SERVER_ERROR(true),
+
+    /**
+     * The connection failed, was reset, or timed out before a response was
+     * received.
+     */
+    NETWORK(true),
+
+    /**
+     * The cause of the failure could not be determined, so it is retried.
+     */
+    UNKNOWN(true);
+
+    private final boolean retriable;
+
+    PublishFailureType(boolean retriable) {
+        this.retriable = retriable;
+    }
+
+    public boolean isRetriable() {
+        return retriable;
+    }
+}
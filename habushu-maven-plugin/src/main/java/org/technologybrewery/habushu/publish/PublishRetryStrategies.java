@@ -0,0 +1,69 @@
+package org.technologybrewery.habushu.publish;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.github.itning.retry.strategy.stop.StopStrategy;
+import io.github.itning.retry.strategy.wait.WaitStrategy;
+
+/**
+ * Retry strategies for publishing to PyPI repositories, complementing those
+ * provided by {@link io.github.itning.retry.strategy.wait.WaitStrategies} and
+ * {@link io.github.itning.retry.strategy.stop.StopStrategies}.
+ */
+public final class PublishRetryStrategies {
+
+    private PublishRetryStrategies() {
+    }
+
+    /**
+     * Waits an exponentially increasing, jittered amount of time between
+     * attempts: the n-th retry waits a random time between half of and the full
+     * {@code initialWait * 2^(n-1)}, capped at {@code maximumWait}. Jitter keeps
+     * concurrent builds that failed together (i.e. due to a repository outage)
+     * from retrying in lockstep.
+     *
+     * Waits never extend past the given deadline.
+     *
+     * @param initialWaitMillis wait before the first retry, in milliseconds
+     * @param maximumWait       maximum wait between attempts
+     * @param maximumWaitUnit   unit of the maximum wait
+     * @param deadline          maximum time to spend retrying, or {@code null} or
+     *                          zero for no deadline
+     * @return wait strategy
+     */
+    public static WaitStrategy jitteredExponentialWait(long initialWaitMillis, long maximumWait,
+                                                       TimeUnit maximumWaitUnit, Duration deadline) {
+        long maximumWaitMillis = maximumWaitUnit.toMillis(maximumWait);
+        long deadlineMillis = toDeadlineMillis(deadline);
+        return attempt -> {
+            int exponent = (int) Math.min(attempt.getAttemptNumber() - 1, 30);
+            long wait = Math.min(maximumWaitMillis, initialWaitMillis * (1L << exponent));
+            long halfWait = wait / 2;
+            long jitteredWait = halfWait + ThreadLocalRandom.current().nextLong(wait - halfWait + 1);
+            return Math.max(0, Math.min(jitteredWait, deadlineMillis - attempt.getDelaySinceFirstAttempt()));
+        };
+    }
+
+    /**
+     * Stops after the given number of attempts, or once the given deadline has
+     * elapsed since the first attempt, whichever comes first.
+     *
+     * @param maximumAttempts maximum number of attempts, or a negative number for
+     *                        no attempt limit
+     * @param deadline        maximum time to spend retrying, or {@code null} or
+     *                        zero for no deadline
+     * @return stop strategy
+     */
+    public static StopStrategy stopAfterAttemptOrDeadline(int maximumAttempts, Duration deadline) {
+        long deadlineMillis = toDeadlineMillis(deadline);
+        return attempt -> (maximumAttempts >= 0 && attempt.getAttemptNumber() >= maximumAttempts)
+                || attempt.getDelaySinceFirstAttempt() >= deadlineMillis;
+    }
+
+    private static long toDeadlineMillis(Duration deadline) {
+        boolean hasDeadline = deadline != null && !deadline.isZero() && !deadline.isNegative();
+        return hasDeadline ? deadline.toMillis() : Long.MAX_VALUE;
+    }
+}
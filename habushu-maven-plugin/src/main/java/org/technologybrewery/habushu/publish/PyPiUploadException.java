@@ -0,0 +1,45 @@
+package org.technologybrewery.habushu.publish;
+
+import org.technologybrewery.habushu.HabushuException;
+
+/**
+ * Signals that one or more archives could not be uploaded to a PyPI repository.
+ * Captures the HTTP status code and response of the first failed upload that
+ * cannot succeed on retry (or otherwise, the first failed upload), if a
+ * response was received.
+ */
+public class PyPiUploadException extends HabushuException {
+
+    private static final long serialVersionUID = -2870470364791893513L;
+
+    public static final int NO_RESPONSE = -1;
+
+    private final int statusCode;
+    private final String response;
+
+    public PyPiUploadException(String message, int statusCode, String response, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.response = response;
+    }
+
+    /**
+     * Returns the HTTP status code of the failed upload, or {@link #NO_RESPONSE}
+     * if the upload failed before a response was received (i.e. due to a
+     * connection reset or timeout).
+     *
+     * @return HTTP status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the (abbreviated) body of the failed upload's response, if any.
+     *
+     * @return response body
+     */
+    public String getResponse() {
+        return response;
+    }
+}
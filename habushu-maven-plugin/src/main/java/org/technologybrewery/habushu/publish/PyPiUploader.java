@@ -0,0 +1,338 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+
+/**
+ * Uploads distribution archives to a PyPI repository via the legacy upload API
+ * (the same API used by {@code twine} and {@code poetry publish}) without
+ * delegating to Poetry:
+ * <ul>
+ * <li>archives are uploaded concurrently over a pooled HTTP connection, with
+ * each archive streamed from disk rather than buffered in memory</li>
+ * <li>before uploading, the repository's simple index (PEP-503) is queried and
+ * archives whose SHA-256 digest is already published are skipped</li>
+ * <li>every field of each archive's core metadata ({@code METADATA} or
+ * {@code PKG-INFO}) is sent, including its {@code Metadata-Version}</li>
+ * <li>archives that were successfully uploaded are remembered, so that
+ * re-invoking {@link #uploadPendingArchives()} after a failure (i.e. from a
+ * retry) only resends the archives that failed</li>
+ * </ul>
+ */
+public class PyPiUploader implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PyPiUploader.class);
+    private static final Pattern SHA256_FRAGMENT = Pattern.compile("#sha256=([0-9a-fA-F]{64})");
+    private static final int MAX_RESPONSE_LENGTH = 500;
+    // core metadata fields that are not sent as is:
+    private static final Set<String> SPECIAL_METADATA_FIELDS = new HashSet<>(Arrays.asList(
+            "name", "version", "description"));
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+    private static final int SOCKET_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(5);
+
+    private final String uploadUrl;
+    private final String simpleIndexUrl;
+    private final String authorization;
+    private final Set<DistributionArchive> pendingArchives;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService executor;
+
+    /**
+     * @param uploadUrl      legacy upload API endpoint of the repository (i.e.
+     *                       {@code https://upload.pypi.org/legacy/})
+     * @param simpleIndexUrl simple index of the repository (i.e.
+     *                       {@code https://pypi.org/simple/}), or {@code null} to
+     *                       upload archives without checking whether they were
+     *                       already published
+     * @param username       repository username ({@code __token__} for API tokens)
+     * @param password       repository password or API token
+     * @param archives       archives to upload
+     */
+    public PyPiUploader(String uploadUrl, String simpleIndexUrl, String username, String password,
+                        Collection<DistributionArchive> archives) {
+        this.uploadUrl = uploadUrl;
+        this.simpleIndexUrl = simpleIndexUrl;
+        this.authorization = "Basic " + Base64.encodeBase64String(
+                (username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.pendingArchives = new LinkedHashSet<>(archives);
+
+        int concurrency = Math.max(1, archives.size());
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(concurrency + 1);
+        connectionManager.setDefaultMaxPerRoute(concurrency + 1);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                        .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                        .build())
+                .setUserAgent("habushu-maven-plugin")
+                .build();
+        this.executor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    /**
+     * Returns the archives that have not yet been uploaded or found in the
+     * repository.
+     *
+     * @return pending archives
+     */
+    public synchronized List<DistributionArchive> getPendingArchives() {
+        return new ArrayList<>(pendingArchives);
+    }
+
+    /**
+     * Uploads all pending archives, skipping those that are already published.
+     *
+     * @throws PyPiUploadException if any archive could not be uploaded - archives
+     *                             that were uploaded are no longer pending
+     */
+    public synchronized void uploadPendingArchives() {
+        if (pendingArchives.isEmpty()) {
+            return;
+        }
+
+        Set<String> publishedDigests = findPublishedDigests();
+        List<DistributionArchive> archivesToUpload = new ArrayList<>();
+        for (DistributionArchive archive : pendingArchives) {
+            if (publishedDigests.contains(archive.getSha256Digest())) {
+                logger.info("Skipping {} as it has already been published to {}", archive, uploadUrl);
+            } else {
+                archivesToUpload.add(archive);
+            }
+        }
+        pendingArchives.retainAll(archivesToUpload);
+
+        List<Future<UploadResult>> uploads = new ArrayList<>();
+        for (DistributionArchive archive : archivesToUpload) {
+            uploads.add(executor.submit(() -> upload(archive)));
+        }
+
+        List<UploadResult> failures = new ArrayList<>();
+        for (Future<UploadResult> upload : uploads) {
+            UploadResult result = getResult(upload);
+            if (result.isSuccessful()) {
+                pendingArchives.remove(result.archive);
+            } else {
+                failures.add(result);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            // report a failure that cannot succeed on retry in favor of one that might, so that retries stop:
+            UploadResult firstFailure = failures.stream().filter(failure -> !failure.isRetriable()).findFirst()
+                    .orElse(failures.get(0));
+            List<String> failureDescriptions = new ArrayList<>();
+            for (UploadResult failure : failures) {
+                failureDescriptions.add(failure.describe());
+            }
+            throw new PyPiUploadException(String.format("Could not upload %s archive(s) to %s: %s", failures.size(),
+                    uploadUrl, StringUtils.join(failureDescriptions, "; ")), firstFailure.statusCode,
+                    firstFailure.response, firstFailure.exception);
+        }
+    }
+
+    private static UploadResult getResult(Future<UploadResult> upload) {
+        try {
+            return upload.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HabushuException("Interrupted while uploading archives", e);
+        } catch (ExecutionException e) {
+            throw new HabushuException("Could not upload archive", e.getCause());
+        }
+    }
+
+    private UploadResult upload(DistributionArchive archive) {
+        logger.info("Uploading {} to {}", archive, uploadUrl);
+        HttpPost post = new HttpPost(uploadUrl);
+        post.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        try {
+            post.setEntity(createEntity(archive));
+        } catch (IOException e) {
+            logger.warn("Could not read the core metadata of {}: {}", archive, e.toString());
+            return new UploadResult(archive, PyPiUploadException.NO_RESPONSE, null, e);
+        }
+        long start = System.currentTimeMillis();
+        try (CloseableHttpResponse response = httpClient.execute(post)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            String body = response.getEntity() != null
+                    ? StringUtils.abbreviate(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8),
+                    MAX_RESPONSE_LENGTH)
+                    : "";
+            if (statusCode >= 200 && statusCode < 300) {
+                logger.info("Uploaded {} ({} bytes) in {} ms", archive, archive.getFile().length(),
+                        System.currentTimeMillis() - start);
+            } else {
+                logger.warn("Upload of {} failed with HTTP {}: {}", archive, statusCode,
+                        StringUtils.defaultIfBlank(response.getStatusLine().getReasonPhrase(), body));
+            }
+            return new UploadResult(archive, statusCode, body, null);
+        } catch (IOException e) {
+            logger.warn("Upload of {} failed: {}", archive, e.toString());
+            return new UploadResult(archive, PyPiUploadException.NO_RESPONSE, null, e);
+        }
+    }
+
+    /**
+     * Creates the upload request of an archive, which (as with {@code twine})
+     * sends every field of the archive's core metadata, so that the repository
+     * can display the project's description, classifiers, dependencies, etc.
+     */
+    private static MultipartFormEntity createEntity(DistributionArchive archive) throws IOException {
+        CoreMetadata metadata = CoreMetadata.read(archive);
+        MultipartFormEntity entity = new MultipartFormEntity()
+                .addField(":action", "file_upload")
+                .addField("protocol_version", "1");
+        for (String field : metadata.getFieldNames()) {
+            if (!SPECIAL_METADATA_FIELDS.contains(field.toLowerCase(Locale.ROOT))) {
+                for (String value : metadata.getHeaders(field)) {
+                    entity.addField(toFormFieldName(field), value);
+                }
+            }
+        }
+        String description = metadata.getDescription();
+        if (description != null) {
+            entity.addField("description", description);
+        }
+        return entity
+                .addField("name", StringUtils.defaultIfBlank(metadata.getHeader("Name"), archive.getName()))
+                .addField("version", StringUtils.defaultIfBlank(metadata.getHeader("Version"), archive.getVersion()))
+                .addField("filetype", archive.getFileType())
+                .addField("pyversion", archive.getPythonVersion())
+                .addField("md5_digest", archive.getMd5Digest())
+                .addField("sha256_digest", archive.getSha256Digest())
+                .addFile("content", archive.getFile());
+    }
+
+    /**
+     * Returns the form field of a core metadata field, i.e. {@code requires_dist}
+     * for {@code Requires-Dist}, pluralized for the multiple-use fields whose form
+     * field is.
+     */
+    private static String toFormFieldName(String field) {
+        String name = field.toLowerCase(Locale.ROOT).replace('-', '_');
+        switch (name) {
+            case "classifier":
+                return "classifiers";
+            case "project_url":
+                return "project_urls";
+            case "provides_extra":
+                return "provides_extras";
+            default:
+                return name;
+        }
+    }
+
+    /**
+     * Queries the repository's simple index for the SHA-256 digests of all files
+     * published for the distributions of the pending archives. Failures are
+     * logged and treated as if nothing was published, as the subsequent upload
+     * will surface any real connectivity or authorization issue.
+     *
+     * @return published SHA-256 digests (lowercase hex)
+     */
+    private Set<String> findPublishedDigests() {
+        Set<String> publishedDigests = new HashSet<>();
+        if (StringUtils.isBlank(simpleIndexUrl)) {
+            return publishedDigests;
+        }
+
+        Set<String> names = new LinkedHashSet<>();
+        for (DistributionArchive archive : pendingArchives) {
+            names.add(archive.getNormalizedName());
+        }
+        for (String name : names) {
+            String projectUrl = simpleIndexUrl + name + "/";
+            HttpGet get = new HttpGet(projectUrl);
+            get.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+            get.setHeader(HttpHeaders.ACCEPT, "text/html");
+            try (CloseableHttpResponse response = httpClient.execute(get)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                String body = response.getEntity() != null
+                        ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+                if (statusCode == HttpStatus.SC_OK) {
+                    Matcher matcher = SHA256_FRAGMENT.matcher(body);
+                    while (matcher.find()) {
+                        publishedDigests.add(matcher.group(1).toLowerCase(Locale.ROOT));
+                    }
+                } else if (statusCode != HttpStatus.SC_NOT_FOUND) {
+                    logger.debug("Could not query {} for published archives (HTTP {})", projectUrl, statusCode);
+                }
+            } catch (IOException e) {
+                logger.debug("Could not query {} for published archives", projectUrl, e);
+            }
+        }
+        return publishedDigests;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.debug("Could not close HTTP client", e);
+        }
+    }
+
+    private static final class UploadResult {
+        private final DistributionArchive archive;
+        private final int statusCode;
+        private final String response;
+        private final IOException exception;
+
+        private UploadResult(DistributionArchive archive, int statusCode, String response, IOException exception) {
+            this.archive = archive;
+            this.statusCode = statusCode;
+            this.response = response;
+            this.exception = exception;
+        }
+
+        private boolean isSuccessful() {
+            return exception == null && statusCode >= 200 && statusCode < 300;
+        }
+
+        private boolean isRetriable() {
+            return exception != null || PublishFailureClassifier.classifyResponse(statusCode, response).isRetriable();
+        }
+
+        private String describe() {
+            return exception != null
+                    ? String.format("%s (%s)", archive, exception)
+                    : String.format("%s (HTTP %s: %s)", archive, statusCode, StringUtils.normalizeSpace(response));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.technologybrewery.habushu.publish;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+/**
+ * Streams the entries of a gzipped sdist tarball into a new tarball in which
+ * the top-level {@code <name>-<version>/} directory is renamed and the version
+ * within {@code PKG-INFO} and {@code pyproject.toml} is rewritten. Entry headers
+ * (permissions, owners, modification times, and any other pax headers) are
+ * otherwise preserved, and entries are copied without being buffered in memory.
+ * Reads the ustar, pax, and GNU tar formats that Python's {@code tarfile} (and
+ * therefore Poetry) produces, and writes pax headers for paths that do not fit
+ * within a ustar header.
+ */
+final class SdistVersionRewriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String ENCODING = StandardCharsets.UTF_8.name();
+
+    private SdistVersionRewriter() {
+    }
+
+    /**
+     * Rewrites the given sdist.
+     *
+     * @param sdist             sdist tarball to rewrite
+     * @param baseName          current top-level directory (i.e.
+     *                          {@code my_package-1.2.0})
+     * @param rewrittenBaseName top-level directory of the rewritten sdist
+     * @param version           version of the rewritten sdist
+     * @param rewrittenSdist    file to which the rewritten sdist is written
+     * @throws IOException if the sdist cannot be read or written
+     */
+    static void rewrite(File sdist, String baseName, String rewrittenBaseName, String version, Path rewrittenSdist)
+            throws IOException {
+        try (TarArchiveInputStream tarInputStream = openSdist(sdist);
+             TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(new BufferedOutputStream(
+                     new GZIPOutputStream(Files.newOutputStream(rewrittenSdist), BUFFER_SIZE)), ENCODING)) {
+            tarOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOutputStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            tarOutputStream.setAddPaxHeadersForNonAsciiNames(true);
+
+            TarArchiveEntry entry;
+            while ((entry = tarInputStream.getNextEntry()) != null) {
+                String path = entry.getName();
+                String rewrittenPath = path.equals(baseName) || path.startsWith(baseName + "/")
+                        ? rewrittenBaseName + path.substring(baseName.length()) : path;
+                // the entry read is written back out, so that its headers are preserved:
+                entry.setName(rewrittenPath);
+
+                byte[] rewrittenContents = null;
+                if ((rewrittenBaseName + "/PKG-INFO").equals(rewrittenPath)) {
+                    rewrittenContents = ArchiveVersionRewriter.rewriteMetadataVersion(
+                            new String(tarInputStream.readAllBytes(), StandardCharsets.UTF_8), version)
+                            .getBytes(StandardCharsets.UTF_8);
+                } else if ((rewrittenBaseName + "/pyproject.toml").equals(rewrittenPath)) {
+                    rewrittenContents = ArchiveVersionRewriter.rewritePyprojectVersion(
+                            new String(tarInputStream.readAllBytes(), StandardCharsets.UTF_8), version)
+                            .getBytes(StandardCharsets.UTF_8);
+                }
+
+                if (rewrittenContents != null) {
+                    long size = entry.getSize();
+                    entry.setSize(rewrittenContents.length);
+                    tarOutputStream.putArchiveEntry(entry);
+                    // the input stream finds the end of the entry by its original size:
+                    entry.setSize(size);
+                    tarOutputStream.write(rewrittenContents);
+                } else {
+                    tarOutputStream.putArchiveEntry(entry);
+                    tarInputStream.transferTo(tarOutputStream);
+                }
+                tarOutputStream.closeArchiveEntry();
+            }
+            tarOutputStream.finish();
+        }
+    }
+
+    /**
+     * Reads the contents of the given entries of an sdist tarball, streaming past
+     * all other entries without buffering them.
+     *
+     * @param sdist sdist tarball to read
+     * @param paths paths of the entries to read (i.e.
+     *              {@code my_package-1.2.0/PKG-INFO})
+     * @return contents of the entries that were found, by path
+     * @throws IOException if the sdist cannot be read
+     */
+    static Map<String, byte[]> readEntries(File sdist, Set<String> paths) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (TarArchiveInputStream tarInputStream = openSdist(sdist)) {
+            TarArchiveEntry entry;
+            while (entries.size() < paths.size() && (entry = tarInputStream.getNextEntry()) != null) {
+                if (entry.isFile() && paths.contains(entry.getName())) {
+                    entries.put(entry.getName(), tarInputStream.readAllBytes());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static TarArchiveInputStream openSdist(File sdist) throws IOException {
+        return new TarArchiveInputStream(new BufferedInputStream(new GZIPInputStream(
+                Files.newInputStream(sdist.toPath()), BUFFER_SIZE)), ENCODING);
+    }
+}
@@ -0,0 +1,285 @@
+package org.technologybrewery.habushu.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.exec.ProcessMetrics;
+
+/**
+ * Aggregates metrics of a Maven build (mojo durations, launched processes,
+ * cache hits and misses, and publish attempts), labeled by module and goal, and
+ * exports them at the end of the build in the OpenMetrics text format so that
+ * they may be trended across CI builds. Metrics are built from the same
+ * instrumentation as the build's {@link ProcessMetrics}, {@link BuildTracer}
+ * spans, and JDK Flight Recorder events ({@link HabushuEvent}).
+ * <p>
+ * Exporting is enabled by setting the {@value #OPEN_METRICS_PROPERTY} property
+ * to the file to which to write metrics, or to a directory (i.e. that of the
+ * node_exporter textfile collector) in which to write them to
+ * {@code habushu-<root directory>.prom} in the Prometheus text format. Files are
+ * replaced atomically so collectors never read partial output. Like
+ * {@link BuildTracer}, metrics require habushu-maven-plugin to be declared with
+ * {@code <extensions>true</extensions>} and are keyed by the build's
+ * {@link MavenExecutionRequest}.
+ */
+public final class BuildMetrics {
+
+    /**
+     * Property that enables exporting metrics: the file to which to write them, or
+     * a textfile collector directory in which to write them.
+     */
+    public static final String OPEN_METRICS_PROPERTY = "habushu.openMetrics";
+
+    private static final Logger logger = LoggerFactory.getLogger(BuildMetrics.class);
+
+    private static final Map<MavenExecutionRequest, BuildMetrics> builds =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Family MOJO_DURATION = new Family("habushu_mojo_duration_seconds", "gauge",
+            "Time spent executing the goal in the module", "seconds");
+    private static final Family MOJO_EXECUTIONS = new Family("habushu_mojo_executions", "counter",
+            "Number of executions of the goal in the module", null);
+    private static final Family PROCESS_LAUNCHES = new Family("habushu_process_launches", "counter",
+            "Number of processes launched, by command", null);
+    private static final Family PROCESS_FAILURES = new Family("habushu_process_failures", "counter",
+            "Number of launched processes that exited with a non-zero code or could not be launched", null);
+    private static final Family PROCESS_DURATION = new Family("habushu_process_duration_seconds", "counter",
+            "Wall time of launched processes", "seconds");
+    private static final Family PROCESS_CPU = new Family("habushu_process_cpu_seconds", "counter",
+            "CPU time of launched processes, where available", "seconds");
+    private static final Family PROCESS_OUTPUT = new Family("habushu_process_output_bytes", "counter",
+            "Bytes written to stdout and stderr by launched processes", "bytes");
+    private static final Family CACHE_LOOKUPS = new Family("habushu_cache_lookups", "counter",
+            "Number of cache lookups, by cache and result (hit or miss)", null);
+    private static final Family PUBLISH_ATTEMPTS = new Family("habushu_publish_attempts", "counter",
+            "Number of attempts to publish to a PyPI repository, by method and result", null);
+
+    private static final List<Family> FAMILIES = Arrays.asList(MOJO_DURATION, MOJO_EXECUTIONS, PROCESS_LAUNCHES,
+            PROCESS_FAILURES, PROCESS_DURATION, PROCESS_CPU, PROCESS_OUTPUT, CACHE_LOOKUPS, PUBLISH_ATTEMPTS);
+
+    private final File outputFile;
+    private final boolean openMetricsFormat;
+    private final Map<Family, Map<String, Double>> samples = new HashMap<>();
+
+    private BuildMetrics(File outputFile, boolean openMetricsFormat) {
+        this.outputFile = outputFile;
+        this.openMetricsFormat = openMetricsFormat;
+    }
+
+    /**
+     * Starts collecting metrics for the given build if enabled by its
+     * {@value #OPEN_METRICS_PROPERTY} property.
+     *
+     * @param session Maven session of the build
+     */
+    public static void activate(MavenSession session) {
+        String target = session.getUserProperties().getProperty(OPEN_METRICS_PROPERTY,
+                session.getSystemProperties().getProperty(OPEN_METRICS_PROPERTY));
+        if (StringUtils.isBlank(target)) {
+            return;
+        }
+        File rootDirectory = new File(StringUtils.defaultString(session.getExecutionRootDirectory(), "."))
+                .getAbsoluteFile();
+        File outputFile = new File(target);
+        if (!outputFile.isAbsolute()) {
+            outputFile = new File(rootDirectory, target);
+        }
+        boolean textfileCollector = outputFile.isDirectory();
+        if (textfileCollector) {
+            outputFile = new File(outputFile, "habushu-" + rootDirectory.toPath().normalize().getFileName() + ".prom");
+        }
+        builds.putIfAbsent(session.getRequest(), new BuildMetrics(outputFile, !textfileCollector));
+    }
+
+    /**
+     * Stops collecting metrics for the given build and writes them, along with
+     * metrics of the processes it launched.
+     *
+     * @param session        Maven session of the build
+     * @param processMetrics processes launched by the build, may be {@code null}
+     * @return the written file, or {@code null} if metrics were not enabled
+     */
+    public static File deactivate(MavenSession session, ProcessMetrics processMetrics) {
+        BuildMetrics metrics = builds.remove(session.getRequest());
+        if (metrics == null) {
+            return null;
+        }
+        if (processMetrics != null) {
+            metrics.addProcesses(processMetrics.getRecords());
+        }
+        metrics.write();
+        return metrics.outputFile;
+    }
+
+    static BuildMetrics get(MavenSession session) {
+        return session != null && session.getRequest() != null ? builds.get(session.getRequest()) : null;
+    }
+
+    /**
+     * Records a cache lookup by the mojo executed by the current thread.
+     *
+     * @param cache name of the cache (i.e. {@code wheel})
+     * @param hit   whether the lookup found any entries
+     */
+    public static void recordCacheLookup(String cache, boolean hit) {
+        BuildMetrics metrics = BuildTracer.getCurrentMetrics();
+        if (metrics != null) {
+            metrics.add(CACHE_LOOKUPS, 1, currentLabels("cache", cache, "result", hit ? "hit" : "miss"));
+        }
+    }
+
+    /**
+     * Records an attempt to publish by the mojo executed by the current thread.
+     *
+     * @param method     how archives were published ({@code poetry} or
+     *                   {@code native})
+     * @param successful whether the attempt succeeded
+     */
+    public static void recordPublishAttempt(String method, boolean successful) {
+        BuildMetrics metrics = BuildTracer.getCurrentMetrics();
+        if (metrics != null) {
+            metrics.add(PUBLISH_ATTEMPTS, 1,
+                    currentLabels("method", method, "result", successful ? "success" : "failure"));
+        }
+    }
+
+    void recordMojo(String module, String mojo, long durationNanos) {
+        String labels = labels("module", module, "goal", toGoal(mojo));
+        add(MOJO_EXECUTIONS, 1, labels);
+        add(MOJO_DURATION, durationNanos / 1e9, labels);
+    }
+
+    private void addProcesses(List<ProcessMetrics.Record> records) {
+        for (ProcessMetrics.Record record : records) {
+            String labels = labels("module", record.getModule(), "goal", toGoal(record.getMojo()), "command",
+                    record.getCommandName());
+            add(PROCESS_LAUNCHES, 1, labels);
+            add(PROCESS_FAILURES, record.getExitCode() == null || record.getExitCode() != 0 ? 1 : 0, labels);
+            add(PROCESS_DURATION, record.getWallTimeMillis() / 1e3, labels);
+            add(PROCESS_CPU, record.getCpuTimeMillis() != null ? record.getCpuTimeMillis() / 1e3 : 0, labels);
+            add(PROCESS_OUTPUT, record.getOutputBytes(), labels);
+        }
+    }
+
+    private synchronized void add(Family family, double value, String labels) {
+        samples.computeIfAbsent(family, key -> new TreeMap<>()).merge(labels, value, Double::sum);
+    }
+
+    private static String currentLabels(String... extraLabels) {
+        String[] labels = new String[extraLabels.length + 4];
+        labels[0] = "module";
+        labels[1] = BuildTracer.getCurrentModule();
+        labels[2] = "goal";
+        labels[3] = toGoal(BuildTracer.getCurrentMojo());
+        System.arraycopy(extraLabels, 0, labels, 4, extraLabels.length);
+        return labels(labels);
+    }
+
+    private static String toGoal(String mojo) {
+        // mojos are named goal@executionId, of which only the goal is stable across builds:
+        return StringUtils.substringBefore(StringUtils.defaultString(mojo), "@");
+    }
+
+    private static String labels(String... namesAndValues) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (labels.length() > 0) {
+                labels.append(',');
+            }
+            String value = StringUtils.defaultString(namesAndValues[i + 1]);
+            labels.append(namesAndValues[i]).append("=\"")
+                    .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return labels.toString();
+    }
+
+    /**
+     * Renders the collected metrics in the OpenMetrics text format, or in the
+     * Prometheus text format (which names counter families by their samples and
+     * has no end-of-file marker).
+     *
+     * @return exposition of the metrics
+     */
+    synchronized String toExposition() {
+        StringBuilder exposition = new StringBuilder();
+        for (Family metric : FAMILIES) {
+            Map<String, Double> familySamples = samples.get(metric);
+            if (familySamples == null) {
+                continue;
+            }
+            boolean counter = "counter".equals(metric.type);
+            String sampleName = counter ? metric.name + "_total" : metric.name;
+            String familyName = openMetricsFormat ? metric.name : sampleName;
+            exposition.append("# TYPE ").append(familyName).append(' ').append(metric.type).append('\n');
+            if (openMetricsFormat && metric.unit != null) {
+                exposition.append("# UNIT ").append(familyName).append(' ').append(metric.unit).append('\n');
+            }
+            exposition.append("# HELP ").append(familyName).append(' ').append(metric.help).append('\n');
+            for (Map.Entry<String, Double> sample : familySamples.entrySet()) {
+                exposition.append(sampleName).append('{').append(sample.getKey()).append("} ")
+                        .append(formatValue(sample.getValue())).append('\n');
+            }
+        }
+        if (openMetricsFormat) {
+            exposition.append("# EOF\n");
+        }
+        return exposition.toString();
+    }
+
+    private static String formatValue(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private void write() {
+        Path target = outputFile.toPath();
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            Path temporaryFile = Files.createTempFile(target.toAbsolutePath().getParent(), ".habushu-metrics", ".tmp");
+            try {
+                Files.write(temporaryFile, toExposition().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+            logger.info("Wrote Habushu build metrics to {}", outputFile);
+        } catch (IOException e) {
+            logger.warn("Could not write Habushu build metrics to {}", outputFile, e);
+        }
+    }
+
+    private static final class Family {
+        private final String name;
+        private final String type;
+        private final String help;
+        private final String unit;
+
+        private Family(String name, String type, String help, String unit) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.unit = unit;
+        }
+    }
+}
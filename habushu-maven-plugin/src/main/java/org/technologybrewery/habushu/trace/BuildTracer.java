@@ -0,0 +1,335 @@
+package org.technologybrewery.habushu.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Records a timeline of a Maven build in the Trace Event Format, which may be
+ * viewed in Perfetto (https://ui.perfetto.dev) or {@code chrome://tracing} to
+ * see where a (parallel) build spends its time and which modules wait on
+ * others. Spans are recorded for each mojo execution, launched process, job
+ * executed by a long-lived Python server, wheel cache lookup, and wait for a
+ * lock, and are tagged with the thread and module on which they occurred.
+ * <p>
+ * Tracing is enabled for a build by setting the {@value #TRACE_PROPERTY}
+ * property (i.e. {@code -Dhabushu.trace=true}), and requires
+ * habushu-maven-plugin to be declared with {@code <extensions>true</extensions>},
+ * as the trace is written at the end of the build by
+ * {@link org.technologybrewery.habushu.HabushuLifecycleParticipant}. Like
+ * {@link org.technologybrewery.habushu.exec.ProcessMetrics}, tracers are keyed by
+ * the build's {@link MavenExecutionRequest}, and the module to which spans are
+ * attributed is tracked per thread (and inherited by threads the mojo starts).
+ */
+public final class BuildTracer {
+
+    /**
+     * Property that enables tracing: {@code true} to write the trace to
+     * {@value #DEFAULT_TRACE_FILE} within the build's root directory, or the path
+     * of the file to which to write it.
+     */
+    public static final String TRACE_PROPERTY = "habushu.trace";
+
+    /**
+     * File, relative to the build's root directory, to which traces are written by
+     * default.
+     */
+    public static final String DEFAULT_TRACE_FILE = "target/habushu-trace.json";
+
+    private static final Logger logger = LoggerFactory.getLogger(BuildTracer.class);
+
+    private static final Map<MavenExecutionRequest, BuildTracer> builds =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final InheritableThreadLocal<Context> currentContext = new InheritableThreadLocal<>();
+
+    private static final Span NO_OP_SPAN = new Span(null, null, null, null);
+
+    private final File traceFile;
+    private final long startNanos = System.nanoTime();
+    private final long processId = ProcessHandle.current().pid();
+    private final List<Map<String, Object>> events = new ArrayList<>();
+    private final Map<Long, String> threadNames = new LinkedHashMap<>();
+
+    private BuildTracer(File traceFile) {
+        this.traceFile = traceFile;
+    }
+
+    /**
+     * Starts tracing the given build if enabled by its {@value #TRACE_PROPERTY}
+     * property.
+     *
+     * @param session Maven session of the build
+     */
+    public static void activate(MavenSession session) {
+        String trace = session.getUserProperties().getProperty(TRACE_PROPERTY,
+                session.getSystemProperties().getProperty(TRACE_PROPERTY));
+        if (StringUtils.isBlank(trace) || "false".equalsIgnoreCase(trace)) {
+            return;
+        }
+        File rootDirectory = new File(StringUtils.defaultString(session.getExecutionRootDirectory(), "."));
+        File traceFile = new File("true".equalsIgnoreCase(trace) ? DEFAULT_TRACE_FILE : trace);
+        if (!traceFile.isAbsolute()) {
+            traceFile = new File(rootDirectory, traceFile.getPath());
+        }
+        builds.putIfAbsent(session.getRequest(), new BuildTracer(traceFile));
+    }
+
+    /**
+     * Stops tracing the given build and writes its trace.
+     *
+     * @param session Maven session of the build
+     * @return the written trace file, or {@code null} if the build was not traced
+     */
+    public static File deactivate(MavenSession session) {
+        BuildTracer tracer = builds.remove(session.getRequest());
+        if (tracer == null) {
+            return null;
+        }
+        tracer.write();
+        return tracer.traceFile;
+    }
+
+    /**
+     * Attributes spans (and {@link HabushuEvent}s) recorded by the current thread
+     * to the given module, and starts a span (and {@link MojoExecutionEvent}) for
+     * the execution of the given mojo. Closing the span restores the previous
+     * attribution.
+     *
+     * @param session Maven session of the build, may be {@code null}
+     * @param module  name of the module (i.e. its artifactId)
+     * @param mojo    name of the mojo (i.e. its goal and execution id)
+     * @return span of the mojo's execution
+     */
+    public static Span enterMojo(MavenSession session, String module, String mojo) {
+        BuildTracer tracer = session != null && session.getRequest() != null ? builds.get(session.getRequest()) : null;
+        BuildMetrics metrics = BuildMetrics.get(session);
+        Context previous = currentContext.get();
+        currentContext.set(new Context(tracer, metrics, module, mojo));
+        MojoExecutionEvent event = new MojoExecutionEvent();
+        event.mojo = mojo;
+        event.begin();
+        long start = System.nanoTime();
+        return new Span(tracer, "mojo", mojo, module).onClose(() -> {
+            event.commit();
+            if (metrics != null) {
+                metrics.recordMojo(module, mojo, System.nanoTime() - start);
+            }
+            if (previous != null) {
+                currentContext.set(previous);
+            } else {
+                currentContext.remove();
+            }
+        });
+    }
+
+    /**
+     * Attributes spans, events, and metrics recorded by the current thread to the
+     * given module and mojo again, for work the mojo deferred until later in the
+     * build (i.e. publishing at the end of the build), and starts a
+     * {@code deferred} span for it. Unlike
+     * {@link #enterMojo(MavenSession, String, String)}, the work is not counted as
+     * another execution of the mojo. Closing the span restores the previous
+     * attribution.
+     *
+     * @param session Maven session of the build, may be {@code null}
+     * @param module  name of the module (i.e. its artifactId)
+     * @param mojo    name of the mojo (i.e. its goal and execution id)
+     * @return span of the deferred work
+     */
+    public static Span resumeMojo(MavenSession session, String module, String mojo) {
+        BuildTracer tracer = session != null && session.getRequest() != null ? builds.get(session.getRequest()) : null;
+        Context previous = currentContext.get();
+        currentContext.set(new Context(tracer, BuildMetrics.get(session), module, mojo));
+        return new Span(tracer, "deferred", mojo, module).onClose(() -> {
+            if (previous != null) {
+                currentContext.set(previous);
+            } else {
+                currentContext.remove();
+            }
+        });
+    }
+
+    /**
+     * Returns the module being executed by the current thread (see
+     * {@link #enterMojo(MavenSession, String, String)}), whether or not the build
+     * is traced.
+     *
+     * @return name of the module, or {@code null} if the thread is not executing a
+     * mojo
+     */
+    public static String getCurrentModule() {
+        Context context = currentContext.get();
+        return context != null ? context.module : null;
+    }
+
+    static String getCurrentMojo() {
+        Context context = currentContext.get();
+        return context != null ? context.mojo : null;
+    }
+
+    static BuildMetrics getCurrentMetrics() {
+        Context context = currentContext.get();
+        return context != null ? context.metrics : null;
+    }
+
+    /**
+     * Starts a span, attributed to the module being executed by the current
+     * thread, that ends when it is closed. Spans are not recorded if the build is
+     * not traced.
+     *
+     * @param category category of the span (i.e. {@code process} or {@code wait})
+     * @param name     name of the span
+     * @return the span
+     */
+    public static Span span(String category, String name) {
+        Context context = currentContext.get();
+        return context != null && context.tracer != null ? new Span(context.tracer, category, name, context.module)
+                : NO_OP_SPAN;
+    }
+
+    private long now() {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    private synchronized void add(Map<String, Object> event, Thread thread) {
+        events.add(event);
+        threadNames.putIfAbsent(thread.getId(), thread.getName());
+    }
+
+    private synchronized void write() {
+        List<Map<String, Object>> traceEvents = new ArrayList<>();
+        traceEvents.add(metadataEvent("process_name", 0, "Maven build"));
+        for (Map.Entry<Long, String> threadName : threadNames.entrySet()) {
+            traceEvents.add(metadataEvent("thread_name", threadName.getKey(), threadName.getValue()));
+        }
+        traceEvents.addAll(events);
+
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", traceEvents);
+        trace.put("displayTimeUnit", "ms");
+        try {
+            traceFile.getAbsoluteFile().getParentFile().mkdirs();
+            new ObjectMapper().writeValue(traceFile, trace);
+            logger.info("Wrote Habushu build trace to {} (open in https://ui.perfetto.dev)", traceFile);
+        } catch (IOException e) {
+            logger.warn("Could not write Habushu build trace to {}", traceFile, e);
+        }
+    }
+
+    private Map<String, Object> metadataEvent(String name, long threadId, String value) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("name", name);
+        event.put("ph", "M");
+        event.put("pid", processId);
+        event.put("tid", threadId);
+        event.put("args", Collections.singletonMap("name", value));
+        return event;
+    }
+
+    /**
+     * A span of time within a traced build, recorded when it is closed.
+     */
+    public static final class Span implements Closeable {
+        private final BuildTracer tracer;
+        private final String category;
+        private final String name;
+        private final long start;
+        private final Map<String, Object> args = new LinkedHashMap<>();
+        private Runnable onClose;
+
+        private Span(BuildTracer tracer, String category, String name, String module) {
+            this.tracer = tracer;
+            this.category = category;
+            this.name = name;
+            this.start = tracer != null ? tracer.now() : 0;
+            if (module != null) {
+                args.put("module", module);
+            }
+        }
+
+        private Span onClose(Runnable onClose) {
+            this.onClose = onClose;
+            return this;
+        }
+
+        /**
+         * Returns whether the span is recorded, so that callers may avoid computing
+         * arguments that would be discarded.
+         *
+         * @return {@code true} if the build is traced
+         */
+        public boolean isRecording() {
+            return tracer != null;
+        }
+
+        /**
+         * Adds an argument to the span, shown when it is selected.
+         *
+         * @param key   name of the argument
+         * @param value value of the argument
+         * @return the span
+         */
+        public Span arg(String key, Object value) {
+            if (tracer != null) {
+                args.put(key, value);
+            }
+            return this;
+        }
+
+        /**
+         * Ends the span.
+         */
+        @Override
+        public void close() {
+            if (tracer != null) {
+                record();
+            }
+            if (onClose != null) {
+                onClose.run();
+            }
+        }
+
+        private void record() {
+            Thread thread = Thread.currentThread();
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("name", name);
+            event.put("cat", category);
+            event.put("ph", "X");
+            event.put("ts", start);
+            event.put("dur", tracer.now() - start);
+            event.put("pid", tracer.processId);
+            event.put("tid", thread.getId());
+            event.put("args", args);
+            tracer.add(event, thread);
+        }
+    }
+
+    private static final class Context {
+        private final BuildTracer tracer;
+        private final BuildMetrics metrics;
+        private final String module;
+        private final String mojo;
+
+        private Context(BuildTracer tracer, BuildMetrics metrics, String module, String mojo) {
+            this.tracer = tracer;
+            this.metrics = metrics;
+            this.module = module;
+            this.mojo = mojo;
+        }
+    }
+}
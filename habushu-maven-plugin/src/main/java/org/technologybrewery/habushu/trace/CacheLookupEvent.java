@@ -0,0 +1,34 @@
+package org.technologybrewery.habushu.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event spanning a cache lookup (i.e. of the wheels of a
+ * wheel dependency) and recording whether it was a hit or a miss.
+ */
+@Name("org.technologybrewery.habushu.CacheLookup")
+@Label("Habushu Cache Lookup")
+@Description("Lookup of a cached artifact and whether it was a hit or a miss")
+@Category("Habushu")
+@StackTrace(false)
+public class CacheLookupEvent extends HabushuEvent {
+
+    @Label("Cache")
+    @Description("Cache that was searched (i.e. wheel)")
+    public String cache;
+
+    @Label("Key")
+    @Description("Key that was looked up (i.e. the artifactId of a wheel dependency)")
+    public String key;
+
+    @Label("Hit")
+    public boolean hit;
+
+    @Label("Entries")
+    @Description("Number of cache entries found")
+    public int entries;
+}
@@ -0,0 +1,23 @@
+package org.technologybrewery.habushu.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base of the JDK Flight Recorder events emitted by Habushu, which are enabled
+ * by default (without stack traces, to keep their overhead low) so that an
+ * always-on recording (i.e. {@code MAVEN_OPTS=-XX:StartFlightRecording}) shows
+ * Habushu's activity next to Maven's own events. Each event is attributed to
+ * the module being executed by the thread on which it occurred.
+ */
+public abstract class HabushuEvent extends Event {
+
+    @Label("Module")
+    @Description("Module being built when the event occurred")
+    public String module;
+
+    protected HabushuEvent() {
+        module = BuildTracer.getCurrentModule();
+    }
+}
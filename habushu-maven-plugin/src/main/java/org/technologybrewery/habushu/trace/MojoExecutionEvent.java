@@ -0,0 +1,24 @@
+package org.technologybrewery.habushu.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event spanning the execution of a Habushu mojo, so that
+ * recordings of a build show which module the other Habushu events of a thread
+ * belong to.
+ */
+@Name("org.technologybrewery.habushu.MojoExecution")
+@Label("Habushu Mojo Execution")
+@Description("Execution of a Habushu mojo")
+@Category("Habushu")
+@StackTrace(false)
+public class MojoExecutionEvent extends HabushuEvent {
+
+    @Label("Mojo")
+    @Description("Goal and execution id of the mojo")
+    public String mojo;
+}
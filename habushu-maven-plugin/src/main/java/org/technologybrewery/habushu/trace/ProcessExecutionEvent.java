@@ -0,0 +1,33 @@
+package org.technologybrewery.habushu.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event spanning the execution of a process launched by
+ * {@link org.technologybrewery.habushu.exec.ProcessExecutor}.
+ */
+@Name("org.technologybrewery.habushu.ProcessExecution")
+@Label("Habushu Process Execution")
+@Description("Execution of a process (i.e. Poetry or pyenv) launched by Habushu")
+@Category("Habushu")
+@StackTrace(false)
+public class ProcessExecutionEvent extends HabushuEvent {
+
+    @Label("Command")
+    @Description("Command line, with sensitive arguments masked")
+    public String command;
+
+    @Label("Exit Code")
+    @Description("Exit code of the process, or -1 if it could not be launched")
+    public int exitCode = -1;
+
+    @Label("Output Size")
+    @Description("Number of bytes written by the process to stdout and stderr")
+    @DataAmount
+    public long outputBytes;
+}
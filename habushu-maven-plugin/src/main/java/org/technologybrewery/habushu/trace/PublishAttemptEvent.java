@@ -0,0 +1,35 @@
+package org.technologybrewery.habushu.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event spanning an attempt to publish a module's
+ * distribution archives to a PyPI repository, including attempts that fail and
+ * are retried.
+ */
+@Name("org.technologybrewery.habushu.PublishAttempt")
+@Label("Habushu Publish Attempt")
+@Description("Attempt to publish distribution archives to a PyPI repository")
+@Category("Habushu")
+@StackTrace(false)
+public class PublishAttemptEvent extends HabushuEvent {
+
+    @Label("Method")
+    @Description("How archives were published: poetry or native")
+    public String method;
+
+    @Label("Attempt")
+    @Description("Number of the attempt, starting at 1")
+    public int attempt;
+
+    @Label("Successful")
+    public boolean successful;
+
+    @Label("Failure")
+    @Description("Type of the failure of an unsuccessful attempt, if it could be classified")
+    public String failure;
+}
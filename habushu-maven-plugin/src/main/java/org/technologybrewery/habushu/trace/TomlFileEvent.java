@@ -0,0 +1,42 @@
+package org.technologybrewery.habushu.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event spanning the parsing or rewriting of a TOML file
+ * (i.e. {@code pyproject.toml}).
+ */
+@Name("org.technologybrewery.habushu.TomlFile")
+@Label("Habushu TOML File")
+@Description("Parse or rewrite of a TOML file")
+@Category("Habushu")
+@StackTrace(false)
+public class TomlFileEvent extends HabushuEvent {
+
+    /**
+     * Operation of events that parse a file.
+     */
+    public static final String PARSE = "parse";
+
+    /**
+     * Operation of events that rewrite a file.
+     */
+    public static final String REWRITE = "rewrite";
+
+    @Label("Operation")
+    @Description("Whether the file was parsed or rewritten")
+    public String operation;
+
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @Description("Size of the file")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,155 @@
+package org.technologybrewery.habushu.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.HabushuException;
+import org.technologybrewery.habushu.trace.BuildTracer;
+
+/**
+ * Exclusive lock on a named resource of a shared directory that coordinates
+ * writes across Maven JVMs (via a {@link FileLock} on
+ * {@code <directory>/.<name>.lock}) and across the threads of a parallel
+ * ({@code mvn -T}) build within the same JVM, for which file locks cannot be
+ * used as they are held on behalf of the entire JVM.
+ */
+public final class FileSystemLock implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemLock.class);
+    private static final long MAX_RETRY_INTERVAL_MILLIS = 200;
+    private static final ConcurrentMap<Path, ReentrantLock> jvmLocks = new ConcurrentHashMap<>();
+
+    private final Path lockFile;
+    private final String description;
+    private final ReentrantLock jvmLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private FileSystemLock(Path lockFile, String description, ReentrantLock jvmLock, FileChannel channel,
+                           FileLock fileLock) {
+        this.lockFile = lockFile;
+        this.description = description;
+        this.jvmLock = jvmLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Acquires the lock on the given resource, waiting up to the given timeout for
+     * other threads or processes to release it.
+     *
+     * @param directory   shared directory containing the resource
+     * @param name        name of the resource
+     * @param description describes the kind of lock in messages (i.e.
+     *                    {@code wheel cache lock})
+     * @param timeout     maximum time to wait for the lock
+     * @return the acquired lock, which must be closed to release it
+     * @throws HabushuException if the lock cannot be acquired within the timeout
+     */
+    public static FileSystemLock acquire(File directory, String name, String description, Duration timeout) {
+        try (BuildTracer.Span span = BuildTracer.span("wait", description + " " + name)) {
+            return acquire(directory, name, description, timeout, span);
+        }
+    }
+
+    private static FileSystemLock acquire(File directory, String name, String description, Duration timeout,
+                                          BuildTracer.Span span) {
+        Path lockFile = new File(directory, "." + name + ".lock").toPath().toAbsolutePath().normalize();
+        long deadline = System.nanoTime() + Math.max(0, timeout.toNanos());
+        ReentrantLock jvmLock = jvmLocks.computeIfAbsent(lockFile, key -> new ReentrantLock());
+        try {
+            if (!jvmLock.tryLock(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+                throw timedOut(lockFile, description, timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HabushuException("Interrupted while waiting for " + description + " " + lockFile, e);
+        }
+
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = tryLock(channel);
+            long retryIntervalMillis = 10;
+            while (fileLock == null) {
+                if (remainingNanos(deadline) <= 0) {
+                    throw timedOut(lockFile, description, timeout);
+                }
+                logger.debug("Waiting for another build to release {} {}", description, lockFile);
+                span.arg("waitedForAnotherBuild", true);
+                Thread.sleep(Math.min(retryIntervalMillis, TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadline)) + 1));
+                retryIntervalMillis = Math.min(retryIntervalMillis * 2, MAX_RETRY_INTERVAL_MILLIS);
+                fileLock = tryLock(channel);
+            }
+            return new FileSystemLock(lockFile, description, jvmLock, channel, fileLock);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            closeQuietly(channel, description);
+            jvmLock.unlock();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (e instanceof HabushuException) {
+                throw (HabushuException) e;
+            }
+            throw new HabushuException("Could not acquire " + description + " " + lockFile, e);
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // already held by this JVM (i.e. nested acquisition), treat as contended:
+            return null;
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return deadline - System.nanoTime();
+    }
+
+    private static HabushuException timedOut(Path lockFile, String description, Duration timeout) {
+        return new HabushuException(String.format(
+                "Timed out after %s seconds waiting for another build to release %s %s",
+                timeout.getSeconds(), description, lockFile));
+    }
+
+    private static void closeQuietly(FileChannel channel, String description) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Could not close {} file", description, e);
+            }
+        }
+    }
+
+    /**
+     * Releases this lock.
+     */
+    @Override
+    public void close() {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            logger.warn("Could not release {} {}", description, lockFile, e);
+        } finally {
+            closeQuietly(channel, description);
+            jvmLock.unlock();
+        }
+    }
+}
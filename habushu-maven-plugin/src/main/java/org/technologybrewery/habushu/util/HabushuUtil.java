@@ -1,5 +1,6 @@
 package org.technologybrewery.habushu.util;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,7 +11,12 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Contains utility functionality for Habushu, including bash script execution
@@ -158,6 +164,103 @@ public final class HabushuUtil {
 
     }
 
+    /**
+     * Copies the given file by first writing it to a temporary file alongside the
+     * destination and then atomically renaming it into place, so that concurrent
+     * readers of the destination never observe a partially written file.
+     *
+     * @param sourceFile      the file to copy
+     * @param destinationFile the file to create or replace
+     */
+    public static void copyFileAtomically(File sourceFile, File destinationFile) {
+        Path temporaryFile = null;
+        try {
+            Path destinationDirectory = destinationFile.getAbsoluteFile().getParentFile().toPath();
+            Files.createDirectories(destinationDirectory);
+            temporaryFile = Files.createTempFile(destinationDirectory, "." + destinationFile.getName(), ".tmp");
+            Files.copy(sourceFile.toPath(), temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            moveAtomically(temporaryFile, destinationFile.toPath());
+        } catch (IOException ioe) {
+            throw new HabushuException("Could not copy the file [" + sourceFile + "] to [" + destinationFile + "]!", ioe);
+        } finally {
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    /**
+     * Moves the given file into place with an atomic rename, replacing any
+     * existing target. Falls back to a regular move on file systems that do not
+     * support atomic moves.
+     *
+     * @param source the file to move, which should reside in the same directory as
+     *               the target
+     * @param target the file to create or replace
+     * @throws IOException if the file cannot be moved
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.debug("Could not delete temporary file {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Calculates the hex-encoded SHA-256 digest of the given file's contents,
+     * streaming the file rather than loading it into memory.
+     *
+     * @param file the file to hash
+     * @return hex-encoded SHA-256 digest
+     */
+    public static String sha256Hex(File file) {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            return DigestUtils.sha256Hex(inputStream);
+        } catch (IOException ioe) {
+            throw new HabushuException("Could not calculate the SHA-256 digest of [" + file + "]!", ioe);
+        }
+    }
+
+    /**
+     * Returns whether the given destination file already exists with the same
+     * contents as the given source file. File sizes are compared first so that
+     * the contents of both files are only hashed when their sizes match.
+     *
+     * @param sourceFile      the file that would be copied
+     * @param destinationFile the potentially existing copy
+     * @return true if the destination file is identical to the source file
+     */
+    public static boolean isIdenticalFile(File sourceFile, File destinationFile) {
+        return destinationFile.isFile()
+                && sourceFile.length() == destinationFile.length()
+                && sha256Hex(sourceFile).equals(sha256Hex(destinationFile));
+    }
+
+    /**
+     * Returns whether the given file exists with the given size and SHA-256
+     * digest, which avoids re-hashing a source file whose digest is already
+     * known. The file is only hashed when its size matches.
+     *
+     * @param file           the potentially existing file
+     * @param expectedSize   expected size of the file, in bytes
+     * @param expectedSha256 expected hex-encoded SHA-256 digest of the file
+     * @return true if the file has the expected size and digest
+     */
+    public static boolean hasDigest(File file, long expectedSize, String expectedSha256) {
+        return file.isFile()
+                && file.length() == expectedSize
+                && sha256Hex(file).equalsIgnoreCase(expectedSha256);
+    }
+
     /**
      * Returns the full path for a .venv in-project virtual environment.
      *
@@ -0,0 +1,295 @@
+package org.technologybrewery.habushu.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Lightweight representation of a PEP-440 compliant Python package version that
+ * supports the ordering rules needed to select the newest of several package
+ * versions (i.e. {@code 1.2.3.dev0 < 1.2.3rc1 < 1.2.3 < 1.2.3.post1}).
+ * <p>
+ * Local version labels (i.e. {@code 1.2.3+local}) are retained but only
+ * considered when two versions are otherwise equal, in which case a version
+ * with a label sorts after the same version without one.
+ */
+public final class Pep440Version implements Comparable<Pep440Version> {
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile(
+            "^v?(?:(\\d+)!)?(\\d+(?:\\.\\d+)*)"
+                    + "(?:[-_.]?(a|b|c|rc|alpha|beta|pre|preview)[-_.]?(\\d+)?)?"
+                    + "(?:-(\\d+)|[-_.]?(post|rev|r)[-_.]?(\\d+)?)?"
+                    + "(?:[-_.]?(dev)[-_.]?(\\d+)?)?"
+                    + "(?:\\+([a-z0-9]+(?:[-_.][a-z0-9]+)*))?$");
+
+    private final int epoch;
+    private final List<Long> release;
+    private final String preReleasePhase;
+    private final long preReleaseNumber;
+    private final long postReleaseNumber;
+    private final long devReleaseNumber;
+    private final String local;
+
+    private Pep440Version(int epoch, List<Long> release, String preReleasePhase, long preReleaseNumber,
+                          long postReleaseNumber, long devReleaseNumber, String local) {
+        this.epoch = epoch;
+        this.release = release;
+        this.preReleasePhase = preReleasePhase;
+        this.preReleaseNumber = preReleaseNumber;
+        this.postReleaseNumber = postReleaseNumber;
+        this.devReleaseNumber = devReleaseNumber;
+        this.local = local;
+    }
+
+    /**
+     * Parses the given version string.
+     *
+     * @param version version to parse
+     * @return the parsed version
+     * @throws IllegalArgumentException if the given value is not a valid PEP-440
+     *                                  version
+     */
+    public static Pep440Version parse(String version) {
+        String normalized = StringUtils.trimToEmpty(version).toLowerCase(Locale.ROOT);
+        Matcher matcher = VERSION_PATTERN.matcher(normalized);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a valid PEP-440 version: " + version);
+        }
+
+        int epoch = matcher.group(1) != null ? Integer.parseInt(matcher.group(1)) : 0;
+
+        List<Long> release = new ArrayList<>();
+        for (String segment : StringUtils.split(matcher.group(2), '.')) {
+            release.add(Long.parseLong(segment));
+        }
+
+        String preReleasePhase = normalizePreReleasePhase(matcher.group(3));
+        long preReleaseNumber = preReleasePhase != null ? parseOptionalNumber(matcher.group(4)) : -1;
+
+        long postReleaseNumber = -1;
+        if (matcher.group(5) != null) {
+            postReleaseNumber = Long.parseLong(matcher.group(5));
+        } else if (matcher.group(6) != null) {
+            postReleaseNumber = parseOptionalNumber(matcher.group(7));
+        }
+
+        long devReleaseNumber = matcher.group(8) != null ? parseOptionalNumber(matcher.group(9)) : -1;
+
+        return new Pep440Version(epoch, Collections.unmodifiableList(release), preReleasePhase, preReleaseNumber,
+                postReleaseNumber, devReleaseNumber,
+                matcher.group(10) != null ? matcher.group(10).replace('-', '.').replace('_', '.') : null);
+    }
+
+    /**
+     * Parses the given version string, returning {@code null} instead of failing
+     * if the value is not a valid PEP-440 version.
+     *
+     * @param version version to parse
+     * @return the parsed version or {@code null}
+     */
+    public static Pep440Version parseQuietly(String version) {
+        try {
+            return parse(version);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String normalizePreReleasePhase(String phase) {
+        if (phase == null) {
+            return null;
+        }
+        switch (phase) {
+            case "alpha":
+                return "a";
+            case "beta":
+                return "b";
+            case "c":
+            case "pre":
+            case "preview":
+                return "rc";
+            default:
+                return phase;
+        }
+    }
+
+    private static long parseOptionalNumber(String number) {
+        return number != null ? Long.parseLong(number) : 0;
+    }
+
+    public List<Long> getRelease() {
+        return release;
+    }
+
+    public boolean isDevRelease() {
+        return devReleaseNumber >= 0;
+    }
+
+    public boolean isPreRelease() {
+        return preReleasePhase != null || isDevRelease();
+    }
+
+    public boolean isPostRelease() {
+        return postReleaseNumber >= 0;
+    }
+
+    /**
+     * Returns the public portion of this version (everything except the local
+     * version label).
+     *
+     * @return public version
+     */
+    public Pep440Version getPublicVersion() {
+        return local == null ? this
+                : new Pep440Version(epoch, release, preReleasePhase, preReleaseNumber, postReleaseNumber,
+                devReleaseNumber, null);
+    }
+
+    /**
+     * Returns the base version of this version, which only consists of its epoch
+     * and release segments (i.e. {@code 1.2.3} for {@code 1.2.3rc1.dev2}).
+     *
+     * @return base version
+     */
+    public Pep440Version getBaseVersion() {
+        return new Pep440Version(epoch, release, null, -1, -1, -1, null);
+    }
+
+    @Override
+    public int compareTo(Pep440Version other) {
+        int result = Integer.compare(epoch, other.epoch);
+        if (result == 0) {
+            result = compareRelease(release, other.release);
+        }
+        if (result == 0) {
+            result = comparePreRelease(other);
+        }
+        if (result == 0) {
+            result = Long.compare(postReleaseNumber, other.postReleaseNumber);
+        }
+        if (result == 0) {
+            // final releases (no dev segment) sort after their developmental releases:
+            result = Long.compare(devReleaseNumber < 0 ? Long.MAX_VALUE : devReleaseNumber,
+                    other.devReleaseNumber < 0 ? Long.MAX_VALUE : other.devReleaseNumber);
+        }
+        if (result == 0) {
+            result = compareLocal(local, other.local);
+        }
+        return result;
+    }
+
+    /**
+     * Compares local version labels as PEP-440 requires: a version without a
+     * label sorts before the same version with one, and labels are compared
+     * segment by segment, with numeric segments compared numerically and sorting
+     * after alphanumeric ones, and a shorter label sorting first when all of its
+     * segments match.
+     */
+    private static int compareLocal(String local, String otherLocal) {
+        if (local == null || otherLocal == null) {
+            return local == null ? (otherLocal == null ? 0 : -1) : 1;
+        }
+        String[] segments = StringUtils.split(local, '.');
+        String[] otherSegments = StringUtils.split(otherLocal, '.');
+        for (int i = 0; i < Math.min(segments.length, otherSegments.length); i++) {
+            int result = compareLocalSegment(segments[i], otherSegments[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(segments.length, otherSegments.length);
+    }
+
+    private static int compareLocalSegment(String segment, String otherSegment) {
+        boolean numeric = StringUtils.isNumeric(segment);
+        boolean otherNumeric = StringUtils.isNumeric(otherSegment);
+        if (numeric && otherNumeric) {
+            return new BigInteger(segment).compareTo(new BigInteger(otherSegment));
+        }
+        if (numeric != otherNumeric) {
+            return numeric ? 1 : -1;
+        }
+        return segment.compareTo(otherSegment);
+    }
+
+    static int compareRelease(List<Long> release, List<Long> otherRelease) {
+        int length = Math.max(release.size(), otherRelease.size());
+        for (int i = 0; i < length; i++) {
+            long segment = i < release.size() ? release.get(i) : 0;
+            long otherSegment = i < otherRelease.size() ? otherRelease.get(i) : 0;
+            int result = Long.compare(segment, otherSegment);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private int comparePreRelease(Pep440Version other) {
+        int result = Integer.compare(preReleaseRank(), other.preReleaseRank());
+        return result != 0 ? result : Long.compare(preReleaseNumber, other.preReleaseNumber);
+    }
+
+    /**
+     * Ranks the pre-release phase of this version - a bare developmental release
+     * (i.e. {@code 1.0.dev1}) sorts before any pre-release of the same release,
+     * which in turn sort before the final release.
+     */
+    private int preReleaseRank() {
+        if (preReleasePhase == null) {
+            return isDevRelease() && !isPostRelease() ? 0 : 4;
+        }
+        switch (preReleasePhase) {
+            case "a":
+                return 1;
+            case "b":
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Pep440Version && compareTo((Pep440Version) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        List<Long> trimmedRelease = new ArrayList<>(release);
+        while (trimmedRelease.size() > 1 && trimmedRelease.get(trimmedRelease.size() - 1) == 0) {
+            trimmedRelease.remove(trimmedRelease.size() - 1);
+        }
+        return Objects.hash(epoch, trimmedRelease, preReleasePhase, preReleaseNumber, postReleaseNumber,
+                devReleaseNumber, local);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder version = new StringBuilder();
+        if (epoch != 0) {
+            version.append(epoch).append('!');
+        }
+        version.append(StringUtils.join(release, '.'));
+        if (preReleasePhase != null) {
+            version.append(preReleasePhase).append(preReleaseNumber);
+        }
+        if (isPostRelease()) {
+            version.append(".post").append(postReleaseNumber);
+        }
+        if (isDevRelease()) {
+            version.append(".dev").append(devReleaseNumber);
+        }
+        if (local != null) {
+            version.append('+').append(local);
+        }
+        return version.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package org.technologybrewery.habushu.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Evaluates whether a {@link Pep440Version} satisfies a PEP-440 style version
+ * specifier, such as {@code >=1.2,<2.0}, {@code ~=1.4.2}, or {@code ==1.2.*}.
+ * A bare version (i.e. {@code 1.2.3}) is treated as an exact match and a Maven
+ * SNAPSHOT version (i.e. {@code 1.2.3-SNAPSHOT}) matches any developmental
+ * release of the corresponding version (i.e. {@code 1.2.3.dev0} or
+ * {@code 1.2.3.dev1658238063}).
+ */
+public final class Pep440VersionSpecifier {
+
+    private static final String SNAPSHOT = "-SNAPSHOT";
+    private static final Pattern CLAUSE_PATTERN = Pattern.compile("^(~=|===|==|!=|<=|>=|<|>)?\\s*(\\S+)$");
+
+    private final String specifier;
+    private final List<Clause> clauses;
+
+    private Pep440VersionSpecifier(String specifier, List<Clause> clauses) {
+        this.specifier = specifier;
+        this.clauses = clauses;
+    }
+
+    /**
+     * Parses the given comma-separated specifier. A blank specifier matches all
+     * versions.
+     *
+     * @param specifier specifier to parse
+     * @return parsed specifier
+     * @throws IllegalArgumentException if any clause of the specifier is invalid
+     */
+    public static Pep440VersionSpecifier parse(String specifier) {
+        List<Clause> clauses = new ArrayList<>();
+        if (StringUtils.isNotBlank(specifier)) {
+            for (String clause : StringUtils.split(specifier, ',')) {
+                clauses.add(parseClause(clause.trim(), specifier));
+            }
+        }
+        return new Pep440VersionSpecifier(StringUtils.trimToEmpty(specifier), Collections.unmodifiableList(clauses));
+    }
+
+    private static Clause parseClause(String clause, String specifier) {
+        if (clause.endsWith(SNAPSHOT)) {
+            Pep440Version snapshotBase = Pep440Version.parse(clause.substring(0, clause.length() - SNAPSHOT.length()));
+            return new Clause("dev-of", snapshotBase, false);
+        }
+
+        Matcher matcher = CLAUSE_PATTERN.matcher(clause);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid clause '%s' in version specifier '%s'", clause, specifier));
+        }
+        String operator = matcher.group(1) != null ? matcher.group(1) : "==";
+        String version = matcher.group(2);
+        boolean prefixMatch = version.endsWith(".*");
+        if (prefixMatch && !("==".equals(operator) || "!=".equals(operator))) {
+            throw new IllegalArgumentException(String.format(
+                    "Wildcard versions are only supported with == and != in version specifier '%s'", specifier));
+        }
+        if (prefixMatch) {
+            version = version.substring(0, version.length() - 2);
+        }
+
+        try {
+            return new Clause(operator, Pep440Version.parse(version), prefixMatch);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid version '%s' in version specifier '%s'", version, specifier), e);
+        }
+    }
+
+    /**
+     * Returns whether the given version satisfies every clause of this specifier.
+     *
+     * @param version version to check
+     * @return whether the version matches
+     */
+    public boolean matches(Pep440Version version) {
+        for (Clause clause : clauses) {
+            if (!clause.matches(version)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether this specifier matches all versions.
+     *
+     * @return true if no clauses were specified
+     */
+    public boolean isUnbounded() {
+        return clauses.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return specifier;
+    }
+
+    private static final class Clause {
+        private final String operator;
+        private final Pep440Version version;
+        private final boolean prefixMatch;
+
+        private Clause(String operator, Pep440Version version, boolean prefixMatch) {
+            this.operator = operator;
+            this.version = version;
+            this.prefixMatch = prefixMatch;
+        }
+
+        private boolean matches(Pep440Version candidate) {
+            switch (operator) {
+                case "dev-of":
+                    return candidate.isDevRelease() && !candidate.isPostRelease()
+                            && candidate.getBaseVersion().equals(version.getBaseVersion());
+                case "===":
+                    return candidate.toString().equals(version.toString());
+                case "==":
+                    return prefixMatch ? isPrefixMatch(candidate) : candidate.getPublicVersion().equals(version);
+                case "!=":
+                    return prefixMatch ? !isPrefixMatch(candidate) : !candidate.getPublicVersion().equals(version);
+                case "<=":
+                    return candidate.getPublicVersion().compareTo(version) <= 0;
+                case ">=":
+                    return candidate.getPublicVersion().compareTo(version) >= 0;
+                case "<":
+                    // exclusive ordered comparisons never match pre-releases of the given version:
+                    return candidate.compareTo(version) < 0 && (version.isPreRelease() || !candidate.isPreRelease()
+                            || !candidate.getBaseVersion().equals(version.getBaseVersion()));
+                case ">":
+                    // ... nor post-releases of the given version:
+                    return candidate.compareTo(version) > 0 && (version.isPostRelease() || !candidate.isPostRelease()
+                            || !candidate.getBaseVersion().equals(version.getBaseVersion()));
+                case "~=":
+                    return isCompatibleRelease(candidate);
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isPrefixMatch(Pep440Version candidate) {
+            List<Long> prefix = version.getRelease();
+            List<Long> candidateRelease = candidate.getRelease();
+            for (int i = 0; i < prefix.size(); i++) {
+                long segment = i < candidateRelease.size() ? candidateRelease.get(i) : 0;
+                if (segment != prefix.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isCompatibleRelease(Pep440Version candidate) {
+            List<Long> release = version.getRelease();
+            if (release.size() < 2 || candidate.compareTo(version) < 0) {
+                return false;
+            }
+            List<Long> prefix = release.subList(0, release.size() - 1);
+            return Pep440Version.compareRelease(candidate.getRelease().subList(0,
+                    Math.min(prefix.size(), candidate.getRelease().size())), prefix) == 0;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package org.technologybrewery.habushu.util;
 
 import com.electronwill.nightconfig.core.CommentedConfig;
+import com.electronwill.nightconfig.core.file.FileConfig;
 import org.apache.commons.collections4.CollectionUtils;
+import org.technologybrewery.habushu.trace.TomlFileEvent;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -60,14 +62,49 @@ public final class TomlUtils {
         return (!valueToEscape.contains("{")) ? DOUBLE_QUOTE + valueToEscape + DOUBLE_QUOTE : valueToEscape;
     }
 
+    /**
+     * Opens and parses the given TOML file (i.e. {@code pyproject.toml}).
+     *
+     * @param tomlFile file to parse
+     * @return the parsed file, which must be closed
+     */
+    public static FileConfig loadTomlFile(File tomlFile) {
+        TomlFileEvent event = new TomlFileEvent();
+        event.begin();
+        FileConfig config = FileConfig.of(tomlFile);
+        try {
+            config.load();
+        } catch (RuntimeException e) {
+            config.close();
+            throw e;
+        } finally {
+            commit(event, TomlFileEvent.PARSE, tomlFile);
+        }
+        return config;
+    }
+
     public static void writeTomlFile(File pyProjectTomlFile, String fileContent) throws IOException {
         if (fileContent != null) {
+            TomlFileEvent event = new TomlFileEvent();
+            event.begin();
             try (Writer writer = new FileWriter(pyProjectTomlFile)) {
                 writer.write(fileContent);
+            } finally {
+                commit(event, TomlFileEvent.REWRITE, pyProjectTomlFile);
             }
         }
     }
 
+    private static void commit(TomlFileEvent event, String operation, File tomlFile) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.file = tomlFile.getPath();
+            event.bytes = tomlFile.length();
+            event.commit();
+        }
+    }
+
     public static String convertCommentedConfigToToml(CommentedConfig config) {
         int valuesRemaining = config.size();
 
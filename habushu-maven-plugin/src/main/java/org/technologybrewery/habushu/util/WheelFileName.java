@@ -0,0 +1,86 @@
+package org.technologybrewery.habushu.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Parses wheel archive file names, which follow the
+ * {@code {distribution}-{version}(-{build tag})?-{python tag}-{abi tag}-{platform tag}.whl}
+ * naming convention defined by PEP-427.
+ */
+public final class WheelFileName {
+
+    public static final String WHEEL_EXTENSION = ".whl";
+
+    private final String fileName;
+    private final String distribution;
+    private final String version;
+    private final String pythonTag;
+    private final String abiTag;
+    private final String platformTag;
+
+    private WheelFileName(String fileName, String distribution, String version, String pythonTag, String abiTag,
+                          String platformTag) {
+        this.fileName = fileName;
+        this.distribution = distribution;
+        this.version = version;
+        this.pythonTag = pythonTag;
+        this.abiTag = abiTag;
+        this.platformTag = platformTag;
+    }
+
+    /**
+     * Parses the given wheel file name.
+     *
+     * @param fileName name of the wheel file (without any directory component)
+     * @return the parsed file name, or {@code null} if the name does not follow
+     * the wheel naming convention
+     */
+    public static WheelFileName parse(String fileName) {
+        if (fileName == null || !fileName.endsWith(WHEEL_EXTENSION)) {
+            return null;
+        }
+
+        String[] parts = StringUtils.split(fileName.substring(0, fileName.length() - WHEEL_EXTENSION.length()), '-');
+        if (parts.length != 5 && parts.length != 6) {
+            return null;
+        }
+
+        int tagsIndex = parts.length - 3;
+        return new WheelFileName(fileName, parts[0], parts[1], parts[tagsIndex], parts[tagsIndex + 1],
+                parts[tagsIndex + 2]);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getDistribution() {
+        return distribution;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getPythonTag() {
+        return pythonTag;
+    }
+
+    public String getAbiTag() {
+        return abiTag;
+    }
+
+    public String getPlatformTag() {
+        return platformTag;
+    }
+
+    /**
+     * Returns the parsed PEP-440 version of this wheel, or {@code null} if the
+     * version component of the file name is not a valid PEP-440 version.
+     *
+     * @return parsed version
+     */
+    public Pep440Version getParsedVersion() {
+        return Pep440Version.parseQuietly(version);
+    }
+}
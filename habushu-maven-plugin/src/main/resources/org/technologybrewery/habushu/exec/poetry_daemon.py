@@ -0,0 +1,202 @@
+"""Long-lived worker that executes Poetry commands in-process for Habushu.
+
+Runs with Poetry's own interpreter, so that Poetry (and cleo, dulwich, keyring,
+etc.) is imported once rather than once per command, and executes commands
+through Poetry's console application. The Poetry instance of each project is
+kept between commands for as long as the project's pyproject.toml, poetry.lock,
+and the environment given to the command are unchanged. Requests are read from
+stdin as one JSON object per line:
+
+    {"id": 1, "args": ["install", "--sync"], "cwd": "/project", "env": {"KEY": "value"}}
+    {"shutdown": true}
+
+and responses are written to stdout as one JSON object per line:
+
+    {"ready": true, "version": "1.8.3"}          once Poetry has been imported
+    {"ready": false, "error": "..."}             if Poetry could not be imported
+    {"id": 1, "stream": "stdout", "line": "..."}  for each line of output of the command
+    {"id": 1, "exit": 0}                          once the command has completed
+
+Anything written directly to file descriptors 0 and 1 (i.e. by subprocesses)
+is detached from the protocol so that it cannot corrupt it.
+"""
+import io
+import json
+import os
+import sys
+import traceback
+
+_protocol = None
+
+# commands that change Poetry's configuration, after which no project state is reused:
+CONFIGURATION_COMMANDS = {"config", "source", "self", "cache"}
+_projects = {}
+
+
+def send(message):
+    _protocol.write(json.dumps(message) + "\n")
+    _protocol.flush()
+
+
+class LineWriter(io.TextIOBase):
+    """Text stream that sends each line written to it as a protocol message."""
+
+    encoding = "utf-8"
+    errors = "strict"
+
+    def __init__(self, job_id, stream):
+        super().__init__()
+        self.job_id = job_id
+        self.stream = stream
+        self.pending = ""
+
+    def writable(self):
+        return True
+
+    def isatty(self):
+        return False
+
+    def write(self, text):
+        self.pending += text
+        while "\n" in self.pending:
+            line, self.pending = self.pending.split("\n", 1)
+            send({"id": self.job_id, "stream": self.stream, "line": line})
+        return len(text)
+
+    def flush(self):
+        pass
+
+    def finish(self):
+        if self.pending:
+            send({"id": self.job_id, "stream": self.stream, "line": self.pending})
+            self.pending = ""
+
+
+def to_exit_code(code):
+    if code is None:
+        return 0
+    if isinstance(code, int):
+        return code
+    print(code, file=sys.stderr)
+    return 1
+
+
+def fingerprint(directory, env):
+    parts = []
+    for name in ("pyproject.toml", "poetry.lock"):
+        try:
+            stat = os.stat(os.path.join(directory, name))
+            parts.append((name, stat.st_mtime_ns, stat.st_size))
+        except OSError:
+            parts.append((name, None, None))
+    parts.append(tuple(sorted((key, str(value)) for key, value in env.items())))
+    return tuple(parts)
+
+
+def reload_config():
+    try:
+        from poetry.config.config import Config
+
+        Config.create(reload=True)
+    except (ImportError, TypeError):
+        pass
+
+
+def run_poetry(args, env):
+    from cleo.io.inputs.argv_input import ArgvInput
+    from cleo.io.outputs.stream_output import StreamOutput
+    from poetry.console.application import Application
+
+    project = os.getcwd()
+    before = fingerprint(project, env)
+    application = Application()
+    application.auto_exits(False)
+    cached = _projects.get(project)
+    if cached is not None and cached[0] == before:
+        application._poetry = cached[1]
+
+    code = application.run(ArgvInput(["poetry"] + args), StreamOutput(sys.stdout), StreamOutput(sys.stderr))
+
+    poetry = getattr(application, "_poetry", None)
+    if args and args[0] in CONFIGURATION_COMMANDS:
+        _projects.clear()
+    elif poetry is not None and fingerprint(project, env) == before:
+        _projects[project] = (before, poetry)
+    else:
+        _projects.pop(project, None)
+    return code
+
+
+def run(request):
+    job_id = request.get("id")
+    args = [str(arg) for arg in request.get("args") or []]
+    env = request.get("env") or {}
+    saved_cwd = os.getcwd()
+    saved_environ = dict(os.environ)
+    saved_argv = sys.argv
+    saved_stdout, saved_stderr = sys.stdout, sys.stderr
+    stdout = LineWriter(job_id, "stdout")
+    stderr = LineWriter(job_id, "stderr")
+    code = 1
+    try:
+        if request.get("cwd"):
+            os.chdir(request["cwd"])
+        for key, value in env.items():
+            if value is None:
+                os.environ.pop(key, None)
+            else:
+                os.environ[key] = str(value)
+        sys.stdout, sys.stderr = stdout, stderr
+        sys.argv = ["poetry"] + args
+        reload_config()
+        code = to_exit_code(run_poetry(args, env))
+    except SystemExit as e:
+        code = to_exit_code(e.code)
+    except BaseException:  # noqa - report any failure of the command as its output
+        traceback.print_exc()
+        code = 1
+    finally:
+        stdout.finish()
+        stderr.finish()
+        sys.stdout, sys.stderr = saved_stdout, saved_stderr
+        sys.argv = saved_argv
+        os.environ.clear()
+        os.environ.update(saved_environ)
+        os.chdir(saved_cwd)
+    send({"id": job_id, "exit": code})
+
+
+def main():
+    global _protocol
+    protocol_out = os.dup(1)
+    protocol_in = os.dup(0)
+    os.dup2(2, 1)
+    devnull = os.open(os.devnull, os.O_RDONLY)
+    os.dup2(devnull, 0)
+    os.close(devnull)
+    _protocol = os.fdopen(protocol_out, "w", encoding="utf-8")
+    sys.stdin = open(0, "r", closefd=False)
+
+    try:
+        import poetry.console.application  # noqa - imported once, up front
+        from importlib import metadata
+
+        version = metadata.version("poetry")
+    except Exception as e:  # noqa - Habushu falls back to the Poetry CLI
+        send({"ready": False, "error": repr(e)})
+        return
+    send({"ready": True, "version": version})
+
+    with os.fdopen(protocol_in, "r", encoding="utf-8") as requests:
+        for line in requests:
+            line = line.strip()
+            if not line:
+                continue
+            request = json.loads(line)
+            if request.get("shutdown"):
+                break
+            run(request)
+
+
+if __name__ == "__main__":
+    main()
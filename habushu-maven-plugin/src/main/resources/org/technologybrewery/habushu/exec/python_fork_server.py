@@ -0,0 +1,182 @@
+"""Pre-warmed Python interpreter that forks a child for each command executed by Habushu.
+
+The modules given as arguments are imported once, when the server starts, so
+that each forked child inherits them already initialized and only pays the cost
+of running the command itself. Requests are read from stdin as one JSON object
+per line, where "argv" holds the arguments that would follow "python" on the
+command line (a script, "-m module", or "-c code", followed by its arguments):
+
+    {"id": 1, "argv": ["-m", "grpc_tools.protoc", "..."], "cwd": "/project", "env": {"KEY": "value"}}
+    {"shutdown": true}
+
+and responses are written to stdout as one JSON object per line:
+
+    {"ready": true, "preloaded": ["grpc_tools.protoc"]}  once the modules have been imported
+    {"id": 1, "line": "..."}                             for each line of output of the command
+    {"id": 1, "exit": 0}                                 once the command has completed
+
+Anything written directly to file descriptor 1 by the server itself is sent to
+stderr so that it cannot corrupt the protocol.
+"""
+import atexit
+import gc
+import importlib
+import io
+import json
+import os
+import runpy
+import signal
+import sys
+import traceback
+
+_protocol = None
+_protocol_fd = None
+_inherited_streams = ()
+
+
+def send(message):
+    _protocol.write(json.dumps(message) + "\n")
+    _protocol.flush()
+
+
+def to_exit_code(code):
+    if code is None:
+        return 0
+    if isinstance(code, int):
+        return code
+    print(code, file=sys.stderr)
+    return 1
+
+
+def wait_for_exit_code(pid):
+    _, status = os.waitpid(pid, 0)
+    if os.WIFSIGNALED(status):
+        return -os.WTERMSIG(status)
+    return os.WEXITSTATUS(status)
+
+
+def run_command(argv):
+    """Runs the command as "python <argv>" would, within the current (child) process."""
+    if argv[0] == "-m":
+        sys.argv = [argv[1]] + argv[2:]
+        runpy.run_module(argv[1], run_name="__main__", alter_sys=True)
+    elif argv[0] == "-c":
+        sys.argv = ["-c"] + argv[2:]
+        sys.path.insert(0, "")
+        exec(compile(argv[1], "<string>", "exec"), {"__name__": "__main__"})
+    else:
+        script = os.path.abspath(argv[0])
+        sys.argv = [script] + argv[1:]
+        sys.path.insert(0, os.path.dirname(script))
+        runpy.run_path(script, run_name="__main__")
+
+
+def finalize():
+    """Performs the cleanup of a normal interpreter exit, which os._exit skips.
+
+    Non-daemon threads are joined and atexit handlers (e.g. logging.shutdown) are
+    run before flushing the streams opened by the command. Streams inherited from
+    the server are left alone, as flushing their buffers again would duplicate
+    whatever the server had yet to write.
+    """
+    try:
+        threading = sys.modules.get("threading")
+        if threading is not None and hasattr(threading, "_shutdown"):
+            threading._shutdown()
+        atexit._run_exitfuncs()
+    except BaseException:  # noqa - as on a normal exit, failures of handlers do not change the exit code
+        traceback.print_exc()
+    inherited = set(id(stream) for stream in _inherited_streams)
+    for obj in gc.get_objects():
+        if isinstance(obj, io.IOBase) and id(obj) not in inherited:
+            try:
+                if not obj.closed:
+                    obj.flush()
+            except Exception:  # noqa - streams that cannot be flushed are lost, as on a normal exit
+                pass
+
+
+def child(request, write_fd):
+    """Executes within the forked child - never returns."""
+    code = 1
+    try:
+        os.setpgid(0, 0)
+        signal.signal(signal.SIGINT, signal.default_int_handler)
+        signal.signal(signal.SIGTERM, signal.SIG_DFL)
+        devnull = os.open(os.devnull, os.O_RDONLY)
+        os.dup2(devnull, 0)
+        os.close(devnull)
+        os.dup2(write_fd, 1)
+        os.dup2(write_fd, 2)
+        os.close(write_fd)
+        os.close(_protocol_fd)
+        sys.stdin = open(0, "r", closefd=False)
+        sys.stdout = open(1, "w", buffering=1, closefd=False)
+        sys.stderr = open(2, "w", buffering=1, closefd=False)
+
+        if request.get("cwd"):
+            os.chdir(request["cwd"])
+        for key, value in (request.get("env") or {}).items():
+            if value is None:
+                os.environ.pop(key, None)
+            else:
+                os.environ[key] = str(value)
+        run_command([str(arg) for arg in request["argv"]])
+        code = 0
+    except SystemExit as e:
+        code = to_exit_code(e.code)
+    except BaseException:  # noqa - report any failure of the command as its output
+        traceback.print_exc()
+        code = 1
+    finally:
+        try:
+            finalize()
+            sys.stdout.flush()
+            sys.stderr.flush()
+        finally:
+            os._exit(code)
+
+
+def run(request):
+    job_id = request.get("id")
+    read_fd, write_fd = os.pipe()
+    pid = os.fork()
+    if pid == 0:
+        os.close(read_fd)
+        child(request, write_fd)
+    os.close(write_fd)
+    with os.fdopen(read_fd, "rb") as output:
+        for raw_line in output:
+            send({"id": job_id, "line": raw_line.decode("utf-8", "replace").rstrip("\r\n")})
+    send({"id": job_id, "exit": wait_for_exit_code(pid)})
+
+
+def main():
+    global _protocol, _protocol_fd, _inherited_streams
+    _protocol_fd = os.dup(1)
+    os.dup2(2, 1)
+    _protocol = os.fdopen(_protocol_fd, "w", encoding="utf-8", closefd=False)
+
+    preloaded = []
+    for module in sys.argv[1:]:
+        try:
+            importlib.import_module(module)
+            preloaded.append(module)
+        except Exception:  # noqa - commands that need the module will report the failure
+            print("Could not preload %s:" % module, file=sys.stderr)
+            traceback.print_exc()
+    _inherited_streams = [obj for obj in gc.get_objects() if isinstance(obj, io.IOBase)]
+    send({"ready": True, "preloaded": preloaded})
+
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        request = json.loads(line)
+        if request.get("shutdown"):
+            break
+        run(request)
+
+
+if __name__ == "__main__":
+    main()
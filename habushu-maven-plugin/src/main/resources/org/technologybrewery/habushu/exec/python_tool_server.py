@@ -0,0 +1,183 @@
+"""Long-lived worker that runs Pylint, black, and behave in-process for Habushu.
+
+Heavy modules (i.e. astroid, black, behave) are imported once, when a tool is
+first used, and reused by subsequent jobs. Requests are read from stdin as one
+JSON object per line:
+
+    {"id": 1, "tool": "pylint", "args": ["src"], "cwd": "/project", "env": {"KEY": "value"}}
+    {"shutdown": true}
+
+and responses are written to stdout as one JSON object per line:
+
+    {"ready": true}           once the worker has started
+    {"id": 1, "line": "..."}  for each line of output written by the tool
+    {"id": 1, "exit": 0}      once the tool has completed
+
+Anything written directly to file descriptor 1 (i.e. by a subprocess) is sent
+to stderr so that it cannot corrupt the protocol.
+"""
+import io
+import json
+import os
+import sys
+import traceback
+
+_protocol = None
+
+
+def send(message):
+    _protocol.write(json.dumps(message) + "\n")
+    _protocol.flush()
+
+
+class LineWriter(io.TextIOBase):
+    """Text stream that sends each line written to it as a protocol message."""
+
+    encoding = "utf-8"
+    errors = "strict"
+
+    def __init__(self, job_id):
+        super().__init__()
+        self.job_id = job_id
+        self.pending = ""
+
+    def writable(self):
+        return True
+
+    def isatty(self):
+        return False
+
+    def write(self, text):
+        self.pending += text
+        while "\n" in self.pending:
+            line, self.pending = self.pending.split("\n", 1)
+            send({"id": self.job_id, "line": line})
+        return len(text)
+
+    def flush(self):
+        pass
+
+    def finish(self):
+        if self.pending:
+            send({"id": self.job_id, "line": self.pending})
+            self.pending = ""
+
+
+def run_pylint(args):
+    try:
+        from astroid import MANAGER
+
+        # drop the ASTs of previously linted modules, which may have changed since:
+        MANAGER.clear_cache()
+    except (ImportError, AttributeError):
+        pass
+    from pylint.lint import Run
+
+    Run(args)
+    return 0
+
+
+def run_black(args):
+    import black
+
+    black.main.main(args=args, prog_name="black", standalone_mode=True)
+    return 0
+
+
+def run_behave(args):
+    from behave import step_registry
+    from behave.__main__ import main
+
+    # step definitions are registered globally when step modules are loaded:
+    for steps in step_registry.registry.steps.values():
+        del steps[:]
+    return main(args)
+
+
+RUNNERS = {"pylint": run_pylint, "black": run_black, "behave": run_behave}
+
+
+def to_exit_code(code):
+    if code is None:
+        return 0
+    if isinstance(code, int):
+        return code
+    print(code, file=sys.stderr)
+    return 1
+
+
+def purge_project_modules(directory):
+    """Unloads modules imported from the project (but not its virtual environment) so that changes are seen."""
+    if not directory:
+        return
+    directory = os.path.realpath(directory) + os.sep
+    prefix = os.path.realpath(sys.prefix) + os.sep
+    for name, module in list(sys.modules.items()):
+        path = getattr(module, "__file__", None)
+        if path:
+            path = os.path.realpath(path)
+            if path.startswith(directory) and not path.startswith(prefix):
+                del sys.modules[name]
+
+
+def run(request):
+    job_id = request.get("id")
+    tool = request.get("tool")
+    args = [str(arg) for arg in request.get("args") or []]
+    cwd = request.get("cwd")
+    saved_cwd = os.getcwd()
+    saved_environ = dict(os.environ)
+    saved_argv = sys.argv
+    saved_path = list(sys.path)
+    saved_stdout, saved_stderr = sys.stdout, sys.stderr
+    writer = LineWriter(job_id)
+    code = 1
+    try:
+        if cwd:
+            os.chdir(cwd)
+        for key, value in (request.get("env") or {}).items():
+            if value is None:
+                os.environ.pop(key, None)
+            else:
+                os.environ[key] = str(value)
+        sys.stdout = sys.stderr = writer
+        sys.argv = [tool] + args
+        if tool not in RUNNERS:
+            print("Unsupported tool: %s" % tool)
+        else:
+            code = to_exit_code(RUNNERS[tool](args))
+    except SystemExit as e:
+        code = to_exit_code(e.code)
+    except BaseException:  # noqa - report any failure of the tool as its output
+        traceback.print_exc()
+        code = 1
+    finally:
+        writer.finish()
+        sys.stdout, sys.stderr = saved_stdout, saved_stderr
+        sys.argv = saved_argv
+        sys.path[:] = saved_path
+        os.environ.clear()
+        os.environ.update(saved_environ)
+        os.chdir(saved_cwd)
+        purge_project_modules(cwd)
+    send({"id": job_id, "exit": code})
+
+
+def main():
+    global _protocol
+    protocol_fd = os.dup(1)
+    os.dup2(2, 1)
+    _protocol = os.fdopen(protocol_fd, "w", encoding="utf-8")
+    send({"ready": True})
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        request = json.loads(line)
+        if request.get("shutdown"):
+            break
+        run(request)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,219 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.publish.ArchiveValidator;
+import org.technologybrewery.habushu.publish.DeferredPublisher;
+import org.technologybrewery.habushu.publish.DistributionArchive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class ArchiveValidationSteps {
+
+    private static final File PROJECT_DIRECTORY = new File("target/test-archive-validation");
+    private static final File DIST_DIRECTORY = new File(PROJECT_DIRECTORY, "dist");
+
+    private final List<DistributionArchive> archives = new ArrayList<>();
+    private List<String> problems;
+    private MojoExecutionException publishFailure;
+    private File wheel;
+    private int deferredPublications;
+
+    @After("@archiveValidation")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+    }
+
+    @Given("a well-formed wheel and sdist of version {string} of {string}")
+    public void a_well_formed_wheel_and_sdist_of_version_of(String version, String name) throws Exception {
+        writeArchives(name, version, "Description-Content-Type: text/markdown\n",
+                "# Sample Package\n\nRun `sample-package` to start.\n", true);
+    }
+
+    @Given("a well-formed wheel and sdist of version {string} of {string} with the reStructuredText description:")
+    public void a_well_formed_wheel_and_sdist_of_version_of_with_the_restructuredtext_description(
+            String version, String name, String description) throws Exception {
+        writeArchives(name, version, "Description-Content-Type: text/x-rst\n", description, true);
+    }
+
+    @Given("an sdist of version {string} of {string} whose PKG-INFO has no Version")
+    public void an_sdist_of_version_of_whose_pkg_info_has_no_version(String version, String name) throws Exception {
+        writeArchives(name, version, "", "", false);
+    }
+
+    @Given("a file within the wheel is modified without updating its RECORD")
+    public void a_file_within_the_wheel_is_modified_without_updating_its_record() throws Exception {
+        Map<String, String> entries = readWheelEntries(wheel);
+        entries.put("sample_package/__init__.py", "print('tampered')\n");
+        writeZip(wheel, entries);
+    }
+
+    @Given("a pyproject.toml declaring version {string} of {string}")
+    public void a_pyproject_toml_declaring_version_of(String version, String name) throws IOException {
+        FileUtils.writeStringToFile(new File(PROJECT_DIRECTORY, "pyproject.toml"), String.format(
+                "[tool.poetry]%nname = \"%s\"%nversion = \"%s\"%n", name, version), StandardCharsets.UTF_8);
+    }
+
+    @When("the archives are validated as version {string} of {string}")
+    public void the_archives_are_validated_as_version_of(String version, String name) {
+        problems = ArchiveValidator.validate(archives, name, version);
+    }
+
+    @When("the publish mojo validates the built archives")
+    public void the_publish_mojo_validates_the_built_archives() {
+        TestPublishToPyPiRepoMojo mojo = new TestPublishToPyPiRepoMojo();
+        mojo.validateArchives = true;
+        mojo.project = new MavenProject(new Model());
+        mojo.project.setFile(new File(PROJECT_DIRECTORY, "pom.xml"));
+        try {
+            mojo.validateBuiltArchives();
+        } catch (MojoExecutionException e) {
+            publishFailure = e;
+        }
+    }
+
+    @When("the publish mojo defers publishing the built archives until the end of the build")
+    @SuppressWarnings("deprecation")
+    public void the_publish_mojo_defers_publishing_the_built_archives_until_the_end_of_the_build() throws Exception {
+        TestPublishToPyPiRepoMojo mojo = new TestPublishToPyPiRepoMojo();
+        mojo.validateArchives = true;
+        mojo.deployAtEnd = true;
+        mojo.project = new MavenProject(new Model());
+        mojo.project.setVersion("1.2.0");
+        mojo.project.setFile(new File(PROJECT_DIRECTORY, "pom.xml"));
+        mojo.session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(),
+                new ArrayList<>());
+        DeferredPublisher.activate(mojo.session);
+        try {
+            mojo.doExecute();
+        } catch (MojoExecutionException e) {
+            publishFailure = e;
+        } finally {
+            deferredPublications = DeferredPublisher.deactivate(mojo.session).size();
+        }
+    }
+
+    @Then("no archive problems are reported")
+    public void no_archive_problems_are_reported() {
+        Assertions.assertEquals(new ArrayList<>(), problems);
+    }
+
+    @Then("an archive problem is reported containing {string}")
+    public void an_archive_problem_is_reported_containing(String expectedProblem) {
+        Assertions.assertTrue(problems.stream().anyMatch(problem -> problem.contains(expectedProblem)),
+                "Expected a problem containing '" + expectedProblem + "' but found " + problems);
+    }
+
+    @Then("{int} publication(s) of the built archives is/are deferred")
+    public void publications_of_the_built_archives_are_deferred(int expected) {
+        Assertions.assertEquals(expected, deferredPublications);
+    }
+
+    @Then("publishing fails with an archive problem containing {string}")
+    public void publishing_fails_with_an_archive_problem_containing(String expectedProblem) {
+        Assertions.assertNotNull(publishFailure, "Publishing should have failed validation");
+        Assertions.assertTrue(publishFailure.getMessage().contains(expectedProblem), publishFailure.getMessage());
+    }
+
+    private void writeArchives(String name, String version, String contentTypeHeader, String description,
+                               boolean includeVersion) throws Exception {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+        DIST_DIRECTORY.mkdirs();
+        String metadata = "Metadata-Version: 2.1\nName: " + name + "\n"
+                + (includeVersion ? "Version: " + version + "\n" : "")
+                + "Summary: A sample package\n" + contentTypeHeader + "\n" + description;
+
+        String baseName = name.replace('-', '_') + "-" + version;
+        Map<String, String> wheelEntries = new LinkedHashMap<>();
+        wheelEntries.put("sample_package/__init__.py", "print('hello')\n");
+        wheelEntries.put(baseName + ".dist-info/METADATA", metadata);
+        wheelEntries.put(baseName + ".dist-info/WHEEL", "Wheel-Version: 1.0\nTag: py3-none-any\n");
+        StringBuilder record = new StringBuilder();
+        for (Map.Entry<String, String> entry : wheelEntries.entrySet()) {
+            byte[] contents = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            record.append(entry.getKey()).append(",sha256=").append(sha256(contents)).append(',')
+                    .append(contents.length).append('\n');
+        }
+        record.append(baseName).append(".dist-info/RECORD,,\n");
+        wheelEntries.put(baseName + ".dist-info/RECORD", record.toString());
+        wheel = new File(DIST_DIRECTORY, baseName + "-py3-none-any.whl");
+        writeZip(wheel, wheelEntries);
+
+        String sdistBaseName = name + "-" + version;
+        Map<String, String> sdistEntries = new LinkedHashMap<>();
+        sdistEntries.put("sample_package/__init__.py", "print('hello')\n");
+        sdistEntries.put("pyproject.toml", String.format("[tool.poetry]%nname = \"%s\"%nversion = \"%s\"%n",
+                name, version));
+        sdistEntries.put("PKG-INFO", metadata);
+        File sdist = new File(DIST_DIRECTORY, sdistBaseName + ".tar.gz");
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(sdist)))) {
+            for (Map.Entry<String, String> entry : sdistEntries.entrySet()) {
+                byte[] contents = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                TarArchiveEntry tarEntry = new TarArchiveEntry(sdistBaseName + "/" + entry.getKey());
+                tarEntry.setSize(contents.length);
+                tar.putArchiveEntry(tarEntry);
+                tar.write(contents);
+                tar.closeArchiveEntry();
+            }
+        }
+
+        archives.clear();
+        archives.add(DistributionArchive.of(sdist));
+        if (includeVersion) {
+            archives.add(DistributionArchive.of(wheel));
+        }
+    }
+
+    private static Map<String, String> readWheelEntries(File wheel) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(wheel)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                entries.put(entry.getName(), new String(zip.getInputStream(entry).readAllBytes(),
+                        StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    private static void writeZip(File file, Map<String, String> entries) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static String sha256(byte[] contents) throws NoSuchAlgorithmException {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(MessageDigest.getInstance("SHA-256").digest(contents));
+    }
+}
@@ -0,0 +1,115 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.ProcessMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class AsyncCommandHelperSteps {
+
+    private static final File TEST_DIRECTORY = new File("target/async-command-helpers");
+
+    private String script;
+    private MavenSession session;
+    private long elapsedMillis;
+    private List<ProcessMetrics.Record> records;
+    private CompletableFuture<String> future;
+
+    @After("@asyncCommandHelpers")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("Poetry commands that each take {int} milliseconds")
+    public void poetry_commands_that_each_take_milliseconds(int millis) {
+        script = String.format("sleep %.3f; echo done", millis / 1000.0);
+    }
+
+    @Given("Poetry commands that fail")
+    public void poetry_commands_that_fail() {
+        script = "echo 'something went wrong' >&2; exit 1";
+    }
+
+    @When("{int} Poetry commands are executed asynchronously by the {string} mojo of module {string}")
+    @SuppressWarnings("deprecation")
+    public void poetry_commands_are_executed_asynchronously_by_the_mojo_of_module(int count, String mojo,
+                                                                                 String module) {
+        session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(),
+                new ArrayList<>());
+        PoetryCommandHelper poetryHelper = new ScriptedPoetryCommandHelper(script);
+        File outputFile = new File(TEST_DIRECTORY, ProcessMetrics.FILE_NAME);
+        try (ProcessMetrics.MojoScope scope = ProcessMetrics.enterMojo(session, module, outputFile, mojo)) {
+            long start = System.nanoTime();
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                futures.add(poetryHelper.executeAsync(Collections.singletonList("show")));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            for (CompletableFuture<String> future : futures) {
+                Assertions.assertEquals("done", future.join());
+            }
+        }
+        records = ProcessMetrics.deactivate(session).getRecords();
+    }
+
+    @When("a Poetry command is executed asynchronously")
+    public void a_poetry_command_is_executed_asynchronously() {
+        future = new ScriptedPoetryCommandHelper(script).executeAsync(Collections.singletonList("show"));
+    }
+
+    @Then("all {int} commands complete in less than {int} milliseconds")
+    public void all_commands_complete_in_less_than_milliseconds(int count, int millis) {
+        Assertions.assertEquals(count, records.size());
+        Assertions.assertTrue(elapsedMillis < millis, "commands took " + elapsedMillis + " ms");
+    }
+
+    @Then("each command launched is attributed to module {string}")
+    public void each_command_launched_is_attributed_to_module(String module) {
+        for (ProcessMetrics.Record record : records) {
+            Assertions.assertEquals(module, record.getModule());
+        }
+    }
+
+    @Then("its future completes exceptionally with a HabushuException")
+    public void its_future_completes_exceptionally_with_a_habushu_exception() {
+        CompletionException failure = Assertions.assertThrows(CompletionException.class, future::join);
+        Assertions.assertTrue(failure.getCause() instanceof HabushuException, failure.getCause().toString());
+    }
+
+    /**
+     * Executes the given shell script in place of each Poetry command.
+     */
+    private static class ScriptedPoetryCommandHelper extends PoetryCommandHelper {
+        private final String script;
+
+        private ScriptedPoetryCommandHelper(String script) {
+            super(TEST_DIRECTORY.getParentFile());
+            this.script = script;
+        }
+
+        @Override
+        protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+            return new ProcessExecutor(TEST_DIRECTORY.getParentFile(), Arrays.asList("sh", "-c", script),
+                    Platform.guess(), null);
+        }
+    }
+}
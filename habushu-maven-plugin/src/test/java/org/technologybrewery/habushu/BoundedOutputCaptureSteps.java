@@ -0,0 +1,144 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.BoundedOutputCapture;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BoundedOutputCaptureSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedOutputCaptureSteps.class);
+
+    private BoundedOutputCapture capture;
+    private int lineCount;
+    private String result;
+    private HabushuException failure;
+
+    @After("@boundedOutputCapture")
+    public void cleanUp() {
+        if (capture != null) {
+            capture.close();
+        }
+    }
+
+    @Given("an output capture that holds {int} bytes in memory and summarizes {int} bytes")
+    public void an_output_capture_that_holds_bytes_in_memory_and_summarizes_bytes(int memoryThreshold,
+                                                                                  int summarySize) {
+        capture = new BoundedOutputCapture(memoryThreshold, summarySize);
+    }
+
+    @When("{int} numbered lines are captured")
+    public void numbered_lines_are_captured(int lines) throws IOException {
+        lineCount = lines;
+        for (int i = 1; i <= lines; i++) {
+            capture.append(numberedLine(i));
+        }
+    }
+
+    @When("the text {string} is captured {int} times")
+    public void the_text_is_captured_times(String text, int times) throws IOException {
+        for (int i = 0; i < times; i++) {
+            capture.append(text);
+        }
+    }
+
+    @When("a command writing {int} lines to stdout is executed for its result")
+    public void a_command_writing_lines_to_stdout_is_executed_for_its_result(int lines) {
+        result = executeForResult("i=0; while [ $i -lt " + lines + " ]; do echo \"line $i\"; i=$((i+1)); done");
+    }
+
+    @When("a command writing {int} lines to stdout and then failing is executed for its result")
+    public void a_command_writing_lines_to_stdout_and_then_failing_is_executed_for_its_result(int lines) {
+        try {
+            executeForResult("i=0; while [ $i -lt " + lines + " ]; do echo \"line $i\"; i=$((i+1)); done; exit 3");
+        } catch (HabushuException e) {
+            failure = e;
+        }
+    }
+
+    @Then("the captured output has been spilled to disk")
+    public void the_captured_output_has_been_spilled_to_disk() {
+        Assertions.assertTrue(capture.isSpilled());
+    }
+
+    @Then("the captured output has not been spilled to disk")
+    public void the_captured_output_has_not_been_spilled_to_disk() {
+        Assertions.assertFalse(capture.isSpilled());
+    }
+
+    @Then("the full captured text contains all {int} numbered lines")
+    public void the_full_captured_text_contains_all_numbered_lines(int lines) {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            expected.append(numberedLine(i));
+        }
+        Assertions.assertEquals(expected.toString(), capture.getText());
+        Assertions.assertEquals(expected.length(), capture.getSize());
+    }
+
+    @Then("the summary contains the first and last numbered lines with the omitted byte count")
+    public void the_summary_contains_the_first_and_last_numbered_lines_with_the_omitted_byte_count() {
+        String summary = capture.getSummary();
+        Assertions.assertTrue(summary.startsWith(numberedLine(1)), summary);
+        Assertions.assertTrue(summary.endsWith(numberedLine(lineCount)), summary);
+        Assertions.assertTrue(summary.contains("[" + (capture.getSize() - 128) + " bytes omitted]"), summary);
+    }
+
+    @Then("the summary starts and ends with {string} without replacement characters")
+    public void the_summary_starts_and_ends_with_without_replacement_characters(String text) {
+        String summary = capture.getSummary();
+        Assertions.assertTrue(summary.startsWith(text + System.lineSeparator()), summary);
+        Assertions.assertTrue(summary.endsWith(System.lineSeparator() + text), summary);
+        Assertions.assertFalse(summary.contains("\uFFFD"), summary);
+    }
+
+    @Then("the summary contains all {int} numbered lines")
+    public void the_summary_contains_all_numbered_lines(int lines) {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            expected.append(numberedLine(i));
+        }
+        Assertions.assertEquals(expected.toString(), capture.getSummary());
+    }
+
+    @Then("the command's result contains {int} lines")
+    public void the_command_s_result_contains_lines(int lines) {
+        String[] resultLines = result.split("\n");
+        Assertions.assertEquals(lines, resultLines.length);
+        Assertions.assertEquals("line " + (lines - 1), resultLines[lines - 1]);
+    }
+
+    @Then("the command fails with an error that omits the middle of its output")
+    public void the_command_fails_with_an_error_that_omits_the_middle_of_its_output() {
+        Assertions.assertNotNull(failure, "The command should have failed");
+        Throwable cause = failure;
+        String messages = "";
+        while (cause != null) {
+            messages += cause.getMessage();
+            cause = cause.getCause();
+        }
+        Assertions.assertFalse(messages.contains("line 100000\n"), "The middle of the output should be omitted");
+        Assertions.assertTrue(failure.getMessage().length() < 4 * BoundedOutputCapture.DEFAULT_SUMMARY_SIZE,
+                "Error should be bounded but was " + failure.getMessage().length() + " characters");
+    }
+
+    private static String executeForResult(String script) {
+        ProcessExecutor executor = new ProcessExecutor(new File("target"), Arrays.asList("sh", "-c", script),
+                Platform.guess(), null);
+        return executor.executeAndGetResult(logger);
+    }
+
+    private static String numberedLine(int number) {
+        return String.format("line %05d%n", number);
+    }
+}
@@ -0,0 +1,140 @@
+package org.technologybrewery.habushu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.cache.WheelCacheLock;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.trace.BuildTracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class BuildTraceSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(BuildTraceSteps.class);
+    private static final File TEST_DIRECTORY = new File("target/build-trace");
+
+    private MavenSession session;
+    private File traceFile;
+    private JsonNode events;
+
+    @After("@buildTrace")
+    public void cleanUp() throws IOException {
+        BuildTracer.deactivate(session);
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("a build traced to {string}")
+    public void a_build_traced_to(String path) {
+        traceFile = new File(path);
+        startBuild(traceFile.getAbsolutePath());
+    }
+
+    @Given("a build that is not traced")
+    public void a_build_that_is_not_traced() {
+        startBuild(null);
+    }
+
+    @When("the {string} mojo of module {string} launches {string} and waits for a wheel cache lock")
+    public void the_mojo_of_module_launches_and_waits_for_a_wheel_cache_lock(String goal, String module,
+                                                                             String script) {
+        try (BuildTracer.Span mojoSpan = BuildTracer.enterMojo(session, module, goal)) {
+            new ProcessExecutor(TEST_DIRECTORY.getParentFile(), Arrays.asList("sh", "-c", script), Platform.guess(),
+                    null).executeAndRedirectOutput(logger);
+            try (WheelCacheLock lock = WheelCacheLock.acquire(new File(TEST_DIRECTORY, "wheels"), module,
+                    Duration.ofSeconds(10))) {
+                Assertions.assertNotNull(lock);
+            }
+        }
+    }
+
+    @When("the build ends after being traced")
+    public void the_build_ends_after_being_traced() throws MavenExecutionException, IOException {
+        new HabushuLifecycleParticipant().afterSessionEnd(session);
+        if (traceFile != null && traceFile.exists()) {
+            events = new ObjectMapper().readTree(traceFile).path("traceEvents");
+        }
+    }
+
+    @Then("the trace contains a {string} span named {string} for module {string}")
+    public void the_trace_contains_a_span_named_for_module(String category, String name, String module) {
+        JsonNode span = findSpan(category, name);
+        Assertions.assertEquals(module, span.path("args").path("module").asText());
+        Assertions.assertTrue(span.path("dur").asLong() >= 0);
+    }
+
+    @Then("the trace contains a {string} span named {string} for module {string} within the mojo span")
+    public void the_trace_contains_a_span_named_for_module_within_the_mojo_span(String category, String name,
+                                                                                String module) {
+        the_trace_contains_a_span_named_for_module(category, name, module);
+        JsonNode span = findSpan(category, name);
+        JsonNode mojoSpan = findSpan("mojo", "install-dependencies");
+        long start = span.path("ts").asLong();
+        long mojoStart = mojoSpan.path("ts").asLong();
+        Assertions.assertTrue(start >= mojoStart);
+        Assertions.assertTrue(start + span.path("dur").asLong() <= mojoStart + mojoSpan.path("dur").asLong());
+        Assertions.assertTrue(span.path("dur").asLong() >= 100_000, "sleep 0.1 should take at least 100 ms");
+        Assertions.assertEquals("sh -c sleep 0.1", span.path("args").path("command").asText());
+        Assertions.assertEquals(0, span.path("args").path("exitCode").asInt());
+    }
+
+    @Then("the trace names the thread of each span")
+    public void the_trace_names_the_thread_of_each_span() {
+        Set<Long> namedThreads = new HashSet<>();
+        for (JsonNode event : events) {
+            if ("thread_name".equals(event.path("name").asText())) {
+                namedThreads.add(event.path("tid").asLong());
+                Assertions.assertEquals("M", event.path("ph").asText());
+            }
+        }
+        for (JsonNode event : events) {
+            if ("X".equals(event.path("ph").asText())) {
+                Assertions.assertTrue(namedThreads.contains(event.path("tid").asLong()), event.toString());
+            }
+        }
+    }
+
+    @Then("no trace is written")
+    public void no_trace_is_written() {
+        Assertions.assertFalse(new File(TEST_DIRECTORY, "trace.json").exists());
+        Assertions.assertFalse(new File(BuildTracer.DEFAULT_TRACE_FILE).exists());
+    }
+
+    @SuppressWarnings("deprecation")
+    private void startBuild(String trace) {
+        DefaultMavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        if (trace != null) {
+            request.getUserProperties().setProperty(BuildTracer.TRACE_PROPERTY, trace);
+        }
+        session = new MavenSession(null, request, new DefaultMavenExecutionResult(), new ArrayList<>());
+        new HabushuLifecycleParticipant().afterProjectsRead(session);
+    }
+
+    private JsonNode findSpan(String category, String name) {
+        for (JsonNode event : events) {
+            if ("X".equals(event.path("ph").asText()) && category.equals(event.path("cat").asText())
+                    && name.equals(event.path("name").asText())) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + category + " span named " + name + " in " + events);
+    }
+}
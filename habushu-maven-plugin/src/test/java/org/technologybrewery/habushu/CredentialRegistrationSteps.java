@@ -0,0 +1,149 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class CredentialRegistrationSteps {
+
+    private static final File TEST_DIRECTORY = new File("target/credential-registration");
+    private static final File STATE_DIRECTORY = new File(TEST_DIRECTORY, "state");
+    private static final File POETRY_CONFIG_DIRECTORY = new File(TEST_DIRECTORY, "pypoetry");
+
+    private final List<String> poetryCommands = Collections.synchronizedList(new ArrayList<>());
+    private volatile String script = "sleep 0.2";
+
+    @After("@credentialRegistration")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("registering credentials with Poetry fails")
+    public void registering_credentials_with_poetry_fails() {
+        script = "echo 'Unable to store the password' >&2; exit 1";
+    }
+
+    @When("registering credentials with Poetry succeeds")
+    public void registering_credentials_with_poetry_succeeds() {
+        script = "sleep 0.2";
+    }
+
+    @When("Poetry's configuration is removed")
+    public void poetry_s_configuration_is_removed() throws IOException {
+        FileUtils.deleteDirectory(POETRY_CONFIG_DIRECTORY);
+    }
+
+    @When("{int} build(s) register(s) the credentials {string} and {string} for repository {string}")
+    public void builds_register_the_credentials_and_for_repository(int builds, String username, String password,
+                                                                  String repoId) {
+        for (int i = 0; i < builds; i++) {
+            try {
+                createSetup().registerRepositoryToSupportAuthenticatedDependencyResolution(repoId, username, password);
+            } catch (MojoExecutionException | HabushuException e) {
+                // the failure of a build is asserted by the commands it executed
+            }
+        }
+    }
+
+    @When("{int} concurrent builds register the credentials {string} and {string} for repository {string}")
+    public void concurrent_builds_register_the_credentials_and_for_repository(int builds, String username,
+                                                                             String password, String repoId) {
+        List<CompletableFuture<Void>> registrations = new ArrayList<>();
+        for (int i = 0; i < builds; i++) {
+            registrations.add(CompletableFuture.runAsync(() -> {
+                try {
+                    createSetup().registerRepositoryToSupportAuthenticatedDependencyResolution(repoId, username,
+                            password);
+                } catch (MojoExecutionException e) {
+                    throw new HabushuException(e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(registrations.toArray(new CompletableFuture[0])).join();
+    }
+
+    @Then("the credentials of {string} are registered with Poetry {int} time(s)")
+    public void the_credentials_of_are_registered_with_poetry_time_s(String repoId, int count) {
+        synchronized (poetryCommands) {
+            Assertions.assertEquals(count,
+                    poetryCommands.stream().filter(command -> command.startsWith("config http-basic." + repoId + " "))
+                            .count(), poetryCommands.toString());
+        }
+    }
+
+    @Then("the recorded state does not contain {string} or its digest")
+    public void the_recorded_state_does_not_contain_or_its_digest(String password) throws IOException {
+        List<File> stateFiles = new ArrayList<>(FileUtils.listFiles(STATE_DIRECTORY, null, true));
+        Assertions.assertFalse(stateFiles.isEmpty(), "Expected the registration to be recorded!");
+        for (File stateFile : stateFiles) {
+            String state = FileUtils.readFileToString(stateFile, StandardCharsets.UTF_8);
+            Assertions.assertFalse(state.contains(password), stateFile + " contains the password!");
+            Assertions.assertFalse(state.contains(DigestUtils.sha256Hex(password)), stateFile + " contains its digest!");
+        }
+    }
+
+    private PyenvAndPoetrySetup createSetup() {
+        return new PyenvAndPoetrySetup("3", false, null, TEST_DIRECTORY, false, new SystemStreamLog()) {
+            @Override
+            protected PoetryCommandHelper createPoetryCommandHelper() {
+                return new RecordingPoetryCommandHelper();
+            }
+
+            @Override
+            protected File getHabushuStateDirectory(PoetryCommandHelper poetryHelper) {
+                return STATE_DIRECTORY;
+            }
+        };
+    }
+
+    /**
+     * Records each Poetry command, and executes the current script in its place.
+     * Once the script succeeds, {@code config http-basic.<repoId>} configures the
+     * username of the repository in a stand-in for Poetry's {@code auth.toml}.
+     */
+    private class RecordingPoetryCommandHelper extends PoetryCommandHelper {
+
+        private RecordingPoetryCommandHelper() {
+            super(TEST_DIRECTORY.getParentFile());
+        }
+
+        @Override
+        protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+            poetryCommands.add(String.join(" ", arguments));
+            String command = script;
+            if (arguments.size() == 4 && "config".equals(arguments.get(0))
+                    && arguments.get(1).startsWith("http-basic.")) {
+                // each repository's section is kept separately, so that it is replaced when registered again:
+                File sections = new File(POETRY_CONFIG_DIRECTORY, "auth.d").getAbsoluteFile();
+                command += String.format(" && mkdir -p %1$s && printf '[%2$s]\\nusername = \"%3$s\"\\n' > %1$s/%2$s"
+                        + " && cat %1$s/* > %4$s", sections, arguments.get(1), arguments.get(2),
+                        new File(POETRY_CONFIG_DIRECTORY, "auth.toml").getAbsolutePath());
+            }
+            return new ProcessExecutor(TEST_DIRECTORY.getParentFile(), Arrays.asList("sh", "-c", command),
+                    Platform.guess(), null);
+        }
+
+        @Override
+        public File getPoetryConfigDirectory() {
+            return POETRY_CONFIG_DIRECTORY.getAbsoluteFile();
+        }
+    }
+}
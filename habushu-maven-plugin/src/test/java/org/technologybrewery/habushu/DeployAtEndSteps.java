@@ -0,0 +1,125 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.publish.DeferredPublisher;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DeployAtEndSteps {
+
+    private final HabushuLifecycleParticipant participant = new HabushuLifecycleParticipant();
+    private final Set<String> publishedModules = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger concurrentPublications = new AtomicInteger();
+    private final AtomicInteger maxConcurrentPublications = new AtomicInteger();
+    private MavenSession session;
+    private String failingModule;
+    private MavenExecutionException buildFailure;
+
+    @After("@deployAtEnd")
+    public void cleanUp() {
+        if (session != null) {
+            DeferredPublisher.deactivate(session);
+        }
+    }
+
+    @Given("a reactor build with deploy at end enabled")
+    @SuppressWarnings("deprecation")
+    public void a_reactor_build_with_deploy_at_end_enabled() {
+        session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(),
+                new ArrayList<>());
+        participant.afterProjectsRead(session);
+    }
+
+    @Given("{int} modules register deferred publications with at most {int} concurrent publications")
+    public void modules_register_deferred_publications_with_at_most_concurrent_publications(int modules,
+                                                                                           int maxConcurrency) {
+        DeferredPublisher publisher = DeferredPublisher.get(session);
+        Assertions.assertNotNull(publisher, "Deferred publishing should have been activated");
+        for (int i = 1; i <= modules; i++) {
+            String module = "module-" + i;
+            publisher.register(module, "archives", maxConcurrency, () -> publish(module));
+        }
+    }
+
+    @Given("the publication of module {int} fails")
+    public void the_publication_of_module_fails(int module) {
+        failingModule = "module-" + module;
+    }
+
+    @When("the build ends successfully")
+    public void the_build_ends_successfully() {
+        endBuild();
+    }
+
+    @When("the build ends with a failed module")
+    public void the_build_ends_with_a_failed_module() {
+        session.getResult().addException(new IllegalStateException("module-3 failed"));
+        endBuild();
+    }
+
+    @Then("all {int} modules are published")
+    public void all_modules_are_published(int modules) {
+        Assertions.assertNull(buildFailure, "The build should not have failed");
+        Assertions.assertEquals(modules, publishedModules.size());
+    }
+
+    @Then("{int} modules are published")
+    public void modules_are_published(int modules) {
+        Assertions.assertEquals(modules, publishedModules.size());
+    }
+
+    @Then("no more than {int} modules are published concurrently")
+    public void no_more_than_modules_are_published_concurrently(int maxConcurrency) {
+        Assertions.assertTrue(maxConcurrentPublications.get() <= maxConcurrency,
+                "Published " + maxConcurrentPublications.get() + " modules concurrently");
+        Assertions.assertTrue(maxConcurrentPublications.get() > 1, "Modules should have been published concurrently");
+    }
+
+    @Then("no modules are published")
+    public void no_modules_are_published() {
+        Assertions.assertNull(buildFailure);
+        Assertions.assertTrue(publishedModules.isEmpty(), "Published " + publishedModules);
+    }
+
+    @Then("the build fails due to module {int}")
+    public void the_build_fails_due_to_module(int module) {
+        Assertions.assertNotNull(buildFailure, "The build should have failed");
+        Assertions.assertTrue(buildFailure.getMessage().contains("module-" + module), buildFailure.getMessage());
+    }
+
+    private void endBuild() {
+        try {
+            participant.afterSessionEnd(session);
+        } catch (MavenExecutionException e) {
+            buildFailure = e;
+        }
+        Assertions.assertNull(DeferredPublisher.get(session), "Deferred publishing should have been deactivated");
+    }
+
+    private void publish(String module) {
+        int concurrency = concurrentPublications.incrementAndGet();
+        maxConcurrentPublications.accumulateAndGet(concurrency, Math::max);
+        try {
+            Thread.sleep(100);
+            if (module.equals(failingModule)) {
+                throw new HabushuException("Faux publish of " + module + " failed");
+            }
+            publishedModules.add(module);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrentPublications.decrementAndGet();
+        }
+    }
+}
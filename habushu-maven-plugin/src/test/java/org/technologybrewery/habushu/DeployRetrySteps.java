@@ -4,15 +4,21 @@ import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.Platform;
 import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.publish.PublishFailureType;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 public class DeployRetrySteps {
 
     protected TestRetryPublishToPyPiRepoMojo mojo;
     protected int retryCount;
+    protected PoetryCommandHelper poetryHelper = new PoetryCommandHelper(new File("./"));
 
     @Given("Habushu is using its default configuration")
     public void habushu_is_using_its_default_configuration() {
@@ -29,6 +35,33 @@ public class DeployRetrySteps {
         mojo = new TestRetryPublishToPyPiRepoMojo(retryCount, finalRetryNumber);
     }
 
+    @When("a non-retriable failure is encountered")
+    public void a_non_retriable_failure_is_encountered() {
+        mojo = new TestRetryPublishToPyPiRepoMojo(retryCount, Integer.MAX_VALUE);
+        mojo.failureType = PublishFailureType.AUTHENTICATION;
+    }
+
+    @When("every poetry publish exits with a failure after writing {string}")
+    public void every_poetry_publish_exits_with_a_failure_after_writing(String output) {
+        mojo = new TestRetryPublishToPyPiRepoMojo(retryCount, Integer.MAX_VALUE);
+        mojo.publishWithPoetry = true;
+        poetryHelper = new PoetryCommandHelper(new File("./")) {
+            @Override
+            protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+                mojo.attempts++;
+                return new ProcessExecutor(new File("./"),
+                        Arrays.asList("sh", "-c", "echo \"$0\"; exit 1", output), Platform.guess(), null);
+            }
+        };
+    }
+
+    @Then("Habushu fails to perform the push after {int} attempt(s)")
+    public void habushu_fails_to_perform_the_push_after_attempts(int expectedAttempts) throws Exception {
+        HabushuException exception = Assertions.assertThrows(HabushuException.class,
+                () -> mojo.invokePublish(poetryHelper, Collections.emptyList()));
+        Assertions.assertEquals(expectedAttempts, mojo.attempts, exception.getMessage());
+    }
+
     @Then("Habushu fails to perform the push")
     public void habushu_fails_to_perform_the_push() {
         try {
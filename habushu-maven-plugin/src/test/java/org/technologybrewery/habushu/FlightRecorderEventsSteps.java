@@ -0,0 +1,131 @@
+package org.technologybrewery.habushu;
+
+import com.electronwill.nightconfig.core.file.FileConfig;
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.trace.BuildTracer;
+import org.technologybrewery.habushu.util.TomlUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class FlightRecorderEventsSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderEventsSteps.class);
+    private static final File TEST_DIRECTORY = new File("target/flight-recorder-events");
+    private static final String EVENT_PREFIX = "org.technologybrewery.habushu.";
+
+    private Recording recording;
+    private List<RecordedEvent> events;
+    private File pyProjectToml;
+
+    @After("@flightRecorderEvents")
+    public void cleanUp() throws IOException {
+        if (recording != null) {
+            recording.close();
+        }
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("a Flight Recorder recording of Habushu events")
+    public void a_flight_recorder_recording_of_habushu_events() {
+        recording = new Recording();
+        for (String event : Arrays.asList("MojoExecution", "ProcessExecution", "TomlFile", "CacheLookup",
+                "PublishAttempt")) {
+            recording.enable(EVENT_PREFIX + event).withoutStackTrace();
+        }
+        recording.start();
+    }
+
+    @When("module {string} launches a command that writes {int} bytes and exits with code {int}")
+    public void module_launches_a_command_that_writes_bytes_and_exits_with_code(String module, int bytes,
+                                                                              int exitCode) throws IOException {
+        try (BuildTracer.Span mojoSpan = BuildTracer.enterMojo(null, module, "install-dependencies")) {
+            ProcessExecutor executor = new ProcessExecutor(TEST_DIRECTORY.getParentFile(), Arrays.asList("sh", "-c",
+                    "head -c " + bytes + " /dev/zero | tr '\\0' 'x'; exit " + exitCode), Platform.guess(), null);
+            Assertions.assertThrows(HabushuException.class, () -> executor.executeAndRedirectOutput(logger));
+        }
+        stopRecording();
+    }
+
+    @When("module {string} parses and rewrites a pyproject.toml")
+    public void module_parses_and_rewrites_a_pyproject_toml(String module) throws IOException {
+        pyProjectToml = new File(TEST_DIRECTORY, "pyproject.toml");
+        FileUtils.writeStringToFile(pyProjectToml, "[tool.poetry]\nname = \"habushu-jfr\"\nversion = \"1.0.0\"\n",
+                StandardCharsets.UTF_8);
+        try (BuildTracer.Span mojoSpan = BuildTracer.enterMojo(null, module, "install-dependencies")) {
+            String version;
+            try (FileConfig pyProjectConfig = TomlUtils.loadTomlFile(pyProjectToml)) {
+                version = pyProjectConfig.get("tool.poetry.version");
+            }
+            TomlUtils.writeTomlFile(pyProjectToml, FileUtils.readFileToString(pyProjectToml, StandardCharsets.UTF_8)
+                    .replace(version, "1.0.1"));
+        }
+        stopRecording();
+    }
+
+    @Then("the recording contains a process execution of {string} with exit code {int} and {int} bytes of output")
+    public void the_recording_contains_a_process_execution_of_with_exit_code_and_bytes_of_output(String command,
+                                                                                                 int exitCode,
+                                                                                                 int bytes) {
+        List<RecordedEvent> processes = eventsOfType("ProcessExecution");
+        Assertions.assertEquals(1, processes.size());
+        RecordedEvent process = processes.get(0);
+        Assertions.assertTrue(process.getString("command").startsWith(command), process.getString("command"));
+        Assertions.assertEquals(exitCode, process.getInt("exitCode"));
+        Assertions.assertEquals(bytes, process.getLong("outputBytes"));
+        Assertions.assertFalse(process.getDuration().isNegative());
+    }
+
+    @Then("the recording contains a TOML {string} and a TOML {string} of the pyproject.toml with its size")
+    public void the_recording_contains_a_toml_and_a_toml_of_the_pyproject_toml_with_its_size(String firstOperation,
+                                                                                           String secondOperation) {
+        List<RecordedEvent> tomlEvents = eventsOfType("TomlFile");
+        Assertions.assertEquals(Arrays.asList(firstOperation, secondOperation),
+                tomlEvents.stream().map(event -> event.getString("operation")).collect(Collectors.toList()));
+        for (RecordedEvent event : tomlEvents) {
+            Assertions.assertEquals(pyProjectToml.getPath(), event.getString("file"));
+            Assertions.assertEquals(pyProjectToml.length(), event.getLong("bytes"));
+        }
+    }
+
+    @Then("every recorded Habushu event is attributed to module {string}")
+    public void every_recorded_habushu_event_is_attributed_to_module(String module) {
+        Assertions.assertFalse(eventsOfType("MojoExecution").isEmpty());
+        for (RecordedEvent event : events) {
+            Assertions.assertEquals(module, event.getString("module"), event.toString());
+        }
+    }
+
+    private void stopRecording() throws IOException {
+        recording.stop();
+        Path recordingFile = new File(TEST_DIRECTORY, "recording.jfr").toPath();
+        Files.createDirectories(recordingFile.getParent());
+        recording.dump(recordingFile);
+        events = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> event.getEventType().getName().startsWith(EVENT_PREFIX))
+                .collect(Collectors.toList());
+    }
+
+    private List<RecordedEvent> eventsOfType(String type) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(EVENT_PREFIX + type))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,280 @@
+package org.technologybrewery.habushu;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.publish.DistributionArchive;
+import org.technologybrewery.habushu.publish.PyPiUploader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class NativePyPiUploadSteps {
+
+    private static final File DIST_DIRECTORY = new File("target/test-native-upload/dist");
+    private static final Pattern FILE_NAME = Pattern.compile("filename=\"([^\"]+)\"");
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=(\\S+)");
+    private static final Pattern FIELD_NAME = Pattern.compile("name=\"([^\"]+)\"");
+    private static final String CORE_METADATA = "Name: %s%n"
+            + "Version: %s%n"
+            + "Summary: A sample package%n"
+            + "Author: Habushu%n"
+            + "License: MIT%n"
+            + "Requires-Python: >=3.9,<4.0%n"
+            + "Classifier: Programming Language :: Python :: 3%n"
+            + "Classifier: License :: OSI Approved :: MIT License%n"
+            + "Requires-Dist: requests (>=2.31,<3.0)%n"
+            + "Requires-Dist: pyyaml (>=6.0)%n"
+            + "Project-URL: Repository, https://github.com/TechnologyBrewery/habushu%n"
+            + "Description-Content-Type: text/markdown%n"
+            + "%n"
+            + "# Sample package%n"
+            + "%n"
+            + "Describes the sample package.%n";
+
+    private final Map<String, AtomicInteger> uploadCounts = new ConcurrentHashMap<>();
+    private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+    private final List<String> publishedDigests = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> invalidUploads = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Map<String, List<String>>> uploadedFields = new ConcurrentHashMap<>();
+    private int retries = 2;
+    private long retryDeadlineSeconds = 900;
+    private int failureStatusCode;
+    private long publishMillis;
+    private Exception publishFailure;
+    private HttpServer server;
+    private File wheel;
+    private File sdist;
+
+    @After("@nativePypiUpload")
+    public void cleanUp() throws IOException {
+        if (server != null) {
+            server.stop(0);
+        }
+        FileUtils.deleteDirectory(DIST_DIRECTORY.getParentFile());
+    }
+
+    @Given("a dist directory containing the archives of version {string} of {string}")
+    public void a_dist_directory_containing_the_archives_of_version_of(String version, String name) throws IOException {
+        FileUtils.deleteDirectory(DIST_DIRECTORY);
+        DIST_DIRECTORY.mkdirs();
+        String baseName = name.replace('-', '_') + "-" + version;
+        wheel = new File(DIST_DIRECTORY, RetrieveWheelsSteps.toWheelFileName(name, version));
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(wheel))) {
+            zip.putNextEntry(new ZipEntry(baseName + ".dist-info/METADATA"));
+            zip.write(String.format("Metadata-Version: 2.3%n" + CORE_METADATA, name, version)
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        sdist = new File(DIST_DIRECTORY, baseName + ".tar.gz");
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(sdist)))) {
+            byte[] pkgInfo = String.format("Metadata-Version: 2.1%n" + CORE_METADATA, name, version)
+                    .getBytes(StandardCharsets.UTF_8);
+            TarArchiveEntry entry = new TarArchiveEntry(baseName + "/PKG-INFO");
+            entry.setSize(pkgInfo.length);
+            tar.putArchiveEntry(entry);
+            tar.write(pkgInfo);
+            tar.closeArchiveEntry();
+        }
+        startRepository();
+    }
+
+    @Given("the sdist archive of version {string} of {string} is already published")
+    public void the_sdist_archive_of_version_of_is_already_published(String version, String name) {
+        DistributionArchive archive = DistributionArchive.of(sdist);
+        Assertions.assertTrue(archive.hasVersion(version) && archive.getNormalizedName().equals(name));
+        publishedDigests.add(archive.getSha256Digest());
+    }
+
+    @Given("the repository responds with HTTP 503 to the first upload of the wheel archive")
+    public void the_repository_responds_with_http_503_to_the_first_upload_of_the_wheel_archive() {
+        failOnce.add(wheel.getName());
+    }
+
+    @Given("the repository responds with HTTP {int} to every upload")
+    public void the_repository_responds_with_http_to_every_upload(int statusCode) {
+        failureStatusCode = statusCode;
+    }
+
+    @Given("publishing is configured to retry {int} times within {int} second(s)")
+    public void publishing_is_configured_to_retry_times_within_seconds(int retries, int deadlineSeconds) {
+        this.retries = retries;
+        this.retryDeadlineSeconds = deadlineSeconds;
+    }
+
+    @When("the archives are published with the native uploader")
+    public void the_archives_are_published_with_the_native_uploader() {
+        publish();
+        Assertions.assertNull(publishFailure, "All archives should have been published");
+    }
+
+    @When("publishing the archives with the native uploader fails")
+    public void publishing_the_archives_with_the_native_uploader_fails() {
+        publish();
+        Assertions.assertNotNull(publishFailure, "Publishing should have failed");
+    }
+
+    @Then("the failure is reported as a non-retriable {string} error")
+    public void the_failure_is_reported_as_a_non_retriable_error(String failureType) {
+        Assertions.assertTrue(publishFailure.getMessage().contains(failureType + " error that will not succeed"),
+                publishFailure.getMessage());
+    }
+
+    @Then("the wheel archive of {string} is uploaded more than once within {int} second(s)")
+    public void the_wheel_archive_of_is_uploaded_more_than_once_within_seconds(String name, int seconds) {
+        Assertions.assertTrue(uploadCounts.get(wheel.getName()).get() > 1, "The upload should have been retried");
+        Assertions.assertTrue(publishMillis < seconds * 1000L,
+                "Retries should have stopped at the deadline, but took " + publishMillis + " ms");
+    }
+
+    private void publish() {
+        TestRetryPublishToPyPiRepoMojo mojo = new TestRetryPublishToPyPiRepoMojo(retries, 0);
+        mojo.pypiPushRetryDeadlineSeconds = retryDeadlineSeconds;
+        List<DistributionArchive> archives = new ArrayList<>();
+        archives.add(DistributionArchive.of(sdist));
+        archives.add(DistributionArchive.of(wheel));
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        long start = System.currentTimeMillis();
+        try (PyPiUploader uploader = new PyPiUploader(baseUrl + "legacy/",
+                PublishToPyPiRepoMojo.getSimpleIndexUrl(baseUrl + "legacy/"), "user", "secret", archives)) {
+            mojo.invokeNativePublish(uploader);
+            Assertions.assertTrue(uploader.getPendingArchives().isEmpty(), "All archives should have been published");
+        } catch (HabushuException e) {
+            publishFailure = e;
+        }
+        publishMillis = System.currentTimeMillis() - start;
+    }
+
+    @Then("the wheel archive of {string} is uploaded {int} time(s)")
+    public void the_wheel_archive_of_is_uploaded_times(String name, int expectedCount) {
+        assertUploadCount(wheel, expectedCount);
+    }
+
+    @Then("the sdist archive of {string} is uploaded {int} time(s)")
+    public void the_sdist_archive_of_is_uploaded_times(String name, int expectedCount) {
+        assertUploadCount(sdist, expectedCount);
+    }
+
+    @Then("every upload is authenticated and includes the archive digest")
+    public void every_upload_is_authenticated_and_includes_the_archive_digest() {
+        Assertions.assertTrue(invalidUploads.isEmpty(), "Invalid uploads: " + invalidUploads);
+    }
+
+    @Then("the upload of each archive includes its Metadata-Version and every field of its core metadata")
+    public void the_upload_of_each_archive_includes_its_metadata_version_and_every_field_of_its_core_metadata() {
+        assertUploadedMetadata(wheel, "2.3");
+        assertUploadedMetadata(sdist, "2.1");
+    }
+
+    private void assertUploadedMetadata(File archive, String metadataVersion) {
+        Map<String, List<String>> fields = uploadedFields.get(archive.getName());
+        Assertions.assertNotNull(fields, archive.getName() + " should have been uploaded");
+        Assertions.assertEquals(List.of(metadataVersion), fields.get("metadata_version"));
+        Assertions.assertEquals(List.of("sample-package"), fields.get("name"));
+        Assertions.assertEquals(List.of("1.2.0"), fields.get("version"));
+        Assertions.assertEquals(List.of("A sample package"), fields.get("summary"));
+        Assertions.assertEquals(List.of("Habushu"), fields.get("author"));
+        Assertions.assertEquals(List.of("MIT"), fields.get("license"));
+        Assertions.assertEquals(List.of(">=3.9,<4.0"), fields.get("requires_python"));
+        Assertions.assertEquals(List.of("Programming Language :: Python :: 3",
+                "License :: OSI Approved :: MIT License"), fields.get("classifiers"));
+        Assertions.assertEquals(List.of("requests (>=2.31,<3.0)", "pyyaml (>=6.0)"), fields.get("requires_dist"));
+        Assertions.assertEquals(List.of("Repository, https://github.com/TechnologyBrewery/habushu"),
+                fields.get("project_urls"));
+        Assertions.assertEquals(List.of("text/markdown"), fields.get("description_content_type"));
+        Assertions.assertEquals(List.of(String.format("# Sample package%n%nDescribes the sample package.%n")),
+                fields.get("description"));
+    }
+
+    private void assertUploadCount(File archive, int expectedCount) {
+        AtomicInteger count = uploadCounts.get(archive.getName());
+        Assertions.assertEquals(expectedCount, count != null ? count.get() : 0,
+                "Unexpected number of uploads of " + archive.getName());
+    }
+
+    private void startRepository() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/simple/", exchange -> {
+            StringBuilder html = new StringBuilder("<html><body>");
+            for (String digest : publishedDigests) {
+                html.append("<a href=\"../../packages/archive#sha256=").append(digest).append("\">archive</a>");
+            }
+            respond(exchange, 200, html.append("</body></html>").toString());
+        });
+        server.createContext("/legacy/", exchange -> {
+            String body;
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                body = new String(inputStream.readAllBytes(), StandardCharsets.ISO_8859_1);
+            }
+            Matcher matcher = FILE_NAME.matcher(body);
+            String fileName = matcher.find() ? matcher.group(1) : "unknown";
+            uploadCounts.computeIfAbsent(fileName, key -> new AtomicInteger()).incrementAndGet();
+            uploadedFields.put(fileName, readFields(body, exchange.getRequestHeaders().getFirst("Content-Type")));
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            File archive = new File(DIST_DIRECTORY, fileName);
+            if (authorization == null || !authorization.startsWith("Basic ") || !archive.exists()
+                    || !body.contains(DistributionArchive.of(archive).getSha256Digest())) {
+                invalidUploads.add(fileName);
+            }
+            if (failureStatusCode != 0) {
+                respond(exchange, failureStatusCode, "Upload failed");
+            } else if (failOnce.remove(fileName)) {
+                respond(exchange, 503, "Service Unavailable");
+            } else {
+                respond(exchange, 200, "OK");
+            }
+        });
+        server.start();
+    }
+
+    private static Map<String, List<String>> readFields(String body, String contentType) {
+        Map<String, List<String>> fields = new LinkedHashMap<>();
+        Matcher boundary = BOUNDARY.matcher(contentType);
+        Assertions.assertTrue(boundary.find(), contentType);
+        for (String part : body.split(Pattern.quote("--" + boundary.group(1)))) {
+            int separator = part.indexOf("\r\n\r\n");
+            Matcher name = FIELD_NAME.matcher(part);
+            if (separator < 0 || !name.find() || name.start() > separator || part.contains("filename=")) {
+                continue;
+            }
+            String value = StringUtils.removeEnd(part.substring(separator + 4), "\r\n");
+            fields.computeIfAbsent(name.group(1), key -> new ArrayList<>())
+                    .add(new String(value.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8));
+        }
+        return fields;
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.ProcessMetrics;
+import org.technologybrewery.habushu.publish.DeferredPublisher;
+import org.technologybrewery.habushu.trace.BuildMetrics;
+import org.technologybrewery.habushu.trace.BuildTracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class OpenMetricsSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenMetricsSteps.class);
+    private static final File TEST_DIRECTORY = new File("target/open-metrics");
+
+    private MavenSession session;
+    private File target;
+    private File metricsFile;
+    private String metrics;
+
+    @After("@openMetrics")
+    public void cleanUp() throws IOException {
+        BuildMetrics.deactivate(session, null);
+        ProcessMetrics.deactivate(session);
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("a build exporting metrics to {string}")
+    public void a_build_exporting_metrics_to(String path) {
+        target = new File(path);
+        startBuild(target.getAbsolutePath());
+    }
+
+    @Given("a build exporting metrics to the textfile collector directory {string}")
+    public void a_build_exporting_metrics_to_the_textfile_collector_directory(String path) {
+        target = new File(path);
+        Assertions.assertTrue(target.mkdirs() || target.isDirectory());
+        startBuild(target.getAbsolutePath());
+    }
+
+    @When("the {string} mojo of module {string} launches {string}, {string}, and looks up a wheel")
+    public void the_mojo_of_module_launches_and_looks_up_a_wheel(String mojo, String module, String firstScript,
+                                                                 String secondScript) {
+        File outputFile = new File(TEST_DIRECTORY, module + "/" + ProcessMetrics.FILE_NAME);
+        try (ProcessMetrics.MojoScope metricsScope = ProcessMetrics.enterMojo(session, module, outputFile, mojo);
+             BuildTracer.Span mojoSpan = BuildTracer.enterMojo(session, module, mojo)) {
+            for (String script : Arrays.asList(firstScript, secondScript)) {
+                try {
+                    new ProcessExecutor(TEST_DIRECTORY.getParentFile(), Arrays.asList("sh", "-c", script),
+                            Platform.guess(), null).executeAndRedirectOutput(logger);
+                } catch (HabushuException e) {
+                    logger.info("Expected failure of {}: {}", script, e.getMessage());
+                }
+            }
+            BuildMetrics.recordCacheLookup("wheel", false);
+        }
+    }
+
+    @When("the {string} mojo of module {string} defers a publication that launches {string}")
+    public void the_mojo_of_module_defers_a_publication_that_launches(String mojoName, String module, String script) {
+        Model model = new Model();
+        model.setArtifactId(module);
+        model.setBuild(new Build());
+        model.getBuild().setDirectory(new File(TEST_DIRECTORY, module).getAbsolutePath());
+        MojoDescriptor descriptor = new MojoDescriptor();
+        descriptor.setGoal(StringUtils.substringBefore(mojoName, "@"));
+
+        TestPublishToPyPiRepoMojo mojo = new TestPublishToPyPiRepoMojo();
+        mojo.project = new MavenProject(model);
+        mojo.session = session;
+        mojo.mojoExecution = new MojoExecution(descriptor, StringUtils.substringAfter(mojoName, "@"));
+        DeferredPublisher.get(session).register(module, "archives", 1, mojo.attributedToThisMojo(() -> {
+            new ProcessExecutor(TEST_DIRECTORY.getParentFile(), Arrays.asList("sh", "-c", script), Platform.guess(),
+                    null).executeAndRedirectOutput(logger);
+            BuildMetrics.recordPublishAttempt("native", true);
+        }));
+    }
+
+    @When("the build ends and its metrics are exported")
+    public void the_build_ends_and_its_metrics_are_exported() throws MavenExecutionException, IOException {
+        new HabushuLifecycleParticipant().afterSessionEnd(session);
+        metricsFile = target.isDirectory() ? findPromFile() : target;
+        Assertions.assertTrue(metricsFile != null && metricsFile.exists(), "No metrics were written to " + target);
+        metrics = FileUtils.readFileToString(metricsFile, StandardCharsets.UTF_8);
+    }
+
+    @Then("the metrics contain {string}")
+    public void the_metrics_contain(String line) {
+        Assertions.assertTrue(Arrays.asList(metrics.split("\n")).contains(line), line + " not in:\n" + metrics);
+    }
+
+    @Then("the metrics do not contain {string}")
+    public void the_metrics_do_not_contain(String text) {
+        Assertions.assertFalse(metrics.contains(text), metrics);
+    }
+
+    @Then("the metrics end with {string}")
+    public void the_metrics_end_with(String line) {
+        Assertions.assertTrue(metrics.endsWith(line + "\n"), metrics);
+    }
+
+    @Then("the metrics are written to a {string} file in the directory")
+    public void the_metrics_are_written_to_a_file_in_the_directory(String extension) {
+        Assertions.assertTrue(metricsFile.getName().endsWith(extension), metricsFile.getName());
+        Assertions.assertEquals(1, target.listFiles().length, "temporary files should be moved into place");
+    }
+
+    private File findPromFile() {
+        File[] files = target.listFiles((directory, name) -> name.endsWith(".prom"));
+        return files != null && files.length > 0 ? files[0] : null;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void startBuild(String openMetrics) {
+        DefaultMavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.getUserProperties().setProperty(BuildMetrics.OPEN_METRICS_PROPERTY, openMetrics);
+        session = new MavenSession(null, request, new DefaultMavenExecutionResult(), new ArrayList<>());
+        new HabushuLifecycleParticipant().afterProjectsRead(session);
+    }
+}
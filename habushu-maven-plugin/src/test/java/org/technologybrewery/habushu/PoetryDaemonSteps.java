@@ -0,0 +1,326 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.PoetryDaemon;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.PythonToolServers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+public class PoetryDaemonSteps {
+
+    private static final File TEST_DIRECTORY = new File("target/test-poetry-daemon");
+    private static final File PROJECT_DIRECTORY = new File(TEST_DIRECTORY, "project");
+    private static final File POETRY_INTERPRETER = new File(TEST_DIRECTORY, "pypoetry/venv/bin/python");
+    private static final File LAUNCHER_DIRECTORY = new File(TEST_DIRECTORY, "bin");
+    private static final File DAEMON_LOG = new File(TEST_DIRECTORY, "daemon-log.txt");
+    private static final File STUB_DIRECTORY = new File(TEST_DIRECTORY, "stub");
+    private static final File HANG_MARKER = new File(TEST_DIRECTORY, "hung");
+
+    private MavenSession session;
+    private PoetryCommandHelper poetryHelper;
+    private String result;
+    private HabushuException failure;
+    private final List<String> cliCommands = Collections.synchronizedList(new ArrayList<>());
+
+    @After("@poetryDaemon")
+    public void cleanUp() throws IOException {
+        if (session != null) {
+            PythonToolServers.deactivate(session);
+        }
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("a build with Poetry daemons activated")
+    @SuppressWarnings("deprecation")
+    public void a_build_with_poetry_daemons_activated() {
+        session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(),
+                new ArrayList<>());
+        new HabushuLifecycleParticipant().afterProjectsRead(session);
+    }
+
+    @Given("a Poetry installation whose interpreter speaks the Poetry daemon protocol")
+    public void a_poetry_installation_whose_interpreter_speaks_the_poetry_daemon_protocol() throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+        PROJECT_DIRECTORY.mkdirs();
+        String log = DAEMON_LOG.getAbsolutePath();
+        writeExecutable(POETRY_INTERPRETER, "#!/bin/sh\n"
+                + "echo started >> '" + log + "'\n"
+                + "echo '{\"ready\": true, \"version\": \"1.8.3\"}'\n"
+                + "while IFS= read -r request; do\n"
+                + "  case \"$request\" in *'\"shutdown\"'*) exit 0;; esac\n"
+                + "  case \"$request\" in *--crash*) exit 1;; esac\n"
+                + "  id=$(echo \"$request\" | sed 's/^{\"id\":\\([0-9]*\\),.*/\\1/')\n"
+                + "  echo \"$request\" >> '" + log + "'\n"
+                + "  case \"$request\" in *--hang-once*) [ -f '" + HANG_MARKER.getAbsolutePath() + "' ] || "
+                + "{ touch '" + HANG_MARKER.getAbsolutePath() + "'; sleep 30; };; esac\n"
+                + "  case \"$request\" in *--slow*) echo start >> '" + log + "'; sleep 0.3; echo end >> '" + log + "';; esac\n"
+                + "  echo \"{\\\"id\\\": $id, \\\"stream\\\": \\\"stdout\\\", \\\"line\\\": \\\"black 24.1.0\\\"}\"\n"
+                + "  echo \"{\\\"id\\\": $id, \\\"stream\\\": \\\"stderr\\\", \\\"line\\\": \\\"Skipping virtualenv creation\\\"}\"\n"
+                + "  case \"$request\" in\n"
+                + "    *--fail*) echo \"{\\\"id\\\": $id, \\\"exit\\\": 2}\";;\n"
+                + "    *) echo \"{\\\"id\\\": $id, \\\"exit\\\": 0}\";;\n"
+                + "  esac\n"
+                + "done\n");
+
+        poetryHelper = new PoetryCommandHelper(PROJECT_DIRECTORY) {
+            @Override
+            protected File findPoetryInterpreter() {
+                return POETRY_INTERPRETER;
+            }
+
+            @Override
+            protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+                cliCommands.add(String.join(" ", arguments));
+                List<String> command = new ArrayList<>(Arrays.asList("echo", "poetry"));
+                command.addAll(arguments);
+                return new ProcessExecutor(PROJECT_DIRECTORY, command, Platform.guess(), null);
+            }
+        };
+        poetryHelper.usePoetryDaemons(PythonToolServers.get(session));
+    }
+
+    @Given("a Poetry installation whose interpreter runs the Poetry daemon with a stub of Poetry's console application")
+    public void a_poetry_installation_whose_interpreter_runs_the_poetry_daemon_with_a_stub_of_poetry_s_console_application()
+            throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+        PROJECT_DIRECTORY.mkdirs();
+        String log = DAEMON_LOG.getAbsolutePath();
+        // executes "run" commands as Poetry does, by replacing its own process:
+        writeStub("poetry/console/application.py", "import os\n"
+                + "with open('" + log + "', 'a') as log:\n"
+                + "    log.write('started\\n')\n"
+                + "class Application:\n"
+                + "    def auto_exits(self, auto_exits):\n"
+                + "        pass\n"
+                + "    def run(self, input, output, error_output):\n"
+                + "        args = input.argv[1:]\n"
+                + "        with open('" + log + "', 'a') as log:\n"
+                + "            log.write(' '.join(args) + '\\n')\n"
+                + "        if args[0] == 'run':\n"
+                + "            os.execvpe(args[1], args[1:], dict(os.environ))\n"
+                + "        output.stream.write('daemon: ' + ' '.join(args) + '\\n')\n"
+                + "        return 0\n");
+        writeStub("poetry/__init__.py", "");
+        writeStub("poetry/console/__init__.py", "");
+        writeStub("poetry-1.8.3.dist-info/METADATA", "Metadata-Version: 2.1\nName: poetry\nVersion: 1.8.3\n");
+        writeStub("cleo/__init__.py", "");
+        writeStub("cleo/io/__init__.py", "");
+        writeStub("cleo/io/inputs/__init__.py", "");
+        writeStub("cleo/io/inputs/argv_input.py", "class ArgvInput:\n"
+                + "    def __init__(self, argv):\n"
+                + "        self.argv = argv\n");
+        writeStub("cleo/io/outputs/__init__.py", "");
+        writeStub("cleo/io/outputs/stream_output.py", "class StreamOutput:\n"
+                + "    def __init__(self, stream):\n"
+                + "        self.stream = stream\n");
+        writeExecutable(POETRY_INTERPRETER, "#!/bin/sh\n"
+                + "PYTHONPATH='" + STUB_DIRECTORY.getAbsolutePath() + "' exec python3 \"$@\"\n");
+
+        poetryHelper = new PoetryCommandHelper(PROJECT_DIRECTORY) {
+            @Override
+            protected File findPoetryInterpreter() {
+                return POETRY_INTERPRETER;
+            }
+
+            @Override
+            protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+                List<String> command = new ArrayList<>(Arrays.asList("echo", "poetry"));
+                command.addAll(arguments);
+                return new ProcessExecutor(PROJECT_DIRECTORY, command, Platform.guess(), null);
+            }
+        };
+        poetryHelper.usePoetryDaemons(PythonToolServers.get(session));
+    }
+
+    @Given("a poetry launcher on the PATH whose first lines are {string}")
+    public void a_poetry_launcher_on_the_path_whose_first_lines_are(String launcher) throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+        writeExecutable(POETRY_INTERPRETER, "#!/bin/sh\n");
+        String contents = launcher.replace("\\n", "\n").replace("\\\"", "\"")
+                .replace("{interpreter}", POETRY_INTERPRETER.getAbsolutePath());
+        writeExecutable(new File(LAUNCHER_DIRECTORY, "poetry"), contents + "\nimport sys\n");
+    }
+
+    @When("the Poetry command {string} is executed for its result")
+    public void the_poetry_command_is_executed_for_its_result(String command) throws Exception {
+        result = poetryHelper.execute(Arrays.asList(command.split(" ")));
+    }
+
+    @When("the Poetry command {string} is executed with its output logged")
+    public void the_poetry_command_is_executed_with_its_output_logged(String command) throws Exception {
+        try {
+            Assertions.assertEquals(0, poetryHelper.executeAndLogOutput(Arrays.asList(command.split(" "))));
+        } catch (HabushuException e) {
+            failure = e;
+        }
+    }
+
+    @When("the Poetry command {string} is executed with an output listener that fails")
+    public void the_poetry_command_is_executed_with_an_output_listener_that_fails(String command) {
+        List<Pair<String, Boolean>> arguments = Arrays.stream(command.split(" "))
+                .map(argument -> new ImmutablePair<>(argument, false)).collect(Collectors.toList());
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> poetryHelper.executeWithSensitiveArgsAndLogOutput(arguments, line -> {
+                    throw new IllegalStateException("Could not handle " + line);
+                }));
+    }
+
+    @When("the Poetry command {string} is executed with a stall timeout of {int} second(s)")
+    public void the_poetry_command_is_executed_with_a_stall_timeout_of_seconds(String command, int seconds)
+            throws Exception {
+        executeWithStallDetection(command, seconds, false);
+    }
+
+    @When("the Poetry command {string} is executed with a stall timeout of {int} second(s) and retried once after a stall")
+    public void the_poetry_command_is_executed_with_a_stall_timeout_of_seconds_and_retried_once_after_a_stall(
+            String command, int seconds) throws Exception {
+        executeWithStallDetection(command, seconds, true);
+    }
+
+    @When("{int} threads each execute the Poetry command {string} within daemons")
+    public void threads_each_execute_the_poetry_command_within_daemons(int threads, String command) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> executions = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                executions.add(executor.submit(() -> poetryHelper.executeAndLogOutput(Arrays.asList(command.split(" ")))));
+            }
+            for (Future<Integer> execution : executions) {
+                Assertions.assertEquals(0, execution.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Then("at most {int} of the Poetry commands ran at once within daemons")
+    public void at_most_of_the_poetry_commands_ran_at_once_within_daemons(int expected) throws IOException {
+        int running = 0;
+        int maximum = 0;
+        List<String> lines = readLines(DAEMON_LOG);
+        for (String line : lines) {
+            if ("start".equals(line) || "end".equals(line)) {
+                running += "start".equals(line) ? 1 : -1;
+                maximum = Math.max(maximum, running);
+            }
+        }
+        Assertions.assertEquals(expected, maximum, lines.toString());
+        Assertions.assertEquals(Collections.emptyList(), cliCommands);
+    }
+
+    @Then("the result of the Poetry command is {string}")
+    public void the_result_of_the_poetry_command_is(String expectedResult) {
+        Assertions.assertEquals(expectedResult, result);
+    }
+
+    @Then("the Poetry daemon was started once")
+    public void the_poetry_daemon_was_started_once() throws IOException {
+        Assertions.assertEquals(1, readLines(DAEMON_LOG).stream().filter("started"::equals).count());
+        Assertions.assertEquals(1, PythonToolServers.get(session).size());
+    }
+
+    @Then("the Poetry daemon was started {int} times")
+    public void the_poetry_daemon_was_started_times(int times) throws IOException {
+        Assertions.assertNull(failure, () -> "The Poetry command should not have failed: " + failure.getMessage());
+        Assertions.assertEquals(times, readLines(DAEMON_LOG).stream().filter("started"::equals).count());
+    }
+
+    @Then("the Poetry daemon was discarded")
+    public void the_poetry_daemon_was_discarded() {
+        Assertions.assertEquals(0, PythonToolServers.get(session).size());
+    }
+
+    @Then("the Poetry command was not executed via the Poetry CLI")
+    public void the_poetry_command_was_not_executed_via_the_poetry_cli() {
+        Assertions.assertEquals(Collections.emptyList(), cliCommands);
+    }
+
+    @Then("the Poetry daemon received the commands {string} and {string}")
+    public void the_poetry_daemon_received_the_commands_and(String firstCommand, String secondCommand)
+            throws IOException {
+        List<String> requests = readLines(DAEMON_LOG).stream().filter(line -> line.startsWith("{"))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(2, requests.size(), requests.toString());
+        assertRequest(requests.get(0), 1, firstCommand);
+        assertRequest(requests.get(1), 2, secondCommand);
+    }
+
+    @Then("Poetry's console application executed only the command {string}")
+    public void poetry_s_console_application_executed_only_the_command(String command) throws IOException {
+        List<String> commands = readLines(DAEMON_LOG).stream().filter(line -> !"started".equals(line))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(Collections.singletonList(command), commands);
+    }
+
+    @Then("the Poetry command fails with the message {string}")
+    public void the_poetry_command_fails_with_the_message(String message) {
+        Assertions.assertNotNull(failure, "The Poetry command should have failed");
+        Assertions.assertTrue(failure.getMessage().contains(message), failure.getMessage());
+    }
+
+    @Then("the Poetry interpreter is found: {word}")
+    public void the_poetry_interpreter_is_found(String found) {
+        String path = new File(TEST_DIRECTORY, "missing").getAbsolutePath() + File.pathSeparator
+                + LAUNCHER_DIRECTORY.getAbsolutePath();
+        File interpreter = PoetryDaemon.findPoetryInterpreter(path);
+        if (Boolean.parseBoolean(found)) {
+            Assertions.assertEquals(POETRY_INTERPRETER.getAbsoluteFile(), interpreter);
+        } else {
+            Assertions.assertNull(interpreter);
+        }
+    }
+
+    private void executeWithStallDetection(String command, int seconds, boolean retryAfterStall) throws Exception {
+        try {
+            Assertions.assertEquals(0, poetryHelper.executeWithStallDetection(Arrays.asList(command.split(" ")),
+                    Duration.ofSeconds(seconds), retryAfterStall));
+        } catch (HabushuException e) {
+            failure = e;
+        }
+    }
+
+    private static void assertRequest(String request, int id, String command) {
+        String expected = "{\"id\":" + id + ",\"args\":["
+                + Arrays.stream(command.split(" ")).map(argument -> "\"" + argument + "\"")
+                .collect(Collectors.joining(","))
+                + "],\"cwd\":\"" + PROJECT_DIRECTORY.getAbsolutePath() + "\"";
+        Assertions.assertTrue(request.startsWith(expected), request);
+    }
+
+    private static void writeStub(String path, String contents) throws IOException {
+        FileUtils.writeStringToFile(new File(STUB_DIRECTORY, path), contents, StandardCharsets.UTF_8);
+    }
+
+    private static void writeExecutable(File executable, String contents) throws IOException {
+        FileUtils.writeStringToFile(executable, contents, StandardCharsets.UTF_8);
+        Assertions.assertTrue(executable.setExecutable(true));
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        return file.exists() ? FileUtils.readLines(file, StandardCharsets.UTF_8) : Collections.emptyList();
+    }
+}
@@ -0,0 +1,154 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.PoetryPluginInstaller;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class PoetryPluginUpdateSteps {
+
+    private static final File TEST_DIRECTORY = new File("target/poetry-plugin-updates");
+    private static final File STATE_DIRECTORY = new File(TEST_DIRECTORY, "state");
+    private static final File POETRY_ENVIRONMENT = new File(TEST_DIRECTORY, "pypoetry/venv");
+    private static final File SITE_PACKAGES = new File(POETRY_ENVIRONMENT, "lib/python3.11/site-packages");
+
+    private final List<String> poetryCommands = Collections.synchronizedList(new ArrayList<>());
+    private Duration checkInterval;
+
+    @After("@poetryPluginUpdates")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("Poetry plugins are checked for updates every {int} hours")
+    public void poetry_plugins_are_checked_for_updates_every_hours(int hours) {
+        checkInterval = Duration.ofHours(hours);
+    }
+
+    @Given("poetry-monorepo-dependency-plugin was last checked for updates {int} hours ago")
+    public void poetry_monorepo_dependency_plugin_was_last_checked_for_updates_hours_ago(int hours)
+            throws IOException {
+        String state = String.format("{\"version\":\"latest\",\"checkedAt\":\"%s\"}",
+                Instant.now().minus(Duration.ofHours(hours)));
+        FileUtils.writeStringToFile(new File(STATE_DIRECTORY,
+                "plugins/" + PyenvAndPoetrySetup.MONOREPO_DEPENDENCY_PLUGIN + ".json"), state, StandardCharsets.UTF_8);
+    }
+
+    @Given("Poetry is reinstalled without its plugins")
+    public void poetry_is_reinstalled_without_its_plugins() throws IOException {
+        FileUtils.deleteDirectory(POETRY_ENVIRONMENT);
+    }
+
+    @When("poetry-monorepo-dependency-plugin is installed at version {string} by {int} build(s)")
+    public void poetry_monorepo_dependency_plugin_is_installed_at_version_by_builds(String version, int builds)
+            throws MojoExecutionException {
+        for (int i = 0; i < builds; i++) {
+            createSetup(version, false).installPoetryMonorepoDependencyPlugin();
+        }
+    }
+
+    @When("poetry-monorepo-dependency-plugin is installed at version {string} by {int} concurrent builds")
+    public void poetry_monorepo_dependency_plugin_is_installed_at_version_by_concurrent_builds(String version,
+                                                                                              int builds) {
+        List<CompletableFuture<Void>> installations = new ArrayList<>();
+        for (int i = 0; i < builds; i++) {
+            installations.add(CompletableFuture.runAsync(() -> {
+                try {
+                    createSetup(version, false).installPoetryMonorepoDependencyPlugin();
+                } catch (MojoExecutionException e) {
+                    throw new HabushuException(e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(installations.toArray(new CompletableFuture[0])).join();
+    }
+
+    @When("poetry-monorepo-dependency-plugin is installed while Maven is offline")
+    public void poetry_monorepo_dependency_plugin_is_installed_while_maven_is_offline()
+            throws MojoExecutionException {
+        createSetup(PoetryPluginInstaller.LATEST, true).installPoetryMonorepoDependencyPlugin();
+    }
+
+    @Then("{string} is executed {int} time(s)")
+    public void is_executed_time_s(String command, int count) {
+        synchronized (poetryCommands) {
+            Assertions.assertEquals(count, poetryCommands.stream().filter(command::equals).count(),
+                    poetryCommands.toString());
+        }
+    }
+
+    @Then("no Poetry commands are executed")
+    public void no_poetry_commands_are_executed() {
+        Assertions.assertEquals(Collections.emptyList(), poetryCommands);
+    }
+
+    private PyenvAndPoetrySetup createSetup(String version, boolean offline) {
+        PyenvAndPoetrySetup setup = new PyenvAndPoetrySetup("3", false, null, TEST_DIRECTORY, false,
+                new SystemStreamLog()) {
+            @Override
+            protected PoetryCommandHelper createPoetryCommandHelper() {
+                return new RecordingPoetryCommandHelper(poetryCommands);
+            }
+
+            @Override
+            protected File getHabushuStateDirectory(PoetryCommandHelper poetryHelper) {
+                return STATE_DIRECTORY;
+            }
+        };
+        setup.configurePluginUpdates(version, checkInterval, offline);
+        return setup;
+    }
+
+    /**
+     * Records each Poetry command, and executes a short delay (so that concurrent
+     * installations overlap) in its place. {@code self add} creates the plugin's
+     * {@code .dist-info} directory in a stand-in for Poetry's environment.
+     */
+    private static class RecordingPoetryCommandHelper extends PoetryCommandHelper {
+        private final List<String> commands;
+
+        private RecordingPoetryCommandHelper(List<String> commands) {
+            super(TEST_DIRECTORY.getParentFile());
+            this.commands = commands;
+        }
+
+        @Override
+        protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+            commands.add(String.join(" ", arguments));
+            String script = "sleep 0.2";
+            if (arguments.size() == 3 && "self".equals(arguments.get(0)) && "add".equals(arguments.get(1))) {
+                String[] plugin = arguments.get(2).split("@");
+                String distInfo = plugin[0].replace('-', '_') + "-"
+                        + (PoetryPluginInstaller.LATEST.equals(plugin[1]) ? "1.3.0" : plugin[1]) + ".dist-info";
+                script += " && rm -rf " + SITE_PACKAGES.getAbsolutePath() + "/" + plugin[0].replace('-', '_')
+                        + "-*.dist-info && mkdir -p " + new File(SITE_PACKAGES, distInfo).getAbsolutePath();
+            }
+            return new ProcessExecutor(TEST_DIRECTORY.getParentFile(), Arrays.asList("sh", "-c", script),
+                    Platform.guess(), null);
+        }
+
+        @Override
+        protected File findPoetryInterpreter() {
+            return new File(POETRY_ENVIRONMENT, "bin/python").getAbsoluteFile();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.ProcessGovernor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ProcessGovernorSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessGovernorSteps.class);
+    private static final File TEST_DIRECTORY = new File("target/process-governor");
+    private static final File TOOL = new File(TEST_DIRECTORY, "tool");
+    private static final File LAUNCH_LOG = new File(TEST_DIRECTORY, "launches.txt");
+    private static final long GIGABYTE = 1024L * 1024L * 1024L;
+
+    private int permits;
+
+    @After("@processGovernor")
+    public void cleanUp() throws IOException {
+        ProcessGovernor.configure(false, 0, 0, 0);
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @When("permits are computed for {int} CPUs and {int} GB of memory at {double} per CPU, {int} per heavy process, and {int} MB per heavy process")
+    public void permits_are_computed_for(int cpus, int memoryGb, double perCpu, int weight, int memoryPerHeavyMb) {
+        permits = ProcessGovernor.computeCapacity(cpus, memoryGb * GIGABYTE, perCpu, weight,
+                memoryPerHeavyMb * 1024L * 1024L);
+    }
+
+    @Then("there are {int} permits")
+    public void there_are_permits(int expected) {
+        Assertions.assertEquals(expected, permits);
+    }
+
+    @Given("processes are governed by {int} permits with {int} permits per heavy process")
+    public void processes_are_governed_by_permits_with_permits_per_heavy_process(int capacity, int heavyWeight)
+            throws IOException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        ProcessGovernor.configure(true, (double) capacity / cpus, heavyWeight, 0);
+        TEST_DIRECTORY.mkdirs();
+        FileUtils.writeStringToFile(TOOL, "#!/bin/sh\necho \"start $1\" >> '" + LAUNCH_LOG.getAbsolutePath() + "'\n"
+                + "sleep 0.3\necho \"end $1\" >> '" + LAUNCH_LOG.getAbsolutePath() + "'\n", StandardCharsets.UTF_8);
+        Assertions.assertTrue(TOOL.setExecutable(true));
+    }
+
+    @When("{int} threads each launch the heavy command {string}")
+    public void threads_each_launch_the_heavy_command(int threads, String argument) throws Exception {
+        launchConcurrently(threads, argument);
+    }
+
+    @When("{int} threads each launch the light command {string}")
+    public void threads_each_launch_the_light_command(int threads, String argument) throws Exception {
+        launchConcurrently(threads, argument);
+    }
+
+    @Then("at most {int} of the commands ran at once")
+    public void at_most_of_the_commands_ran_at_once(int expected) throws IOException {
+        int running = 0;
+        int maximum = 0;
+        List<String> launches = FileUtils.readLines(LAUNCH_LOG, StandardCharsets.UTF_8);
+        for (String launch : launches) {
+            running += launch.startsWith("start") ? 1 : -1;
+            maximum = Math.max(maximum, running);
+        }
+        Assertions.assertEquals(expected, maximum, launches.toString());
+    }
+
+    @When("the light command {string} is running, then the heavy command {string} and the light command {string} are launched")
+    public void the_light_command_is_running_then_the_heavy_command_and_the_light_command_are_launched(
+            String running, String heavy, String light) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> launches = new ArrayList<>();
+            for (String argument : Arrays.asList(running, heavy, light)) {
+                launches.add(executor.submit(() -> launch(argument)));
+                Thread.sleep(100);
+            }
+            for (Future<Integer> launch : launches) {
+                Assertions.assertEquals(0, launch.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Then("the command {string} started before the command {string}")
+    public void the_command_started_before_the_command(String first, String second) throws IOException {
+        List<String> launches = FileUtils.readLines(LAUNCH_LOG, StandardCharsets.UTF_8);
+        Assertions.assertTrue(launches.indexOf("start " + first) < launches.indexOf("start " + second),
+                launches.toString());
+    }
+
+    private int launch(String argument) throws Exception {
+        return new ProcessExecutor(TEST_DIRECTORY, Arrays.asList(TOOL.getAbsolutePath(), argument), Platform.guess(),
+                null).executeAndRedirectOutput(logger);
+    }
+
+    private void launchConcurrently(int threads, String argument) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> launches = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                launches.add(executor.submit(() -> launch(argument)));
+            }
+            for (Future<Integer> launch : launches) {
+                Assertions.assertEquals(0, launch.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.technologybrewery.habushu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.ProcessMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ProcessMetricsSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessMetricsSteps.class);
+    private static final File TEST_DIRECTORY = new File("target/process-metrics");
+
+    @SuppressWarnings("deprecation")
+    private final MavenSession session = new MavenSession(null, new DefaultMavenExecutionRequest(),
+            new DefaultMavenExecutionResult(), new ArrayList<>());
+    private ProcessMetrics.MojoScope mojoScope;
+    private JsonNode processes;
+    private String summary;
+
+    @After("@processMetrics")
+    public void cleanUp() throws IOException {
+        if (mojoScope != null) {
+            mojoScope.close();
+        }
+        ProcessMetrics.deactivate(session);
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("the {string} mojo of module {string} is executing")
+    public void the_mojo_of_module_is_executing(String goal, String module) {
+        mojoScope = ProcessMetrics.enterMojo(session, module, metricsFile(module), goal);
+    }
+
+    @When("it launches a command that writes {int} bytes and exits with code {int}")
+    public void it_launches_a_command_that_writes_bytes_and_exits_with_code(int bytes, int exitCode) {
+        execute("head -c " + bytes + " /dev/zero | tr '\\0' 'x'; exit " + exitCode);
+    }
+
+    @When("it launches a command with the sensitive argument {string} that exits with code {int}")
+    public void it_launches_a_command_with_the_sensitive_argument_that_exits_with_code(String argument,
+                                                                                      int exitCode) {
+        ProcessExecutor executor = new ProcessExecutor(TEST_DIRECTORY.getParentFile(),
+                Arrays.asList("sh", "-c", "exit " + exitCode, "sh", argument), Platform.guess(), null);
+        executor.setSensitiveArguments(Collections.singletonList(argument));
+        Assertions.assertThrows(HabushuException.class, () -> executor.executeAndRedirectOutput(logger));
+    }
+
+    @Given("it launches a command that sleeps for {double} seconds")
+    public void it_launches_a_command_that_sleeps_for_seconds(double seconds) {
+        execute("sleep " + seconds);
+    }
+
+    @Given("the mojo completes")
+    public void the_mojo_completes() {
+        mojoScope.close();
+        mojoScope = null;
+    }
+
+    @When("the build ends and its processes are summarized")
+    public void the_build_ends_and_its_processes_are_summarized() {
+        summary = ProcessMetrics.deactivate(session).summarize(10);
+    }
+
+    @Then("the process metrics of module {string} record {int} processes")
+    public void the_process_metrics_of_module_record_processes(String module, int count) throws IOException {
+        JsonNode metrics = new ObjectMapper().readTree(metricsFile(module));
+        Assertions.assertEquals(module, metrics.path("module").asText());
+        processes = metrics.path("processes");
+        Assertions.assertEquals(count, processes.size());
+        for (JsonNode process : processes) {
+            Assertions.assertEquals("install-dependencies", process.path("mojo").asText());
+        }
+    }
+
+    @Then("the first recorded process wrote {int} bytes, exited with code {int}, and has a wall and CPU time")
+    public void the_first_recorded_process_wrote_bytes_exited_with_code_and_has_a_wall_and_cpu_time(int bytes,
+                                                                                                   int exitCode) {
+        JsonNode process = processes.get(0);
+        Assertions.assertEquals(bytes, process.path("outputBytes").asLong());
+        Assertions.assertEquals(exitCode, process.path("exitCode").asInt());
+        Assertions.assertTrue(process.path("wallTimeMillis").canConvertToLong());
+        Assertions.assertTrue(process.path("cpuTimeMillis").isNumber(), process.toString());
+        Assertions.assertTrue(process.path("startTime").isTextual());
+    }
+
+    @Then("the second recorded process exited with code {int} and its command masks {string}")
+    public void the_second_recorded_process_exited_with_code_and_its_command_masks(int exitCode, String argument) {
+        JsonNode process = processes.get(1);
+        Assertions.assertEquals(exitCode, process.path("exitCode").asInt());
+        String command = process.path("command").asText();
+        Assertions.assertFalse(command.contains(argument), command);
+        Assertions.assertTrue(command.endsWith("sh XXXX"), command);
+    }
+
+    @Then("the summary reports {int} launches, {int} by {string} and {int} by {string}")
+    public void the_summary_reports_launches_by_and_by(int total, int firstCount, String firstMojo, int secondCount,
+                                                        String secondMojo) {
+        Assertions.assertTrue(summary.startsWith("Habushu launched " + total + " process(es)"), summary);
+        Assertions.assertTrue(summary.matches("(?s).*" + firstMojo + " +" + firstCount + " launch\\(es\\).*"), summary);
+        Assertions.assertTrue(summary.matches("(?s).*" + secondMojo + " +" + secondCount + " launch\\(es\\).*"),
+                summary);
+    }
+
+    @Then("the summary lists the sleep of module {string} as the slowest command")
+    public void the_summary_lists_the_sleep_of_module_as_the_slowest_command(String module) {
+        String slowest = summary.substring(summary.indexOf("Slowest commands:")).split("\\R")[1];
+        Assertions.assertTrue(slowest.contains(module + " [install-dependencies] sh -c sleep"), slowest);
+    }
+
+    private void execute(String script) {
+        ProcessExecutor executor = new ProcessExecutor(TEST_DIRECTORY.getParentFile(),
+                Arrays.asList("sh", "-c", script), Platform.guess(), null);
+        try {
+            executor.executeAndRedirectOutput(logger);
+        } catch (HabushuException e) {
+            // non-zero exit codes are recorded
+        }
+    }
+
+    private static File metricsFile(String module) {
+        return new File(new File(TEST_DIRECTORY, module), ProcessMetrics.FILE_NAME);
+    }
+}
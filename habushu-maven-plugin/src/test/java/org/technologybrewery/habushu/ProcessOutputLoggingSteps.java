@@ -0,0 +1,144 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.AbstractLogger;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ProcessOutputLoggingSteps {
+
+    private final RecordingLogger logger = new RecordingLogger();
+    private List<String> loggedAtCompletion;
+
+    @After("@processOutputLogging")
+    public void cleanUp() {
+        ProcessExecutor.setAsynchronousLogging(false);
+    }
+
+    @Given("process output is logged asynchronously")
+    public void process_output_is_logged_asynchronously() {
+        ProcessExecutor.setAsynchronousLogging(true);
+    }
+
+    @When("a command writing {string} is executed with its output redirected to the log")
+    public void a_command_writing_is_executed_with_its_output_redirected_to_the_log(String line) {
+        execute("printf '%s\\n' '" + line + "'");
+    }
+
+    @When("a command writing {int} lines to stdout is executed with its output redirected to the log")
+    public void a_command_writing_lines_to_stdout_is_executed_with_its_output_redirected_to_the_log(int lines) {
+        execute("i=0; while [ $i -lt " + lines + " ]; do echo \"line $i\"; i=$((i+1)); done");
+    }
+
+    @Then("the line is logged at the {word} level")
+    public void the_line_is_logged_at_the_level(String level) {
+        Assertions.assertEquals(Collections.singletonList(level), logger.levels);
+    }
+
+    @Then("all {int} lines are logged in order before the command completes")
+    public void all_lines_are_logged_in_order_before_the_command_completes(int lines) {
+        Assertions.assertEquals(lines, loggedAtCompletion.size());
+        for (int i = 0; i < lines; i++) {
+            Assertions.assertEquals("line " + i, loggedAtCompletion.get(i));
+        }
+    }
+
+    private void execute(String script) {
+        ProcessExecutor executor = new ProcessExecutor(new File("target"), Arrays.asList("sh", "-c", script),
+                Platform.guess(), null);
+        executor.executeAndRedirectOutput(logger);
+        synchronized (logger) {
+            loggedAtCompletion = new ArrayList<>(logger.messages);
+        }
+    }
+
+    /**
+     * Records the messages logged by a process, and the level at which each was
+     * logged, ignoring the executor's own debug messages.
+     */
+    private static class RecordingLogger extends AbstractLogger {
+        private final List<String> messages = new ArrayList<>();
+        private final List<String> levels = new ArrayList<>();
+
+        @Override
+        protected synchronized void handleNormalizedLoggingCall(Level level, Marker marker, String message,
+                                                                Object[] arguments, Throwable throwable) {
+            if (arguments == null || arguments.length == 0) {
+                messages.add(message);
+                levels.add(level.name());
+            }
+        }
+
+        @Override
+        protected String getFullyQualifiedCallerName() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return "process-output";
+        }
+
+        @Override
+        public boolean isTraceEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isTraceEnabled(Marker marker) {
+            return true;
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isDebugEnabled(Marker marker) {
+            return true;
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isInfoEnabled(Marker marker) {
+            return true;
+        }
+
+        @Override
+        public boolean isWarnEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isWarnEnabled(Marker marker) {
+            return true;
+        }
+
+        @Override
+        public boolean isErrorEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isErrorEnabled(Marker marker) {
+            return true;
+        }
+    }
+}
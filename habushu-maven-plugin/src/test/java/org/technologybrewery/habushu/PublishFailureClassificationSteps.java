@@ -0,0 +1,23 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.publish.PublishFailureClassifier;
+import org.technologybrewery.habushu.publish.PublishFailureType;
+
+public class PublishFailureClassificationSteps {
+
+    private PublishFailureType failureType;
+
+    @When("poetry publish fails with the output {string}")
+    public void poetry_publish_fails_with_the_output(String output) {
+        failureType = PublishFailureClassifier.classifyOutput("Publishing sample-package (1.2.0) to nexus\n" + output);
+    }
+
+    @Then("the failure is classified as {string} and retriable is {word}")
+    public void the_failure_is_classified_as_and_retriable_is(String expectedFailureType, String retriable) {
+        Assertions.assertEquals(PublishFailureType.valueOf(expectedFailureType), failureType);
+        Assertions.assertEquals(Boolean.parseBoolean(retriable), failureType.isRetriable());
+    }
+}
@@ -0,0 +1,177 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.PythonToolServers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class PythonForkServerSteps {
+
+    private static final File PROJECT_DIRECTORY = new File("target/test-python-fork-server");
+    private static final File VIRTUAL_ENVIRONMENT = new File(PROJECT_DIRECTORY, ".venv");
+    private static final File SERVER_LOG = new File(PROJECT_DIRECTORY, "server-log.txt");
+    private static final File COMMAND_LOG = new File(PROJECT_DIRECTORY, "command-log.txt");
+
+    private MavenSession session;
+
+    @After("@pythonForkServer")
+    public void cleanUp() throws IOException {
+        if (session != null) {
+            PythonToolServers.deactivate(session);
+        }
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+    }
+
+    @Given("a build with Python fork servers activated")
+    @SuppressWarnings("deprecation")
+    public void a_build_with_python_fork_servers_activated() {
+        session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(),
+                new ArrayList<>());
+        new HabushuLifecycleParticipant().afterProjectsRead(session);
+    }
+
+    @Given("a Poetry project whose in-project virtual environment contains a Python fork server")
+    public void a_poetry_project_whose_in_project_virtual_environment_contains_a_python_fork_server()
+            throws IOException {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+        // speaks the fork server protocol, recording its preloaded modules and each request:
+        writeExecutable("python", "#!/bin/sh\n"
+                + "log=\"$VIRTUAL_ENV/../server-log.txt\"\n"
+                + "shift 2\n"
+                + "echo \"started $*\" >> \"$log\"\n"
+                + "echo '{\"ready\": true, \"preloaded\": []}'\n"
+                + "while IFS= read -r request; do\n"
+                + "  case \"$request\" in *'\"shutdown\"'*) exit 0;; esac\n"
+                + "  id=$(echo \"$request\" | sed 's/^{\"id\":\\([0-9]*\\),.*/\\1/')\n"
+                + "  echo \"$request\" >> \"$log\"\n"
+                + "  echo \"{\\\"id\\\": $id, \\\"exit\\\": 0}\"\n"
+                + "done\n");
+    }
+
+    @Given("a Poetry project whose in-project virtual environment runs the real Python fork server")
+    public void a_poetry_project_whose_in_project_virtual_environment_runs_the_real_python_fork_server()
+            throws IOException {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+        writeExecutable("python", "#!/bin/sh\nexec python3 \"$@\"\n");
+    }
+
+    @Given("the project contains a script that leaves its log file open and registers an exit handler")
+    public void the_project_contains_a_script_that_leaves_its_log_file_open_and_registers_an_exit_handler()
+            throws IOException {
+        FileUtils.writeStringToFile(new File(PROJECT_DIRECTORY, "scripts/exit_handlers.py"), ""
+                + "import atexit\n"
+                + "log = open('script-log.txt', 'w')\n"
+                + "log.write('written by the script\\n')\n"
+                + "def on_exit():\n"
+                + "    log.write('written by the exit handler\\n')\n"
+                + "atexit.register(on_exit)\n", StandardCharsets.UTF_8);
+    }
+
+    @Then("the script log contains the lines written by the script and by its exit handler")
+    public void the_script_log_contains_the_lines_written_by_the_script_and_by_its_exit_handler()
+            throws IOException {
+        Assertions.assertEquals(Arrays.asList("written by the script", "written by the exit handler"),
+                readLines(new File(PROJECT_DIRECTORY, "script-log.txt")));
+    }
+
+    @Given("the virtual environment contains the Python console script {string}")
+    public void the_virtual_environment_contains_the_python_console_script(String name) throws IOException {
+        writeExecutable(name, "#!" + new File(VIRTUAL_ENVIRONMENT, "bin/python").getAbsolutePath() + "\n"
+                + "import sys\nfrom models.cli import main\nsys.exit(main())\n");
+    }
+
+    @Given("the virtual environment contains the shell script {string}")
+    public void the_virtual_environment_contains_the_shell_script(String name) throws IOException {
+        writeExecutable(name, "#!/bin/sh\necho \"$(basename \"$0\") $*\" >> \"$VIRTUAL_ENV/../command-log.txt\"\n");
+    }
+
+    @When("the run-command-in-virtual-env goal is executed with {string} via the fork server preloading {string}")
+    public void the_run_command_in_virtual_env_goal_is_executed_with_via_the_fork_server_preloading(
+            String command, String preloadModules) throws Exception {
+        RunCommandInVirtualEnvMojo mojo = new RunCommandInVirtualEnvMojo();
+        mojo.project = new MavenProject(new Model());
+        mojo.project.setFile(new File(PROJECT_DIRECTORY, "pom.xml"));
+        mojo.session = session;
+        mojo.runCommandArgs = command;
+        mojo.useForkServer = true;
+        mojo.forkServerPreloadModules = Arrays.asList(StringUtils.split(preloadModules, ","));
+        mojo.doExecute();
+    }
+
+    @Then("the Python fork server was started once preloading {string}")
+    public void the_python_fork_server_was_started_once_preloading(String preloadModules) throws IOException {
+        List<String> starts = readLines(SERVER_LOG).stream().filter(line -> line.startsWith("started"))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(Collections.singletonList("started " + preloadModules), starts);
+    }
+
+    @Then("the Python fork server received the Python arguments {string} and {string}")
+    public void the_python_fork_server_received_the_python_arguments_and(String firstCommand, String secondCommand)
+            throws IOException {
+        List<String> requests = readRequests();
+        Assertions.assertEquals(2, requests.size(), requests.toString());
+        assertRequest(requests.get(0), 1, Arrays.asList(firstCommand.split(" ")));
+        assertRequest(requests.get(1), 2, Arrays.asList(secondCommand.split(" ")));
+    }
+
+    @Then("the Python fork server received the console script {string} with the arguments {string}")
+    public void the_python_fork_server_received_the_console_script_with_the_arguments(String script,
+                                                                                      String arguments)
+            throws IOException {
+        List<String> requests = readRequests();
+        Assertions.assertEquals(1, requests.size(), requests.toString());
+        List<String> expected = new ArrayList<>();
+        expected.add(new File(VIRTUAL_ENVIRONMENT, "bin/" + script).getAbsolutePath());
+        expected.addAll(Arrays.asList(arguments.split(" ")));
+        assertRequest(requests.get(0), 1, expected);
+    }
+
+    @Then("the Python fork server was not started for the command")
+    public void the_python_fork_server_was_not_started_for_the_command() {
+        Assertions.assertFalse(SERVER_LOG.exists(), "The Python fork server should not have been started");
+    }
+
+    @Then("{string} was executed as a separate process from the virtual environment")
+    public void was_executed_as_a_separate_process_from_the_virtual_environment(String command) throws IOException {
+        Assertions.assertEquals(Collections.singletonList(command), readLines(COMMAND_LOG));
+    }
+
+    private static void assertRequest(String request, int id, List<String> pythonArguments) {
+        String expected = "{\"id\":" + id + ",\"argv\":["
+                + pythonArguments.stream().map(argument -> "\"" + argument + "\"").collect(Collectors.joining(","))
+                + "],\"cwd\":\"" + PROJECT_DIRECTORY.getAbsolutePath() + "\"";
+        Assertions.assertTrue(request.startsWith(expected), request);
+    }
+
+    private static List<String> readRequests() throws IOException {
+        return readLines(SERVER_LOG).stream().filter(line -> line.startsWith("{")).collect(Collectors.toList());
+    }
+
+    private static void writeExecutable(String name, String contents) throws IOException {
+        File executable = new File(VIRTUAL_ENVIRONMENT, "bin/" + name);
+        FileUtils.writeStringToFile(executable, contents, StandardCharsets.UTF_8);
+        Assertions.assertTrue(executable.setExecutable(true));
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        return file.exists() ? FileUtils.readLines(file, StandardCharsets.UTF_8) : Collections.emptyList();
+    }
+}
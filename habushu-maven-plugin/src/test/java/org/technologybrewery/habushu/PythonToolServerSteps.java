@@ -0,0 +1,154 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.PythonToolServers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PythonToolServerSteps {
+
+    private static final File PROJECT_DIRECTORY = new File("target/test-python-tool-server");
+    private static final File VIRTUAL_ENVIRONMENT = new File(PROJECT_DIRECTORY, ".venv");
+    private static final File SERVER_LOG = new File(PROJECT_DIRECTORY, "server-log.txt");
+    private static final File TOOL_LOG = new File(PROJECT_DIRECTORY, "tool-log.txt");
+
+    private final HabushuLifecycleParticipant participant = new HabushuLifecycleParticipant();
+    private MavenSession session;
+    private HabushuException toolFailure;
+
+    @After("@pythonToolServer")
+    public void cleanUp() throws IOException {
+        if (session != null) {
+            PythonToolServers.deactivate(session);
+        }
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+    }
+
+    @Given("a build with Python tool servers activated")
+    @SuppressWarnings("deprecation")
+    public void a_build_with_python_tool_servers_activated() {
+        session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(),
+                new ArrayList<>());
+        participant.afterProjectsRead(session);
+    }
+
+    @Given("a Poetry project whose in-project virtual environment contains a Python tool server and {string}")
+    public void a_poetry_project_whose_in_project_virtual_environment_contains_a_python_tool_server_and(String tool)
+            throws IOException {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+        // speaks the tool server protocol, recording each request and failing jobs given --fail:
+        writeExecutable("python", "#!/bin/sh\n"
+                + "log=\"$VIRTUAL_ENV/../server-log.txt\"\n"
+                + "echo started >> \"$log\"\n"
+                + "echo '{\"ready\": true}'\n"
+                + "while IFS= read -r request; do\n"
+                + "  case \"$request\" in *'\"shutdown\"'*) echo stopped >> \"$log\"; exit 0;; esac\n"
+                + "  id=$(echo \"$request\" | sed 's/^{\"id\":\\([0-9]*\\),.*/\\1/')\n"
+                + "  echo \"$request\" >> \"$log\"\n"
+                + "  echo \"{\\\"id\\\": $id, \\\"line\\\": \\\"All done!\\\"}\"\n"
+                + "  case \"$request\" in\n"
+                + "    *--fail*) echo \"{\\\"id\\\": $id, \\\"exit\\\": 3}\";;\n"
+                + "    *) echo \"{\\\"id\\\": $id, \\\"exit\\\": 0}\";;\n"
+                + "  esac\n"
+                + "done\n");
+        writeExecutable(tool, "#!/bin/sh\necho \"$0 $*\" >> \"$VIRTUAL_ENV/../tool-log.txt\"\n");
+    }
+
+    @When("{string} is executed with the tool server enabled")
+    public void is_executed_with_the_tool_server_enabled(String command) throws Exception {
+        RunCommandInVirtualEnvMojo mojo = new RunCommandInVirtualEnvMojo();
+        mojo.project = new MavenProject(new Model());
+        mojo.project.setFile(new File(PROJECT_DIRECTORY, "pom.xml"));
+        mojo.session = session;
+        mojo.useToolServer = true;
+        try {
+            mojo.executeToolInVirtualEnv(null, Arrays.asList(command.split(" ")), null);
+        } catch (HabushuException e) {
+            toolFailure = e;
+        }
+    }
+
+    @When("the build ends")
+    public void the_build_ends() throws Exception {
+        participant.afterSessionEnd(session);
+    }
+
+    @Then("the Python tool server was started once")
+    public void the_python_tool_server_was_started_once() throws IOException {
+        Assertions.assertEquals(1, readLines(SERVER_LOG).stream().filter("started"::equals).count());
+        Assertions.assertEquals(1, PythonToolServers.get(session).size());
+    }
+
+    @Then("the Python tool server received the jobs {string} and {string}")
+    public void the_python_tool_server_received_the_jobs_and(String firstJob, String secondJob) throws IOException {
+        List<String> requests = new ArrayList<>(readLines(SERVER_LOG));
+        requests.removeIf(line -> !line.startsWith("{"));
+        Assertions.assertEquals(2, requests.size(), requests.toString());
+        assertJob(requests.get(0), 1, firstJob);
+        assertJob(requests.get(1), 2, secondJob);
+    }
+
+    @Then("the Python tool server has been shut down")
+    public void the_python_tool_server_has_been_shut_down() throws IOException {
+        List<String> log = readLines(SERVER_LOG);
+        Assertions.assertEquals("stopped", log.get(log.size() - 1));
+        Assertions.assertNull(PythonToolServers.get(session), "Python tool servers should have been deactivated");
+    }
+
+    @Then("the tool fails with the message {string}")
+    public void the_tool_fails_with_the_message(String message) {
+        Assertions.assertNotNull(toolFailure, "The tool should have failed");
+        Assertions.assertTrue(toolFailure.getMessage().contains(message), toolFailure.getMessage());
+    }
+
+    @Then("the Python tool server was not started")
+    public void the_python_tool_server_was_not_started() {
+        Assertions.assertFalse(SERVER_LOG.exists(), "The Python tool server should not have been started");
+    }
+
+    @Then("{string} was executed as a separate process")
+    public void was_executed_as_a_separate_process(String tool) throws IOException {
+        List<String> log = readLines(TOOL_LOG);
+        Assertions.assertEquals(1, log.size());
+        Assertions.assertTrue(log.get(0).startsWith(new File(VIRTUAL_ENVIRONMENT, "bin/" + tool).getAbsolutePath()),
+                log.get(0));
+    }
+
+    private static void assertJob(String request, int id, String command) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(command.split(" ")));
+        String tool = arguments.remove(0);
+        StringBuilder expected = new StringBuilder("{\"id\":" + id + ",\"tool\":\"" + tool + "\",\"args\":[");
+        for (int i = 0; i < arguments.size(); i++) {
+            expected.append(i > 0 ? "," : "").append('"').append(arguments.get(i)).append('"');
+        }
+        expected.append("],\"cwd\":\"");
+        Assertions.assertTrue(request.startsWith(expected.toString()), request);
+        Assertions.assertTrue(request.contains(PROJECT_DIRECTORY.getAbsolutePath()), request);
+    }
+
+    private static void writeExecutable(String name, String contents) throws IOException {
+        File executable = new File(VIRTUAL_ENVIRONMENT, "bin/" + name);
+        FileUtils.writeStringToFile(executable, contents, StandardCharsets.UTF_8);
+        Assertions.assertTrue(executable.setExecutable(true));
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        return file.exists() ? FileUtils.readLines(file, StandardCharsets.UTF_8) : Collections.emptyList();
+    }
+}
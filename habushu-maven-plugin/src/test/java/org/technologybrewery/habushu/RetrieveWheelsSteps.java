@@ -4,22 +4,72 @@ import io.cucumber.java.After;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Assertions;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class RetrieveWheelsSteps {
 
     private RetrieveWheelsTestMojo mojo; 
     File sampleWheelFile = new File("src/test/resources/testCacheDirectory/base-test-wheel.whl");
+    private static final String VERSIONED_CACHE_DIRECTORY = "target/test-wheel-cache";
+    private static final String VERSIONED_TARGET_DIRECTORY = "target/test-wheel-target";
+    private long previouslyRetrievedTimestamp;
 
     @After
     public void cleanUp() {
         resetTargetDirectory();
+        FileUtils.deleteQuietly(new File(VERSIONED_CACHE_DIRECTORY));
+        FileUtils.deleteQuietly(new File(VERSIONED_TARGET_DIRECTORY));
+        FileUtils.deleteQuietly(new File("src/test/resources/.habushu-access.log"));
+        FileUtils.deleteQuietly(new File("src/test/resources/.habushu-access-log.lock"));
+        FileUtils.deleteQuietly(new File("src/test/resources/testCacheDirectory/.habushu-manifest.toml"));
+        FileUtils.deleteQuietly(new File("src/test/resources/.testCacheDirectory.lock"));
+    }
+
+    @Given("a wheel cache containing versions {string} of {string}")
+    public void a_wheel_cache_containing_versions_of(String versions, String artifactId) throws IOException {
+        File artifactCacheDirectory = new File(VERSIONED_CACHE_DIRECTORY, artifactId);
+        artifactCacheDirectory.mkdirs();
+        for (String version : versions.split(",")) {
+            writeSampleWheel(new File(artifactCacheDirectory, toWheelFileName(artifactId, version)), artifactId, version);
+        }
+    }
+
+    @Given("a Habushu configuration with a wheel dependency on {string}")
+    public void a_habushu_configuration_with_a_wheel_dependency_on(String artifactId) {
+        a_habushu_configuration_with_a_wheel_dependency_on_with_version(artifactId, null);
+    }
+
+    @Given("a Habushu configuration with a wheel dependency on {string} with version {string}")
+    public void a_habushu_configuration_with_a_wheel_dependency_on_with_version(String artifactId, String version) {
+        mojo = new RetrieveWheelsTestMojo(sampleWheelFile);
+        mojo.setCacheDirectory(VERSIONED_CACHE_DIRECTORY);
+        WheelDependency wheelDependency = new WheelDependency();
+        wheelDependency.setArtifactId(artifactId);
+        wheelDependency.setTargetDirectory(VERSIONED_TARGET_DIRECTORY);
+        wheelDependency.setVersion(version);
+        mojo.setWheelDependencies(new ArrayList<>(List.of(wheelDependency)));
+    }
+
+    @Given("the wheel dependencies were previously retrieved")
+    public void the_wheel_dependencies_were_previously_retrieved() {
+        mojo.processWheelDependencies();
+        previouslyRetrievedTimestamp = System.currentTimeMillis() - 60_000;
+        for (File retrievedWheel : new File(VERSIONED_TARGET_DIRECTORY).listFiles()) {
+            retrievedWheel.setLastModified(previouslyRetrievedTimestamp);
+        }
     }
 
     @Given("a Habushu configuration with no wheel dependencies entries")
@@ -62,6 +112,40 @@ public class RetrieveWheelsSteps {
         Assertions.assertTrue(checkIfWheelWasCopied(), "Expected the wheel artifact in the target directory, but didn't find it!");
     }
 
+    @Then("only version {string} of {string} is retrieved")
+    public void only_version_of_is_retrieved(String version, String artifactId) {
+        String[] retrievedWheels = new File(VERSIONED_TARGET_DIRECTORY).list();
+        Assertions.assertNotNull(retrievedWheels, "Expected wheels to be retrieved, but none were!");
+        Assertions.assertEquals(Arrays.asList(toWheelFileName(artifactId, version)), Arrays.asList(retrievedWheels),
+                "Unexpected wheel(s) retrieved!");
+    }
+
+    @Then("the previously retrieved wheel is not copied again")
+    public void the_previously_retrieved_wheel_is_not_copied_again() {
+        for (File retrievedWheel : new File(VERSIONED_TARGET_DIRECTORY).listFiles()) {
+            Assertions.assertEquals(previouslyRetrievedTimestamp, retrievedWheel.lastModified(),
+                    "Expected identical wheel to be left untouched, but it was copied again!");
+        }
+    }
+
+    static String toWheelFileName(String artifactId, String version) {
+        return String.format("%s-%s-py3-none-any.whl", artifactId.replace('-', '_'), version);
+    }
+
+    static void writeSampleWheel(File wheelFile, String artifactId, String version) throws IOException {
+        String distInfo = String.format("%s-%s.dist-info/", artifactId.replace('-', '_'), version);
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(wheelFile))) {
+            zip.putNextEntry(new ZipEntry(distInfo + "METADATA"));
+            zip.write(String.format("Metadata-Version: 2.1%nName: %s%nVersion: %s%n", artifactId, version)
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry(distInfo + "WHEEL"));
+            zip.write(String.format("Wheel-Version: 1.0%nRoot-Is-Purelib: true%nTag: py3-none-any%n")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+    }
+
     private boolean checkIfWheelWasCopied(){
         boolean isWheelCopied = false;
         String artifactId = "";
@@ -6,6 +6,7 @@ import java.util.List;
 public class RetrieveWheelsTestMojo extends RetrieveWheelsMojo{
 
     private File sampleWheelFile;
+    private String cacheDirectory = "src/test/resources";
 
     public RetrieveWheelsTestMojo(File sampleWheelFile) {
         this.sampleWheelFile = sampleWheelFile;
@@ -19,12 +20,16 @@ public class RetrieveWheelsTestMojo extends RetrieveWheelsMojo{
         return this.wheelDependencies;
     }
 
+    void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
     protected File getPoetryCacheDirectory(){
         return getPoetryCacheDirectory();
     }
 
     public File getCachedWheelDirectory(String artifactId){
         String baseDirectory = new File("").getAbsolutePath();
-        return new File(baseDirectory+"/src/test/resources/" + artifactId);
+        return new File(baseDirectory + "/" + cacheDirectory + "/" + artifactId);
     }
 }
@@ -0,0 +1,240 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.publish.ArchiveVersionRewriter;
+import org.technologybrewery.habushu.publish.DistributionArchive;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class SnapshotArchiveRewriteSteps {
+
+    private static final File DIST_DIRECTORY = new File("target/test-snapshot-rewrite/dist");
+    private static final String SCRIPT = "sample-script";
+    private static final String LONG_PATH = "sample_package/" + "nested_module_directory/".repeat(6) + "resource.txt";
+
+    private DistributionArchive builtArchive;
+    private DistributionArchive rewrittenArchive;
+    private String originalBaseName;
+    private Map<String, byte[]> originalEntries;
+
+    @After("@snapshotArchiveRewrite")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(DIST_DIRECTORY.getParentFile());
+    }
+
+    @Given("a built wheel of version {string} of {string}")
+    public void a_built_wheel_of_version_of(String version, String name) throws IOException {
+        FileUtils.deleteDirectory(DIST_DIRECTORY);
+        DIST_DIRECTORY.mkdirs();
+        String baseName = name.replace('-', '_') + "-" + version;
+        File wheel = new File(DIST_DIRECTORY, baseName + "-py3-none-any.whl");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(wheel))) {
+            writeZipEntry(zip, "sample_package/__init__.py", "print('hello')\n");
+            writeZipEntry(zip, baseName + ".dist-info/METADATA", String.format(
+                    "Metadata-Version: 2.1%nName: %s%nVersion: %s%n%nVersion: 0.0.0 is mentioned in the description%n",
+                    name, version));
+            writeZipEntry(zip, baseName + ".dist-info/WHEEL", "Wheel-Version: 1.0\nTag: py3-none-any\n");
+            writeZipEntry(zip, baseName + ".dist-info/RECORD", "stale,,\n");
+        }
+        builtArchive = DistributionArchive.of(wheel);
+    }
+
+    @Given("a built wheel of version {string} of {string} containing an executable script")
+    public void a_built_wheel_of_version_of_containing_an_executable_script(String version, String name)
+            throws IOException {
+        FileUtils.deleteDirectory(DIST_DIRECTORY);
+        DIST_DIRECTORY.mkdirs();
+        String baseName = name.replace('-', '_') + "-" + version;
+        File wheel = new File(DIST_DIRECTORY, baseName + "-py3-none-any.whl");
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(wheel)) {
+            writeZipEntry(zip, "sample_package/__init__.py", 0644, "print('hello')\n");
+            writeZipEntry(zip, baseName + ".data/scripts/" + SCRIPT, 0755, "#!python\nprint('hello')\n");
+            writeZipEntry(zip, baseName + ".dist-info/METADATA", 0644, String.format(
+                    "Metadata-Version: 2.1%nName: %s%nVersion: %s%n", name, version));
+            writeZipEntry(zip, baseName + ".dist-info/WHEEL", 0644, "Wheel-Version: 1.0\nTag: py3-none-any\n");
+            writeZipEntry(zip, baseName + ".dist-info/RECORD", 0644, "stale,,\n");
+        }
+        builtArchive = DistributionArchive.of(wheel);
+    }
+
+    @Given("a built sdist of version {string} of {string} containing a file with a long path")
+    public void a_built_sdist_of_version_of_containing_a_file_with_a_long_path(String version, String name)
+            throws IOException {
+        FileUtils.deleteDirectory(DIST_DIRECTORY);
+        DIST_DIRECTORY.mkdirs();
+        originalBaseName = name + "-" + version;
+        originalEntries = new LinkedHashMap<>();
+        originalEntries.put("sample_package/__init__.py", "print('hello')\n".getBytes(StandardCharsets.UTF_8));
+        originalEntries.put(LONG_PATH, "a resource with a long path".getBytes(StandardCharsets.UTF_8));
+        originalEntries.put("PKG-INFO", String.format("Metadata-Version: 2.1%nName: %s%nVersion: %s%n", name, version)
+                .getBytes(StandardCharsets.UTF_8));
+        originalEntries.put("pyproject.toml", String.format("[tool.poetry]%nname = \"%s\"%nversion = \"%s\"%n%n"
+                + "[tool.poetry.dependencies]%nversion = \"^1.0\"%n", name, version).getBytes(StandardCharsets.UTF_8));
+
+        File sdist = new File(DIST_DIRECTORY, originalBaseName + ".tar.gz");
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(sdist)))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            for (Map.Entry<String, byte[]> entry : originalEntries.entrySet()) {
+                TarArchiveEntry tarEntry = new TarArchiveEntry(originalBaseName + "/" + entry.getKey());
+                tarEntry.setSize(entry.getValue().length);
+                tarEntry.setMode(0644);
+                tar.putArchiveEntry(tarEntry);
+                tar.write(entry.getValue());
+                tar.closeArchiveEntry();
+            }
+        }
+        builtArchive = DistributionArchive.of(sdist);
+    }
+
+    @When("the built archives are rewritten to version {string}")
+    public void the_built_archives_are_rewritten_to_version(String version) {
+        rewrittenArchive = ArchiveVersionRewriter.rewrite(builtArchive, version, DIST_DIRECTORY);
+        Assertions.assertTrue(builtArchive.getFile().exists(), "Built archive should be left in place");
+        Assertions.assertTrue(rewrittenArchive.hasVersion(version));
+    }
+
+    @Then("the rewritten wheel is named {string}")
+    public void the_rewritten_wheel_is_named(String fileName) {
+        Assertions.assertEquals(fileName, rewrittenArchive.getFile().getName());
+    }
+
+    @Then("the rewritten wheel's metadata has version {string} within {string}")
+    public void the_rewritten_wheel_s_metadata_has_version_within(String version, String distInfoDirectory)
+            throws IOException {
+        try (ZipFile zip = new ZipFile(rewrittenArchive.getFile())) {
+            ZipEntry metadataEntry = zip.getEntry(distInfoDirectory + "/METADATA");
+            Assertions.assertNotNull(metadataEntry, "METADATA should be within " + distInfoDirectory);
+            String metadata = IOUtils.toString(zip.getInputStream(metadataEntry), StandardCharsets.UTF_8);
+            Assertions.assertTrue(metadata.contains("Version: " + version + System.lineSeparator()), metadata);
+            Assertions.assertTrue(metadata.contains("Version: 0.0.0 is mentioned"),
+                    "The description should not be rewritten: " + metadata);
+        }
+    }
+
+    @Then("the rewritten wheel's RECORD matches its contents")
+    public void the_rewritten_wheel_s_record_matches_its_contents() throws Exception {
+        try (ZipFile zip = new ZipFile(rewrittenArchive.getFile())) {
+            String recordPath = null;
+            Map<String, String> expectedRecords = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".dist-info/RECORD")) {
+                    recordPath = entry.getName();
+                    continue;
+                }
+                byte[] contents = IOUtils.toByteArray(zip.getInputStream(entry));
+                String hash = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString(MessageDigest.getInstance("SHA-256").digest(contents));
+                expectedRecords.put(entry.getName(), entry.getName() + ",sha256=" + hash + "," + contents.length);
+            }
+            expectedRecords.put(recordPath, recordPath + ",,");
+
+            String record = IOUtils.toString(zip.getInputStream(zip.getEntry(recordPath)), StandardCharsets.UTF_8);
+            Assertions.assertEquals(String.join("\n", expectedRecords.values()) + "\n", record);
+        }
+    }
+
+    @Then("the rewritten wheel's script is executable and its other entries are not")
+    public void the_rewritten_wheel_s_script_is_executable_and_its_other_entries_are_not() throws IOException {
+        try (org.apache.commons.compress.archivers.zip.ZipFile zip =
+                     new org.apache.commons.compress.archivers.zip.ZipFile(rewrittenArchive.getFile())) {
+            for (ZipArchiveEntry entry : Collections.list(zip.getEntries())) {
+                int expectedMode = entry.getName().endsWith("/scripts/" + SCRIPT) ? 0755 : 0644;
+                Assertions.assertEquals(expectedMode, entry.getUnixMode() & 0777,
+                        "Unexpected permissions of " + entry.getName());
+            }
+        }
+    }
+
+    @Then("the rewritten sdist is named {string}")
+    public void the_rewritten_sdist_is_named(String fileName) {
+        Assertions.assertEquals(fileName, rewrittenArchive.getFile().getName());
+    }
+
+    @Then("every entry of the rewritten sdist is within {string}")
+    public void every_entry_of_the_rewritten_sdist_is_within(String directory) throws IOException {
+        Map<String, byte[]> entries = readSdist(rewrittenArchive.getFile());
+        Assertions.assertEquals(originalEntries.size(), entries.size());
+        for (String path : entries.keySet()) {
+            Assertions.assertTrue(path.startsWith(directory), path + " should be within " + directory);
+        }
+    }
+
+    @Then("the rewritten sdist's PKG-INFO and pyproject.toml have version {string}")
+    public void the_rewritten_sdist_s_pkg_info_and_pyproject_toml_have_version(String version) throws IOException {
+        Map<String, byte[]> entries = readSdist(rewrittenArchive.getFile());
+        String baseName = rewrittenArchive.getName() + "-" + version + "/";
+        String pkgInfo = new String(entries.get(baseName + "PKG-INFO"), StandardCharsets.UTF_8);
+        Assertions.assertTrue(pkgInfo.contains("Version: " + version + System.lineSeparator()), pkgInfo);
+        String pyproject = new String(entries.get(baseName + "pyproject.toml"), StandardCharsets.UTF_8);
+        Assertions.assertTrue(pyproject.contains("version = \"" + version + "\""), pyproject);
+        Assertions.assertTrue(pyproject.contains("version = \"^1.0\""),
+                "Dependency versions should not be rewritten: " + pyproject);
+    }
+
+    @Then("all other entries of the rewritten sdist are unchanged")
+    public void all_other_entries_of_the_rewritten_sdist_are_unchanged() throws IOException {
+        Map<String, byte[]> entries = readSdist(rewrittenArchive.getFile());
+        String baseName = rewrittenArchive.getName() + "-" + rewrittenArchive.getVersion() + "/";
+        for (String path : new String[]{"sample_package/__init__.py", LONG_PATH}) {
+            Assertions.assertArrayEquals(originalEntries.get(path), entries.get(baseName + path),
+                    "Unexpected contents of " + path);
+        }
+    }
+
+    private static Map<String, byte[]> readSdist(File sdist) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (InputStream inputStream = new GZIPInputStream(new FileInputStream(sdist));
+             TarArchiveInputStream tar = new TarArchiveInputStream(inputStream)) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextEntry()) != null) {
+                Assertions.assertEquals(0644, entry.getMode(), "Entry modes should be preserved");
+                entries.put(entry.getName(), IOUtils.toByteArray(tar));
+            }
+        }
+        return entries;
+    }
+
+    private static void writeZipEntry(ZipArchiveOutputStream zip, String path, int mode, String contents)
+            throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(path);
+        entry.setUnixMode(mode);
+        zip.putArchiveEntry(entry);
+        zip.write(contents.getBytes(StandardCharsets.UTF_8));
+        zip.closeArchiveEntry();
+    }
+
+    private static void writeZipEntry(ZipOutputStream zip, String path, String contents) throws IOException {
+        zip.putNextEntry(new ZipEntry(path));
+        zip.write(contents.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
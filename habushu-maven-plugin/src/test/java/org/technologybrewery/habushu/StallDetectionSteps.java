@@ -0,0 +1,140 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.ProcessStalledException;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class StallDetectionSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(StallDetectionSteps.class);
+    private static final File TEST_DIRECTORY = new File("target/stall-detection");
+
+    private String script;
+    private Duration stallTimeout;
+    private final List<String> output = Collections.synchronizedList(new ArrayList<>());
+    private Integer exitCode;
+    private ProcessStalledException stall;
+    private long elapsedMillis;
+    private ScriptedPoetryCommandHelper poetryHelper;
+
+    @After("@stallDetection")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("a command {string} with a stall timeout of {int} second")
+    public void a_command_with_a_stall_timeout_of_second(String script, int seconds) {
+        this.script = script.replace("\\n", "\n");
+        this.stallTimeout = Duration.ofSeconds(seconds);
+    }
+
+    @When("the command is executed with stall detection")
+    public void the_command_is_executed_with_stall_detection() {
+        ProcessExecutor executor = new ProcessExecutor(new File("target"), Arrays.asList("sh", "-c", script),
+                Platform.guess(), null);
+        executor.setStallTimeout(stallTimeout);
+        long start = System.nanoTime();
+        try {
+            exitCode = executor.executeAndRedirectOutput(logger, output::add);
+        } catch (ProcessStalledException e) {
+            stall = e;
+        }
+        elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Then("the command is stopped as stalled within {int} seconds")
+    public void the_command_is_stopped_as_stalled_within_seconds(int seconds) {
+        Assertions.assertNotNull(stall, "the command should have been stopped as stalled");
+        Assertions.assertTrue(elapsedMillis >= stallTimeout.toMillis(), "stopped after " + elapsedMillis + " ms");
+        Assertions.assertTrue(elapsedMillis < seconds * 1000L, "stopped after " + elapsedMillis + " ms");
+    }
+
+    @Then("the stack of the stalled command is logged")
+    public void the_stack_of_the_stalled_command_is_logged() {
+        String logged = String.join("\n", output);
+        Assertions.assertTrue(logged.contains("most recent call first"), "no stack in output:\n" + logged);
+    }
+
+    @Then("the command completes without stalling")
+    public void the_command_completes_without_stalling() {
+        Assertions.assertNull(stall, () -> "the command was stopped after " + elapsedMillis + " ms");
+        Assertions.assertEquals(0, exitCode);
+    }
+
+    @Given("a Poetry install that stalls while installing {string} {string} the first time it runs")
+    public void a_poetry_install_that_stalls_while_installing_the_first_time_it_runs(String name, String version) {
+        TEST_DIRECTORY.mkdirs();
+        File marker = new File(TEST_DIRECTORY, "stalled-once").getAbsoluteFile();
+        poetryHelper = new ScriptedPoetryCommandHelper(TEST_DIRECTORY);
+        poetryHelper.installScript = "if [ -f '" + marker + "' ]; then echo 'Installed'; else touch '" + marker
+                + "'; echo '  - Installing " + name + " (" + version + ")'; sleep 60; fi";
+    }
+
+    @When("the Poetry install is executed with a stall timeout of {int} second and retries after stalls")
+    public void the_poetry_install_is_executed_with_a_stall_timeout_of_second_and_retries_after_stalls(int seconds)
+            throws Exception {
+        exitCode = poetryHelper.executeWithStallDetection(Collections.singletonList("install"),
+                Duration.ofSeconds(seconds), true);
+    }
+
+    @Then("the Poetry install completes on its retry")
+    public void the_poetry_install_completes_on_its_retry() {
+        Assertions.assertEquals(0, exitCode);
+        Assertions.assertEquals(2, Collections.frequency(poetryHelper.commands, "install"), poetryHelper.commands
+                .toString());
+    }
+
+    @Then("Poetry cache {string} is cleared of {string} before the retry")
+    public void poetry_cache_is_cleared_of_before_the_retry(String cache, String entry) {
+        int cleared = poetryHelper.commands.indexOf("cache clear " + cache + ":" + entry);
+        Assertions.assertTrue(cleared > 0, poetryHelper.commands.toString());
+        Assertions.assertTrue(poetryHelper.commands.lastIndexOf("install") > cleared,
+                poetryHelper.commands.toString());
+    }
+
+    /**
+     * Executes shell scripts in place of Poetry commands.
+     */
+    private static class ScriptedPoetryCommandHelper extends PoetryCommandHelper {
+        private final File workingDirectory;
+        private final List<String> commands = Collections.synchronizedList(new ArrayList<>());
+        private String installScript;
+
+        private ScriptedPoetryCommandHelper(File workingDirectory) {
+            super(workingDirectory);
+            this.workingDirectory = workingDirectory;
+        }
+
+        @Override
+        protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+            String command = String.join(" ", arguments);
+            commands.add(command);
+            String script;
+            if ("install".equals(command)) {
+                script = installScript;
+            } else if ("cache list".equals(command)) {
+                script = "echo PyPI; echo _default_cache";
+            } else {
+                script = "true";
+            }
+            return new ProcessExecutor(workingDirectory, Arrays.asList("sh", "-c", script), Platform.guess(), null);
+        }
+    }
+}
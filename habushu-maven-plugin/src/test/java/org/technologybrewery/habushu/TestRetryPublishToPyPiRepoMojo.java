@@ -9,6 +9,8 @@ import io.github.itning.retry.strategy.wait.WaitStrategies;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.publish.PublishFailureException;
+import org.technologybrewery.habushu.publish.PublishFailureType;
 
 import java.io.IOException;
 import java.util.List;
@@ -18,13 +20,16 @@ import java.util.concurrent.TimeUnit;
 public class TestRetryPublishToPyPiRepoMojo extends PublishToPyPiRepoMojo {
 
     protected int finalRetryNumber;
+    protected PublishFailureType failureType;
+    protected int attempts;
+    protected boolean publishWithPoetry;
 
     public TestRetryPublishToPyPiRepoMojo(int numberOfRetries, int finalRetryNumber) {
         super();
 
         this.packaging = "habushu";
         this.useDevRepository = false;
-        this.pypiPushRetryMultiplier = 50;
+        this.pypiPushRetryMultiplier = 5;
         this.pypiPushRetryMaxTimeout = 1;
 
         if (numberOfRetries >= 0) {
@@ -37,11 +42,18 @@ public class TestRetryPublishToPyPiRepoMojo extends PublishToPyPiRepoMojo {
 
     @Override
     protected Callable<Boolean> getPyPiPushCallable(PoetryCommandHelper poetryHelper, List<Pair<String, Boolean>> publishToOfficialPypiRepoArgs) {
+        if (publishWithPoetry) {
+            return super.getPyPiPushCallable(poetryHelper, publishToOfficialPypiRepoArgs);
+        }
         return new Callable<Boolean>() {
             int counter = 0;
 
             @Override
             public Boolean call() throws IOException {
+                attempts++;
+                if (failureType != null) {
+                    throw new PublishFailureException("Faux publish to PyPI failed", failureType);
+                }
                 if (counter < finalRetryNumber) {
                     counter++;
                     getLog().warn("Faux publish to PyPI failed (attempt " + counter + ")");
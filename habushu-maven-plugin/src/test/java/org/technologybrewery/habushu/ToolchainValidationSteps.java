@@ -0,0 +1,185 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.Platform;
+import org.technologybrewery.habushu.exec.PoetryCommandHelper;
+import org.technologybrewery.habushu.exec.ProcessExecutor;
+import org.technologybrewery.habushu.exec.PythonVersionHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ToolchainValidationSteps {
+
+    private static final File TEST_DIRECTORY = new File("target/toolchain-validation");
+
+    private final List<String> poetryCommands = Collections.synchronizedList(new ArrayList<>());
+    private final List<Exception> failures = new ArrayList<>();
+    private MavenSession session;
+    private boolean extension;
+    private int modules;
+
+    @After("@toolchainValidation")
+    public void cleanUp() throws Exception {
+        if (extension) {
+            new HabushuLifecycleParticipant().afterSessionEnd(session);
+        }
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("a build for which habushu-maven-plugin is loaded as an extension")
+    public void a_build_for_which_habushu_maven_plugin_is_loaded_as_an_extension() {
+        createSession(true);
+    }
+
+    @Given("a build for which habushu-maven-plugin is not loaded as an extension")
+    public void a_build_for_which_habushu_maven_plugin_is_not_loaded_as_an_extension() {
+        createSession(false);
+    }
+
+    @When("{int} modules validate their toolchain with the installed version of Python")
+    public void modules_validate_their_toolchain_with_the_installed_version_of_python(int count) throws Exception {
+        modules_validate_their_toolchain_with_python_version(count, getInstalledPythonVersion());
+    }
+
+    @When("{int} modules validate their toolchain with Python version {string}")
+    public void modules_validate_their_toolchain_with_python_version(int count, String pythonVersion) {
+        for (int i = 0; i < count; i++) {
+            try {
+                validateModule(pythonVersion);
+            } catch (MojoExecutionException e) {
+                failures.add(e);
+            }
+        }
+    }
+
+    @When("{int} modules validate their toolchain concurrently with the installed version of Python")
+    public void modules_validate_their_toolchain_concurrently_with_the_installed_version_of_python(int count)
+            throws Exception {
+        String installedVersion = getInstalledPythonVersion();
+        List<CompletableFuture<Void>> validations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            validations.add(CompletableFuture.runAsync(() -> {
+                try {
+                    validateModule(installedVersion);
+                } catch (MojoExecutionException e) {
+                    throw new HabushuException(e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(validations.toArray(new CompletableFuture[0])).join();
+    }
+
+    @Then("Poetry's version is checked {int} time(s)")
+    public void poetry_s_version_is_checked_time_s(int count) {
+        Assertions.assertEquals(count, countPoetryCommands("--version"), poetryCommands.toString());
+    }
+
+    @Then("repository credentials are registered {int} time(s)")
+    public void repository_credentials_are_registered_time_s(int count) {
+        Assertions.assertEquals(count, countPoetryCommands("config http-basic.private-pypi"),
+                poetryCommands.toString());
+    }
+
+    @Then("poetry-monorepo-dependency-plugin is installed {int} time(s)")
+    public void poetry_monorepo_dependency_plugin_is_installed_time_s(int count) {
+        Assertions.assertEquals(count, countPoetryCommands("self add poetry-monorepo-dependency-plugin"),
+                poetryCommands.toString());
+    }
+
+    @Then("each module fails with the same error, starting with {string}")
+    public void each_module_fails_with_the_same_error_starting_with(String message) {
+        Assertions.assertEquals(modules, failures.size());
+        for (Exception failure : failures) {
+            Assertions.assertEquals(failures.get(0).getMessage(), failure.getMessage());
+        }
+        Assertions.assertTrue(failures.get(0).getMessage().startsWith(message), failures.get(0).getMessage());
+    }
+
+    @SuppressWarnings("deprecation")
+    private void createSession(boolean extension) {
+        this.extension = extension;
+        session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(),
+                new ArrayList<>());
+        if (extension) {
+            new HabushuLifecycleParticipant().afterProjectsRead(session);
+        }
+    }
+
+    /**
+     * Performs the same validation as {@link ValidatePyenvAndPoetryMojo} for a new
+     * module of the build.
+     */
+    private void validateModule(String pythonVersion) throws MojoExecutionException {
+        File moduleDirectory;
+        synchronized (this) {
+            moduleDirectory = new File(TEST_DIRECTORY, "module-" + ++modules);
+        }
+        moduleDirectory.mkdirs();
+        PyenvAndPoetrySetup setup = new PyenvAndPoetrySetup(pythonVersion, false, null, moduleDirectory, false,
+                new SystemStreamLog()) {
+            @Override
+            protected PoetryCommandHelper createPoetryCommandHelper() {
+                return new RecordingPoetryCommandHelper(moduleDirectory, poetryCommands);
+            }
+
+            @Override
+            protected File getHabushuStateDirectory(PoetryCommandHelper poetryHelper) {
+                // not shared between modules, so that only validations shared within the build are observed:
+                return new File(moduleDirectory, "state");
+            }
+        };
+        setup.validateOncePerBuild(ToolchainValidations.get(session));
+        setup.execute();
+        setup.registerRepositoryToSupportAuthenticatedDependencyResolution("private-pypi", "habushu", "secret");
+        setup.installPoetryMonorepoDependencyPlugin();
+    }
+
+    private static String getInstalledPythonVersion() throws MojoExecutionException {
+        return new PythonVersionHelper(TEST_DIRECTORY.getParentFile(), "3").getCurrentPythonVersion();
+    }
+
+    private long countPoetryCommands(String prefix) {
+        synchronized (poetryCommands) {
+            return poetryCommands.stream().filter(command -> command.startsWith(prefix)).count();
+        }
+    }
+
+    /**
+     * Records each Poetry command, and executes a script that reports a supported
+     * version of Poetry (after a delay, so that concurrent validations overlap) in
+     * its place.
+     */
+    private static class RecordingPoetryCommandHelper extends PoetryCommandHelper {
+        private final File workingDirectory;
+        private final List<String> commands;
+
+        private RecordingPoetryCommandHelper(File workingDirectory, List<String> commands) {
+            super(workingDirectory);
+            this.workingDirectory = workingDirectory;
+            this.commands = commands;
+        }
+
+        @Override
+        protected ProcessExecutor createPoetryExecutor(List<String> arguments) {
+            commands.add(String.join(" ", arguments));
+            return new ProcessExecutor(workingDirectory,
+                    Arrays.asList("sh", "-c", "sleep 0.2; echo 'Poetry (version 1.8.3)'"), Platform.guess(), null);
+        }
+    }
+}
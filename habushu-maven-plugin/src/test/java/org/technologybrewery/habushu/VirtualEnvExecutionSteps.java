@@ -0,0 +1,120 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.exec.VirtualEnvCommandHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class VirtualEnvExecutionSteps {
+
+    private static final File PROJECT_DIRECTORY = new File("target/test-virtual-env-execution");
+    private static final File VIRTUAL_ENVIRONMENT = new File(PROJECT_DIRECTORY, ".venv");
+    private static final File TOOL_OUTPUT = new File(PROJECT_DIRECTORY, "tool-output.txt");
+
+    @After("@virtualEnvExecution")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+    }
+
+    @Given("a Poetry project with an in-project virtual environment containing {string}")
+    public void a_poetry_project_with_an_in_project_virtual_environment_containing(String tool) throws IOException {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+        writeExecutable("python", "#!/bin/sh\nexit 0\n");
+        writeExecutable(tool, "#!/bin/sh\n"
+                + "echo \"EXECUTABLE=$0\" > tool-output.txt\n"
+                + "echo \"ARGS=$*\" >> tool-output.txt\n"
+                + "echo \"VIRTUAL_ENV=$VIRTUAL_ENV\" >> tool-output.txt\n"
+                + "echo \"PATH=$PATH\" >> tool-output.txt\n"
+                + "echo \"PYTHONHOME=${PYTHONHOME-<unset>}\" >> tool-output.txt\n");
+    }
+
+    @Given("a Poetry project without an in-project virtual environment")
+    public void a_poetry_project_without_an_in_project_virtual_environment() throws IOException {
+        FileUtils.deleteDirectory(PROJECT_DIRECTORY);
+        PROJECT_DIRECTORY.mkdirs();
+    }
+
+    @When("{string} is executed in the virtual environment with PYTHONHOME set")
+    public void is_executed_in_the_virtual_environment_with_pythonhome_set(String command) {
+        VirtualEnvCommandHelper helper = VirtualEnvCommandHelper.find(PROJECT_DIRECTORY);
+        Assertions.assertNotNull(helper, "The in-project virtual environment should be found");
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("PYTHONHOME", "/opt/other-python");
+        helper.executeAndLogOutput(Arrays.asList(command.split(" ")), environment);
+    }
+
+    @When("the run-command-in-virtual-env goal is executed with {string}")
+    public void the_run_command_in_virtual_env_goal_is_executed_with(String command) throws Exception {
+        RunCommandInVirtualEnvMojo mojo = new RunCommandInVirtualEnvMojo();
+        mojo.project = new MavenProject(new Model());
+        mojo.project.setFile(new File(PROJECT_DIRECTORY, "pom.xml"));
+        mojo.runCommandArgs = command;
+        mojo.doExecute();
+    }
+
+    @Then("{string} is executed from the virtual environment with the arguments {string}")
+    public void is_executed_from_the_virtual_environment_with_the_arguments(String tool, String arguments)
+            throws IOException {
+        Map<String, String> output = readToolOutput();
+        Assertions.assertEquals(new File(VIRTUAL_ENVIRONMENT, "bin/" + tool).getAbsolutePath(),
+                output.get("EXECUTABLE"));
+        Assertions.assertEquals(arguments, output.get("ARGS"));
+    }
+
+    @Then("the tool's environment has VIRTUAL_ENV set to the virtual environment")
+    public void the_tool_s_environment_has_virtual_env_set_to_the_virtual_environment() throws IOException {
+        Assertions.assertEquals(VIRTUAL_ENVIRONMENT.getAbsolutePath(), readToolOutput().get("VIRTUAL_ENV"));
+    }
+
+    @Then("the tool's PATH starts with the virtual environment's bin directory")
+    public void the_tool_s_path_starts_with_the_virtual_environment_s_bin_directory() throws IOException {
+        String path = readToolOutput().get("PATH");
+        Assertions.assertTrue(path.startsWith(new File(VIRTUAL_ENVIRONMENT, "bin").getAbsolutePath()
+                + File.pathSeparator), path);
+    }
+
+    @Then("the tool's environment does not have PYTHONHOME set")
+    public void the_tool_s_environment_does_not_have_pythonhome_set() throws IOException {
+        Assertions.assertEquals("<unset>", readToolOutput().get("PYTHONHOME"));
+    }
+
+    @Then("the project's tools are executed via poetry run")
+    public void the_project_s_tools_are_executed_via_poetry_run() {
+        Assertions.assertNull(VirtualEnvCommandHelper.find(PROJECT_DIRECTORY));
+        RunCommandInVirtualEnvMojo mojo = new RunCommandInVirtualEnvMojo();
+        mojo.project = new MavenProject(new Model());
+        mojo.project.setFile(new File(PROJECT_DIRECTORY, "pom.xml"));
+        Assertions.assertNull(mojo.getVirtualEnvCommandHelper(), "poetry run should be used");
+    }
+
+    private static void writeExecutable(String name, String contents) throws IOException {
+        File executable = new File(VIRTUAL_ENVIRONMENT, "bin/" + name);
+        FileUtils.writeStringToFile(executable, contents, StandardCharsets.UTF_8);
+        Assertions.assertTrue(executable.setExecutable(true));
+    }
+
+    private static Map<String, String> readToolOutput() throws IOException {
+        Map<String, String> output = new LinkedHashMap<>();
+        List<String> lines = TOOL_OUTPUT.exists()
+                ? FileUtils.readLines(TOOL_OUTPUT, StandardCharsets.UTF_8) : Collections.emptyList();
+        for (String line : lines) {
+            String[] keyAndValue = line.split("=", 2);
+            output.put(keyAndValue[0], keyAndValue[1]);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,146 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.cache.WheelCacheAccessLog;
+import org.technologybrewery.habushu.cache.WheelCacheEvictionPolicy;
+import org.technologybrewery.habushu.cache.WheelCacheEvictor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class WheelCacheEvictionSteps {
+
+    private static final String WHEEL_CACHE_DIRECTORY = "target/test-wheel-cache";
+
+    @After
+    public void cleanUp() {
+        FileUtils.deleteQuietly(new File(WHEEL_CACHE_DIRECTORY));
+    }
+
+    @Given("a wheel cache containing {int} MB wheels of versions {string} of {string}")
+    public void a_wheel_cache_containing_mb_wheels_of_versions_of(int sizeInMegabytes, String versions,
+                                                                 String artifactId) throws IOException {
+        File artifactCacheDirectory = new File(WHEEL_CACHE_DIRECTORY, artifactId);
+        artifactCacheDirectory.mkdirs();
+        for (String version : versions.split(",")) {
+            File wheelFile = new File(artifactCacheDirectory, toWheelFileName(artifactId, version));
+            // random content is effectively incompressible, so the wheel is at least the requested size:
+            byte[] content = new byte[sizeInMegabytes * 1024 * 1024];
+            new Random(version.hashCode()).nextBytes(content);
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(wheelFile))) {
+                zip.putNextEntry(new ZipEntry("habushu_sample/data.bin"));
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @Given("a wheel cache containing {int} empty wheels of {string}")
+    public void a_wheel_cache_containing_empty_wheels_of(int wheels, String artifactId) throws IOException {
+        List<String> versions = new ArrayList<>();
+        for (int i = 0; i < wheels; i++) {
+            versions.add("1.0." + i);
+        }
+        a_wheel_cache_containing_mb_wheels_of_versions_of(0, String.join(",", versions), artifactId);
+    }
+
+    @Given("version {string} of {string} was last accessed {int} days ago")
+    public void version_of_was_last_accessed_days_ago(String version, String artifactId, int days) {
+        File wheelFile = new File(new File(WHEEL_CACHE_DIRECTORY, artifactId), toWheelFileName(artifactId, version));
+        wheelFile.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+    }
+
+    @Given("version {string} of {string} is retrieved from the wheel cache")
+    public void version_of_is_retrieved_from_the_wheel_cache(String version, String artifactId) {
+        new WheelCacheAccessLog(new File(WHEEL_CACHE_DIRECTORY)).recordAccess(artifactId,
+                toWheelFileName(artifactId, version));
+    }
+
+    @When("the wheel cache is evicted with a maximum of {int} versions per artifact")
+    public void the_wheel_cache_is_evicted_with_a_maximum_of_versions_per_artifact(int maxVersions) {
+        evict(new WheelCacheEvictionPolicy(0, maxVersions, 0));
+    }
+
+    @When("the wheel cache is evicted with a maximum age of {int} days")
+    public void the_wheel_cache_is_evicted_with_a_maximum_age_of_days(int maxAgeInDays) {
+        evict(new WheelCacheEvictionPolicy(0, 0, maxAgeInDays));
+    }
+
+    @When("the wheel cache is evicted with a maximum size of {int} MB")
+    public void the_wheel_cache_is_evicted_with_a_maximum_size_of_mb(int maxSizeInMegabytes) {
+        // account for zip overhead on top of each wheel's content:
+        evict(new WheelCacheEvictionPolicy(maxSizeInMegabytes + 1, 0, 0));
+    }
+
+    @When("the access of each wheel of {string} is recorded while the wheel cache is evicted concurrently")
+    public void the_access_of_each_wheel_of_is_recorded_while_the_wheel_cache_is_evicted_concurrently(
+            String artifactId) {
+        AtomicBoolean recording = new AtomicBoolean(true);
+        List<CompletableFuture<Void>> evictions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            evictions.add(CompletableFuture.runAsync(() -> {
+                while (recording.get()) {
+                    // retains every wheel, so only the access log is compacted:
+                    evict(new WheelCacheEvictionPolicy(0, Integer.MAX_VALUE, 0));
+                }
+            }));
+        }
+        WheelCacheAccessLog accessLog = new WheelCacheAccessLog(new File(WHEEL_CACHE_DIRECTORY));
+        try {
+            for (String wheel : new File(WHEEL_CACHE_DIRECTORY, artifactId).list((directory, name) -> name.endsWith(".whl"))) {
+                accessLog.recordAccess(artifactId, wheel);
+            }
+        } finally {
+            recording.set(false);
+        }
+        CompletableFuture.allOf(evictions.toArray(new CompletableFuture[0])).join();
+    }
+
+    @Then("the access log retains the access of each wheel of {string}")
+    public void the_access_log_retains_the_access_of_each_wheel_of(String artifactId) {
+        Set<String> expectedKeys = new TreeSet<>();
+        for (String wheel : new File(WHEEL_CACHE_DIRECTORY, artifactId).list((directory, name) -> name.endsWith(".whl"))) {
+            expectedKeys.add(artifactId + "/" + wheel);
+        }
+        Set<String> recordedKeys = new WheelCacheAccessLog(new File(WHEEL_CACHE_DIRECTORY)).readLastAccessTimes()
+                .keySet();
+        Assertions.assertEquals(expectedKeys, new TreeSet<>(recordedKeys), "Accesses were dropped from the access log!");
+    }
+
+    @Then("only versions {string} of {string} remain in the wheel cache")
+    public void only_versions_of_remain_in_the_wheel_cache(String versions, String artifactId) {
+        Set<String> expectedWheels = new TreeSet<>();
+        for (String version : versions.split(",")) {
+            expectedWheels.add(toWheelFileName(artifactId, version));
+        }
+        String[] cachedWheels = new File(WHEEL_CACHE_DIRECTORY, artifactId).list((directory, name) -> name.endsWith(".whl"));
+        Assertions.assertNotNull(cachedWheels, "Expected wheels to remain in the wheel cache, but none did!");
+        Assertions.assertEquals(expectedWheels, new TreeSet<>(Arrays.asList(cachedWheels)),
+                "Unexpected wheel(s) remain in the wheel cache!");
+    }
+
+    private static void evict(WheelCacheEvictionPolicy policy) {
+        new WheelCacheEvictor(new File(WHEEL_CACHE_DIRECTORY), policy).evict(null, Set.of());
+    }
+
+    private static String toWheelFileName(String artifactId, String version) {
+        return String.format("%s-%s-py3-none-any.whl", artifactId.replace('-', '_'), version);
+    }
+}
@@ -0,0 +1,118 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.cache.WheelCacheLock;
+import org.technologybrewery.habushu.cache.WheelCacheManifest;
+import org.technologybrewery.habushu.util.HabushuUtil;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WheelCacheLockSteps {
+
+    private static final String WHEEL_CACHE_DIRECTORY = "target/test-wheel-cache";
+
+    private ExecutorService otherBuild;
+    private volatile long otherBuildReleaseTime;
+    private long lockAcquiredTime;
+    private HabushuException lockException;
+
+    @After
+    public void cleanUp() throws InterruptedException {
+        if (otherBuild != null) {
+            otherBuild.shutdown();
+            otherBuild.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Given("another build holds the wheel cache lock of {string} for {int} second(s)")
+    public void another_build_holds_the_wheel_cache_lock_of_for_seconds(String artifactId, int seconds)
+            throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        otherBuild = Executors.newSingleThreadExecutor();
+        otherBuild.submit(() -> {
+            try (WheelCacheLock lock = WheelCacheLock.acquire(new File(WHEEL_CACHE_DIRECTORY), artifactId,
+                    Duration.ofSeconds(10))) {
+                locked.countDown();
+                Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+                otherBuildReleaseTime = System.currentTimeMillis();
+            }
+            return null;
+        });
+        Assertions.assertTrue(locked.await(10, TimeUnit.SECONDS), "Other build could not acquire the lock!");
+    }
+
+    @When("the wheel cache lock of {string} is requested with a timeout of {int} second(s)")
+    public void the_wheel_cache_lock_of_is_requested_with_a_timeout_of_seconds(String artifactId, int seconds) {
+        try (WheelCacheLock lock = WheelCacheLock.acquire(new File(WHEEL_CACHE_DIRECTORY), artifactId,
+                Duration.ofSeconds(seconds))) {
+            lockAcquiredTime = System.currentTimeMillis();
+        } catch (HabushuException e) {
+            lockException = e;
+        }
+    }
+
+    @When("{int} builds concurrently cache version {string} of {string}")
+    public void builds_concurrently_cache_version_of(int builds, String version, String artifactId) throws Exception {
+        File artifactCacheDirectory = new File(WHEEL_CACHE_DIRECTORY, artifactId);
+        File sourceDirectory = new File("target/test-wheel-source");
+        List<File> sourceWheels = new ArrayList<>();
+        for (int i = 0; i < builds; i++) {
+            File sourceWheel = new File(new File(sourceDirectory, String.valueOf(i)),
+                    RetrieveWheelsSteps.toWheelFileName(artifactId, version));
+            sourceWheel.getParentFile().mkdirs();
+            RetrieveWheelsSteps.writeSampleWheel(sourceWheel, artifactId, version);
+            sourceWheels.add(sourceWheel);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(builds);
+        try {
+            List<Future<?>> cachings = new ArrayList<>();
+            for (File sourceWheel : sourceWheels) {
+                cachings.add(executor.submit(() -> {
+                    try (WheelCacheLock lock = WheelCacheLock.acquire(new File(WHEEL_CACHE_DIRECTORY), artifactId,
+                            Duration.ofSeconds(10))) {
+                        WheelCacheManifest manifest = WheelCacheManifest.load(artifactCacheDirectory);
+                        File cachedWheel = new File(artifactCacheDirectory, sourceWheel.getName());
+                        HabushuUtil.copyFileAtomically(sourceWheel, cachedWheel);
+                        manifest.index(cachedWheel);
+                        manifest.save();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> caching : cachings) {
+                caching.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteQuietly(sourceDirectory);
+        }
+    }
+
+    @Then("the wheel cache lock is acquired after the other build releases it")
+    public void the_wheel_cache_lock_is_acquired_after_the_other_build_releases_it() {
+        Assertions.assertNull(lockException, "Expected the lock to be acquired!");
+        Assertions.assertTrue(lockAcquiredTime >= otherBuildReleaseTime && otherBuildReleaseTime > 0,
+                "Expected the lock to only be acquired once the other build released it!");
+    }
+
+    @Then("the wheel cache lock request times out")
+    public void the_wheel_cache_lock_request_times_out() {
+        Assertions.assertNotNull(lockException, "Expected the lock request to time out!");
+        Assertions.assertTrue(lockException.getMessage().contains("Timed out"),
+                "Unexpected lock failure: " + lockException.getMessage());
+    }
+}
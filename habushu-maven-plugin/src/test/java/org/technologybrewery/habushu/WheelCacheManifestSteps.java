@@ -0,0 +1,68 @@
+package org.technologybrewery.habushu;
+
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.junit.jupiter.api.Assertions;
+import org.technologybrewery.habushu.cache.WheelCacheManifest;
+import org.technologybrewery.habushu.util.HabushuUtil;
+
+import java.io.File;
+import java.io.IOException;
+
+public class WheelCacheManifestSteps {
+
+    private static final String WHEEL_CACHE_DIRECTORY = "target/test-wheel-cache";
+    private static final String TARGET_DIRECTORY = "target/test-wheel-target";
+
+    @Given("a wheel cache containing a wheel named {string} with version {string} of {string}")
+    public void a_wheel_cache_containing_a_wheel_named_with_version_of(String fileName, String version,
+                                                                       String artifactId) throws IOException {
+        File artifactCacheDirectory = new File(WHEEL_CACHE_DIRECTORY, artifactId);
+        artifactCacheDirectory.mkdirs();
+        RetrieveWheelsSteps.writeSampleWheel(new File(artifactCacheDirectory, fileName), artifactId, version);
+    }
+
+    @When("the wheel cache manifest of {string} is saved")
+    public void the_wheel_cache_manifest_of_is_saved(String artifactId) {
+        WheelCacheManifest.load(getArtifactCacheDirectory(artifactId)).save();
+    }
+
+    @Then("the wheel cache manifest of {string} indexes version {string} with python tag {string}")
+    public void the_wheel_cache_manifest_of_indexes_version_with_python_tag(String artifactId, String version,
+                                                                             String pythonTag) {
+        WheelCacheManifest manifest = loadSavedManifest(artifactId);
+        boolean indexed = manifest.getEntries().stream()
+                .anyMatch(entry -> version.equals(entry.getVersion()) && pythonTag.equals(entry.getPythonTag()));
+        Assertions.assertTrue(indexed, String.format("Expected version %s with python tag %s to be indexed!",
+                version, pythonTag));
+    }
+
+    @Then("the wheel cache manifest of {string} records the size and SHA-256 digest of each wheel")
+    public void the_wheel_cache_manifest_of_records_the_size_and_sha_digest_of_each_wheel(String artifactId) {
+        WheelCacheManifest manifest = loadSavedManifest(artifactId);
+        Assertions.assertFalse(manifest.getEntries().isEmpty(), "Expected the manifest to index cached wheels!");
+        for (WheelCacheManifest.Entry entry : manifest.getEntries()) {
+            File wheelFile = manifest.getWheelFile(entry);
+            Assertions.assertEquals(wheelFile.length(), entry.getSize(), "Unexpected size of " + entry.getFileName());
+            Assertions.assertEquals(HabushuUtil.sha256Hex(wheelFile), entry.getSha256(),
+                    "Unexpected SHA-256 digest of " + entry.getFileName());
+        }
+    }
+
+    @Then("the wheel {string} is retrieved")
+    public void the_wheel_is_retrieved(String fileName) {
+        Assertions.assertTrue(new File(TARGET_DIRECTORY, fileName).isFile(),
+                String.format("Expected %s to be retrieved, but it wasn't!", fileName));
+    }
+
+    private static WheelCacheManifest loadSavedManifest(String artifactId) {
+        WheelCacheManifest manifest = WheelCacheManifest.load(getArtifactCacheDirectory(artifactId));
+        Assertions.assertTrue(manifest.isPersisted(), "Expected a saved wheel cache manifest!");
+        return manifest;
+    }
+
+    private static File getArtifactCacheDirectory(String artifactId) {
+        return new File(WHEEL_CACHE_DIRECTORY, artifactId);
+    }
+}
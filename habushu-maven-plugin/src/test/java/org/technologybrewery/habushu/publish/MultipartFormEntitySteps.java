@@ -0,0 +1,50 @@
+package org.technologybrewery.habushu.publish;
+
+import io.cucumber.java.After;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class MultipartFormEntitySteps {
+
+    private static final File TEST_DIRECTORY = new File("target/test-multipart-form-entity");
+
+    private MultipartFormEntity entity;
+
+    @After("@multipartFormEntity")
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(TEST_DIRECTORY);
+    }
+
+    @Given("an upload request with the field {string} of {string} and the file {string} containing {string}")
+    public void an_upload_request_with_the_field_of_and_the_file_containing(String name, String value,
+                                                                          String fileName, String contents)
+            throws IOException {
+        File file = new File(TEST_DIRECTORY, fileName);
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        entity = new MultipartFormEntity().addField(name, value).addFile("content", file);
+    }
+
+    @Then("the content read from the upload request is the content written by it, of the reported length")
+    public void the_content_read_from_the_upload_request_is_the_content_written_by_it_of_the_reported_length()
+            throws IOException {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        entity.writeTo(written);
+        for (int i = 0; i < 2; i++) {
+            byte[] read;
+            try (InputStream content = entity.getContent()) {
+                read = IOUtils.toByteArray(content);
+            }
+            Assertions.assertArrayEquals(written.toByteArray(), read, "Content should be repeatable");
+        }
+        Assertions.assertEquals(entity.getContentLength(), written.size());
+    }
+}
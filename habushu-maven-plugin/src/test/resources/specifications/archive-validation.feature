@@ -0,0 +1,56 @@
+@archiveValidation
+Feature: Validate distribution archives before publishing them
+
+  Scenario: Well-formed archives pass validation
+    Given a well-formed wheel and sdist of version "1.2.0" of "sample-package"
+    When the archives are validated as version "1.2.0" of "sample-package"
+    Then no archive problems are reported
+
+  Scenario: A wheel whose contents do not match its RECORD fails validation
+    Given a well-formed wheel and sdist of version "1.2.0" of "sample-package"
+    And a file within the wheel is modified without updating its RECORD
+    When the archives are validated as version "1.2.0" of "sample-package"
+    Then an archive problem is reported containing "sample_package/__init__.py does not match its sha256 hash"
+
+  Scenario: Archives of a different version than the one being published fail validation
+    Given a well-formed wheel and sdist of version "1.2.0" of "sample-package"
+    When the archives are validated as version "1.3.0" of "sample-package"
+    Then an archive problem is reported containing "PKG-INFO Version 1.2.0 does not match the version being published (1.3.0)"
+    And an archive problem is reported containing "METADATA Version 1.2.0 does not match the version being published (1.3.0)"
+
+  Scenario: An sdist whose PKG-INFO is missing required metadata fails validation
+    Given an sdist of version "1.2.0" of "sample-package" whose PKG-INFO has no Version
+    When the archives are validated as version "1.2.0" of "sample-package"
+    Then an archive problem is reported containing "PKG-INFO is missing the required Version field"
+
+  Scenario: A reStructuredText long description that will not render fails validation
+    Given a well-formed wheel and sdist of version "1.2.0" of "sample-package" with the reStructuredText description:
+      """
+      Sample Package
+      =====
+
+      Run ``sample-package to start.
+      """
+    When the archives are validated as version "1.2.0" of "sample-package"
+    Then an archive problem is reported containing "title underline too short"
+    And an archive problem is reported containing "inline literal start-string without end-string"
+
+  Scenario: Publishing fails before uploading when the archives do not match pyproject.toml
+    Given a well-formed wheel and sdist of version "1.2.0" of "sample-package"
+    And a pyproject.toml declaring version "1.2.0" of "other-package"
+    When the publish mojo validates the built archives
+    Then publishing fails with an archive problem containing "Name 'sample-package' does not match the pyproject.toml name 'other-package'"
+
+  Scenario: Publishing that is deferred until the end of the build validates the archives during the deploy phase
+    Given a well-formed wheel and sdist of version "1.2.0" of "sample-package"
+    And a pyproject.toml declaring version "1.2.0" of "sample-package"
+    When the publish mojo defers publishing the built archives until the end of the build
+    Then 1 publication of the built archives is deferred
+
+  Scenario: Invalid archives fail the deploy phase of a module whose publishing is deferred
+    Given a well-formed wheel and sdist of version "1.2.0" of "sample-package"
+    And a pyproject.toml declaring version "1.2.0" of "sample-package"
+    And a file within the wheel is modified without updating its RECORD
+    When the publish mojo defers publishing the built archives until the end of the build
+    Then publishing fails with an archive problem containing "sample_package/__init__.py does not match its sha256 hash"
+    And 0 publications of the built archives are deferred
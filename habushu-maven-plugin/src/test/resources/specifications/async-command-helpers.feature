@@ -0,0 +1,13 @@
+@asyncCommandHelpers
+Feature: Execute independent commands concurrently through asynchronous command helpers
+
+  Scenario: Independent Poetry commands executed asynchronously overlap
+    Given Poetry commands that each take 600 milliseconds
+    When 3 Poetry commands are executed asynchronously by the "install-dependencies" mojo of module "habushu-async-a"
+    Then all 3 commands complete in less than 1500 milliseconds
+    And each command launched is attributed to module "habushu-async-a"
+
+  Scenario: Failures of asynchronously executed commands complete their futures exceptionally
+    Given Poetry commands that fail
+    When a Poetry command is executed asynchronously
+    Then its future completes exceptionally with a HabushuException
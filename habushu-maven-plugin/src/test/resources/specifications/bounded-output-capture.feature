@@ -0,0 +1,28 @@
+@boundedOutputCapture
+Feature: Capture process output with bounded memory use
+
+  Scenario: Output beyond the memory threshold is spilled to disk and fully readable
+    Given an output capture that holds 1024 bytes in memory and summarizes 64 bytes
+    When 500 numbered lines are captured
+    Then the captured output has been spilled to disk
+    And the full captured text contains all 500 numbered lines
+    And the summary contains the first and last numbered lines with the omitted byte count
+
+  Scenario: Small output is kept in memory and summarized in full
+    Given an output capture that holds 1024 bytes in memory and summarizes 64 bytes
+    When 3 numbered lines are captured
+    Then the captured output has not been spilled to disk
+    And the summary contains all 3 numbered lines
+
+  Scenario: Characters split by the start and end of a summary are omitted from it
+    Given an output capture that holds 1024 bytes in memory and summarizes 7 bytes
+    When the text "é" is captured 100 times
+    Then the summary starts and ends with "ééé" without replacement characters
+
+  Scenario: The result of a command with large output is returned in full
+    When a command writing 200000 lines to stdout is executed for its result
+    Then the command's result contains 200000 lines
+
+  Scenario: Errors of a failing command with large output only include its start and end
+    When a command writing 200000 lines to stdout and then failing is executed for its result
+    Then the command fails with an error that omits the middle of its output
@@ -0,0 +1,17 @@
+@buildTrace
+Feature: Record a timeline of the build in the Trace Event Format
+
+  Scenario: Mojos, processes, and waits of a traced build are written to the trace at the end of the build
+    Given a build traced to "target/build-trace/trace.json"
+    When the "install-dependencies" mojo of module "habushu-trace-a" launches "sleep 0.1" and waits for a wheel cache lock
+    And the build ends after being traced
+    Then the trace contains a "mojo" span named "install-dependencies" for module "habushu-trace-a"
+    And the trace contains a "process" span named "sh -c" for module "habushu-trace-a" within the mojo span
+    And the trace contains a "wait" span named "wheel cache lock habushu-trace-a" for module "habushu-trace-a"
+    And the trace names the thread of each span
+
+  Scenario: Builds are not traced unless tracing is enabled
+    Given a build that is not traced
+    When the "install-dependencies" mojo of module "habushu-trace-a" launches "sleep 0.1" and waits for a wheel cache lock
+    And the build ends after being traced
+    Then no trace is written
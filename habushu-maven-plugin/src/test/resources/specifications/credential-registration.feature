@@ -0,0 +1,43 @@
+@credentialRegistration
+Feature: Skip registering repository credentials with Poetry when they are unchanged
+
+  Scenario: Unchanged credentials are registered once across builds
+    When 3 builds register the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    Then the credentials of "private-pypi" are registered with Poetry 1 time
+
+  Scenario: Changed passwords are registered again
+    When 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    And 1 build registers the credentials "habushu" and "n3w-password" for repository "private-pypi"
+    Then the credentials of "private-pypi" are registered with Poetry 2 times
+
+  Scenario: Changed usernames are registered again
+    When 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    And 1 build registers the credentials "other-user" and "s3cr3t-password" for repository "private-pypi"
+    Then the credentials of "private-pypi" are registered with Poetry 2 times
+
+  Scenario: Credentials of each repository are registered separately
+    When 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    And 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "dev-pypi"
+    Then the credentials of "private-pypi" are registered with Poetry 1 time
+    And the credentials of "dev-pypi" are registered with Poetry 1 time
+
+  Scenario: Registered credentials are recorded without their password
+    When 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    Then the recorded state does not contain "s3cr3t-password" or its digest
+
+  Scenario: Credentials removed from Poetry's configuration are registered again
+    When 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    And Poetry's configuration is removed
+    And 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    Then the credentials of "private-pypi" are registered with Poetry 2 times
+
+  Scenario: Credentials that fail to register are registered again by the next build
+    Given registering credentials with Poetry fails
+    When 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    And registering credentials with Poetry succeeds
+    And 1 build registers the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    Then the credentials of "private-pypi" are registered with Poetry 2 times
+
+  Scenario: Concurrent builds register unchanged credentials once
+    When 4 concurrent builds register the credentials "habushu" and "s3cr3t-password" for repository "private-pypi"
+    Then the credentials of "private-pypi" are registered with Poetry 1 time
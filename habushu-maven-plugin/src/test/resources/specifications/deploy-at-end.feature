@@ -0,0 +1,23 @@
+@deployAtEnd
+Feature: Defer publishing of all modules until the end of the reactor build
+
+  Scenario: Deferred modules are published concurrently at the end of a successful build
+    Given a reactor build with deploy at end enabled
+    And 4 modules register deferred publications with at most 2 concurrent publications
+    When the build ends successfully
+    Then all 4 modules are published
+    And no more than 2 modules are published concurrently
+
+  Scenario: Nothing is published when any module of the build fails
+    Given a reactor build with deploy at end enabled
+    And 3 modules register deferred publications with at most 2 concurrent publications
+    When the build ends with a failed module
+    Then no modules are published
+
+  Scenario: Failed deferred publications fail the build without preventing other publications
+    Given a reactor build with deploy at end enabled
+    And 3 modules register deferred publications with at most 2 concurrent publications
+    And the publication of module 2 fails
+    When the build ends successfully
+    Then the build fails due to module 2
+    And 2 modules are published
@@ -0,0 +1,14 @@
+@flightRecorderEvents
+Feature: Record Habushu operations as JDK Flight Recorder events
+
+  Scenario: Processes launched by a mojo are recorded with their command, exit code, output size, and module
+    Given a Flight Recorder recording of Habushu events
+    When module "habushu-jfr" launches a command that writes 512 bytes and exits with code 2
+    Then the recording contains a process execution of "sh -c" with exit code 2 and 512 bytes of output
+    And every recorded Habushu event is attributed to module "habushu-jfr"
+
+  Scenario: TOML files parsed and rewritten by a mojo are recorded with their size
+    Given a Flight Recorder recording of Habushu events
+    When module "habushu-jfr" parses and rewrites a pyproject.toml
+    Then the recording contains a TOML "parse" and a TOML "rewrite" of the pyproject.toml with its size
+    And every recorded Habushu event is attributed to module "habushu-jfr"
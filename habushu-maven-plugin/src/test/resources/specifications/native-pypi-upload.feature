@@ -0,0 +1,42 @@
+@nativePypiUpload
+Feature: Publish archives to PyPI with the native uploader
+
+  Scenario: Archives that are already published are skipped and others are uploaded
+    Given a dist directory containing the archives of version "1.2.0" of "sample-package"
+    And the sdist archive of version "1.2.0" of "sample-package" is already published
+    When the archives are published with the native uploader
+    Then the wheel archive of "sample-package" is uploaded 1 time
+    And the sdist archive of "sample-package" is uploaded 0 times
+    And every upload is authenticated and includes the archive digest
+
+  Scenario: Uploads include every field of the archive's core metadata
+    Given a dist directory containing the archives of version "1.2.0" of "sample-package"
+    When the archives are published with the native uploader
+    Then the upload of each archive includes its Metadata-Version and every field of its core metadata
+
+  Scenario: Retrying a failed upload only resends the archives that failed
+    Given a dist directory containing the archives of version "1.2.0" of "sample-package"
+    And the repository responds with HTTP 503 to the first upload of the wheel archive
+    When the archives are published with the native uploader
+    Then the wheel archive of "sample-package" is uploaded 2 times
+    And the sdist archive of "sample-package" is uploaded 1 time
+
+  Scenario: Uploads rejected due to invalid credentials are not retried
+    Given a dist directory containing the archives of version "1.2.0" of "sample-package"
+    And the repository responds with HTTP 403 to every upload
+    And publishing is configured to retry 5 times within 900 seconds
+    When publishing the archives with the native uploader fails
+    Then the wheel archive of "sample-package" is uploaded 1 time
+    And the failure is reported as a non-retriable "AUTHENTICATION" error
+
+  Scenario: Retries of failed uploads stop at the retry deadline
+    Given a dist directory containing the archives of version "1.2.0" of "sample-package"
+    And the repository responds with HTTP 503 to every upload
+    And publishing is configured to retry -1 times within 1 second
+    When publishing the archives with the native uploader fails
+    Then the wheel archive of "sample-package" is uploaded more than once within 5 seconds
+
+  @multipartFormEntity
+  Scenario: The content of an upload request can be read as well as written
+    Given an upload request with the field "name" of "sample-package" and the file "sample_package-1.2.0.tar.gz" containing "sdist of sample-package"
+    Then the content read from the upload request is the content written by it, of the reported length
@@ -0,0 +1,31 @@
+@openMetrics
+Feature: Export build metrics in the OpenMetrics text format for CI scraping
+
+  Scenario: Metrics of a build are written in the OpenMetrics format to a file
+    Given a build exporting metrics to "target/open-metrics/metrics.txt"
+    When the "install-dependencies@default" mojo of module "habushu-metrics-a" launches "exit 0", "exit 3", and looks up a wheel
+    And the build ends and its metrics are exported
+    Then the metrics contain "habushu_mojo_executions_total{module=\"habushu-metrics-a\",goal=\"install-dependencies\"} 1"
+    And the metrics contain "habushu_process_launches_total{module=\"habushu-metrics-a\",goal=\"install-dependencies\",command=\"sh -c\"} 2"
+    And the metrics contain "habushu_process_failures_total{module=\"habushu-metrics-a\",goal=\"install-dependencies\",command=\"sh -c\"} 1"
+    And the metrics contain "habushu_cache_lookups_total{module=\"habushu-metrics-a\",goal=\"install-dependencies\",cache=\"wheel\",result=\"miss\"} 1"
+    And the metrics contain "# TYPE habushu_process_launches counter"
+    And the metrics contain "# UNIT habushu_process_duration_seconds seconds"
+    And the metrics end with "# EOF"
+
+  Scenario: Metrics of a build are written in the Prometheus text format to a textfile collector directory
+    Given a build exporting metrics to the textfile collector directory "target/open-metrics/collector"
+    When the "install-dependencies@default" mojo of module "habushu-metrics-a" launches "exit 0", "exit 3", and looks up a wheel
+    And the build ends and its metrics are exported
+    Then the metrics are written to a ".prom" file in the directory
+    And the metrics contain "# TYPE habushu_process_launches_total counter"
+    And the metrics contain "habushu_process_launches_total{module=\"habushu-metrics-a\",goal=\"install-dependencies\",command=\"sh -c\"} 2"
+    And the metrics do not contain "# EOF"
+
+  Scenario: Publications deferred until the end of the build are included in its metrics
+    Given a build exporting metrics to "target/open-metrics/metrics.txt"
+    When the "deploy@default-deploy" mojo of module "habushu-metrics-b" defers a publication that launches "exit 0"
+    And the build ends and its metrics are exported
+    Then the metrics contain "habushu_process_launches_total{module=\"habushu-metrics-b\",goal=\"deploy\",command=\"sh -c\"} 1"
+    And the metrics contain "habushu_publish_attempts_total{module=\"habushu-metrics-b\",goal=\"deploy\",method=\"native\",result=\"success\"} 1"
+    And the metrics do not contain "habushu_mojo_executions_total{module=\"habushu-metrics-b\""
@@ -0,0 +1,75 @@
+@poetryDaemon
+Feature: Execute Poetry commands within long-lived Poetry daemons
+
+  Scenario: Poetry commands are executed within a single pooled daemon
+    Given a build with Poetry daemons activated
+    And a Poetry installation whose interpreter speaks the Poetry daemon protocol
+    When the Poetry command "show black" is executed for its result
+    And the Poetry command "install --sync" is executed with its output logged
+    Then the result of the Poetry command is "black 24.1.0"
+    And the Poetry daemon was started once
+    And the Poetry daemon received the commands "show black" and "install --sync"
+
+  Scenario: A Poetry command that fails within a daemon fails as it would via the Poetry CLI
+    Given a build with Poetry daemons activated
+    And a Poetry installation whose interpreter speaks the Poetry daemon protocol
+    When the Poetry command "lock --fail" is executed with its output logged
+    Then the Poetry command fails with the message "Poetry exited with code 2"
+
+  Scenario: A Poetry command interrupted by the failure of its daemon is not executed again via the Poetry CLI
+    Given a build with Poetry daemons activated
+    And a Poetry installation whose interpreter speaks the Poetry daemon protocol
+    When the Poetry command "publish --crash" is executed with its output logged
+    Then the Poetry command fails with the message "Poetry daemon failed while executing the Poetry command"
+    And the Poetry command was not executed via the Poetry CLI
+    And the Poetry daemon was discarded
+
+  Scenario: A Poetry daemon whose command fails unexpectedly is discarded
+    Given a build with Poetry daemons activated
+    And a Poetry installation whose interpreter speaks the Poetry daemon protocol
+    When the Poetry command "show black" is executed with an output listener that fails
+    Then the Poetry daemon was discarded
+
+  Scenario: A Poetry command that stalls within a daemon stops the daemon
+    Given a build with Poetry daemons activated
+    And a Poetry installation whose interpreter speaks the Poetry daemon protocol
+    When the Poetry command "install --hang-once" is executed with a stall timeout of 1 second
+    Then the Poetry command fails with the message "poetry install was stopped after it wrote no output and used no CPU time for 1 s"
+    And the Poetry command was not executed via the Poetry CLI
+    And the Poetry daemon was discarded
+
+  Scenario: A Poetry command that stalls within a daemon is retried within a new daemon
+    Given a build with Poetry daemons activated
+    And a Poetry installation whose interpreter speaks the Poetry daemon protocol
+    When the Poetry command "install --hang-once" is executed with a stall timeout of 1 second and retried once after a stall
+    Then the Poetry daemon was started 2 times
+    And the Poetry command was not executed via the Poetry CLI
+
+  @processGovernor
+  Scenario: Heavy Poetry commands executed within daemons are throttled by the process governor
+    Given a build with Poetry daemons activated
+    And processes are governed by 2 permits with 2 permits per heavy process
+    And a Poetry installation whose interpreter speaks the Poetry daemon protocol
+    When 3 threads each execute the Poetry command "install --slow" within daemons
+    Then at most 1 of the Poetry commands ran at once within daemons
+
+  Scenario: Poetry commands that replace Poetry's process are executed via the Poetry CLI
+    Given a build with Poetry daemons activated
+    And a Poetry installation whose interpreter runs the Poetry daemon with a stub of Poetry's console application
+    When the Poetry command "run echo hello" is executed for its result
+    Then the result of the Poetry command is "poetry run echo hello"
+    When the Poetry command "show black" is executed for its result
+    Then the result of the Poetry command is "daemon: show black"
+    And the Poetry daemon was started once
+    And Poetry's console application executed only the command "show black"
+
+  Scenario Outline: The interpreter of the Poetry installation is read from the poetry launcher
+    Given a poetry launcher on the PATH whose first lines are "<launcher>"
+    Then the Poetry interpreter is found: <found>
+
+    Examples:
+      | launcher                                                        | found |
+      | #!{interpreter}                                                 | true  |
+      | #!/bin/sh\n'''exec' \"{interpreter}\" \"$0\" \"$@\"\n' '''      | true  |
+      | #!/usr/bin/env python3                                          | false |
+      | #!/bin/bash                                                     | false |
@@ -0,0 +1,42 @@
+@poetryPluginUpdates
+Feature: Throttle installation of Poetry plugins into Poetry's environment
+
+  Scenario: The latest version of a plugin is only checked once within the check interval
+    Given Poetry plugins are checked for updates every 24 hours
+    When poetry-monorepo-dependency-plugin is installed at version "latest" by 3 builds
+    Then "self add poetry-monorepo-dependency-plugin@latest" is executed 1 time
+
+  Scenario: The latest version of a plugin is checked again once the check interval elapses
+    Given Poetry plugins are checked for updates every 24 hours
+    And poetry-monorepo-dependency-plugin was last checked for updates 25 hours ago
+    When poetry-monorepo-dependency-plugin is installed at version "latest" by 1 build
+    Then "self add poetry-monorepo-dependency-plugin@latest" is executed 1 time
+
+  Scenario: A plugin without a check interval is checked by every build
+    Given Poetry plugins are checked for updates every 0 hours
+    When poetry-monorepo-dependency-plugin is installed at version "latest" by 2 builds
+    Then "self add poetry-monorepo-dependency-plugin@latest" is executed 2 times
+
+  Scenario: A pinned version of a plugin is installed once, until another version is configured
+    Given Poetry plugins are checked for updates every 0 hours
+    When poetry-monorepo-dependency-plugin is installed at version "1.2.0" by 2 builds
+    And poetry-monorepo-dependency-plugin is installed at version "1.3.0" by 2 builds
+    Then "self add poetry-monorepo-dependency-plugin@1.2.0" is executed 1 time
+    And "self add poetry-monorepo-dependency-plugin@1.3.0" is executed 1 time
+
+  Scenario: A plugin is installed again once it is no longer present in Poetry's environment
+    Given Poetry plugins are checked for updates every 24 hours
+    When poetry-monorepo-dependency-plugin is installed at version "latest" by 1 build
+    And Poetry is reinstalled without its plugins
+    And poetry-monorepo-dependency-plugin is installed at version "latest" by 1 build
+    Then "self add poetry-monorepo-dependency-plugin@latest" is executed 2 times
+
+  Scenario: Concurrent builds install a plugin once
+    Given Poetry plugins are checked for updates every 24 hours
+    When poetry-monorepo-dependency-plugin is installed at version "latest" by 4 concurrent builds
+    Then "self add poetry-monorepo-dependency-plugin@latest" is executed 1 time
+
+  Scenario: Plugins are not installed when Maven is offline
+    Given Poetry plugins are checked for updates every 0 hours
+    When poetry-monorepo-dependency-plugin is installed while Maven is offline
+    Then no Poetry commands are executed
@@ -0,0 +1,29 @@
+@processGovernor
+Feature: Limit the processes launched concurrently across the reactor by weighted permits
+
+  Scenario Outline: Permits are derived from the CPUs and physical memory of the machine
+    When permits are computed for <cpus> CPUs and <memoryGb> GB of memory at <perCpu> per CPU, <weight> per heavy process, and <memoryPerHeavyMb> MB per heavy process
+    Then there are <permits> permits
+
+    Examples:
+      | cpus | memoryGb | perCpu | weight | memoryPerHeavyMb | permits |
+      | 16   | 64       | 1.0    | 4      | 1024             | 16      |
+      | 16   | 2        | 1.0    | 4      | 1024             | 8       |
+      | 16   | 0        | 2.0    | 4      | 1024             | 32      |
+      | 16   | 2        | 1.0    | 4      | 0                | 16      |
+      | 2    | 64       | 1.0    | 4      | 1024             | 4       |
+
+  Scenario: Heavy commands queue rather than running concurrently beyond their permits
+    Given processes are governed by 2 permits with 2 permits per heavy process
+    When 3 threads each launch the heavy command "install"
+    Then at most 1 of the commands ran at once
+
+  Scenario: Light commands run concurrently up to the number of permits
+    Given processes are governed by 2 permits with 2 permits per heavy process
+    When 4 threads each launch the light command "--version"
+    Then at most 2 of the commands ran at once
+
+  Scenario: Light commands do not barge past a queued heavy command
+    Given processes are governed by 2 permits with 2 permits per heavy process
+    When the light command "--version" is running, then the heavy command "install" and the light command "--help" are launched
+    Then the command "install" started before the command "--help"
@@ -0,0 +1,23 @@
+@processMetrics
+Feature: Record the timing and resource use of launched processes
+
+  Scenario: Processes launched by a mojo are written to its module's build directory
+    Given the "install-dependencies" mojo of module "habushu-metrics-a" is executing
+    When it launches a command that writes 1000 bytes and exits with code 0
+    And it launches a command with the sensitive argument "s3cr3t" that exits with code 3
+    And the mojo completes
+    Then the process metrics of module "habushu-metrics-a" record 2 processes
+    And the first recorded process wrote 1000 bytes, exited with code 0, and has a wall and CPU time
+    And the second recorded process exited with code 3 and its command masks "s3cr3t"
+
+  Scenario: The processes of all modules are summarized at the end of the build
+    Given the "install-dependencies" mojo of module "habushu-metrics-a" is executing
+    And it launches a command that sleeps for 0.3 seconds
+    And the mojo completes
+    And the "behave-bdd-test" mojo of module "habushu-metrics-b" is executing
+    And it launches a command that sleeps for 0.1 seconds
+    And it launches a command that sleeps for 0.1 seconds
+    And the mojo completes
+    When the build ends and its processes are summarized
+    Then the summary reports 3 launches, 1 by "install-dependencies" and 2 by "behave-bdd-test"
+    And the summary lists the sleep of module "habushu-metrics-a" as the slowest command
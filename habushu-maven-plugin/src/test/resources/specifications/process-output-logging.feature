@@ -0,0 +1,24 @@
+@processOutputLogging
+Feature: Log process output at the level indicated by each line
+
+  Scenario Outline: Each line of output is logged at the level of the keywords it contains, regardless of case
+    When a command writing "<line>" is executed with its output redirected to the log
+    Then the line is logged at the <level> level
+
+    Examples:
+      | line                                    | level |
+      | Installing dependencies from lock file  | INFO  |
+      | ERROR: could not find a version         | ERROR |
+      | behave: 1 feature failed, Failure found | ERROR |
+      | pylint: critical issue                  | ERROR |
+      | DeprecationWarning: pkg_resources       | WARN  |
+      | warning: debug output follows           | WARN  |
+      | [debug] resolving dependencies          | DEBUG |
+      | a Warning with an eRRor                 | ERROR |
+      | err or warn ing de bug                  | INFO  |
+      | installing pyproject.toml               | INFO  |
+
+  Scenario: Output logged asynchronously is fully logged, in order, before the command completes
+    Given process output is logged asynchronously
+    When a command writing 20000 lines to stdout is executed with its output redirected to the log
+    Then all 20000 lines are logged in order before the command completes
@@ -0,0 +1,19 @@
+@publishFailureClassification
+Feature: Classify PyPI publish failures to only retry those that may succeed
+
+  Scenario Outline: Poetry publish output is classified
+    When poetry publish fails with the output "<output>"
+    Then the failure is classified as "<failureType>" and retriable is <retriable>
+
+    Examples:
+      | output                                                                    | failureType    | retriable |
+      | HTTP Error 403: Invalid or non-existent authentication information.       | AUTHENTICATION | false     |
+      | HTTP Error 400: File already exists.                                      | CONFLICT       | false     |
+      | HTTP Error 409: Conflict                                                  | CONFLICT       | false     |
+      | HTTP Error 400: Invalid value for classifiers.                            | VALIDATION     | false     |
+      | HTTP Error 503: Service Unavailable                                       | SERVER_ERROR   | true      |
+      | 502 Server Error: Bad Gateway for url: https://nexus/repository/pypi/     | SERVER_ERROR   | true      |
+      | ConnectionError: ('Connection aborted.', ConnectionResetError(104))       | NETWORK        | true      |
+      | ReadTimeoutError: HTTPSConnectionPool: Read timed out. (read timeout=15)  | NETWORK        | true      |
+      | Unexpected failure                                                        | UNKNOWN        | true      |
+
@@ -0,0 +1,32 @@
+@pythonForkServer
+Feature: Execute run-command-in-virtual-env Python commands within a pre-warmed fork server
+
+  Scenario: Python commands are executed within a single fork server that preloads the configured modules
+    Given a build with Python fork servers activated
+    And a Poetry project whose in-project virtual environment contains a Python fork server
+    When the run-command-in-virtual-env goal is executed with "python -m grpc_tools.protoc --python_out=src" via the fork server preloading "grpc_tools.protoc"
+    And the run-command-in-virtual-env goal is executed with "python scripts/prepare.py --fast" via the fork server preloading "grpc_tools.protoc"
+    Then the Python fork server was started once preloading "grpc_tools.protoc"
+    And the Python fork server received the Python arguments "-m grpc_tools.protoc --python_out=src" and "scripts/prepare.py --fast"
+
+  Scenario: Console scripts of the virtual environment are executed within the fork server as scripts
+    Given a build with Python fork servers activated
+    And a Poetry project whose in-project virtual environment contains a Python fork server
+    And the virtual environment contains the Python console script "generate-models"
+    When the run-command-in-virtual-env goal is executed with "generate-models --all" via the fork server preloading ""
+    Then the Python fork server received the console script "generate-models" with the arguments "--all"
+
+  Scenario: Commands that are not Python commands are executed as separate processes
+    Given a build with Python fork servers activated
+    And a Poetry project whose in-project virtual environment contains a Python fork server
+    And the virtual environment contains the shell script "protoc"
+    When the run-command-in-virtual-env goal is executed with "protoc --version" via the fork server preloading ""
+    Then the Python fork server was not started for the command
+    And "protoc --version" was executed as a separate process from the virtual environment
+
+  Scenario: Commands executed within the fork server exit as they would in a separate interpreter
+    Given a build with Python fork servers activated
+    And a Poetry project whose in-project virtual environment runs the real Python fork server
+    And the project contains a script that leaves its log file open and registers an exit handler
+    When the run-command-in-virtual-env goal is executed with "python scripts/exit_handlers.py" via the fork server preloading ""
+    Then the script log contains the lines written by the script and by its exit handler
@@ -0,0 +1,24 @@
+@pythonToolServer
+Feature: Execute Pylint, black, and behave within a long-lived Python tool server
+
+  Scenario: Tools are executed within a single server that is shut down at the end of the build
+    Given a build with Python tool servers activated
+    And a Poetry project whose in-project virtual environment contains a Python tool server and "black"
+    When "black src tests" is executed with the tool server enabled
+    And "black --check src" is executed with the tool server enabled
+    Then the Python tool server was started once
+    And the Python tool server received the jobs "black src tests" and "black --check src"
+    When the build ends
+    Then the Python tool server has been shut down
+
+  Scenario: A tool that fails within the server fails the goal
+    Given a build with Python tool servers activated
+    And a Poetry project whose in-project virtual environment contains a Python tool server and "pylint"
+    When "pylint --fail src" is executed with the tool server enabled
+    Then the tool fails with the message "pylint failed with exit code 3"
+
+  Scenario: Tools are executed as separate processes when the plugin is not loaded as an extension
+    Given a Poetry project whose in-project virtual environment contains a Python tool server and "black"
+    When "black src" is executed with the tool server enabled
+    Then the Python tool server was not started
+    And "black" was executed as a separate process
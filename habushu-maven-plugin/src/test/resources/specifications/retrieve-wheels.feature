@@ -8,4 +8,47 @@ Feature: Test wheel dependencies capabilities
   Scenario: Wheel dependencies are copied when specified
     Given a Habushu configuration with a wheel dependency
     When Habushu executes retrieve wheel dependencies
-    Then the wheel artifact is copied
\ No newline at end of file
+    Then the wheel artifact is copied
+
+  Scenario: Only the newest cached version of a wheel dependency is retrieved by default
+    Given a wheel cache containing versions "1.0.0,1.1.0.dev0,1.0.1" of "habushu-sample"
+    And a Habushu configuration with a wheel dependency on "habushu-sample"
+    When Habushu executes retrieve wheel dependencies
+    Then only version "1.1.0.dev0" of "habushu-sample" is retrieved
+
+  Scenario Outline: Cached wheel versions are selected using the configured version specifier
+    Given a wheel cache containing versions "1.0.0,1.0.1,1.1.0.dev0,1.1.0.dev5,2.0.0" of "habushu-sample"
+    And a Habushu configuration with a wheel dependency on "habushu-sample" with version "<version>"
+    When Habushu executes retrieve wheel dependencies
+    Then only version "<retrievedVersion>" of "habushu-sample" is retrieved
+
+    Examples:
+      | version        | retrievedVersion |
+      | 1.0.0          | 1.0.0            |
+      | >=1.0,<1.1     | 1.0.1            |
+      | ~=1.0.0        | 1.0.1            |
+      | ==1.1.*        | 1.1.0.dev5       |
+      | 1.1.0-SNAPSHOT | 1.1.0.dev5       |
+      | !=2.0.0        | 1.1.0.dev5       |
+
+  Scenario Outline: Local version labels are ordered as PEP 440 requires
+    Given a wheel cache containing versions "<cachedVersions>" of "habushu-sample"
+    And a Habushu configuration with a wheel dependency on "habushu-sample"
+    When Habushu executes retrieve wheel dependencies
+    Then only version "<retrievedVersion>" of "habushu-sample" is retrieved
+
+    Examples:
+      | cachedVersions                    | retrievedVersion |
+      | 1.0.0+local,1.0.0                 | 1.0.0+local      |
+      | 1.0.0,1.0.0+local                 | 1.0.0+local      |
+      | 1.0.0+build.9,1.0.0+build.10      | 1.0.0+build.10   |
+      | 1.0.0+build.10,1.0.0+build.9      | 1.0.0+build.10   |
+      | 1.0.0+abc.1,1.0.0+abc.1.0         | 1.0.0+abc.1.0    |
+      | 1.0.0+abc,1.0.0+5                 | 1.0.0+5          |
+
+  Scenario: Wheels that are already identical in the target directory are not copied again
+    Given a wheel cache containing versions "1.0.0" of "habushu-sample"
+    And a Habushu configuration with a wheel dependency on "habushu-sample"
+    And the wheel dependencies were previously retrieved
+    When Habushu executes retrieve wheel dependencies
+    Then the previously retrieved wheel is not copied again
@@ -30,4 +30,19 @@ Feature: Allow push calls to PyPI to retry on failure
       | 1          | 0                   |
       | 2          | 1                   |
       | 4          | 3                   |
-      | 10         | 8                   |
\ No newline at end of file
+      | 10         | 8                   |
+
+  Scenario: Failures that will not succeed on retry are not retried
+    Given Habushu is configured to retry 5
+    When a non-retriable failure is encountered
+    Then Habushu fails to perform the push after 1 attempt
+
+  Scenario Outline: Failures reported by poetry publish that will not succeed on retry are not retried
+    Given Habushu is configured to retry 5
+    When every poetry publish exits with a failure after writing "<output>"
+    Then Habushu fails to perform the push after 1 attempt
+
+    Examples:
+      | output                                                                          |
+      | HTTP Error 403: Forbidden                                                       |
+      | HTTP Error 400: File already exists. See https://pypi.org/help/#file-name-reuse |
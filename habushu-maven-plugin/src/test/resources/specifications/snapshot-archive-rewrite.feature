@@ -0,0 +1,23 @@
+@snapshotArchiveRewrite
+Feature: Publish SNAPSHOT packages by rewriting the version of previously built archives
+
+  Scenario: The version of a wheel is rewritten without rebuilding it
+    Given a built wheel of version "1.2.0" of "sample-package"
+    When the built archives are rewritten to version "1.2.0.dev20240101"
+    Then the rewritten wheel is named "sample_package-1.2.0.dev20240101-py3-none-any.whl"
+    And the rewritten wheel's metadata has version "1.2.0.dev20240101" within "sample_package-1.2.0.dev20240101.dist-info"
+    And the rewritten wheel's RECORD matches its contents
+
+  Scenario: The permissions of a wheel's entries are preserved when its version is rewritten
+    Given a built wheel of version "1.2.0" of "sample-package" containing an executable script
+    When the built archives are rewritten to version "1.2.0.dev20240101"
+    Then the rewritten wheel's script is executable and its other entries are not
+    And the rewritten wheel's RECORD matches its contents
+
+  Scenario: The version of an sdist is rewritten without rebuilding it
+    Given a built sdist of version "1.2.0" of "sample-package" containing a file with a long path
+    When the built archives are rewritten to version "1.2.0.dev20240101"
+    Then the rewritten sdist is named "sample-package-1.2.0.dev20240101.tar.gz"
+    And every entry of the rewritten sdist is within "sample-package-1.2.0.dev20240101/"
+    And the rewritten sdist's PKG-INFO and pyproject.toml have version "1.2.0.dev20240101"
+    And all other entries of the rewritten sdist are unchanged
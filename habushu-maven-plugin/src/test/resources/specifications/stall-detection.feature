@@ -0,0 +1,24 @@
+@stallDetection
+Feature: Stop processes that stall without output or CPU progress
+
+  Scenario: A quiet, idle Python process is stopped after its stall timeout with its stack logged
+    Given a command "python3 -c 'import time; time.sleep(60)'" with a stall timeout of 1 second
+    When the command is executed with stall detection
+    Then the command is stopped as stalled within 15 seconds
+    And the stack of the stalled command is logged
+
+  Scenario: A process that keeps writing output is not stopped
+    Given a command "for i in 1 2 3 4 5 6 7 8; do echo $i; sleep 0.25; done" with a stall timeout of 1 second
+    When the command is executed with stall detection
+    Then the command completes without stalling
+
+  Scenario: A busy process that writes no output is not stopped
+    Given a command "python3 -c 'import time; end = time.time() + 2.5\nwhile time.time() < end: pass'" with a stall timeout of 1 second
+    When the command is executed with stall detection
+    Then the command completes without stalling
+
+  Scenario: A stalled Poetry install is retried once after clearing the cache entries of the package it was installing
+    Given a Poetry install that stalls while installing "numpy" "1.26.0" the first time it runs
+    When the Poetry install is executed with a stall timeout of 1 second and retries after stalls
+    Then the Poetry install completes on its retry
+    And Poetry cache "PyPI" is cleared of "numpy:1.26.0" before the retry
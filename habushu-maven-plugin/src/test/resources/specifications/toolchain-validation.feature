@@ -0,0 +1,34 @@
+@toolchainValidation
+Feature: Validate the toolchain of a reactor once rather than per module
+
+  Scenario: Modules sharing a toolchain validate it once per build
+    Given a build for which habushu-maven-plugin is loaded as an extension
+    When 3 modules validate their toolchain with the installed version of Python
+    Then Poetry's version is checked 1 time
+    And repository credentials are registered 1 time
+    And poetry-monorepo-dependency-plugin is installed 1 time
+
+  Scenario: Modules validating their toolchain concurrently wait for the first validation
+    Given a build for which habushu-maven-plugin is loaded as an extension
+    When 4 modules validate their toolchain concurrently with the installed version of Python
+    Then Poetry's version is checked 1 time
+    And poetry-monorepo-dependency-plugin is installed 1 time
+
+  Scenario: Modules share the failure of their toolchain's validation
+    Given a build for which habushu-maven-plugin is loaded as an extension
+    When 2 modules validate their toolchain with Python version "2.7.18"
+    Then each module fails with the same error, starting with "Expected Python version 2.7.18"
+    And Poetry's version is checked 1 time
+
+  Scenario: Modules validate toolchains with distinct Python versions separately
+    Given a build for which habushu-maven-plugin is loaded as an extension
+    When 2 modules validate their toolchain with the installed version of Python
+    And 2 modules validate their toolchain with Python version "2.7.18"
+    Then Poetry's version is checked 2 times
+
+  Scenario: Without the extension every module validates its toolchain
+    Given a build for which habushu-maven-plugin is not loaded as an extension
+    When 3 modules validate their toolchain with the installed version of Python
+    Then Poetry's version is checked 3 times
+    And repository credentials are registered 3 times
+    And poetry-monorepo-dependency-plugin is installed 3 times
@@ -0,0 +1,19 @@
+@virtualEnvExecution
+Feature: Execute tools directly from the in-project virtual environment instead of via poetry run
+
+  Scenario: A tool is executed directly from the in-project virtual environment
+    Given a Poetry project with an in-project virtual environment containing "sample-tool"
+    When "sample-tool --check src" is executed in the virtual environment with PYTHONHOME set
+    Then "sample-tool" is executed from the virtual environment with the arguments "--check src"
+    And the tool's environment has VIRTUAL_ENV set to the virtual environment
+    And the tool's PATH starts with the virtual environment's bin directory
+    And the tool's environment does not have PYTHONHOME set
+
+  Scenario: The run-command-in-virtual-env goal executes commands directly from the in-project virtual environment
+    Given a Poetry project with an in-project virtual environment containing "sample-tool"
+    When the run-command-in-virtual-env goal is executed with "sample-tool generate"
+    Then "sample-tool" is executed from the virtual environment with the arguments "generate"
+
+  Scenario: Projects without an in-project virtual environment fall back to poetry run
+    Given a Poetry project without an in-project virtual environment
+    Then the project's tools are executed via poetry run
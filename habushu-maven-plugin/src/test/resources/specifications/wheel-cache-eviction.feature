@@ -0,0 +1,25 @@
+Feature: Evict wheels from the wheel cache
+
+  Scenario: Only the newest versions of each artifact are retained in the wheel cache
+    Given a wheel cache containing versions "1.0.0,1.1.0.dev0,1.0.1,2.0.0" of "habushu-sample"
+    When the wheel cache is evicted with a maximum of 2 versions per artifact
+    Then only versions "1.1.0.dev0,2.0.0" of "habushu-sample" remain in the wheel cache
+
+  Scenario: Wheels that have not been accessed within the maximum age are evicted from the wheel cache
+    Given a wheel cache containing versions "1.0.0,1.0.1" of "habushu-sample"
+    And version "1.0.0" of "habushu-sample" was last accessed 10 days ago
+    When the wheel cache is evicted with a maximum age of 7 days
+    Then only versions "1.0.1" of "habushu-sample" remain in the wheel cache
+
+  Scenario: The least recently accessed wheels are evicted once the wheel cache exceeds its maximum size
+    Given a wheel cache containing 1 MB wheels of versions "1.0.0,1.0.1,1.0.2" of "habushu-sample"
+    And version "1.0.0" of "habushu-sample" was last accessed 5 days ago
+    And version "1.0.1" of "habushu-sample" was last accessed 3 days ago
+    And version "1.0.0" of "habushu-sample" is retrieved from the wheel cache
+    When the wheel cache is evicted with a maximum size of 2 MB
+    Then only versions "1.0.0,1.0.2" of "habushu-sample" remain in the wheel cache
+
+  Scenario: Accesses recorded while the wheel cache is evicted concurrently are retained
+    Given a wheel cache containing 100 empty wheels of "habushu-sample"
+    When the access of each wheel of "habushu-sample" is recorded while the wheel cache is evicted concurrently
+    Then the access log retains the access of each wheel of "habushu-sample"
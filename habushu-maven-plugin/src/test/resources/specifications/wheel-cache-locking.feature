@@ -0,0 +1,16 @@
+Feature: Coordinate concurrent writes to the wheel cache
+
+  Scenario: Writes to an artifact's cached wheels wait for a concurrent build to release its lock
+    Given another build holds the wheel cache lock of "habushu-sample" for 1 second
+    When the wheel cache lock of "habushu-sample" is requested with a timeout of 10 seconds
+    Then the wheel cache lock is acquired after the other build releases it
+
+  Scenario: Writes to an artifact's cached wheels fail if a concurrent build does not release its lock in time
+    Given another build holds the wheel cache lock of "habushu-sample" for 5 seconds
+    When the wheel cache lock of "habushu-sample" is requested with a timeout of 1 second
+    Then the wheel cache lock request times out
+
+  Scenario: Concurrent builds caching the same wheel never expose a partially written wheel
+    Given a wheel cache containing versions "1.0.0" of "habushu-sample"
+    When 4 builds concurrently cache version "1.0.0" of "habushu-sample"
+    Then the wheel cache manifest of "habushu-sample" records the size and SHA-256 digest of each wheel
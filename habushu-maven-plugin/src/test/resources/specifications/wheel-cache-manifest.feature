@@ -0,0 +1,15 @@
+Feature: Index cached wheels in a wheel cache manifest
+
+  Scenario: Cached wheels are indexed with their metadata in the wheel cache manifest
+    Given a wheel cache containing versions "1.0.0,1.0.1" of "habushu-sample"
+    When the wheel cache manifest of "habushu-sample" is saved
+    Then the wheel cache manifest of "habushu-sample" indexes version "1.0.1" with python tag "py3"
+    And the wheel cache manifest of "habushu-sample" records the size and SHA-256 digest of each wheel
+
+  Scenario: Cached wheels are retrieved using the version recorded in their metadata
+    Given a wheel cache containing versions "1.0.0" of "habushu-sample"
+    And a wheel cache containing a wheel named "habushu_sample-latest.whl" with version "2.0.0" of "habushu-sample"
+    And a Habushu configuration with a wheel dependency on "habushu-sample" with version ">=2.0"
+    When Habushu executes retrieve wheel dependencies
+    Then the wheel "habushu_sample-latest.whl" is retrieved
+    And the wheel cache manifest of "habushu-sample" indexes version "2.0.0" with python tag "py3"